@@ -16,6 +16,7 @@
 #
 
 import sys
+import time
 
 from spacewalk.common import rhnFlags
 from spacewalk.common.usix import raise_with_tb
@@ -28,6 +29,119 @@ from server_lib import join_server_group
 
 VIRT_ENT_LABEL = 'virtualization_host'
 
+# Seconds a token plan is used for at most; a plan is dropped right away when
+# the content of its token changes, but not when the channels or groups it
+# refers to change
+PLAN_MAX_AGE = 300
+# Number of token plans kept per process
+PLAN_CACHE_SIZE = 1000
+
+_query_token_plan_channels = rhnSQL.Statement("""
+    select rtc.channel_id id, c.name, c.label, c.parent_channel,
+           c.channel_arch_id
+      from rhnRegTokenChannels rtc, rhnChannel c
+     where rtc.token_id = :token_id
+       and rtc.channel_id = c.id
+""")
+
+_query_channel_arch_compat = rhnSQL.Statement("""
+    select channel_arch_id
+      from rhnServerChannelArchCompat
+     where server_arch_id = :server_arch_id
+""")
+
+
+class TokenPlan:
+
+    """
+    What registering a server with a token needs from the token: its channels,
+    server groups, packages and config channels. The rows are shared by all
+    registrations using the token and must not be changed.
+    """
+
+    def __init__(self, token_id, version):
+        self.token_id = token_id
+        self.version = version
+        self.loaded = time.time()
+        self.channels = _fetch_all(_query_token_plan_channels, token_id=token_id)
+        self.server_groups = _fetch_all(_query_token_server_groups, token_id=token_id)
+        self.packages = _fetch_all(_query_token_packages, token_id=token_id)
+        self.config_channels = _fetch_all(_query_token_config_channels,
+                                          token_id=token_id)
+
+
+class _TokenPlanCache:
+
+    """
+    Token plans of this process. A plan is valid as long as the content_version
+    of its token, which triggers increase whenever channels, groups, packages
+    or config channels of the token change, stays the same.
+    """
+    def __init__(self):
+        self.plans = {}
+        self.arch_compat = {}
+
+    def get_plans(self, tokens):
+        expired = time.time() - PLAN_MAX_AGE
+        ret = {}
+        for token in tokens:
+            token_id = token['token_id']
+            version = token.get('content_version')
+            if not _is_reusable(token):
+                ret[token_id] = TokenPlan(token_id, version)
+                continue
+            plan = self.plans.get(token_id)
+            if plan is None or plan.version != version or plan.loaded < expired:
+                plan = TokenPlan(token_id, version)
+                if token_id not in self.plans and len(self.plans) >= PLAN_CACHE_SIZE:
+                    self._drop_oldest()
+                self.plans[token_id] = plan
+            ret[token_id] = plan
+        return ret
+
+    def _drop_oldest(self):
+        oldest = min(self.plans.values(), key=lambda x: x.loaded)
+        del self.plans[oldest.token_id]
+
+    def get_channel_arch_compat(self, server_arch_id):
+        """ Returns the channel archs compatible with a server arch """
+        entry = self.arch_compat.get(server_arch_id)
+        if entry is None or entry[0] < time.time() - PLAN_MAX_AGE:
+            rows = _fetch_all(_query_channel_arch_compat,
+                              server_arch_id=server_arch_id)
+            entry = (time.time(), set([x['channel_arch_id'] for x in rows]))
+            self.arch_compat[server_arch_id] = entry
+        return entry[1]
+
+_token_plan_cache = _TokenPlanCache()
+
+
+def _is_reusable(token):
+    """ Tokens used by one registration only are not worth caching: kickstart
+        session keys, re-registration keys and keys with a usage limit of one
+    """
+    return (token.get('content_version') is not None and
+            token.get('kickstart_session_id') is None and
+            token.get('server_id') is None and
+            token.get('usage_limit') != 1)
+
+
+def _fetch_all(statement, **params):
+    h = rhnSQL.prepare(statement)
+    h.execute(**params)
+    return h.fetchall_dict() or []
+
+
+def get_token_plans(tokens_obj):
+    """ Returns the plans of the tokens by token id, loaded once per tokens
+        object
+    """
+    assert(isinstance(tokens_obj, ActivationTokens))
+    if tokens_obj.plans is None:
+        tokens_obj.plans = _token_plan_cache.get_plans(tokens_obj.tokens)
+    return tokens_obj.plans
+
+
 def token_channels(server, server_arch, tokens_obj):
     """ Handle channel subscriptions for the registration token """
     assert(isinstance(tokens_obj, ActivationTokens))
@@ -36,18 +150,8 @@ def token_channels(server, server_arch, tokens_obj):
 
     # what channels are associated with this token (filter only those
     # compatible with this server)
-    h = rhnSQL.prepare("""
-    select
-        rtc.channel_id id, c.name, c.label, c.parent_channel
-    from
-        rhnRegTokenChannels rtc,
-        rhnChannel c,
-        rhnServerChannelArchCompat scac
-    where rtc.token_id = :token_id
-        and rtc.channel_id = c.id
-        and c.channel_arch_id = scac.channel_arch_id
-        and scac.server_arch_id = :server_arch_id
-    """)
+    plans = get_token_plans(tokens_obj)
+    compatible_archs = _token_plan_cache.get_channel_arch_compat(server_arch_id)
 
     chash = {}
     base_channel_token = None
@@ -55,11 +159,9 @@ def token_channels(server, server_arch, tokens_obj):
 
     for token in tokens_obj.tokens:
         token_id = token['token_id']
-        h.execute(token_id=token_id, server_arch_id=server_arch_id)
-        while 1:
-            row = h.fetchone_dict()
-            if not row:
-                break
+        for row in plans[token_id].channels:
+            if row['channel_arch_id'] not in compatible_archs:
+                continue
             channel_id = row['id']
             chash[channel_id] = row
             if row['parent_channel'] is not None:
@@ -118,9 +220,6 @@ def token_channels(server, server_arch, tokens_obj):
     # attempt to subscribe all non-base channels associated with this
     # token
     subscribe_channel = rhnSQL.Procedure("rhn_channel.subscribe_server")
-    # Use a set here to ensure uniqueness of the
-    # channel family ids used in the loop below.
-    channel_family_ids = set()
 
     for c in [a for a in chash.values() if a["parent_channel"]]:
         # make sure this channel has the right parent
@@ -134,11 +233,6 @@ def token_channels(server, server_arch, tokens_obj):
             # XXX: test return code when this one will start returning
             # a status
             subscribe_channel(server_id, c["id"], 0, None)
-            child = rhnChannel.Channel()
-            child.load_by_id(c["id"])
-            child._load_channel_families()
-            cfamid = child._channel_families[0]
-            channel_family_ids.add(cfamid)
         except rhnSQL.SQLError:
             e = sys.exc_info()[1]
             log_error("Failed channel subscription", server_id,
@@ -147,7 +241,6 @@ def token_channels(server, server_arch, tokens_obj):
         else:
             ret.append("Subscribed to channel '%s'" % c["name"])
 
-    log_debug(5, "cf ids: %s" % str(channel_family_ids))
     log_debug(5, "Server org_id: %s" % str(server['org_id']))
 
     return ret
@@ -163,15 +256,10 @@ _query_token_server_groups = rhnSQL.Statement("""
 def token_server_groups(server_id, tokens_obj):
     """ Handle server group subscriptions for the registration token """
     assert(isinstance(tokens_obj, ActivationTokens))
-    h = rhnSQL.prepare(_query_token_server_groups)
+    plans = get_token_plans(tokens_obj)
     server_groups = {}
     for token in tokens_obj.tokens:
-        token_id = token['token_id']
-        h.execute(token_id=token_id)
-        while 1:
-            row = h.fetchone_dict()
-            if not row:
-                break
+        for row in plans[token['token_id']].server_groups:
             server_group_id = row['server_group_id']
             server_groups[server_group_id] = row
 
@@ -210,15 +298,10 @@ _query_token_packages_insert = rhnSQL.Statement("""
 def token_packages(server_id, tokens_obj):
     assert(isinstance(tokens_obj, ActivationTokens))
 
-    h = rhnSQL.prepare(_query_token_packages)
+    plans = get_token_plans(tokens_obj)
     package_names = {}
     for token in tokens_obj.tokens:
-        token_id = token['token_id']
-        h.execute(token_id=token_id)
-        while True:
-            row = h.fetchone_dict()
-            if not row:
-                break
+        for row in plans[token['token_id']].packages:
             pn_id = row['name_id']
             pa_id = row['arch_id']
             package_names[(pn_id, pa_id)] = row['name']
@@ -345,11 +428,10 @@ _query_set_server_config_channels = rhnSQL.Statement("""
 """)
 
 
-def _get_token_config_channels(token_id):
-    h = rhnSQL.prepare(_query_token_config_channels)
-    h.execute(token_id=token_id)
-
-    return h.fetchall_dict() or []
+def _get_token_config_channels(tokens_obj, token_id):
+    # copies, the positions are set per server
+    plan = get_token_plans(tokens_obj)[token_id]
+    return [dict(x) for x in plan.config_channels]
 
 _query_current_config_channels = rhnSQL.Statement("""
     select config_channel_id
@@ -390,7 +472,7 @@ def token_config_channels(server, tokens_obj):
         current_channels = _get_current_config_channels(server_id)
 
     for token in tokens_obj.tokens:
-        channels = _get_token_config_channels(token['token_id'])
+        channels = _get_token_config_channels(tokens_obj, token['token_id'])
         # Check every token used and if any of them are set to not deploy configs
         # then we won't deploy configs for any config channels the system is subscribed to
         deploy_configs = token['deploy_configs']
@@ -438,23 +520,17 @@ def token_config_channels(server, tokens_obj):
 
 _query_server_token_used = rhnSQL.Statement("""
     insert into rhnServerTokenRegs (server_id, token_id)
-    values (:server_id, :token_id)
-""")
-
-_query_check_server_uses_token = rhnSQL.Statement("""
-    select 1 from rhnServerTokenRegs
-    where server_id = :server_id
-    and token_id = :token_id
+    select :server_id, :token_id
+      from dual
+     where not exists (select 1 from rhnServerTokenRegs
+                        where server_id = :server_id
+                          and token_id = :token_id)
 """)
 
 
 def server_used_token(server_id, token_id):
-    h = rhnSQL.prepare(_query_check_server_uses_token)
+    h = rhnSQL.prepare(_query_server_token_used)
     h.execute(server_id=server_id, token_id=token_id)
-    ret = h.fetchone_dict()
-    if not ret:
-        h = rhnSQL.prepare(_query_server_token_used)
-        h.execute(server_id=server_id, token_id=token_id)
 
 _query_check_token_limits = rhnSQL.Statement("""
     select
@@ -488,6 +564,11 @@ def _check_token_limits(server_id, token_rec):
     # Mark that we used this token
     server_used_token(server_id, token_id)
 
+    # See bug #79095: if usage_limit is NULL, it means unlimited reg tokens;
+    # no need to count the servers registered with it then
+    if "usage_limit" in token_rec and token_rec["usage_limit"] is None:
+        return 0
+
     # now check we're not using this token too much
     h = rhnSQL.prepare(_query_check_token_limits)
     h.execute(token_id=token_id)
@@ -512,6 +593,8 @@ class ActivationTokens:
     """
     is_rereg_token = 0
     forget_rereg_token = 0
+    # token plans by token id, see get_token_plans()
+    plans = None
 
     def __init__(self, tokens, user_id=None, org_id=None,
                  kickstart_session_id=None, entitlements=[], deploy_configs=None):
@@ -745,7 +828,8 @@ _query_token = rhnSQL.Statement("""
            rt.usage_limit,
            rt.server_id,
            ak.ks_session_id kickstart_session_id,
-           rt.deploy_configs
+           rt.deploy_configs,
+           rt.content_version
     from rhnActivationKey ak, rhnRegToken rt, rhnRegTokenEntitlement rte, rhnServerGroupType sgt
     where ak.token = :token
       and ak.reg_token_id = rt.id
@@ -893,7 +977,8 @@ _query_org_default_token = rhnSQL.Statement("""
            NULL usage_limit,
            rt.server_id,
            NULL kickstart_session_id,
-           rt.deploy_configs
+           rt.deploy_configs,
+           rt.content_version
       from rhnServerGroupType sgt,
            rhnActivationKey ak,
            rhnRegToken rt,
@@ -0,0 +1,98 @@
+#!/usr/bin/python2
+#
+# Copyright (c) 2018 Red Hat, Inc.
+#
+# This software is licensed to you under the GNU General Public License,
+# version 2 (GPLv2). There is NO WARRANTY for this software, express or
+# implied, including the implied warranties of MERCHANTABILITY or FITNESS
+# FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+# along with this software; if not, see
+# http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+#
+# Red Hat trademarks are not licensed under GPLv2. No permission is
+# granted to use or replicate Red Hat trademarks that are incorporated
+# in this software or its documentation.
+#
+#
+# Tests the reuse of activation key plans by registrations
+#
+
+import sys
+import unittest
+from spacewalk.server import rhnSQL
+from spacewalk.server.rhnServer import server_token
+
+import misc_functions
+
+DB_SETTINGS = misc_functions.db_settings("oracle")
+
+
+class Tests(unittest.TestCase):
+
+    def setUp(self):
+        rhnSQL.initDB(
+            backend="oracle",
+            username=DB_SETTINGS["user"],
+            password=DB_SETTINGS["password"],
+            database=DB_SETTINGS["database"]
+        )
+        rhnSQL.clear_log_id()
+
+    def tearDown(self):
+        # Roll back any unsaved data
+        rhnSQL.rollback()
+
+    def test_plan_reused(self):
+        "A key used again gets the same plan"
+        token = misc_functions.create_activation_key().get_token()
+
+        plan1 = self._get_plan(token)
+        plan2 = self._get_plan(token)
+        self.assertTrue(plan1 is plan2)
+        self.assertEqual(len(plan1.channels), 2)
+        self.assertEqual(len(plan1.server_groups), 3)
+
+    def test_plan_invalidated(self):
+        "A changed key gets a new plan, other keys keep theirs"
+        token = misc_functions.create_activation_key().get_token()
+        other_token = misc_functions.create_activation_key().get_token()
+        plan = self._get_plan(token)
+        other_plan = self._get_plan(other_token)
+
+        h = rhnSQL.prepare("""
+            delete from rhnRegTokenChannels
+             where token_id = :token_id
+        """)
+        h.execute(token_id=plan.token_id)
+        rhnSQL.commit()
+
+        new_plan = self._get_plan(token)
+        self.assertFalse(new_plan is plan)
+        self.assertNotEqual(new_plan.version, plan.version)
+        self.assertEqual(new_plan.channels, [])
+        self.assertTrue(self._get_plan(other_token) is other_plan)
+
+    def test_one_time_key_not_cached(self):
+        "Keys used by one registration only are loaded each time"
+        token = misc_functions.create_activation_key().get_token()
+        h = rhnSQL.prepare("""
+            update rhnRegToken
+               set usage_limit = 1
+             where id = (select reg_token_id from rhnActivationKey
+                          where token = :token)
+        """)
+        h.execute(token=token)
+        rhnSQL.commit()
+
+        plan = self._get_plan(token)
+        self.assertFalse(self._get_plan(token) is plan)
+        self.assertFalse(plan.token_id in server_token._token_plan_cache.plans)
+
+    @staticmethod
+    def _get_plan(token):
+        tokens_obj = server_token.fetch_token(token)
+        token_id = tokens_obj.tokens[0]['token_id']
+        return server_token.get_token_plans(tokens_obj)[token_id]
+
+if __name__ == '__main__':
+    sys.exit(unittest.main() or 0)
@@ -115,6 +115,7 @@ public class ConfigDefaults {
 
     public static final String PAGE_SIZES = "web.page_sizes";
     public static final String DEFAULT_PAGE_SIZE = "web.default_page_size";
+    private static final String LIST_SNAPSHOT_TTL = "web.list_snapshot_ttl";
 
     public static final String KICKSTART_COBBLER_DIR = "kickstart.cobbler.dir";
     public static final String COBBLER_SNIPPETS_DIR = "cobbler.snippets.dir";
@@ -170,6 +171,16 @@ public class ConfigDefaults {
      */
     private static final String TASKOMATIC_CHANNEL_REPODATA_WORKERS
         = "java.taskomatic_channel_repodata_workers";
+    private static final String TASKOMATIC_CONFIG_DIFF_GROUP_ACTIONS
+        = "java.taskomatic_config_diff_group_actions";
+
+    /**
+     * Search server client defaults
+     */
+    private static final String SEARCH_SERVER_CONNECT_TIMEOUT =
+        "search_server.connect_timeout";
+    private static final String SEARCH_SERVER_READ_TIMEOUT = "search_server.read_timeout";
+    private static final String SEARCH_SERVER_COMPACT_IDS = "search_server.compact_ids";
 
     private ConfigDefaults() {
     }
@@ -293,6 +304,15 @@ public class ConfigDefaults {
         return Config.get().getString(DEFAULT_PAGE_SIZE, "");
     }
 
+    /**
+     * Returns how long the rows of a list page are reused for paging, sorting
+     * and filtering before the query is run again, 0 to always run the query.
+     * @return time to live of list snapshots in seconds
+     */
+    public int getListSnapshotTtl() {
+        return Config.get().getInt(LIST_SNAPSHOT_TTL, 120);
+    }
+
     /**
      * Returns the directory which hosts all the
      * cobbler kickstart .cfg files..
@@ -415,6 +435,31 @@ public class ConfigDefaults {
         return "http://" + searchServerHost + ":" + searchServerPort + "/RPC2";
     }
 
+    /**
+     * Returns the timeout for connecting to the search server
+     * @return connect timeout in milliseconds
+     */
+    public int getSearchServerConnectTimeout() {
+        return Config.get().getInt(SEARCH_SERVER_CONNECT_TIMEOUT, 5000);
+    }
+
+    /**
+     * Returns the timeout for reading a response of the search server
+     * @return read timeout in milliseconds
+     */
+    public int getSearchServerReadTimeout() {
+        return Config.get().getInt(SEARCH_SERVER_READ_TIMEOUT, 60000);
+    }
+
+    /**
+     * Returns whether searches returning ids only should fetch them from the
+     * search server in the compact binary form
+     * @return true if index.searchIds should be used
+     */
+    public boolean isSearchServerCompactIds() {
+        return Config.get().getBoolean(SEARCH_SERVER_COMPACT_IDS);
+    }
+
     /**
      * Returns the URL for the tasko server, if not defined returns
      * http://localhost:2829/RPC2
@@ -589,6 +634,15 @@ public class ConfigDefaults {
         return Config.get().getInt(TASKOMATIC_CHANNEL_REPODATA_WORKERS, 1);
     }
 
+    /**
+     * Returns whether the config comparison task should schedule one action for
+     * all systems of an org with identical config files instead of one per system
+     * @return true if config diff actions should be grouped
+     */
+    public boolean isTaskoConfigDiffGroupActions() {
+        return Config.get().getBoolean(TASKOMATIC_CONFIG_DIFF_GROUP_ACTIONS);
+    }
+
     /**
      * Returns actions display limit
      * @return actions display limit
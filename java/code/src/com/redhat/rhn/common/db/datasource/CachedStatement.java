@@ -294,6 +294,75 @@ public class CachedStatement implements Serializable {
         }
     }
 
+    int stream(Map<String, ?> parameters, SelectMode mode, RowHandler handler,
+            int fetchSize) {
+        String sql = NamedPreparedStatement.replaceBindParams(sqlStatement, qMap);
+        if (sql.indexOf("%s") > 0) {
+            throw new IllegalArgumentException(
+                    "Queries with an IN clause can not be streamed: " + getName());
+        }
+
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        String className = mode.getClassString();
+        try {
+            Connection conn = stealConnection();
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            // without a fetch size the JDBC driver reads the whole result at once
+            ps.setFetchSize(fetchSize);
+            ps.setMaxRows(mode.getMaxRows());
+
+            if (log.isDebugEnabled()) {
+                log.debug("stream() - Executing: " + sql);
+                log.debug("stream() - With: " + parameters);
+            }
+
+            NamedPreparedStatement.execute(ps, qMap, setupParamMap(parameters));
+            rs = ps.getResultSet();
+            List<String> columns = getColumnNames(rs.getMetaData());
+            Class<?> clazz = null;
+            if (className != null && !className.equals("java.util.Map")) {
+                clazz = Class.forName(className);
+            }
+
+            int count = 0;
+            while (rs.next()) {
+                if (clazz == null) {
+                    Map<String, Object> row = new HashMap<String, Object>();
+                    addToMap(columns, rs, row, -1);
+                    handler.handleRow(row);
+                }
+                else {
+                    Object row = clazz.newInstance();
+                    addToObject(columns, rs, row, false);
+                    handler.handleRow(row);
+                }
+                count++;
+            }
+            return count;
+        }
+        catch (SQLException e) {
+            throw SqlExceptionTranslator.sqlException(e);
+        }
+        catch (HibernateException he) {
+            throw new HibernateRuntimeException(
+                    "HibernateException streaming CachedStatement", he);
+        }
+        catch (ClassNotFoundException e) {
+            throw new ObjectCreateWrapperException("Could not create " + className, e);
+        }
+        catch (InstantiationException e) {
+            throw new ObjectCreateWrapperException("Could not create " + className, e);
+        }
+        catch (IllegalAccessException e) {
+            throw new ObjectCreateWrapperException("Could not create " + className, e);
+        }
+        finally {
+            HibernateHelper.cleanupDB(rs, ps);
+        }
+    }
+
     private String commaSeparatedList(List<?> list) {
         StringBuilder sb = new StringBuilder();
         boolean firstValue = true;
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+/**
+ * RowHandler receives the rows of a streamed query one at a time, while the
+ * cursor is still open.
+ * @version $Rev$
+ * @see com.redhat.rhn.common.db.datasource.SelectMode#stream(java.util.Map, RowHandler)
+ */
+public interface RowHandler {
+
+    /**
+     * Called for each row of the query, in order. The row is not kept by the
+     * datasource layer once this method returns.
+     * @param row the row, a Map or an instance of the class of the mode
+     */
+    void handleRow(Object row);
+}
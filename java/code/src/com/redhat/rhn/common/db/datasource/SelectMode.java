@@ -31,6 +31,9 @@ public class SelectMode extends BaseMode implements Serializable {
     private List<CachedStatement> elaborators = new ArrayList<CachedStatement>();
     private int maxRows;
 
+    /** rows fetched from the database at once when streaming */
+    public static final int STREAM_FETCH_SIZE = 1000;
+
     // increase this number on any data change
     private static final long serialVersionUID = 1L;
 
@@ -117,6 +120,23 @@ public class SelectMode extends BaseMode implements Serializable {
         return getQuery().execute(parameters, inClause, this);
     }
 
+    /**
+     * Executes the query and hands the rows to the handler one at a time as they
+     * are read from the cursor, instead of collecting them in a DataResult.
+     * Must be called within the transaction the rows are needed in. Modes with
+     * elaborators or an IN clause can not be streamed.
+     * @param parameters named parameters for the Query.
+     * @param handler receives every row
+     * @return number of rows handled
+     */
+    public int stream(Map<String, ?> parameters, RowHandler handler) {
+        if (!elaborators.isEmpty()) {
+            throw new UnsupportedOperationException(
+                    "Modes with elaborators can not be streamed: " + getName());
+        }
+        return getQuery().stream(parameters, this, handler, STREAM_FETCH_SIZE);
+    }
+
     /**
      * Elaborates a list by calling the elaboration queries with the given
      * parameters.
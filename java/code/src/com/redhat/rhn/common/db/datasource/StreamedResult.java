@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A query result that is read when it is consumed rather than when it is
+ * returned. API handlers return it for results too large to be held in memory;
+ * the XML-RPC layer then writes the rows to the response one at a time while
+ * the cursor is open.
+ *
+ * Subclasses may override {@link #prepareRow(Object)} to adjust rows the way
+ * callers used to adjust the elements of the DataResult.
+ *
+ * @param <T> type of the rows
+ * @version $Rev$
+ */
+public class StreamedResult<T> {
+
+    private final SelectMode mode;
+    private final Map<String, Object> params;
+
+    /**
+     * Constructor
+     * @param modeIn select mode without elaborators or IN clause
+     * @param paramsIn named parameters of the query
+     */
+    public StreamedResult(SelectMode modeIn, Map<String, ?> paramsIn) {
+        mode = modeIn;
+        params = new HashMap<String, Object>();
+        if (paramsIn != null) {
+            params.putAll(paramsIn);
+        }
+    }
+
+    /**
+     * Runs the query and hands every row to the handler
+     * @param handler receives the rows
+     * @return number of rows
+     */
+    public int stream(final RowHandler handler) {
+        return mode.stream(params, new RowHandler() {
+            public void handleRow(Object row) {
+                handler.handleRow(prepareRow((T) row));
+            }
+        });
+    }
+
+    /**
+     * Runs the query and collects all the rows, for callers that need them all
+     * at once anyway.
+     * @return all the rows
+     */
+    public DataResult<T> toList() {
+        DataResult<T> result = mode.execute(params);
+        for (int i = 0; i < result.size(); i++) {
+            result.set(i, prepareRow(result.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Hook to adjust a row before it is handed out
+     * @param row the row as read from the database
+     * @return the row to hand out
+     */
+    protected T prepareRow(T row) {
+        return row;
+    }
+}
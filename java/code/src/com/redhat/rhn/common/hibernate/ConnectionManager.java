@@ -19,14 +19,19 @@ import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.finder.FinderFactory;
 
 import org.apache.log4j.Logger;
+import org.hibernate.Cache;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
+import org.hibernate.jmx.StatisticsService;
 import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.stat.Statistics;
 
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -35,6 +40,10 @@ import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 
 /**
  * Manages the lifecycle of the Hibernate SessionFactory and associated
@@ -46,6 +55,8 @@ class ConnectionManager {
     private static final Logger LOG = Logger.getLogger(ConnectionManager.class);
     private static final String[] PACKAGE_NAMES = {"com.redhat.rhn.domain",
     "com.redhat.rhn.taskomatic"};
+    private static final String STATISTICS_MBEAN =
+        "com.redhat.rhn:type=HibernateStatistics";
 
     private final List<Configurator> configurators = new LinkedList<Configurator>();
     private SessionFactory sessionFactory;
@@ -103,10 +114,67 @@ class ConnectionManager {
         return retval;
     }
 
+    /**
+     * Removes an entity and the collections it owns from the second level
+     * cache, to be called after the row was changed other than by Hibernate,
+     * e.g. by a stored procedure.
+     * @param clazz class of the entity
+     * @param id identifier of the entity
+     */
+    public void evictFromCache(Class clazz, Serializable id) {
+        if (!isInitialized()) {
+            return;
+        }
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntity(clazz, id);
+        for (String role : getCollectionRoles(clazz)) {
+            cache.evictCollection(role, id);
+        }
+    }
+
+    /**
+     * Removes all entities of a class and the collections they own from the
+     * second level cache.
+     * @param clazz class of the entities
+     */
+    public void evictFromCache(Class clazz) {
+        if (!isInitialized()) {
+            return;
+        }
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntityRegion(clazz);
+        for (String role : getCollectionRoles(clazz)) {
+            cache.evictCollectionRegion(role);
+        }
+    }
+
+    private List<String> getCollectionRoles(Class clazz) {
+        List<String> roles = new LinkedList<String>();
+        String prefix = clazz.getName() + ".";
+        for (Object role : sessionFactory.getAllCollectionMetadata().keySet()) {
+            if (((String) role).startsWith(prefix)) {
+                roles.add((String) role);
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * @return statistics of the session factory, including the ones of the
+     * second level cache regions
+     */
+    public Statistics getStatistics() {
+        if (!isInitialized()) {
+            initialize();
+        }
+        return sessionFactory.getStatistics();
+    }
+
     /**
      * Close the sessionFactory
      */
     public synchronized void close() {
+        unregisterStatistics();
         try {
             sessionFactory.close();
         }
@@ -202,12 +270,46 @@ class ConnectionManager {
             config.setInterceptor(interceptor);
 
             sessionFactory = config.buildSessionFactory();
+            registerStatistics();
         }
         catch (HibernateException e) {
             LOG.error("FATAL ERROR creating HibernateFactory", e);
         }
     }
 
+    /**
+     * Publishes the statistics of the session factory, e.g. hit and miss
+     * counts of the cache regions, for monitoring over JMX.
+     */
+    private void registerStatistics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(STATISTICS_MBEAN);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            StatisticsService service = new StatisticsService();
+            service.setSessionFactory(sessionFactory);
+            server.registerMBean(service, name);
+        }
+        catch (JMException e) {
+            LOG.warn("Could not register Hibernate statistics", e);
+        }
+    }
+
+    private void unregisterStatistics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(STATISTICS_MBEAN);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+        catch (JMException e) {
+            LOG.debug("Could not unregister Hibernate statistics", e);
+        }
+    }
+
     private SessionInfo threadSessionInfo() {
         return SESSION_TLS.get();
     }
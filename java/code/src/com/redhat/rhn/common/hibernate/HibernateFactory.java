@@ -30,6 +30,7 @@ import org.hibernate.MappingException;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.stat.Statistics;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -356,6 +357,37 @@ public abstract class HibernateFactory {
         connectionManager.closeSession();
     }
 
+    /**
+     * Removes an entity and the collections it owns from the second level
+     * cache. Needed after the row was changed by a stored procedure or other
+     * SQL, which Hibernate does not notice.
+     * @param clazz class of the entity
+     * @param id identifier of the entity
+     */
+    public static void evictFromCache(Class clazz, Serializable id) {
+        connectionManager.evictFromCache(clazz, id);
+    }
+
+    /**
+     * Removes all entities of a class and the collections they own from the
+     * second level cache.
+     * @param clazz class of the entities
+     */
+    public static void evictFromCache(Class clazz) {
+        connectionManager.evictFromCache(clazz);
+    }
+
+    /**
+     * Returns the statistics of the session factory. The second level cache
+     * statistics are kept per region, named after the entity class or the
+     * collection role. They are only collected when
+     * hibernate.generate_statistics is set.
+     * @return Statistics of the session factory
+     */
+    public static Statistics getStatistics() {
+        return connectionManager.getStatistics();
+    }
+
     /**
      * Return the persistent instance of the given entity class with the given
      * identifier, or null if there is no such persistent instance. (If the
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.hibernate.test;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.channel.ChannelFactory;
+import com.redhat.rhn.domain.channel.ChannelFamily;
+import com.redhat.rhn.domain.channel.ChannelFamilyFactory;
+import com.redhat.rhn.domain.channel.test.ChannelFactoryTest;
+import com.redhat.rhn.domain.org.Org;
+import com.redhat.rhn.domain.org.OrgFactory;
+import com.redhat.rhn.domain.org.usergroup.UserGroupImpl;
+import com.redhat.rhn.domain.role.RoleFactory;
+import com.redhat.rhn.domain.server.Server;
+import com.redhat.rhn.domain.server.ServerFactory;
+import com.redhat.rhn.domain.server.ServerGroup;
+import com.redhat.rhn.domain.server.test.ServerFactoryTest;
+import com.redhat.rhn.domain.user.User;
+import com.redhat.rhn.domain.user.UserFactory;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+import com.redhat.rhn.testing.ServerGroupTestUtils;
+import com.redhat.rhn.testing.UserTestUtils;
+
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Checks that channels and the cached orgs, groups and channel families, which
+ * are written by stored procedures, triggers and bulk statements too, are read
+ * fresh from the database after such writes.
+ * @version $Rev$
+ */
+public class SecondLevelCacheTest extends BaseTestCaseWithUser {
+
+    private static final String OTHER_NAME = "Renamed by another process";
+
+    private Long cid;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        HibernateFactory.getStatistics().setStatisticsEnabled(true);
+
+        Channel c = ChannelFactoryTest.createTestChannel(user);
+        cid = c.getId();
+        HibernateFactory.getSession().flush();
+        clearSession();
+    }
+
+    public void testChannelNotCached() throws Exception {
+        ChannelFactory.lookupById(cid);
+        clearSession();
+        ChannelFactory.lookupById(cid);
+
+        Statistics stats = HibernateFactory.getStatistics();
+        assertNull(stats.getSecondLevelCacheStatistics(Channel.class.getName()));
+    }
+
+    public void testFreshAfterSqlUpdate() throws Exception {
+        ChannelFactory.lookupById(cid);
+        clearSession();
+
+        update("update rhnChannel set name = ? where id = ?", OTHER_NAME);
+        assertEquals(OTHER_NAME, ChannelFactory.lookupById(cid).getName());
+    }
+
+    public void testFreshAfterProcedureUpdate() throws Exception {
+        Timestamp old = new Timestamp(new Date(0).getTime());
+        update("update rhnChannel set last_modified = ? where id = ?", old);
+        assertEquals(old.getTime(),
+                ChannelFactory.lookupById(cid).getLastModified().getTime());
+        clearSession();
+
+        // the procedure updates last_modified of the channel
+        ChannelFactory.refreshNewestPackageCache(cid, "test");
+        assertTrue(ChannelFactory.lookupById(cid).getLastModified().after(old));
+    }
+
+    public void testServerGroupFreshAfterProcedureUpdate() throws Exception {
+        ServerGroup group = ServerGroupTestUtils.createManaged(user);
+        Server server = ServerFactoryTest.createTestServer(user);
+        Long sgid = group.getId();
+        HibernateFactory.getSession().flush();
+        Timestamp old = new Timestamp(new Date(0).getTime());
+        update("update rhnServerGroup set modified = ? where id = ?", old, sgid);
+        assertEquals(old.getTime(),
+                ((ServerGroup) load(ServerGroup.class, sgid)).getModified().getTime());
+
+        // the procedure updates the member count and so the modification time
+        ServerFactory.addServerToGroup(server, group);
+        assertTrue(((ServerGroup) load(ServerGroup.class, sgid)).getModified()
+                .after(old));
+    }
+
+    public void testUserGroupFreshAfterTriggerUpdate() throws Exception {
+        User other = UserTestUtils.createUser("cacheTest", user.getOrg().getId());
+        Long ugid = user.getOrg().getUserGroup(RoleFactory.CHANNEL_ADMIN).getId();
+        Long uid = other.getId();
+        HibernateFactory.getSession().flush();
+        long members = ((UserGroupImpl) load(UserGroupImpl.class, ugid))
+                .getCurrentMembers();
+
+        // the member count is kept by a trigger of rhnUserGroupMembers
+        other = UserFactory.lookupById(uid);
+        other.addPermanentRole(RoleFactory.CHANNEL_ADMIN);
+        HibernateFactory.getSession().flush();
+        assertEquals(members + 1, ((UserGroupImpl) load(UserGroupImpl.class, ugid))
+                .getCurrentMembers().longValue());
+
+        UserFactory.deleteUser(uid);
+        assertEquals(members, ((UserGroupImpl) load(UserGroupImpl.class, ugid))
+                .getCurrentMembers().longValue());
+    }
+
+    public void testFreshAfterOrgDeleted() throws Exception {
+        User admin = UserTestUtils.findNewUser("cacheAdmin", "cacheOrg");
+        Org org = admin.getOrg();
+        Long oid = org.getId();
+        Long cfid = ChannelFamilyFactory.lookupOrCreatePrivateFamily(org).getId();
+        Long ugid = org.getUserGroup(RoleFactory.ORG_ADMIN).getId();
+        HibernateFactory.getSession().flush();
+        assertNotNull(load(Org.class, oid));
+        assertNotNull(load(ChannelFamily.class, cfid));
+        assertNotNull(load(UserGroupImpl.class, ugid));
+
+        // the procedure deletes the org with its groups and channel families
+        OrgFactory.deleteOrg(oid, admin);
+        assertNull(load(Org.class, oid));
+        assertNull(load(ChannelFamily.class, cfid));
+        assertNull(load(UserGroupImpl.class, ugid));
+    }
+
+    /**
+     * Reads an entity in a clean session, from the second level cache if it is
+     * there
+     */
+    private Object load(Class clazz, Serializable id) {
+        clearSession();
+        return HibernateFactory.getSession().get(clazz, id);
+    }
+
+    private void update(String sql, Object value) throws Exception {
+        update(sql, value, cid);
+    }
+
+    private void update(String sql, Object value, Long id) throws Exception {
+        Session session = HibernateFactory.getSession();
+        PreparedStatement ps = session.connection().prepareStatement(sql);
+        try {
+            ps.setObject(1, value);
+            ps.setLong(2, id);
+            assertEquals(1, ps.executeUpdate());
+        }
+        finally {
+            ps.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A range of bytes of a file on disk, read only when it is written out. Used
+ * to send large files without holding their contents in memory.
+ *
+ * The bytes are read in chunks of {@link #BUFFER_SIZE} and written base64
+ * encoded. If a checksum is expected, the digest is computed while the bytes
+ * are written and an IOException is thrown before the end of the data if it
+ * does not match, so that the receiver never sees a complete, corrupt file.
+ *
+ * @version $Rev$
+ */
+public class FileRange {
+
+    // a multiple of 3, so that no chunk but the last one needs base64 padding
+    public static final int BUFFER_SIZE = 3 * 16 * 1024;
+
+    private final File file;
+    private final long offset;
+    private final long length;
+    private String checksumType;
+    private String checksum;
+
+    /**
+     * Constructor for the whole file
+     * @param fileIn the file
+     */
+    public FileRange(File fileIn) {
+        this(fileIn, 0, fileIn.length());
+    }
+
+    /**
+     * Constructor
+     * @param fileIn the file
+     * @param offsetIn position of the first byte
+     * @param lengthIn number of bytes, cut at the end of the file
+     */
+    public FileRange(File fileIn, long offsetIn, long lengthIn) {
+        if (offsetIn < 0 || lengthIn < 0) {
+            throw new IllegalArgumentException("negative offset or length");
+        }
+        file = fileIn;
+        offset = Math.min(offsetIn, fileIn.length());
+        length = Math.min(lengthIn, fileIn.length() - offset);
+    }
+
+    /**
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return position of the first byte
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return number of bytes of the range
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Sets the checksum the bytes of the range must have. Checksum types that
+     * are not known are not verified.
+     * @param typeIn checksum type label, e.g. md5 or sha256
+     * @param checksumIn hex encoded checksum
+     */
+    public void setExpectedChecksum(String typeIn, String checksumIn) {
+        checksumType = typeIn;
+        checksum = checksumIn;
+    }
+
+    /**
+     * Writes the bytes of the range base64 encoded.
+     * @param out where to write to
+     * @throws IOException if the file can not be read, or does not match the
+     * expected checksum
+     */
+    public void writeBase64(Writer out) throws IOException {
+        MessageDigest digest = getDigest();
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            in.seek(offset);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int size = (int) Math.min(buffer.length, remaining);
+                in.readFully(buffer, 0, size);
+                remaining -= size;
+
+                byte[] chunk = buffer;
+                if (size < buffer.length) {
+                    chunk = new byte[size];
+                    System.arraycopy(buffer, 0, chunk, 0, size);
+                }
+                if (digest != null) {
+                    digest.update(chunk);
+                }
+                out.write(new String(Base64.encodeBase64(chunk), "US-ASCII"));
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        if (digest != null) {
+            String actual = new String(Hex.encodeHex(digest.digest()));
+            if (!actual.equalsIgnoreCase(checksum)) {
+                throw new IOException("Checksum of " + file + " is " + actual +
+                        ", expected " + checksum);
+            }
+        }
+    }
+
+    private MessageDigest getDigest() {
+        if (checksumType == null || checksum == null) {
+            return null;
+        }
+        String algorithm = checksumType.toUpperCase();
+        if (algorithm.startsWith("SHA") && !algorithm.startsWith("SHA-")) {
+            algorithm = "SHA-" + algorithm.substring(3);
+        }
+        try {
+            return MessageDigest.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+}
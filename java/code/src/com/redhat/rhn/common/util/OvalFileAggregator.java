@@ -15,231 +15,272 @@
 package com.redhat.rhn.common.util;
 
 import org.apache.log4j.Logger;
-import org.jdom.Document;
-import org.jdom.Element;
-import org.jdom.JDOMException;
-import org.jdom.Namespace;
-import org.jdom.input.SAXBuilder;
-import org.jdom.output.Format;
-import org.jdom.output.XMLOutputter;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.StringWriter;
-import java.util.Calendar;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
 
 /**
  * Builds a single OVAL XML file out of individual OVAL files
  *
+ * The aggregate is written section by section (definitions, tests, objects,
+ * states), each with its own StAX pass over the files. The kept elements are
+ * copied to the output as they are read, only the ids seen in the current
+ * section are held in memory. The first element with a given id wins.
+ *
  * @version $Rev$
  */
 public class OvalFileAggregator {
 
     private static final Logger LOGGER = Logger.getLogger(OvalFileAggregator.class);
 
-    private Document aggregate;
-    private boolean isFinished;
-    private Map defs;
-    private Map tests;
-    private Map objects;
-    private Map states;
+    private static final String[] SECTIONS = {"definitions", "tests", "objects",
+        "states"};
+    private static final String XSI_NS = "http://www.w3.org/2000/10/XMLSchema-instance";
+    private static final String OVAL_NS = "http://oval.mitre.org/XMLSchema/oval-common-5";
+    private static final String DEF_NS =
+        "http://oval.mitre.org/XMLSchema/oval-definitions-5";
+    private static final String SCHEMA_LOCATION =
+        "http://oval.mitre.org/XMLSchema/oval-common-5 " +
+        "oval-common-schema.xsd " +
+        "http://oval.mitre.org/XMLSchema/oval-definitions-5 " +
+        "oval-definitions-schema.xsd " +
+        "http://oval.mitre.org/XMLSchema/oval-definitions-5#unix " +
+        "unix-definitions-schema.xsd " +
+        "http://oval.mitre.org/XMLSchema/oval-definitions-5#redhat " +
+        "redhat-definitions-schema.xsd";
+    private static final QName ID = new QName("id");
+
+    private final List<File> files = new ArrayList<File>();
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory;
+    private final XMLEventFactory eventFactory;
 
     /**
      * No-arg constructor
-     * @throws JDOMException if XML document initialization fails
      */
-    public OvalFileAggregator() throws JDOMException {
-        reset();
+    public OvalFileAggregator() {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                Boolean.FALSE);
+        outputFactory = XMLOutputFactory.newInstance();
+        // copied elements lose the declarations of their source document root
+        outputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES,
+                Boolean.TRUE);
+        eventFactory = XMLEventFactory.newInstance();
     }
 
     /**
      * Adds a OVAL file to the aggregate
      * @param f file to add
-     * @throws JDOMException XML parsing failed
-     * @throws IOException file IO failed
      */
-    public void add(File f) throws JDOMException, IOException {
-        if (f == null) {
-            return;
-        }
-        try {
-            SAXBuilder builder = new SAXBuilder();
-            builder.setValidation(false);
-            add(builder.build(f));
-        }
-        catch (JDOMException e) {
-            LOGGER.error(e.getMessage(), e);
-            throw e;
+    public void add(File f) {
+        if (f != null) {
+            files.add(f);
         }
-        catch (IOException e) {
-            LOGGER.error(e.getMessage(), e);
-            throw e;
+    }
+
+    /**
+     * Writes the aggregated document
+     * @param out stream to write the UTF-8 encoded document to
+     * @return true if anything was written, false if the files contain no
+     * OVAL elements
+     * @throws XMLStreamException XML parsing or writing failed
+     * @throws IOException file IO failed
+     */
+    public boolean write(OutputStream out) throws XMLStreamException, IOException {
+        Output output = new Output(outputFactory.createXMLEventWriter(out, "UTF-8"));
+        for (int i = 0; i < SECTIONS.length; i++) {
+            Set<String> seen = new HashSet<String>();
+            for (File f : files) {
+                try {
+                    readFile(f, i, seen, output);
+                }
+                catch (XMLStreamException e) {
+                    LOGGER.error("Failed to parse " + f.getPath(), e);
+                    throw e;
+                }
+            }
         }
+        return output.finish();
     }
 
     /**
-     * Adds a parsed OVAL file to the aggregate
-     * @param doc parsed OVAL file
-     * @throws JDOMException XMl parsing failed
+     * Builds the aggregated document in memory
+     * @return XML in string form, empty if the files contain no OVAL elements
+     * @throws XMLStreamException XML parsing or writing failed
+     * @throws IOException file IO failed
      */
-    public void add(Document doc) throws JDOMException {
-       if (isFinished) {
-           throw new IllegalStateException();
-       }
-       storeDefinitions(doc);
-       storeTests(doc);
-       storeObjects(doc);
-       storeStates(doc);
+    public String finish() throws XMLStreamException, IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        write(buffer);
+        return buffer.toString("UTF-8");
     }
 
     /**
-     * Finalizes processing and builds the aggregated document
-     * @param prettyPrint pretty print XML or not
-     * @return XML in string form
-     * @throws IOException document output failed
+     * Copies the elements of one section of a file whose id was not seen yet
+     * to the output.
      */
-    public String finish(boolean prettyPrint) throws IOException {
-        if (!isFinished && !isEmpty()) {
-            buildDocument();
-            isFinished = true;
-        }
-        if (isEmpty()) {
-            return "";
-        }
-        XMLOutputter out = new XMLOutputter();
-        if (prettyPrint) {
-            out.setFormat(Format.getPrettyFormat());
+    private void readFile(File f, int section, Set<String> seen, Output output)
+        throws XMLStreamException, IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(f));
+        XMLEventReader reader = null;
+        try {
+            reader = inputFactory.createXMLEventReader(in);
+            int depth = 0;
+            boolean inSection = false;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    depth++;
+                    StartElement start = event.asStartElement();
+                    if (depth == 2) {
+                        inSection = sectionIndex(start.getName().getLocalPart()) ==
+                                section;
+                    }
+                    else if (depth == 3 && inSection) {
+                        Attribute id = start.getAttributeByName(ID);
+                        if (id != null && seen.add(id.getValue())) {
+                            XMLEventWriter writer = output.enter(section);
+                            writer.add(event);
+                            copyElement(reader, writer);
+                        }
+                        else {
+                            copyElement(reader, null);
+                        }
+                        depth--;
+                    }
+                }
+                else if (event.isEndElement()) {
+                    depth--;
+                }
+            }
         }
-        else {
-            out.setFormat(Format.getCompactFormat());
+        finally {
+            if (reader != null) {
+                reader.close();
+            }
+            in.close();
         }
-        StringWriter buffer = new StringWriter();
-        out.output(aggregate, buffer);
-        String retval = buffer.toString();
-        retval = retval.replaceAll(" xmlns:oval=\"removeme\"", "");
-        return retval.replaceAll(" xmlns:redhat=\"removeme\"", "");
     }
 
-    private void buildDocument() {
-        Element defsElement = new Element("definitions");
-        attachChildren(defsElement, defs);
-        Element testsElement = new Element("tests");
-        attachChildren(testsElement, tests);
-        Element objectsElement = new Element("objects");
-        attachChildren(objectsElement, objects);
-        Element statesElement = new Element("states");
-        attachChildren(statesElement, states);
-        List children = aggregate.getRootElement().getChildren();
-        children.add(defsElement);
-        children.add(testsElement);
-        children.add(objectsElement);
-        children.add(statesElement);
-    }
-
-    private boolean isEmpty() {
-        return defs.size() == 0 && tests.size() == 0 && states.size() == 0;
+    private static int sectionIndex(String name) {
+        for (int i = 0; i < SECTIONS.length; i++) {
+            if (SECTIONS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
-    private void attachChildren(Element parent, Map children) {
-        for (Iterator iter = children.keySet().iterator(); iter.hasNext();) {
-            String key = (String) iter.next();
-            Element child = (Element) children.get(key);
-            parent.getChildren().add(child);
+    /**
+     * Writes the rest of the element whose start has just been read, up to and
+     * including its end, or skips it if writer is null.
+     */
+    private void copyElement(XMLEventReader reader, XMLEventWriter writer)
+        throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            }
+            else if (event.isEndElement()) {
+                depth--;
+            }
+            if (writer != null) {
+                writer.add(event);
+            }
         }
     }
 
-    private void storeStates(Document doc) {
-        XPathLite xpl = new XPathLite("states");
-        storeChildren(xpl, doc, states);
+    private void startDocument(XMLEventWriter writer) throws XMLStreamException {
+        writer.add(eventFactory.createStartDocument("UTF-8", "1.0"));
+        writer.add(eventFactory.createStartElement("", DEF_NS, "oval_definitions"));
+        writer.add(eventFactory.createNamespace(DEF_NS));
+        writer.add(eventFactory.createNamespace("oval", OVAL_NS));
+        writer.add(eventFactory.createAttribute("xsi", XSI_NS, "schemaLocation",
+                SCHEMA_LOCATION));
+        writer.add(eventFactory.createStartElement("", DEF_NS, "generator"));
+        writeOvalElement(writer, "product_name", "Spacewalk");
+        writeOvalElement(writer, "schema_version", "5.0");
+        writeOvalElement(writer, "timestamp",
+                new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()));
+        writer.add(eventFactory.createEndElement("", DEF_NS, "generator"));
     }
 
-    private void storeObjects(Document doc) {
-        XPathLite xpl = new XPathLite("objects");
-        storeChildren(xpl, doc, objects);
+    private void writeOvalElement(XMLEventWriter writer, String name, String text)
+        throws XMLStreamException {
+        writer.add(eventFactory.createStartElement("oval", OVAL_NS, name));
+        writer.add(eventFactory.createCharacters(text));
+        writer.add(eventFactory.createEndElement("oval", OVAL_NS, name));
     }
 
-    private void storeTests(Document doc) {
-        XPathLite xpl = new XPathLite("tests");
-        storeChildren(xpl, doc, tests);
-    }
+    /**
+     * The aggregated document, started when the first element is written so
+     * that files without OVAL elements give no output. The sections before
+     * the one of an element are written as they are entered, empty ones
+     * included.
+     */
+    private class Output {
 
-    private void storeDefinitions(Document doc) {
-        XPathLite xpl = new XPathLite("definitions");
-        storeChildren(xpl, doc, defs);
-    }
+        private final XMLEventWriter writer;
+        private boolean started;
+        private int section = -1;
 
-    private void storeChildren(XPathLite xpl, Document doc, Map container) {
-        for (Iterator iter = xpl.selectChildren(doc).iterator(); iter.hasNext();) {
-            Element child = (Element) iter.next();
-            String key = child.getAttributeValue("id");
-            if (key == null) {
-                continue;
+        Output(XMLEventWriter writerIn) {
+            writer = writerIn;
+        }
+
+        XMLEventWriter enter(int index) throws XMLStreamException {
+            if (!started) {
+                startDocument(writer);
+                started = true;
             }
-            if (container.containsKey(key)) {
-                continue;
+            while (section < index) {
+                if (section >= 0) {
+                    writer.add(eventFactory.createEndElement("", DEF_NS,
+                            SECTIONS[section]));
+                }
+                section++;
+                writer.add(eventFactory.createStartElement("", DEF_NS,
+                        SECTIONS[section]));
             }
-            container.put(key, child.clone());
+            return writer;
         }
-    }
 
-
-
-    private void reset() {
-        Namespace schema = Namespace.getNamespace(
-                "xsi", "http://www.w3.org/2000/10/XMLSchema-instance");
-        Namespace oval = Namespace.getNamespace("oval", "removeme");
-        aggregate = new Document();
-        Element root = new Element("oval_definitions");
-        root.setAttribute("schemaLocation",
-                "http://oval.mitre.org/XMLSchema/oval-common-5 " +
-                "oval-common-schema.xsd " +
-                "http://oval.mitre.org/XMLSchema/oval-definitions-5 " +
-                "oval-definitions-schema.xsd " +
-                "http://oval.mitre.org/XMLSchema/oval-definitions-5#unix " +
-                "unix-definitions-schema.xsd " +
-                "http://oval.mitre.org/XMLSchema/oval-definitions-5#redhat " +
-                "redhat-definitions-schema.xsd", schema);
-        aggregate.setRootElement(root);
-        Element generator = new Element("generator");
-        Element prodName = new Element("product_name", oval);
-        prodName.setText("Spacewalk");
-        Element schemaVersion = new Element("schema_version", oval);
-        schemaVersion.addNamespaceDeclaration(oval);
-        schemaVersion.setText("5.0");
-        Element timestamp = new Element("timestamp", oval);
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(new Date());
-        StringBuilder date = new StringBuilder();
-        date.append(cal.get(Calendar.YEAR));
-        date.append("-");
-        int month = cal.get(Calendar.MONTH);
-        if (month < 10) {
-            date.append("0");
-        }
-        date.append(month);
-        date.append("-");
-        int day = cal.get(Calendar.DATE);
-        if (day < 10) {
-            date.append("0");
+        boolean finish() throws XMLStreamException {
+            if (started) {
+                enter(SECTIONS.length - 1);
+                writer.add(eventFactory.createEndElement("", DEF_NS, SECTIONS[section]));
+                writer.add(eventFactory.createEndElement("", DEF_NS, "oval_definitions"));
+                writer.add(eventFactory.createEndDocument());
+                writer.flush();
+            }
+            writer.close();
+            return started;
         }
-        date.append(day);
-        date.append("T").append(cal.get(Calendar.HOUR_OF_DAY));
-        date.append(":").append(cal.get(Calendar.MINUTE));
-        date.append(":").append(cal.get(Calendar.SECOND));
-        timestamp.setText(date.toString());
-        root.getChildren().add(generator);
-        generator.getChildren().add(prodName);
-        generator.getChildren().add(schemaVersion);
-        generator.getChildren().add(timestamp);
-
-        defs = new LinkedHashMap();
-        tests = new LinkedHashMap();
-        objects = new LinkedHashMap();
-        states = new LinkedHashMap();
     }
 }
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2009--2014 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An RPM version or release string split once into its numeric and alpha
+ * segments, so that it can be compared many times without re-scanning the
+ * characters.
+ *
+ * <p> {@link #rpmvercmp(RpmVersion)} returns exactly what
+ * {@link RpmVersionComparator} returns for the underlying strings, including its
+ * asymmetries. {@link #compareTo(Object)} is a total ordering suitable for
+ * sorting which agrees with rpmvercmp on which versions are equal.
+ *
+ * @version $Rev$
+ */
+public class RpmVersion implements Comparable {
+
+    private final String raw;
+    private final String[] segments;
+    private final boolean[] numeric;
+    // true if the string has separator characters after its last segment
+    private final boolean trailing;
+
+    /**
+     * Parses the given version or release string. null is treated as the
+     * empty string.
+     * @param version version or release string
+     */
+    public RpmVersion(String version) {
+        raw = (version == null) ? "" : version;
+        List<String> segs = new ArrayList<String>();
+        List<Boolean> nums = new ArrayList<Boolean>();
+        boolean sep = false;
+        int i = 0;
+        while (i < raw.length()) {
+            int b = i;
+            while (i < raw.length() && !isAlnum(raw.charAt(i))) {
+                i++;
+            }
+            if (i == raw.length()) {
+                sep = i > b;
+                break;
+            }
+            int start = i;
+            if (Character.isDigit(raw.charAt(i))) {
+                while (i < raw.length() && Character.isDigit(raw.charAt(i))) {
+                    i++;
+                }
+                // leading zeros don't count, it's a number
+                while (start < i && raw.charAt(start) == '0') {
+                    start++;
+                }
+                nums.add(Boolean.TRUE);
+            }
+            else {
+                while (i < raw.length() && Character.isLetter(raw.charAt(i))) {
+                    i++;
+                }
+                nums.add(Boolean.FALSE);
+            }
+            segs.add(raw.substring(start, i));
+        }
+        segments = segs.toArray(new String[segs.size()]);
+        numeric = new boolean[nums.size()];
+        for (int j = 0; j < numeric.length; j++) {
+            numeric[j] = nums.get(j).booleanValue();
+        }
+        trailing = sep;
+    }
+
+    /**
+     * @return the string this version was parsed from
+     */
+    public String getVersion() {
+        return raw;
+    }
+
+    /**
+     * Returns true if the string ends in separator characters. Only for such
+     * versions {@link #compareTo(Object)} and {@link #rpmvercmp(RpmVersion)}
+     * may disagree on which version is newer.
+     * @return true if there are separators after the last segment
+     */
+    public boolean hasTrailingSeparator() {
+        return trailing;
+    }
+
+    /**
+     * Compares this version with another one the same way rpmvercmp does.
+     * @param other version to compare with
+     * @return 1, -1 or 0
+     */
+    public int rpmvercmp(RpmVersion other) {
+        if (raw.equals(other.raw)) {
+            return 0;
+        }
+        int i = 0;
+        while (hasMore(i) && other.hasMore(i)) {
+            if (i >= segments.length) {
+                // only separators left in this one
+                return -1;
+            }
+            boolean isnum = numeric[i];
+            if (i >= other.segments.length || other.numeric[i] != isnum) {
+                return isnum ? 1 : -1;
+            }
+            int rc = compareSegment(i, other);
+            if (rc != 0) {
+                return rc;
+            }
+            i++;
+        }
+        boolean thisEnd = !hasMore(i);
+        boolean otherEnd = !other.hasMore(i);
+        if (thisEnd && otherEnd) {
+            return 0;
+        }
+        return thisEnd ? -1 : 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int compareTo(Object o) {
+        RpmVersion other = (RpmVersion) o;
+        int n = Math.min(segments.length, other.segments.length);
+        for (int i = 0; i < n; i++) {
+            if (numeric[i] != other.numeric[i]) {
+                return numeric[i] ? 1 : -1;
+            }
+            int rc = compareSegment(i, other);
+            if (rc != 0) {
+                return rc;
+            }
+        }
+        if (segments.length != other.segments.length) {
+            return segments.length < other.segments.length ? -1 : 1;
+        }
+        if (trailing != other.trailing) {
+            return trailing ? 1 : -1;
+        }
+        if (trailing) {
+            // rpmvercmp only considers these equal when the strings are
+            int rc = raw.compareTo(other.raw);
+            return (rc == 0) ? 0 : ((rc < 0) ? -1 : 1);
+        }
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean equals(Object o) {
+        if (!(o instanceof RpmVersion)) {
+            return false;
+        }
+        return compareTo(o) == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        int hash = trailing ? raw.hashCode() : 0;
+        for (int i = 0; i < segments.length; i++) {
+            hash = 31 * hash + segments[i].hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return raw;
+    }
+
+    private boolean hasMore(int i) {
+        return i < segments.length || trailing;
+    }
+
+    private int compareSegment(int i, RpmVersion other) {
+        String s1 = segments[i];
+        String s2 = other.segments[i];
+        if (numeric[i] && s1.length() != s2.length()) {
+            // whichever number has more digits wins
+            return s1.length() > s2.length() ? 1 : -1;
+        }
+        int rc = s1.compareTo(s2);
+        return (rc == 0) ? 0 : ((rc < 0) ? -1 : 1);
+    }
+
+    private static boolean isAlnum(char c) {
+        return Character.isDigit(c) || Character.isLetter(c);
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranks of the version and release strings seen so far, in rpm order, so that
+ * comparing two known strings is an integer comparison. Equal versions, like
+ * 1.0 and 1_0, share a rank.
+ *
+ * Strings are added when they are first compared, or by {@link #add(String)}
+ * when EVRs are created. They are parsed right away and compared without ranks
+ * until the next batch of new strings is merged into the ranks. The ranks are
+ * replaced as a whole, so readers never see a partly updated index.
+ *
+ * {@link #compare(String, String)} returns exactly what
+ * {@link RpmVersionComparator} returns. Strings with trailing separators are
+ * never ranked since rpmvercmp is not a consistent ordering for them.
+ *
+ * @version $Rev$
+ */
+public class RpmVersionRanks {
+
+    // new strings merged at once, at least
+    private static final int MIN_BATCH = 512;
+    // the ranks are started over once they hold this many strings
+    private static final int MAX_SIZE = 500000;
+
+    private static final RpmVersionRanks INSTANCE = new RpmVersionRanks();
+
+    private volatile Map<String, Integer> ranks = Collections.emptyMap();
+    // ranked versions in rank order, one per rank
+    private RpmVersion[] ranked = new RpmVersion[0];
+    private final Map<String, RpmVersion> pending = new HashMap<String, RpmVersion>();
+
+    /**
+     * @return the ranks shared by all callers
+     */
+    public static RpmVersionRanks getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Compares two version or release strings like rpmvercmp does.
+     * @param v1 first version, not null
+     * @param v2 second version, not null
+     * @return 1, -1 or 0
+     */
+    public int compare(String v1, String v2) {
+        if (v1 == null || v2 == null) {
+            throw new NullPointerException("versions to compare must not be null");
+        }
+        if (v1.equals(v2)) {
+            return 0;
+        }
+        Map<String, Integer> current = ranks;
+        Integer r1 = current.get(v1);
+        Integer r2 = current.get(v2);
+        if (r1 != null && r2 != null) {
+            return Integer.signum(r1.intValue() - r2.intValue());
+        }
+        RpmVersion p1 = (r1 == null) ? lookup(v1) : new RpmVersion(v1);
+        RpmVersion p2 = (r2 == null) ? lookup(v2) : new RpmVersion(v2);
+        return p1.rpmvercmp(p2);
+    }
+
+    /**
+     * Returns the current ranks by version string. The map is not changed
+     * later, new ranks replace it, so callers may keep ranks looked up in it
+     * for as long as getRanks() returns the same map.
+     * @return ranks by version string
+     */
+    public Map<String, Integer> getRanks() {
+        return ranks;
+    }
+
+    /**
+     * Adds a version or release string to the ranks.
+     * @param version version or release string
+     */
+    public void add(String version) {
+        if (version != null && !ranks.containsKey(version)) {
+            lookup(version);
+        }
+    }
+
+    /**
+     * @return number of strings ranked
+     */
+    public int size() {
+        return ranks.size();
+    }
+
+    /**
+     * Drops all ranks.
+     */
+    public synchronized void clear() {
+        ranks = Collections.emptyMap();
+        ranked = new RpmVersion[0];
+        pending.clear();
+    }
+
+    private synchronized RpmVersion lookup(String version) {
+        RpmVersion parsed = pending.get(version);
+        if (parsed == null) {
+            parsed = new RpmVersion(version);
+            if (parsed.hasTrailingSeparator()) {
+                return parsed;
+            }
+            pending.put(version, parsed);
+            if (pending.size() >= Math.max(MIN_BATCH, ranks.size() / 8)) {
+                merge();
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Merges the pending strings into the ranks, renumbering all of them.
+     */
+    private void merge() {
+        Map<String, Integer> old = ranks;
+        if (old.size() + pending.size() > MAX_SIZE) {
+            old = Collections.emptyMap();
+            ranked = new RpmVersion[0];
+        }
+        RpmVersion[] added = pending.values().toArray(new RpmVersion[pending.size()]);
+        Arrays.sort(added);
+
+        // representatives of the old ranks and the added versions, in order
+        List<RpmVersion> merged = new ArrayList<RpmVersion>(ranked.length + added.length);
+        int[] oldToNew = new int[ranked.length];
+        Map<String, Integer> result = new HashMap<String, Integer>(
+                (old.size() + added.length) * 4 / 3 + 1);
+        int i = 0;
+        int j = 0;
+        while (i < ranked.length || j < added.length) {
+            int rc;
+            if (i == ranked.length) {
+                rc = 1;
+            }
+            else if (j == added.length) {
+                rc = -1;
+            }
+            else {
+                rc = ranked[i].compareTo(added[j]);
+            }
+            if (rc <= 0) {
+                merged.add(ranked[i]);
+                oldToNew[i++] = merged.size() - 1;
+            }
+            // an added version equal to the last one shares its rank
+            if (rc >= 0) {
+                if (rc > 0 && (merged.isEmpty() ||
+                        merged.get(merged.size() - 1).compareTo(added[j]) != 0)) {
+                    merged.add(added[j]);
+                }
+                result.put(added[j].getVersion(), merged.size() - 1);
+                j++;
+            }
+        }
+        for (Map.Entry<String, Integer> entry : old.entrySet()) {
+            result.put(entry.getKey(), oldToNew[entry.getValue().intValue()]);
+        }
+
+        ranked = merged.toArray(new RpmVersion[merged.size()]);
+        pending.clear();
+        ranks = Collections.unmodifiableMap(result);
+    }
+}
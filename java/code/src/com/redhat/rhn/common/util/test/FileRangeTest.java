@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util.test;
+
+import com.redhat.rhn.common.util.FileRange;
+import com.redhat.rhn.common.util.FileUtils;
+import com.redhat.rhn.common.util.MD5Sum;
+import com.redhat.rhn.testing.TestUtils;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+/**
+ * FileRangeTest
+ * @version $Rev$
+ */
+public class FileRangeTest extends TestCase {
+
+    private File file;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        file = new File(TestUtils.findTestData("test.file").getFile());
+    }
+
+    public void testWholeFile() throws Exception {
+        assertEquals(FileUtils.readStringFromFile(file.getPath()),
+                decode(new FileRange(file)));
+    }
+
+    public void testRange() throws Exception {
+        assertEquals("DEFGH", decode(new FileRange(file, 25, 5)));
+        // cut at the end of the file
+        long size = file.length();
+        assertEquals(2, decode(new FileRange(file, size - 2, 100)).length());
+        assertEquals("", decode(new FileRange(file, size + 10, 100)));
+    }
+
+    public void testLargerThanBuffer() throws Exception {
+        File large = File.createTempFile("filerange", ".bin");
+        try {
+            StringBuilder contents = new StringBuilder();
+            while (contents.length() < 3 * FileRange.BUFFER_SIZE + 7) {
+                contents.append(TestUtils.randomString());
+            }
+            FileUtils.writeStringToFile(contents.toString(), large.getPath());
+            FileRange range = new FileRange(large);
+            range.setExpectedChecksum("md5", MD5Sum.getFileMD5Sum(large));
+            assertEquals(contents.toString(), decode(range));
+        }
+        finally {
+            large.delete();
+        }
+    }
+
+    public void testChecksumMismatch() throws Exception {
+        FileRange range = new FileRange(file);
+        range.setExpectedChecksum("sha256", "0123456789abcdef");
+        try {
+            range.writeBase64(new StringWriter());
+            fail("checksum should not match");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    private String decode(FileRange range) throws Exception {
+        StringWriter out = new StringWriter();
+        range.writeBase64(out);
+        return new String(Base64.decodeBase64(out.toString().getBytes("US-ASCII")));
+    }
+}
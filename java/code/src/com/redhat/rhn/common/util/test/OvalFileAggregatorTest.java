@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2009--2010 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util.test;
+
+import com.redhat.rhn.common.util.FileUtils;
+import com.redhat.rhn.common.util.OvalFileAggregator;
+import com.redhat.rhn.testing.TestUtils;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+/**
+ * OvalFileAggregatorTest
+ * @version $Rev$
+ */
+public class OvalFileAggregatorTest extends TestCase {
+
+    private static final String HEAD = "<?xml version=\"1.0\"?>" +
+        "<oval_definitions xmlns=\"http://oval.mitre.org/XMLSchema/oval-definitions-5\"" +
+        " xmlns:red-def=\"http://oval.mitre.org/XMLSchema/oval-definitions-5#linux\">";
+
+    public void testAggregate() throws Exception {
+        File first = writeFile(HEAD +
+            "<definitions><definition id=\"d1\" class=\"patch\"/>" +
+            "<definition id=\"d2\" class=\"first\"/></definitions>" +
+            "<tests><red-def:rpminfo_test id=\"t1\"/></tests>" +
+            "</oval_definitions>");
+        File second = writeFile(HEAD +
+            "<definitions><definition id=\"d2\" class=\"second\"/>" +
+            "<definition id=\"d3\"/></definitions>" +
+            "<states><red-def:rpminfo_state id=\"s1\"/></states>" +
+            "</oval_definitions>");
+        try {
+            OvalFileAggregator agg = new OvalFileAggregator();
+            agg.add(first);
+            agg.add(second);
+            String xml = agg.finish();
+
+            assertTrue(xml.contains("id=\"d1\""));
+            assertTrue(xml.contains("id=\"d3\""));
+            // the first element with an id wins
+            assertTrue(xml.contains("class=\"first\""));
+            assertFalse(xml.contains("class=\"second\""));
+            // sections are written in order, empty ones included
+            int defs = xml.indexOf("<definitions>");
+            int tests = xml.indexOf("<tests>");
+            int objects = xml.indexOf("<objects");
+            int states = xml.indexOf("<states>");
+            assertTrue(defs > 0);
+            assertTrue(defs < tests);
+            assertTrue(tests < objects);
+            assertTrue(objects < states);
+
+            // so the order of the files decides which element is kept
+            agg = new OvalFileAggregator();
+            agg.add(second);
+            agg.add(first);
+            xml = agg.finish();
+            assertTrue(xml.contains("class=\"second\""));
+            assertFalse(xml.contains("class=\"first\""));
+        }
+        finally {
+            first.delete();
+            second.delete();
+        }
+    }
+
+    public void testEmpty() throws Exception {
+        File empty = writeFile(HEAD + "<definitions/></oval_definitions>");
+        try {
+            OvalFileAggregator agg = new OvalFileAggregator();
+            agg.add(empty);
+            assertEquals("", agg.finish());
+        }
+        finally {
+            empty.delete();
+        }
+    }
+
+    private File writeFile(String contents) {
+        String path = "/tmp/" + System.currentTimeMillis() +
+            TestUtils.randomString() + ".xml";
+        FileUtils.writeStringToFile(contents, path);
+        return new File(path);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util.test;
+
+import com.redhat.rhn.common.util.RpmVersionComparator;
+import com.redhat.rhn.common.util.RpmVersionRanks;
+import com.redhat.rhn.domain.rhnpackage.PackageEvr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times version comparisons and EVR sorts with RpmVersionComparator and with
+ * RpmVersionRanks. Not part of the unit tests, run it by hand with the test
+ * classpath:
+ *
+ *   java com.redhat.rhn.common.util.test.RpmVersionRanksBenchmark [versions]
+ *
+ * @version $Rev$
+ */
+public class RpmVersionRanksBenchmark {
+
+    private static final int COMPARISONS = 2000000;
+    private static final int SORTS = 3;
+
+    private RpmVersionRanksBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     * @param args number of random versions, 20000 by default
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        compare(count);
+        sort(count);
+    }
+
+    private static void compare(int count) {
+        Random random = new Random(7);
+        List<String> versions = RpmVersionRanksTest.randomVersions(count, random);
+        int[] pairs = new int[2 * COMPARISONS];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = random.nextInt(versions.size());
+        }
+        RpmVersionRanks ranks = new RpmVersionRanks();
+        for (String v : versions) {
+            ranks.add(v);
+        }
+        RpmVersionComparator cmp = new RpmVersionComparator();
+
+        long start = System.currentTimeMillis();
+        int sum = 0;
+        for (int i = 0; i < pairs.length; i += 2) {
+            sum += cmp.compare(versions.get(pairs[i]), versions.get(pairs[i + 1]));
+        }
+        long cmpTime = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        int rankSum = 0;
+        for (int i = 0; i < pairs.length; i += 2) {
+            rankSum += ranks.compare(versions.get(pairs[i]), versions.get(pairs[i + 1]));
+        }
+        long rankTime = System.currentTimeMillis() - start;
+
+        if (sum != rankSum) {
+            throw new IllegalStateException("ranks compare differently");
+        }
+        System.out.println("Comparing " + COMPARISONS + " versions: comparator " +
+                cmpTime + " ms, ranks " + rankTime + " ms");
+    }
+
+    private static void sort(int count) {
+        Random random = new Random(42);
+        List<String> versions = RpmVersionRanksTest.randomVersions(2 * count, random);
+        List<PackageEvr> evrs = new ArrayList<PackageEvr>();
+        for (int i = 0; i < count; i++) {
+            evrs.add(new PackageEvr(String.valueOf(random.nextInt(2)),
+                    versions.get(2 * i), versions.get(2 * i + 1)));
+        }
+        final RpmVersionComparator cmp = new RpmVersionComparator();
+        Comparator<PackageEvr> strings = new Comparator<PackageEvr>() {
+            public int compare(PackageEvr e1, PackageEvr e2) {
+                int rc = e1.getEpoch().compareTo(e2.getEpoch());
+                if (rc == 0) {
+                    rc = cmp.compare(e1.getVersion(), e2.getVersion());
+                }
+                return (rc == 0) ? cmp.compare(e1.getRelease(), e2.getRelease()) : rc;
+            }
+        };
+
+        for (int pass = 0; pass < SORTS; pass++) {
+            Collections.shuffle(evrs, random);
+            List<PackageEvr> byStrings = new ArrayList<PackageEvr>(evrs);
+            List<PackageEvr> byRanks = new ArrayList<PackageEvr>(evrs);
+
+            long start = System.currentTimeMillis();
+            Collections.sort(byStrings, strings);
+            long stringTime = System.currentTimeMillis() - start;
+            start = System.currentTimeMillis();
+            Collections.sort(byRanks);
+            long rankTime = System.currentTimeMillis() - start;
+
+            for (int i = 0; i < evrs.size(); i++) {
+                if (strings.compare(byStrings.get(i), byRanks.get(i)) != 0) {
+                    throw new IllegalStateException("ranks sort differently");
+                }
+            }
+            System.out.println("Sorting " + evrs.size() + " EVRs: comparator " +
+                    stringTime + " ms, ranks " + rankTime + " ms");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util.test;
+
+import com.redhat.rhn.common.util.RpmVersionComparator;
+import com.redhat.rhn.common.util.RpmVersionRanks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * RpmVersionRanksTest
+ * @version $Rev$
+ */
+public class RpmVersionRanksTest extends TestCase {
+
+    private static final String[] VERSIONS = {"0", "", "1-a.1", "1.a-1", "-", ".",
+        "--", "1-1-", "1-1.", "1.1", "1a", "9", "10", "00009", "0010", "10mdk",
+        "10.1mdk", "ximian.1", "1.4snap", "1.4.5", "4.0x", "4.0.36", "p19", "2.0.0",
+        "2.0e", "2.0.11", "1", "asp1.7x.2", "ipl4mdk", "alt0.8", "1asp", "alt1",
+        "2.6.9", "42.0.2.EL", "22.EL", "27.EL-bretm"};
+
+    public void testSameAsRpmVersionComparator() {
+        List<String> versions = randomVersions(5000, new Random(42));
+        versions.addAll(Arrays.asList(VERSIONS));
+        RpmVersionRanks ranks = new RpmVersionRanks();
+        RpmVersionComparator cmp = new RpmVersionComparator();
+
+        // before and after the versions were ranked
+        for (int pass = 0; pass < 2; pass++) {
+            for (String v1 : VERSIONS) {
+                for (String v2 : versions) {
+                    assertEquals(v1 + " vs " + v2, cmp.compare(v1, v2),
+                            ranks.compare(v1, v2));
+                    assertEquals(v2 + " vs " + v1, cmp.compare(v2, v1),
+                            ranks.compare(v2, v1));
+                }
+            }
+            for (String v : versions) {
+                ranks.add(v);
+            }
+        }
+        assertTrue(ranks.size() > 0);
+    }
+
+    /**
+     * Generates version strings of random parts and separators.
+     * @param count number of versions
+     * @param random source of randomness
+     * @return the versions
+     */
+    static List<String> randomVersions(int count, Random random) {
+        String[] parts = {"0", "1", "2", "10", "19", "007", "a", "el", "fc", "git",
+            "rc", "beta"};
+        String[] separators = {".", ".", ".", "_", "-", "+"};
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder buf = new StringBuilder();
+            int segments = 1 + random.nextInt(5);
+            for (int s = 0; s < segments; s++) {
+                if (s > 0 && random.nextInt(3) > 0) {
+                    buf.append(separators[random.nextInt(separators.length)]);
+                }
+                buf.append(parts[random.nextInt(parts.length)]);
+            }
+            result.add(buf.toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2009--2010 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util.test;
+
+import com.redhat.rhn.common.util.RpmVersion;
+import com.redhat.rhn.common.util.RpmVersionComparator;
+
+import junit.framework.TestCase;
+
+/**
+ * RpmVersionTest
+ * @version $Rev$
+ */
+public class RpmVersionTest extends TestCase {
+
+    private static final String[] VERSIONS = {"0", "", "1-a.1", "1.a-1", "-", ".",
+        "--", "1-1-", "1-1.", "1.1", "1a", "9", "10", "00009", "0010", "10mdk",
+        "10.1mdk", "ximian.1", "1.4snap", "1.4.5", "4.0x", "4.0.36", "p19", "2.0.0",
+        "2.0e", "2.0.11", "1", "asp1.7x.2", "ipl4mdk", "alt0.8", "1asp", "alt1",
+        "2.6.9", "42.0.2.EL", "22.EL", "27.EL-bretm"};
+
+    public void testSameAsRpmVersionComparator() {
+        RpmVersionComparator cmp = new RpmVersionComparator();
+        for (String v1 : VERSIONS) {
+            for (String v2 : VERSIONS) {
+                RpmVersion r1 = new RpmVersion(v1);
+                RpmVersion r2 = new RpmVersion(v2);
+                assertEquals(v1 + " vs " + v2, cmp.compare(v1, v2), r1.rpmvercmp(r2));
+                assertEquals(v1 + " vs " + v2, cmp.compare(v1, v2) == 0,
+                        r1.compareTo(r2) == 0);
+            }
+        }
+    }
+
+    public void testTotalOrdering() {
+        for (String v1 : VERSIONS) {
+            for (String v2 : VERSIONS) {
+                RpmVersion r1 = new RpmVersion(v1);
+                RpmVersion r2 = new RpmVersion(v2);
+                assertEquals(v1 + " vs " + v2, r1.compareTo(r2), -r2.compareTo(r1));
+                if (r1.equals(r2)) {
+                    assertEquals(r1.hashCode(), r2.hashCode());
+                }
+            }
+        }
+        assertEquals(-1, new RpmVersion("9").compareTo(new RpmVersion("10")));
+        assertEquals(0, new RpmVersion("1-a.1").compareTo(new RpmVersion("1.a-1")));
+        assertEquals(1, new RpmVersion("1.1").compareTo(new RpmVersion("1a")));
+    }
+}
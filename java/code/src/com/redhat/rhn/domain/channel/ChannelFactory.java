@@ -41,6 +41,7 @@ import com.redhat.rhn.domain.org.Org;
 import com.redhat.rhn.domain.rhnpackage.Package;
 import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.user.User;
+import com.redhat.rhn.domain.user.UserPermissions;
 
 /**
  * ChannelFactory
@@ -230,6 +231,8 @@ public class ChannelFactory extends HibernateFactory {
     public static void save(Channel c) {
         c.setLastModified(new Date());
         singleton.saveObject(c);
+        // org, access or parent may have changed
+        UserPermissions.invalidateAll();
     }
 
     /**
@@ -465,6 +468,7 @@ public class ChannelFactory extends HibernateFactory {
         else {
             addOrgChannelSetting(org, channel, "not_globally_subscribable");
         }
+        UserPermissions.invalidateAll();
     }
 
     /**
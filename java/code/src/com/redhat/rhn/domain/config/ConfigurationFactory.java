@@ -20,13 +20,13 @@ import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.localization.LocalizationService;
-import com.redhat.rhn.common.util.SHA256Crypt;
 import com.redhat.rhn.domain.common.Checksum;
 import com.redhat.rhn.domain.common.ChecksumFactory;
 import com.redhat.rhn.domain.org.Org;
 import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.user.User;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.hibernate.ObjectNotFoundException;
@@ -36,6 +36,8 @@ import org.hibernate.criterion.Restrictions;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Types;
 import java.util.Date;
 import java.util.HashMap;
@@ -798,7 +800,9 @@ public class ConfigurationFactory extends HibernateFactory {
 
     /**
      * Creates a ConfigContent object whose BLOB is filled with the bytes from the
-     * specified stream
+     * specified stream. Content is stored by checksum: if a ConfigContent with the
+     * same sha256, size, binary flag and delimiters already exists it is reused
+     * instead of storing another copy of the same BLOB.
      * @param stream stream containing the content
      * @param size number of bytes to read
      * @param isBinary true if the content is to be treated as binary (which means we
@@ -810,15 +814,29 @@ public class ConfigurationFactory extends HibernateFactory {
     public static ConfigContent createNewContentFromStream(
             InputStream stream, Long size, boolean isBinary,
             String delimStart, String delimEnd) {
+        // digest the content while reading it, rather than in a second pass
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Problem getting SHA-256 message digest", e);
+        }
+        byte[] foo = bytesFromStream(stream, size, md);
+        Checksum newChecksum = ChecksumFactory.safeCreate(
+                new String(Hex.encodeHex(md.digest())), "sha256");
+
+        ConfigContent existing = lookupConfigContent(newChecksum, size, isBinary,
+                delimStart, delimEnd);
+        if (existing != null) {
+            return existing;
+        }
+
         ConfigContent content = ConfigurationFactory.newConfigContent();
         content.setCreated(new Date());
         content.setModified(new Date());
         content.setFileSize(size);
-
-        byte[] foo = bytesFromStream(stream, size);
         content.setContents(foo);
-        Checksum newChecksum = ChecksumFactory.safeCreate(SHA256Crypt.sha256Hex(foo),
-                "sha256");
         content.setChecksum(newChecksum);
         content.setBinary(isBinary);
         content.setDelimStart(delimStart);
@@ -826,6 +844,38 @@ public class ConfigurationFactory extends HibernateFactory {
         return content;
     }
 
+    /**
+     * Finds an already stored ConfigContent with the given checksum and attributes.
+     * @param checksum checksum of the content
+     * @param size size of the content
+     * @param isBinary whether the content is binary
+     * @param delimStart start delimeter
+     * @param delimEnd end delimeter
+     * @return matching ConfigContent or null if there is none
+     */
+    public static ConfigContent lookupConfigContent(Checksum checksum, Long size,
+            boolean isBinary, String delimStart, String delimEnd) {
+        if (checksum == null || size == null || delimStart == null ||
+                delimEnd == null) {
+            return null;
+        }
+        Session session = HibernateFactory.getSession();
+        List result = session.getNamedQuery("ConfigContent.findByChecksum")
+                .setEntity("checksum", checksum)
+                .setLong("size", size.longValue())
+                .setString("delimStart", delimStart)
+                .setString("delimEnd", delimEnd)
+                .list();
+        // only ids are selected so that the BLOBs aren't pulled in just to be reused
+        for (Object o : result) {
+            Object[] row = (Object[]) o;
+            if (((Boolean) row[1]).booleanValue() == isBinary) {
+                return (ConfigContent) session.load(ConfigContent.class, (Long) row[0]);
+            }
+        }
+        return null;
+    }
+
     /**
      * Convert input stream to byte array
      * @param stream input stream
@@ -833,6 +883,19 @@ public class ConfigurationFactory extends HibernateFactory {
      * @return byte array
      */
     public static byte[] bytesFromStream(InputStream stream, Long size) {
+        return bytesFromStream(stream, size, null);
+    }
+
+    /**
+     * Convert input stream to byte array, feeding every chunk read into the
+     * given digest
+     * @param stream input stream
+     * @param size stream size
+     * @param md digest to update while reading, may be null
+     * @return byte array
+     */
+    private static byte[] bytesFromStream(InputStream stream, Long size,
+            MessageDigest md) {
         byte[] foo = new byte[size.intValue()];
         try {
             //this silly bit of logic is to ensure that we read as much from the file
@@ -845,7 +908,12 @@ public class ConfigurationFactory extends HibernateFactory {
             stream.mark(size.intValue());
             do {
                 read = stream.read(foo, offset, (foo.length - offset));
-                offset += read;
+                if (read > 0) {
+                    if (md != null) {
+                        md.update(foo, offset, read);
+                    }
+                    offset += read;
+                }
             } while (read > 0 && offset < foo.length);
             stream.reset();
         }
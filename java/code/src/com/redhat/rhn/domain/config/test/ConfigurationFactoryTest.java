@@ -229,4 +229,19 @@ public class ConfigurationFactoryTest extends BaseTestCaseWithUser {
         assertEquals(user.getId(), cr2.getChangedById());
         assertEquals(user.getLogin(), cr2.getChangedBy().getLogin());
     }
+
+    public void testCreateNewRevisionFromStreamReusesContent() throws Exception {
+        String data = "identical content";
+        byte[] bytes = data.getBytes("UTF-8");
+        ConfigRevision cr = ConfigTestUtils.createConfigRevision(user.getOrg());
+        ConfigRevision cr2 = ConfigurationFactory.createNewRevisionFromStream(
+                user, new ByteArrayInputStream(bytes), new Long(bytes.length),
+                cr.getConfigFile());
+        ConfigRevision cr3 = ConfigurationFactory.createNewRevisionFromStream(
+                user, new ByteArrayInputStream(bytes), new Long(bytes.length),
+                cr.getConfigFile());
+        assertFalse(cr2.getId().equals(cr3.getId()));
+        assertEquals(cr2.getConfigContent().getId(), cr3.getConfigContent().getId());
+        assertEquals(data, cr3.getConfigContent().getContentsString());
+    }
 }
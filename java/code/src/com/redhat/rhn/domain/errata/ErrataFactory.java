@@ -37,14 +37,11 @@ import com.redhat.rhn.domain.errata.impl.UnpublishedErrata;
 import com.redhat.rhn.domain.errata.impl.UnpublishedErrataFile;
 import com.redhat.rhn.domain.org.Org;
 import com.redhat.rhn.domain.rhnpackage.Package;
-import com.redhat.rhn.domain.rhnpackage.PackageFactory;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.action.channel.manage.PublishErrataHelper;
 import com.redhat.rhn.frontend.dto.ErrataOverview;
 import com.redhat.rhn.frontend.dto.ErrataPackageFile;
 import com.redhat.rhn.frontend.dto.OwnedErrata;
-import com.redhat.rhn.frontend.dto.PackageOverview;
-import com.redhat.rhn.frontend.xmlrpc.InvalidChannelException;
 import com.redhat.rhn.manager.channel.ChannelManager;
 import com.redhat.rhn.manager.errata.ErrataManager;
 import com.redhat.rhn.manager.errata.cache.ErrataCacheManager;
@@ -268,48 +265,21 @@ public class ErrataFactory extends HibernateFactory {
      */
     public static List<Errata> publishToChannel(List<Errata> errataList, Channel chan,
             User user, boolean inheritPackages, boolean performPostActions) {
-        List<com.redhat.rhn.domain.errata.Errata> toReturn = new ArrayList<Errata>();
+        List<Errata> toReturn = new ArrayList<Errata>();
+        List<Long> eids = new ArrayList<Long>();
         for (Errata errata : errataList) {
             if (!errata.isPublished()) {
                 errata = publish(errata);
             }
-            errata.addChannel(chan);
-            errata.addChannelNotification(chan, new Date());
-
-            Set<Package> packagesToPush = new HashSet<Package>();
-            DataResult<PackageOverview> packs;
-            if (inheritPackages) {
-
-                if (!chan.isCloned()) {
-                    throw new InvalidChannelException("Cloned channel expected: " +
-                            chan.getLabel());
-                }
-                Channel original = chan.getOriginal();
-                // see BZ 805714, if we are a clone of a clone the 1st clone
-                // may not have the errata we want
-                Set<Channel> associatedChannels = errata.getChannels();
-                while (original.isCloned() &&
-                        !associatedChannels.contains(original)) {
-                    original = ChannelFactory.lookupOriginalChannel(original);
-                }
-                packs = ErrataManager.listErrataChannelPacks(original, errata, user);
-            }
-            else {
-                packs = ErrataManager.lookupPacksFromErrataForChannel(chan, errata, user);
-            }
-
-            for (PackageOverview packOver : packs) {
-                //lookup the Package object
-                Package pack = PackageFactory.lookupByIdAndUser(
-                        packOver.getId().longValue(), user);
-                packagesToPush.add(pack);
-            }
-
-            Errata e = publishErrataPackagesToChannel(errata, chan, user, packagesToPush);
-            toReturn.add(e);
+            toReturn.add(errata);
+            eids.add(errata.getId());
         }
-        if (performPostActions) {
-            postPublishActions(chan, user);
+        // channels, packages and files are linked for all errata at once
+        ErrataManager.publishErrataWithPackages(chan, eids, user, inheritPackages,
+                performPostActions);
+        Session session = HibernateFactory.getSession();
+        for (Errata errata : toReturn) {
+            session.refresh(errata);
         }
         return toReturn;
     }
@@ -843,83 +813,6 @@ public class ErrataFactory extends HibernateFactory {
         return retval;
     }
 
-    /**
-     * Lists errata present in both channels
-     * @param org orgaznization
-     * @param channelFrom channel1
-     * @param channelTo channel2
-     * @return list of errata
-     */
-    public static List listSamePublishedInChannels(Org org, Channel channelFrom,
-            Channel channelTo) {
-        Session session = null;
-        List retval = null;
-
-        try {
-            session = HibernateFactory.getSession();
-            retval = session.getNamedQuery("PublishedErrata.findSameInChannels")
-                    .setParameter("channel_from", channelFrom)
-                    .setParameter("channel_to", channelTo).list();
-        }
-        catch (HibernateException e) {
-            throw new
-            HibernateRuntimeException("Error looking up errata by original errata");
-        }
-        return retval;
-    }
-
-    /**
-     * Lists errata from channelFrom, that are cloned from the same original
-     * as errata in channelTo
-     * @param org orgaznization
-     * @param channelFrom channel1
-     * @param channelTo channel2
-     * @return list of errata
-     */
-    public static List listPublishedBrothersInChannels(Org org, Channel channelFrom,
-            Channel channelTo) {
-        Session session = null;
-        List retval = null;
-
-        try {
-            session = HibernateFactory.getSession();
-            retval = session.getNamedQuery("PublishedClonedErrata.findBrothersInChannel")
-                    .setParameter("channel_from", channelFrom)
-                    .setParameter("channel_to", channelTo).list();
-        }
-        catch (HibernateException e) {
-            throw new
-            HibernateRuntimeException("Error looking up errata by original errata");
-        }
-        return retval;
-    }
-
-    /**
-     * Lists errata from channelFrom, that have clones in channelTo
-     * @param org orgaznization
-     * @param channelFrom channel1
-     * @param channelTo channel2
-     * @return list of errata
-     */
-    public static List listPublishedClonesInChannels(Org org, Channel channelFrom,
-            Channel channelTo) {
-        Session session = null;
-        List retval = null;
-
-        try {
-            session = HibernateFactory.getSession();
-            retval = session.getNamedQuery("PublishedErrata.findClonesInChannel")
-                    .setParameter("channel_from", channelFrom)
-                    .setParameter("channel_to", channelTo)
-                    .list();
-        }
-        catch (HibernateException e) {
-            throw new
-            HibernateRuntimeException("Error looking up errata by original errata");
-        }
-        return retval;
-    }
-
     /**
      * Insert or Update a Errata.
      * @param errataIn Errata to be stored in database.
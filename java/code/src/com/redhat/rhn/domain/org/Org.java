@@ -36,6 +36,7 @@ import com.redhat.rhn.domain.server.ServerGroupType;
 import com.redhat.rhn.domain.token.Token;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.domain.user.UserFactory;
+import com.redhat.rhn.domain.user.UserPermissions;
 import com.redhat.rhn.manager.channel.ChannelManager;
 import com.redhat.rhn.manager.entitlement.EntitlementManager;
 
@@ -202,6 +203,7 @@ public class Org extends BaseDomainHelper {
             UserGroup newGroup = UserGroupFactory
             .createUserGroup(this, newRole);
             usergroups.add(newGroup);
+            UserPermissions.invalidateAll();
         }
     }
 
@@ -318,6 +320,7 @@ public class Org extends BaseDomainHelper {
         params.put("role_label", roleLabel);
 
         mode.executeUpdate(params);
+        UserPermissions.invalidateAll();
     }
 
     /**
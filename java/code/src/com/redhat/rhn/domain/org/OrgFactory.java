@@ -24,7 +24,9 @@ import com.redhat.rhn.domain.channel.ChannelFamily;
 import com.redhat.rhn.domain.iss.IssFactory;
 import com.redhat.rhn.domain.kickstart.KickstartData;
 import com.redhat.rhn.domain.kickstart.KickstartFactory;
+import com.redhat.rhn.domain.org.usergroup.UserGroupImpl;
 import com.redhat.rhn.domain.role.RoleFactory;
+import com.redhat.rhn.domain.server.ServerGroup;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.dto.kickstart.KickstartDto;
 import com.redhat.rhn.manager.kickstart.KickstartDeleteCommand;
@@ -101,6 +103,12 @@ public class OrgFactory extends HibernateFactory {
         CallableMode m = ModeFactory.getCallableMode(
                 "Org_queries", "delete_organization");
         m.execute(in, new HashMap<String, Integer>());
+
+        // the procedure deletes whatever the org owns, drop it from the cache
+        HibernateFactory.evictFromCache(Org.class, oid);
+        HibernateFactory.evictFromCache(UserGroupImpl.class);
+        HibernateFactory.evictFromCache(ChannelFamily.class);
+        HibernateFactory.evictFromCache(ServerGroup.class);
     }
 
     /**
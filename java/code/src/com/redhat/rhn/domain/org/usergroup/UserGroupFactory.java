@@ -192,9 +192,11 @@ public class UserGroupFactory extends HibernateFactory {
      * @return number of removed roles
      */
     public static int deleteTemporaryRoles() {
-        return HibernateFactory.getSession()
+        int deleted = HibernateFactory.getSession()
         .getNamedQuery("UserGroupMembers.deleteTemporary")
         .executeUpdate();
+        HibernateFactory.evictFromCache(UserGroupImpl.class);
+        return deleted;
     }
 
     /**
@@ -203,6 +205,7 @@ public class UserGroupFactory extends HibernateFactory {
      */
     public static void save(UserGroupMembers ugmIn) {
         singleton.saveObject(ugmIn);
+        evictGroup(ugmIn);
     }
 
     /**
@@ -211,6 +214,16 @@ public class UserGroupFactory extends HibernateFactory {
      */
     public static void delete(UserGroupMembers ugmIn) {
         singleton.removeObject(ugmIn);
+        evictGroup(ugmIn);
+    }
+
+    /**
+     * The member count of a group is kept by a trigger of rhnUserGroupMembers,
+     * which Hibernate does not notice.
+     */
+    private static void evictGroup(UserGroupMembers ugmIn) {
+        HibernateFactory.evictFromCache(UserGroupImpl.class,
+                ugmIn.getUserGroup().getId());
     }
 }
 
@@ -14,19 +14,20 @@
  */
 package com.redhat.rhn.domain.rhnpackage;
 
-import com.redhat.rhn.common.util.RpmVersionComparator;
+import com.redhat.rhn.common.util.RpmVersionRanks;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
+import java.util.Map;
+
 /**
  * PackageEvr
  * @version $Rev$
  */
 public class PackageEvr implements Comparable {
 
-    private static final RpmVersionComparator VERCMP = new RpmVersionComparator();
     private static final Integer ZERO = new Integer(0);
 
     private Long id;
@@ -34,6 +35,13 @@ public class PackageEvr implements Comparable {
     private String version;
     private String release;
 
+    // epoch parsed on the first comparison
+    private Integer epochValue;
+    // ranks of version and release, valid while rankedBy is the current map
+    private Map<String, Integer> rankedBy;
+    private int versionRank;
+    private int releaseRank;
+
     /**
      * Null constructor, needed for hibernate
      */
@@ -71,6 +79,7 @@ public class PackageEvr implements Comparable {
      */
     public void setEpoch(String e) {
         this.epoch = e;
+        this.epochValue = null;
     }
 
     /**
@@ -99,6 +108,7 @@ public class PackageEvr implements Comparable {
      */
     public void setRelease(String r) {
         this.release = r;
+        this.rankedBy = null;
     }
 
     /**
@@ -113,6 +123,7 @@ public class PackageEvr implements Comparable {
      */
     public void setVersion(String v) {
         this.version = v;
+        this.rankedBy = null;
     }
 
     /**
@@ -157,21 +168,45 @@ public class PackageEvr implements Comparable {
             throw new IllegalStateException(
                     "To compare PackageEvr, both must have non-null versions");
         }
-        result = VERCMP.compare(getVersion(), other.getVersion());
+        RpmVersionRanks ranks = RpmVersionRanks.getInstance();
+        Map<String, Integer> current = ranks.getRanks();
+        if (isRanked(current) && other.isRanked(current)) {
+            if (versionRank != other.versionRank) {
+                return versionRank < other.versionRank ? -1 : 1;
+            }
+            return Integer.signum(releaseRank - other.releaseRank);
+        }
+        result = ranks.compare(getVersion(), other.getVersion());
         if (result != 0) {
             return result;
         }
         // The perl code doesn't check for null releases, so we won't either
         // In the long run, a check might be in order, though
-        return VERCMP.compare(getRelease(), other.getRelease());
+        return ranks.compare(getRelease(), other.getRelease());
+    }
+
+    /**
+     * Looks up the ranks of version and release, unless they were looked up in
+     * the given ranks already.
+     * @param current the current ranks
+     * @return true if both version and release are ranked
+     */
+    private boolean isRanked(Map<String, Integer> current) {
+        if (rankedBy != current) {
+            Integer v = current.get(getVersion());
+            Integer r = (getRelease() == null) ? null : current.get(getRelease());
+            versionRank = (v == null) ? -1 : v.intValue();
+            releaseRank = (r == null) ? -1 : r.intValue();
+            rankedBy = current;
+        }
+        return versionRank >= 0 && releaseRank >= 0;
     }
 
     private Integer epochAsInteger() {
-        Integer result = ZERO;
-        if (getEpoch() != null) {
-            result = new Integer(getEpoch());
+        if (epochValue == null) {
+            epochValue = (getEpoch() == null) ? ZERO : new Integer(getEpoch());
         }
-        return result;
+        return epochValue;
     }
 
     /**
@@ -17,6 +17,7 @@ package com.redhat.rhn.domain.rhnpackage;
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.common.util.RpmVersionRanks;
 
 import org.hibernate.Session;
 
@@ -81,6 +82,8 @@ public class PackageEvrFactory {
      */
     public static PackageEvr lookupOrCreatePackageEvr(String e, String v, String r) {
         Long id = lookupPackageEvr(e, v, r);
+        RpmVersionRanks.getInstance().add(v);
+        RpmVersionRanks.getInstance().add(r);
         return lookupPackageEvrById(id);
     }
 
@@ -77,6 +77,16 @@ public class PackageFactory extends HibernateFactory {
         return (Package) singleton.lookupObjectByNamedQuery("Package.findById", params);
     }
 
+    /**
+     * Lookup Packages by their ids. No access checks are done.
+     * @param ids ids of the packages
+     * @return the Packages found
+     */
+    public static List<Package> lookupByIds(List<Long> ids) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        return singleton.listObjectsByNamedQuery("Package.findByIds", params, ids, "ids");
+    }
+
     /**
      * Returns true if the Package with the given name and evr ids exists in the
      * Channel whose id is cid.
@@ -17,10 +17,17 @@ package com.redhat.rhn.domain.rhnpackage.test;
 import org.apache.commons.lang.StringUtils;
 
 import com.redhat.rhn.common.db.WrappedSQLException;
+import com.redhat.rhn.common.util.RpmVersionComparator;
 import com.redhat.rhn.domain.rhnpackage.PackageEvr;
 import com.redhat.rhn.domain.rhnpackage.PackageEvrFactory;
 import com.redhat.rhn.testing.RhnBaseTestCase;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
 /**
  * Test the compare() method in PackageEvr
  * @version $Rev$
@@ -46,6 +53,47 @@ public class PackageEvrComparableTest extends RhnBaseTestCase {
         compare(1, "1-1-7", "1-1-6");
     }
 
+    public void testSortSameAsComparator() {
+        Random random = new Random(42);
+        List<PackageEvr> evrs = new ArrayList<PackageEvr>();
+        for (int i = 0; i < 2000; i++) {
+            evrs.add(new PackageEvr(String.valueOf(random.nextInt(2)),
+                    randomVersion(random), randomVersion(random)));
+        }
+        final RpmVersionComparator cmp = new RpmVersionComparator();
+        Comparator<PackageEvr> strings = new Comparator<PackageEvr>() {
+            public int compare(PackageEvr e1, PackageEvr e2) {
+                int rc = e1.getEpoch().compareTo(e2.getEpoch());
+                if (rc == 0) {
+                    rc = cmp.compare(e1.getVersion(), e2.getVersion());
+                }
+                return (rc == 0) ? cmp.compare(e1.getRelease(), e2.getRelease()) : rc;
+            }
+        };
+
+        // sorting adds the versions to the ranks, the second pass mostly compares ranks
+        for (int pass = 0; pass < 2; pass++) {
+            Collections.shuffle(evrs, random);
+            List<PackageEvr> byStrings = new ArrayList<PackageEvr>(evrs);
+            List<PackageEvr> byRanks = new ArrayList<PackageEvr>(evrs);
+            Collections.sort(byStrings, strings);
+            Collections.sort(byRanks);
+
+            for (int i = 0; i < evrs.size(); i++) {
+                assertEquals(0, strings.compare(byStrings.get(i), byRanks.get(i)));
+            }
+        }
+    }
+
+    private String randomVersion(Random random) {
+        String[] parts = {"0", "1", "2", "10", "19", "el", "fc", "git", "rc"};
+        StringBuilder buf = new StringBuilder(parts[random.nextInt(parts.length)]);
+        for (int i = random.nextInt(4); i > 0; i--) {
+            buf.append('.').append(parts[random.nextInt(parts.length)]);
+        }
+        return buf.toString();
+    }
+
     // On Postgres, we don't get as far as the specific errors - the DB kicks us out
     // with WrappedSQLException before we can even get to the specific-failure-code
     private void failure(String evr, Class excClass) {
@@ -186,6 +186,8 @@ public class ServerFactory extends HibernateFactory {
         outParams.put("retval", new Integer(Types.NUMERIC));
 
         m.execute(inParams, outParams);
+        // the procedure updates the group row
+        HibernateFactory.evictFromCache(ServerGroup.class, sgid);
     }
 
     /**
@@ -205,6 +207,8 @@ public class ServerFactory extends HibernateFactory {
         // outParams.put("retval", new Integer(Types.NUMERIC));
 
         m.execute(inParams, outParams);
+        // the procedure updates the group row
+        HibernateFactory.evictFromCache(ServerGroup.class, sgid);
     }
 
     /**
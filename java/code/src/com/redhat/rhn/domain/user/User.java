@@ -131,6 +131,19 @@ public interface User {
     */
     boolean hasRole(Role label);
 
+    /**
+     * Returns the permission snapshot of this user, computing it if needed.
+     * @return the permissions of this user
+     */
+    UserPermissions getPermissions();
+
+    /**
+     * Drops the permission snapshot, so that it is computed again on next use.
+     * Needed after changing permissions of the user outside of this object,
+     * e.g. channel permissions.
+     */
+    void resetPermissions();
+
     /**
     * Add a role to this User's Role Set.
     * @param label The label of the Role you want to add.
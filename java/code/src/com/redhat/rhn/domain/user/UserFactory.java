@@ -40,6 +40,7 @@ import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.domain.org.Org;
 import com.redhat.rhn.domain.org.OrgFactory;
+import com.redhat.rhn.domain.org.usergroup.UserGroupImpl;
 import com.redhat.rhn.domain.role.Role;
 import com.redhat.rhn.domain.role.RoleFactory;
 import com.redhat.rhn.domain.server.Server;
@@ -734,5 +735,7 @@ public  class UserFactory extends HibernateFactory {
         Map<String, Integer> outParams = new HashMap<String, Integer>();
         inParams.put(USER_ID, userId);
         m.execute(inParams, outParams);
+        // the member counts of the groups of the user changed
+        HibernateFactory.evictFromCache(UserGroupImpl.class);
     }
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.rhn.domain.user;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.role.Role;
+
+import org.hibernate.Session;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshot of the permissions of a user, kept by the user object until the roles
+ * of the user change.
+ *
+ * The roles, including the ones implied by org admin, are computed once and
+ * stored as a bitset of role ids. Channel role checks are done by the database
+ * and their results are remembered here per channel, so that list pages checking
+ * every row ask the database once per channel.
+ *
+ * A snapshot only holds what was read from the database in one transaction: it
+ * is outdated as soon as the transaction it was taken in ends, so permissions
+ * changed by other nodes or by taskomatic are seen by the next transaction.
+ * Changes made while the transaction is open invalidate it too, see
+ * {@link #invalidateAll()}.
+ *
+ * @version $Rev$
+ */
+public class UserPermissions {
+
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private final long generation = GENERATION.get();
+    private final Reference<Session> session = new WeakReference<Session>(
+            HibernateFactory.inTransaction() ? HibernateFactory.getSession() : null);
+    private final Set<Role> roles;
+    private final BitSet roleIds = new BitSet();
+    private final Map<String, Map<Long, String>> channelRoles =
+        new HashMap<String, Map<Long, String>>();
+
+    /**
+     * Constructor
+     * @param rolesIn all the roles of the user, including implied ones
+     */
+    public UserPermissions(Set<Role> rolesIn) {
+        roles = Collections.unmodifiableSet(rolesIn);
+        for (Role role : rolesIn) {
+            if (role.getId() != null) {
+                roleIds.set(role.getId().intValue());
+            }
+        }
+    }
+
+    /**
+     * Marks all snapshots of open transactions as outdated. To be called when
+     * permissions change in a way the user object does not notice, e.g. channel
+     * permissions or roles of the org.
+     */
+    public static void invalidateAll() {
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * @return false if the transaction the snapshot was taken in ended or
+     * permissions changed since
+     */
+    public boolean isCurrent() {
+        return generation == GENERATION.get() && HibernateFactory.inTransaction() &&
+                session.get() == HibernateFactory.getSession();
+    }
+
+    /**
+     * @return the roles of the user
+     */
+    public Set<Role> getRoles() {
+        return roles;
+    }
+
+    /**
+     * @param role the role to check
+     * @return true if the user has the role
+     */
+    public boolean hasRole(Role role) {
+        if (role == null) {
+            return false;
+        }
+        if (role.getId() == null) {
+            return roles.contains(role);
+        }
+        return roleIds.get(role.getId().intValue());
+    }
+
+    /**
+     * @param cid channel id
+     * @param role channel role label, i.e. subscribe or manage
+     * @return true if the channel role of the user was already checked
+     */
+    public synchronized boolean isChannelRoleChecked(Long cid, String role) {
+        Map<Long, String> checked = channelRoles.get(role);
+        return checked != null && checked.containsKey(cid);
+    }
+
+    /**
+     * @param cid channel id
+     * @param role channel role label, i.e. subscribe or manage
+     * @return the reason why the user does not have the role, null if the user
+     * has it or the role was not checked yet
+     */
+    public synchronized String getChannelRoleReason(Long cid, String role) {
+        Map<Long, String> checked = channelRoles.get(role);
+        return checked == null ? null : checked.get(cid);
+    }
+
+    /**
+     * Remembers the result of a channel role check
+     * @param cid channel id
+     * @param role channel role label, i.e. subscribe or manage
+     * @param reason the reason why the user does not have the role, null if the
+     * user has it
+     */
+    public synchronized void setChannelRoleReason(Long cid, String role, String reason) {
+        Map<Long, String> checked = channelRoles.get(role);
+        if (checked == null) {
+            checked = new HashMap<Long, String>();
+            channelRoles.put(role, checked);
+        }
+        checked.put(cid, reason);
+    }
+}
@@ -35,6 +35,7 @@ import com.redhat.rhn.domain.user.RhnTimeZone;
 import com.redhat.rhn.domain.user.StateChange;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.domain.user.UserFactory;
+import com.redhat.rhn.domain.user.UserPermissions;
 import com.redhat.rhn.manager.user.UserManager;
 
 import net.sf.jpam.Pam;
@@ -83,6 +84,7 @@ public class UserImpl extends BaseDomainHelper implements User {
 
     // Keep track of whether the user used to be an org admin
     private Boolean wasOrgAdmin;
+    private UserPermissions permissions;
 
     /**
      * Create a new empty user
@@ -188,6 +190,7 @@ public class UserImpl extends BaseDomainHelper implements User {
      */
     protected void setGroupMembers(Set<UserGroupMembers> ugIn) {
         groupMembers = ugIn;
+        permissions = null;
     }
 
     /** get the set of usergroups
@@ -210,6 +213,23 @@ public class UserImpl extends BaseDomainHelper implements User {
 
     /** {@inheritDoc} */
     public Set<Role> getRoles() {
+        return getPermissions().getRoles();
+    }
+
+    /** {@inheritDoc} */
+    public UserPermissions getPermissions() {
+        if (permissions == null || !permissions.isCurrent()) {
+            permissions = new UserPermissions(computeRoles());
+        }
+        return permissions;
+    }
+
+    /** {@inheritDoc} */
+    public void resetPermissions() {
+        permissions = null;
+    }
+
+    private Set<Role> computeRoles() {
         Set<Role> userRoles = new HashSet<Role>();
         for (Iterator<UserGroupMembers> i = groupMembers.iterator(); i.hasNext();) {
             UserGroupMembers ugm = i.next();
@@ -268,9 +288,8 @@ public class UserImpl extends BaseDomainHelper implements User {
 
     /** {@inheritDoc} */
     public boolean hasRole(Role label) {
-        // We use checkRoleSet to get the correct logic for the
-        // implied roles.
-        return getRoles().contains(label);
+        // The permission snapshot includes the implied roles.
+        return getPermissions().hasRole(label);
     }
 
     /** {@inheritDoc} */
@@ -308,6 +327,7 @@ public class UserImpl extends BaseDomainHelper implements User {
             if (ug != null) {
                 UserGroupMembers ugm = new UserGroupMembers(this, ug, temporary);
                 groupMembers.add(ugm);
+                permissions = null;
                 UserGroupFactory.save(ugm);
             }
             else {
@@ -337,6 +357,7 @@ public class UserImpl extends BaseDomainHelper implements User {
                 if (ugm.getUserGroup().equals(ug) && ugm.getTemporary() == temporary) {
                     UserGroupFactory.delete(ugm);
                     ugmIter.remove();
+                    permissions = null;
                 }
             }
         }
@@ -426,6 +447,7 @@ public class UserImpl extends BaseDomainHelper implements User {
      */
     public void setOrg(Org orgIn) {
         org = orgIn;
+        permissions = null;
     }
 
     /** {@inheritDoc} */
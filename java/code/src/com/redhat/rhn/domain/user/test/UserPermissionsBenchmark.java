@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.user.test;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.channel.test.ChannelFactoryTest;
+import com.redhat.rhn.domain.role.RoleFactory;
+import com.redhat.rhn.domain.user.User;
+import com.redhat.rhn.manager.channel.ChannelManager;
+import com.redhat.rhn.testing.TestCaseHelper;
+import com.redhat.rhn.testing.UserTestUtils;
+
+/**
+ * Times the role and channel permission checks a list page does for every
+ * row, once with a fresh permission snapshot for every row as before the
+ * snapshot existed, once with the snapshot of the transaction. Not part of
+ * the unit tests, run it by hand with the test classpath and database:
+ *
+ *   java com.redhat.rhn.domain.user.test.UserPermissionsBenchmark [rows] [channels]
+ *
+ * The test data is rolled back when the benchmark ends.
+ *
+ * @version $Rev$
+ */
+public class UserPermissionsBenchmark {
+
+    private static final int PASSES = 3;
+
+    private UserPermissionsBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     * @param args number of rows checked, 10000 by default, and number of
+     * channels the rows are in, 20 by default
+     * @throws Exception if the test data can not be created
+     */
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int channels = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        TestCaseHelper.setUpHelper();
+        try {
+            User user = UserTestUtils.findNewUser("benchUser", "benchOrg");
+            Long[] cids = new Long[channels];
+            for (int i = 0; i < channels; i++) {
+                Channel c = ChannelFactoryTest.createTestChannel(user);
+                cids[i] = c.getId();
+            }
+            HibernateFactory.getSession().flush();
+
+            for (int pass = 0; pass < PASSES; pass++) {
+                long start = System.currentTimeMillis();
+                int uncached = check(user, cids, rows, true);
+                long uncachedTime = System.currentTimeMillis() - start;
+
+                start = System.currentTimeMillis();
+                user.resetPermissions();
+                int cached = check(user, cids, rows, false);
+                long cachedTime = System.currentTimeMillis() - start;
+
+                if (uncached != cached) {
+                    throw new IllegalStateException("snapshot checks differently");
+                }
+                System.out.println("Checking " + rows + " rows in " + channels +
+                        " channels: per row " + uncachedTime + " ms, snapshot " +
+                        cachedTime + " ms");
+            }
+        }
+        finally {
+            TestCaseHelper.tearDownHelper();
+        }
+    }
+
+    /**
+     * Checks the roles and the channel of every row
+     * @return number of checks passed
+     */
+    private static int check(User user, Long[] cids, int rows, boolean reset) {
+        int allowed = 0;
+        for (int i = 0; i < rows; i++) {
+            if (reset) {
+                user.resetPermissions();
+            }
+            if (user.hasRole(RoleFactory.ORG_ADMIN)) {
+                allowed++;
+            }
+            if (user.hasRole(RoleFactory.CHANNEL_ADMIN)) {
+                allowed++;
+            }
+            if (ChannelManager.verifyChannelSubscribe(user, cids[i % cids.length])) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.user.test;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.channel.ChannelFactory;
+import com.redhat.rhn.domain.channel.test.ChannelFactoryTest;
+import com.redhat.rhn.domain.role.RoleFactory;
+import com.redhat.rhn.domain.user.UserPermissions;
+import com.redhat.rhn.manager.channel.ChannelManager;
+import com.redhat.rhn.manager.user.UserManager;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+
+/**
+ * UserPermissionsTest
+ * @version $Rev$
+ */
+public class UserPermissionsTest extends BaseTestCaseWithUser {
+
+    public void testRoleSnapshot() throws Exception {
+        UserPermissions permissions = user.getPermissions();
+        assertSame(permissions, user.getPermissions());
+        assertFalse(user.hasRole(RoleFactory.CHANNEL_ADMIN));
+
+        user.getOrg().addRole(RoleFactory.CHANNEL_ADMIN);
+        user.addPermanentRole(RoleFactory.CHANNEL_ADMIN);
+        assertNotSame(permissions, user.getPermissions());
+        assertTrue(user.hasRole(RoleFactory.CHANNEL_ADMIN));
+        assertTrue(user.getRoles().contains(RoleFactory.CHANNEL_ADMIN));
+
+        permissions = user.getPermissions();
+        UserPermissions.invalidateAll();
+        assertFalse(permissions.isCurrent());
+        assertNotSame(permissions, user.getPermissions());
+    }
+
+    public void testChannelRoleCache() throws Exception {
+        Channel c = ChannelFactoryTest.createTestChannel(user);
+        assertFalse(UserManager.verifyChannelAdmin(user, c));
+        assertTrue(user.getPermissions().isChannelRoleChecked(c.getId(),
+                ChannelManager.QRY_ROLE_MANAGE));
+
+        ChannelManager.addManageRole(user, c);
+        assertTrue(UserManager.verifyChannelAdmin(user, c));
+        assertTrue(ChannelManager.verifyChannelManage(user, c.getId()));
+    }
+
+    public void testChannelRoleResults() throws Exception {
+        Channel c = ChannelFactoryTest.createTestChannel(user);
+        ChannelFactory.setGloballySubscribable(user.getOrg(), c, false);
+        assertFalse(ChannelManager.verifyChannelSubscribe(user, c.getId()));
+        assertFalse(ChannelManager.verifyChannelManage(user, c.getId()));
+
+        ChannelManager.addSubscribeRole(user, c);
+        assertTrue(ChannelManager.verifyChannelSubscribe(user, c.getId()));
+        assertFalse(ChannelManager.verifyChannelManage(user, c.getId()));
+
+        ChannelManager.addManageRole(user, c);
+        assertTrue(ChannelManager.verifyChannelManage(user, c.getId()));
+
+        ChannelManager.removeSubscribeRole(user, c);
+        ChannelManager.removeManageRole(user, c);
+        assertFalse(ChannelManager.verifyChannelSubscribe(user, c.getId()));
+        assertFalse(ChannelManager.verifyChannelManage(user, c.getId()));
+
+        // the remembered results match the ones of the database
+        ChannelFactory.setGloballySubscribable(user.getOrg(), c, true);
+        boolean cached = ChannelManager.verifyChannelSubscribe(user, c.getId());
+        user.resetPermissions();
+        assertEquals(ChannelManager.verifyChannelSubscribe(user, c.getId()), cached);
+        assertTrue(cached);
+    }
+
+    public void testSnapshotEndsWithTransaction() throws Exception {
+        final UserPermissions permissions = user.getPermissions();
+        assertTrue(permissions.isCurrent());
+
+        // another transaction does not trust what this one read
+        final boolean[] current = new boolean[1];
+        Thread other = new Thread() {
+            public void run() {
+                try {
+                    HibernateFactory.getSession();
+                    current[0] = permissions.isCurrent();
+                }
+                finally {
+                    HibernateFactory.closeSession();
+                }
+            }
+        };
+        other.start();
+        other.join();
+        assertFalse(current[0]);
+        assertTrue(permissions.isCurrent());
+    }
+}
@@ -16,18 +16,17 @@ package com.redhat.rhn.frontend.action.audit.scap;
 
 import java.net.MalformedURLException;
 import java.sql.Timestamp;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcException;
 import redstone.xmlrpc.XmlRpcFault;
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.frontend.integration.SearchServerClient;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.frontend.struts.RhnAction;
 import com.redhat.rhn.manager.audit.ScapManager;
@@ -38,7 +37,6 @@ import com.redhat.rhn.manager.audit.ScapManager;
 public class XccdfSearchHelper extends RhnAction {
 
     private static final String IDENT_INDEX = "xccdfIdent";
-    private static final String INDEX_SEARCH = "index.search";
     private static final String SYSTEM_LIST = "system_list";
 
     /**
@@ -60,20 +58,12 @@ public class XccdfSearchHelper extends RhnAction {
             Date startDate, Date endDate, String ruleResult, boolean returnTestResults,
             RequestContext context)
             throws MalformedURLException, XmlRpcException, XmlRpcFault {
-        ArrayList args = new ArrayList();
-        args.add(context.getWebSession().getId());
-        args.add(IDENT_INDEX);
-        args.add(preprocessSearchString(searchString));
-        args.add(true); //fine grained
-        List searchResult = invokeSearchServer(INDEX_SEARCH, args);
-        // searchResult contains id to rhnXccdfIdent relation,
-        // while we want to return RuleResults
-        List<Long> identIds = new ArrayList<Long>();
-        for (int x = searchResult.size() - 1; x >= 0; x--) {
-            Map item = (Map) searchResult.get(x);
-            Long id = new Long((String)item.get("id"));
-            identIds.add(id);
-        }
+        // the search returns ids of rhnXccdfIdent, while we want to return
+        // RuleResults
+        List<Long> identIds = SearchServerClient.get().searchIds(
+                context.getWebSession().getId(), IDENT_INDEX,
+                preprocessSearchString(searchString), true);
+        Collections.reverse(identIds);
 
         Map params = new HashMap<String, Object>();
         params.put("user_id", context.getCurrentUser().getId());
@@ -107,11 +97,4 @@ public class XccdfSearchHelper extends RhnAction {
         }
         return buf.toString().trim();
     }
-
-    private static List invokeSearchServer(String path, List args)
-            throws MalformedURLException, XmlRpcException, XmlRpcFault {
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
-        return (List) client.invoke(path, args);
-    }
 }
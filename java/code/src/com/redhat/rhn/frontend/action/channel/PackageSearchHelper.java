@@ -26,14 +26,13 @@ import java.util.Set;
 
 import org.apache.log4j.Logger;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.validator.ValidatorException;
 import com.redhat.rhn.domain.rhnpackage.PackageFactory;
 import com.redhat.rhn.frontend.action.BaseSearchAction;
 import com.redhat.rhn.frontend.dto.PackageOverview;
+import com.redhat.rhn.frontend.integration.SearchServerClient;
 import com.redhat.rhn.frontend.xmlrpc.SearchServerIndexException;
 import com.redhat.rhn.manager.channel.ChannelManager;
 
@@ -78,8 +77,7 @@ public class PackageSearchHelper {
         }
 
         // call search server
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
+        SearchServerClient client = SearchServerClient.get();
         List<Object> args = new ArrayList<Object>();
         args.add(sessionId);
         args.add("package");
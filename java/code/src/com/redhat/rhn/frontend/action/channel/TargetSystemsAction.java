@@ -59,6 +59,7 @@ public class TargetSystemsAction extends RhnAction implements Listable {
         Channel chan = ChannelManager.lookupByIdAndUser(cid, user);
 
         ListRhnSetHelper helper = new ListRhnSetHelper(this, request, getSetDecl(chan));
+        helper.setUseSnapshot(true);
         helper.execute();
         request.setAttribute("channel_name", chan.getName());
         request.setAttribute("cid", chan.getId());
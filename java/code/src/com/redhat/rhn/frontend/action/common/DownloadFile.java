@@ -47,6 +47,8 @@ import com.redhat.rhn.manager.action.ActionManager;
 import com.redhat.rhn.manager.channel.ChannelManager;
 import com.redhat.rhn.manager.download.DownloadManager;
 import com.redhat.rhn.manager.download.UnknownDownloadTypeException;
+import com.redhat.rhn.manager.kickstart.KickstartDownloadCache;
+import com.redhat.rhn.manager.kickstart.KickstartDownloadCache.PackageFile;
 import com.redhat.rhn.manager.kickstart.KickstartManager;
 import com.redhat.rhn.manager.system.CrashManager;
 
@@ -531,9 +533,9 @@ public class DownloadFile extends DownloadAction {
         String kickstartMount = Config.get().getString(ConfigDefaults.MOUNT_POINT);
         String fileName;
         KickstartSession ksession = (KickstartSession) params.get(SESSION);
-        KickstartSessionState newState = null;
+        String newState = null;
         KickstartableTree tree = (KickstartableTree) params.get(TREE);
-        Package rpmPackage = null;
+        PackageFile rpmPackage = null;
         Channel child = (Channel) params.get(CHILD);
 
         if (tree.getBasePath().indexOf(kickstartMount) == 0) {
@@ -559,15 +561,15 @@ public class DownloadFile extends DownloadAction {
                 channel = child;
             }
 
-            rpmPackage = ChannelFactory.lookupPackageByFilename(channel, fileName);
+            rpmPackage = KickstartDownloadCache.getInstance().lookupPackage(channel,
+                    fileName);
             if (rpmPackage != null) {
                 diskPath = Config.get().getString(ConfigDefaults.MOUNT_POINT) + "/" +
                     rpmPackage.getPath();
                 if (log.isDebugEnabled()) {
                     log.debug("found package :: diskPath path: " + diskPath);
                 }
-                newState = KickstartFactory.
-                    lookupSessionStateByLabel(KickstartSessionState.IN_PROGRESS);
+                newState = KickstartSessionState.IN_PROGRESS;
             }
             else {
                 if (log.isDebugEnabled()) {
@@ -613,9 +615,7 @@ public class DownloadFile extends DownloadAction {
             }
             else if (actualFile.exists()) {
                 log.debug("Looks like it is an actual file and it exists.");
-                newState = KickstartFactory.
-                    lookupSessionStateByLabel(KickstartSessionState.STARTED);
-
+                newState = KickstartSessionState.STARTED;
             }
             else {
                 log.error(diskPath + " Not Found .. 404!");
@@ -643,21 +643,9 @@ public class DownloadFile extends DownloadAction {
             String range = request.getHeader("Range");
             return manualServeByteRange(request, response, diskPath, range);
         }
-        // Update kickstart session
+        // Update kickstart session, saved on state changes only
         if (ksession != null) {
-            ksession.setState(newState);
-            if (ksession.getPackageFetchCount() == null) {
-                ksession.setPackageFetchCount(new Long(0));
-            }
-            if (ksession.getState().getLabel().equals(
-                    KickstartSessionState.IN_PROGRESS)) {
-                log.debug("Incrementing counter.");
-                ksession.setPackageFetchCount(
-                        ksession.getPackageFetchCount().longValue() + 1);
-                ksession.setLastFileRequest(path);
-            }
-            log.debug("Saving session.");
-            KickstartFactory.saveKickstartSession(ksession);
+            KickstartDownloadCache.getInstance().recordFetch(ksession, newState, path);
         }
         log.debug("returning getStreamForPath");
 
@@ -701,17 +689,16 @@ public class DownloadFile extends DownloadAction {
 
     // Ported from perl - needed for proxy support
     private StreamInfo manualServeChecksum(HttpServletResponse response,
-            Package rpmPackage, String diskPath) throws IOException {
+            PackageFile rpmPackage, String diskPath) throws IOException {
 
         response.setContentType(CONTENT_TYPE_OCTET_STREAM);
         String checksum;
         // Obtain the checksum for the file in question and stick it in the
         // outgoing HTTP headers under "X-RHN-Checksum".
-        if (rpmPackage != null && rpmPackage.getChecksum() != null &&
-                    rpmPackage.getChecksum().getChecksum() != null) {
-            checksum = rpmPackage.getChecksum().getChecksum();
+        if (rpmPackage != null && rpmPackage.getChecksum() != null) {
+            checksum = rpmPackage.getChecksum();
             response.setHeader("Content-Length",
-                String.valueOf(rpmPackage.getPackageSize()));
+                String.valueOf(rpmPackage.getSize()));
         }
         else {
             File f = new File(diskPath);
@@ -75,6 +75,7 @@ public class AddPackagesAction extends RhnAction implements Listable {
         }
         ListRhnSetHelper helper = new ListRhnSetHelper(this, request, decl);
         helper.setDataSetName(RequestContext.PAGE_LIST);
+        helper.setUseSnapshot(true);
 
 
         // If it's a view change, don't throw a message saying there was nothing selected
@@ -92,6 +93,13 @@ public class AddPackagesAction extends RhnAction implements Listable {
                 "eid", eid.toString());
         }
 
+        // Put the advisory into the request for the page header
+        Errata errata = context.lookupErratum();
+        request.setAttribute("advisory", errata.getAdvisory());
+
+        // Add the view options for the page to use in the drop down
+        request.setAttribute("viewoptions", getViewOptions(context.getCurrentUser()));
+
         StrutsDelegate strutsDelegate = getStrutsDelegate();
         return strutsDelegate.forwardParams(
             actionMapping.findForward(RhnHelper.DEFAULT_FORWARD), params);
@@ -101,13 +109,7 @@ public class AddPackagesAction extends RhnAction implements Listable {
     public List getResult(RequestContext context) {
         HttpServletRequest request = context.getRequest();
         User user = context.getCurrentUser();
-
-        // Put the advisory into the request for the page header
-        Errata errata = new RequestContext(request).lookupErratum();
-        request.setAttribute("advisory", errata.getAdvisory());
-
-        // Add the view options for the page to use in the drop down
-        request.setAttribute("viewoptions", getViewOptions(user));
+        Errata errata = context.lookupErratum();
 
         String viewChannel = getSelectedCid(context);
 
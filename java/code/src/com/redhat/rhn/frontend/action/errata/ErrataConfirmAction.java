@@ -38,6 +38,8 @@ import org.apache.struts.action.ActionMessage;
 import org.apache.struts.action.ActionMessages;
 import org.apache.struts.action.DynaActionForm;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -104,16 +106,16 @@ public class ErrataConfirmAction extends RhnListDispatchAction {
 
              if (actionChain == null) {
                  Action update = ActionManager.createErrataAction(user, currentErrata);
-                 for (int i = 0; i < systems.size(); i++) {
-                     ActionManager.addServerToAction(
-                         new Long(((SystemOverview) systems.get(i)).getId().longValue()),
-                         update);
-                 }
-
                  update.setEarliestAction(getStrutsDelegate().readDatePicker(form, "date",
                      DatePicker.YEAR_RANGE_POSITIVE));
                  ActionManager.storeAction(update);
 
+                 List<Long> sids = new ArrayList<Long>();
+                 for (int i = 0; i < systems.size(); i++) {
+                     sids.add(((SystemOverview) systems.get(i)).getId());
+                 }
+                 ActionManager.scheduleForExecution(update, user, sids);
+
                  messageKey = "errataconfirm.schedule";
                  if (systems.size() != 1) {
                      messageKey += ".plural";
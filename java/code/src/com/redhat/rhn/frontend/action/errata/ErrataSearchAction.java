@@ -35,10 +35,8 @@ import org.apache.struts.action.ActionMapping;
 import org.apache.struts.action.ActionMessages;
 import org.apache.struts.action.DynaActionForm;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.util.DatePicker;
 import com.redhat.rhn.domain.org.Org;
@@ -46,6 +44,7 @@ import com.redhat.rhn.frontend.action.BaseSearchAction;
 import com.redhat.rhn.frontend.action.common.DateRangePicker;
 import com.redhat.rhn.frontend.action.common.DateRangePicker.DatePickerResults;
 import com.redhat.rhn.frontend.dto.ErrataOverview;
+import com.redhat.rhn.frontend.integration.SearchServerClient;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.frontend.struts.RhnHelper;
 import com.redhat.rhn.manager.errata.ErrataManager;
@@ -190,8 +189,7 @@ public class ErrataSearchAction extends BaseSearchAction {
         RequestContext ctx = new RequestContext(request);
         Org org = ctx.getCurrentUser().getOrg();
         // call search server
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
+        SearchServerClient client = SearchServerClient.get();
         String path = null;
         List args = new ArrayList();
         args.add(sessionId);
@@ -30,15 +30,14 @@ import org.apache.struts.action.ActionForward;
 import org.apache.struts.action.ActionMapping;
 import org.apache.struts.action.DynaActionForm;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.validator.ValidatorException;
 import com.redhat.rhn.common.validator.ValidatorWarning;
 import com.redhat.rhn.frontend.action.BaseSearchAction;
 import com.redhat.rhn.frontend.context.Context;
 import com.redhat.rhn.frontend.dto.HelpDocumentOverview;
+import com.redhat.rhn.frontend.integration.SearchServerClient;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.frontend.struts.RhnHelper;
 
@@ -89,8 +88,7 @@ public class DocSearchSetupAction extends BaseSearchAction {
         log.debug("Performing doc search");
 
         // call search server
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
+        SearchServerClient client = SearchServerClient.get();
         List args = new ArrayList();
         args.add(sessionId);
         args.add("docs");
@@ -28,7 +28,6 @@ import java.util.TimeZone;
 
 import org.apache.log4j.Logger;
 
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.validator.ValidatorException;
@@ -39,13 +38,13 @@ import com.redhat.rhn.domain.session.WebSession;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.dto.SystemOverview;
 import com.redhat.rhn.frontend.dto.SystemSearchResult;
+import com.redhat.rhn.frontend.integration.SearchServerClient;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.manager.rhnset.RhnSetDecl;
 import com.redhat.rhn.manager.session.SessionManager;
 import com.redhat.rhn.manager.system.SystemManager;
 import com.redhat.rhn.manager.user.UserManager;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
 /**
@@ -258,8 +257,7 @@ public class SystemSearchHelper {
 
         log.info("Performing system search: index = " + index + ", query = " +
                 query);
-        XmlRpcClient client = new XmlRpcClient(
-                ConfigDefaults.get().getSearchServerUrl(), true);
+        SearchServerClient client = SearchServerClient.get();
         List args = new ArrayList();
         args.add(sessionId);
         args.add(index);
@@ -53,6 +53,7 @@ public class VirtualSystemSetupAction extends RhnAction
         helper.setDataSetName(RequestContext.PAGE_LIST);
         helper.setListName("virtSystemList");
         helper.setWillClearSet(false);
+        helper.setUseSnapshot(true);
         helper.execute();
 
         return mapping.findForward(RhnHelper.DEFAULT_FORWARD);
@@ -61,6 +61,7 @@ public class PackageDto extends BaseDto {
     private Blob otherXml;
     private Blob filelistXml;
     private String cookie;
+    private Long errataId;
 
 
     // Pre-existing queries returning this as a string.
@@ -578,6 +579,22 @@ public class PackageDto extends BaseDto {
     }
 
 
+    /**
+     * @return Returns the id of the erratum the package was listed for.
+     */
+    public Long getErrataId() {
+        return errataId;
+    }
+
+
+    /**
+     * @param errataIdIn The id of the erratum the package was listed for.
+     */
+    public void setErrataId(Long errataIdIn) {
+        errataId = errataIdIn;
+    }
+
+
     /**
      * @return Returns the file.
      */
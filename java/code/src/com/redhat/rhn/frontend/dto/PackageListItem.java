@@ -54,6 +54,7 @@ public class PackageListItem extends IdComboDto {
     private String summary;
     private String nvrea;
     private Date installTime;
+    private Long serverId;
 
     /**
      * @return Returns the arch.
@@ -130,6 +131,19 @@ public class PackageListItem extends IdComboDto {
         packageId = packageIdIn;
     }
 
+    /**
+     * @return Returns the id of the system the package is installed on
+     */
+    public Long getServerId() {
+        return serverId;
+    }
+    /**
+     * @param serverIdIn The serverId to set
+     */
+    public void setServerId(Long serverIdIn) {
+        serverId = serverIdIn;
+    }
+
     /**
      * @return Returns the Id.
      */
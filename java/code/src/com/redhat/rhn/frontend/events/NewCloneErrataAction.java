@@ -16,13 +16,8 @@ package com.redhat.rhn.frontend.events;
 
 import com.redhat.rhn.common.messaging.EventMessage;
 import com.redhat.rhn.domain.channel.Channel;
-import com.redhat.rhn.domain.errata.Errata;
-import com.redhat.rhn.domain.errata.ErrataFactory;
 import com.redhat.rhn.manager.errata.ErrataManager;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * NewCloneErrataAction
  * @version $Rev$
@@ -36,13 +31,9 @@ extends AbstractDatabaseAction {
     @Override
     public void doExecute(EventMessage msgIn) {
         NewCloneErrataEvent msg = (NewCloneErrataEvent) msgIn;
-        Long eid = msg.getErrata();
-        List<Errata> errata = new ArrayList<Errata>();
-        Errata erratum = ErrataFactory.lookupById(eid);
         Channel channel = msg.getChan();
-        if (channel != null && erratum != null) {
-            errata.add(erratum);
-            ErrataManager.cloneErrataApi(msg.getChan(), errata,
+        if (channel != null) {
+            ErrataManager.cloneErrataToChannel(channel, msg.getErrata(),
                 msg.getUser(), msg.isInheritPackages());
         }
         msg.deregister();
@@ -24,12 +24,12 @@ import com.redhat.rhn.manager.errata.AsyncErrataCloneCounter;
 
 import org.hibernate.Transaction;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * NewCloneErrataAction - publish event to clone the errata into a channel.
- *
- * I wanted this to contain a list of errata ids and do multiple
- * clones per event, but I couldn't get it to recall the list of ids
- * once the message got popped back off
+ * NewCloneErrataAction - publish event to clone a list of errata into a channel.
+ * The ids are copied, so the caller may reuse its list once the event is published.
  * @version $Rev$
  */
 public class NewCloneErrataEvent implements EventDatabaseMessage {
@@ -37,7 +37,7 @@ public class NewCloneErrataEvent implements EventDatabaseMessage {
 
 
     private Long chanId;
-    private Long errata;
+    private List<Long> errata;
     private final Transaction txn;
     private final Long userId;
     private boolean inheritPackages;
@@ -49,10 +49,10 @@ public class NewCloneErrataEvent implements EventDatabaseMessage {
      * @param userIn the user
      * @param inheritPackagesIn inheritPackages
      */
-    public NewCloneErrataEvent(Channel chanIn, Long errataIn,
+    public NewCloneErrataEvent(Channel chanIn, List<Long> errataIn,
             User userIn, boolean inheritPackagesIn) {
         chanId = chanIn.getId();
-        errata = errataIn;
+        errata = new ArrayList<Long>(errataIn);
         userId = userIn.getId();
         inheritPackages = inheritPackagesIn;
         this.txn = HibernateFactory.getSession().getTransaction();
@@ -107,7 +107,7 @@ public class NewCloneErrataEvent implements EventDatabaseMessage {
     /**
      * @return Returns the errata.
      */
-    public Long getErrata() {
+    public List<Long> getErrata() {
         return errata;
     }
 
@@ -115,7 +115,7 @@ public class NewCloneErrataEvent implements EventDatabaseMessage {
     /**
      * @param errataIn The errata to set.
      */
-    public void setErrata(Long errataIn) {
+    public void setErrata(List<Long> errataIn) {
         this.errata = errataIn;
     }
 
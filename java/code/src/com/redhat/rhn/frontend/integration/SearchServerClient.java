@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.integration;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import redstone.xmlrpc.XmlRpcClient;
+import redstone.xmlrpc.XmlRpcException;
+import redstone.xmlrpc.XmlRpcFault;
+
+/**
+ * Client for the search server shared by all threads of the web tier.
+ *
+ * Redstone clients are not thread safe, so idle clients are kept in a pool and
+ * handed to one caller at a time. Their HTTP connections are opened with the
+ * configured connect and read timeouts and are kept alive by the JDK between
+ * calls, so searches do not pay for connection setup every time.
+ *
+ * When calls fail because the search server can not be reached, the client
+ * stops trying for a while and fails fast instead, so that pages do not wait
+ * for the connect timeout on every search while the daemon is down.
+ *
+ * @version $Rev$
+ */
+public class SearchServerClient {
+
+    private static Logger log = Logger.getLogger(SearchServerClient.class);
+
+    private static final int MAX_IDLE_CLIENTS = 16;
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long RETRY_INTERVAL = 30 * 1000L;
+
+    private static SearchServerClient instance = new SearchServerClient();
+
+    private final LinkedList<XmlRpcClient> idle = new LinkedList<XmlRpcClient>();
+    private String url;
+    private int failures;
+    private long retryAfter;
+
+    /**
+     * Constructor, use {@link #get()} outside of tests
+     */
+    protected SearchServerClient() {
+    }
+
+    /**
+     * Get the instance of this client
+     * @return SearchServerClient instance.
+     */
+    public static SearchServerClient get() {
+        return instance;
+    }
+
+    /**
+     * Calls a search server method
+     * @param method name of the method, e.g. index.search
+     * @param args arguments of the method
+     * @return the result of the call
+     * @throws XmlRpcFault the search server returned an error
+     * @throws MalformedURLException bad configuration for search server address
+     * @throws XmlRpcException the search server could not be reached
+     */
+    public Object invoke(String method, List args)
+        throws XmlRpcFault, MalformedURLException, XmlRpcException {
+        checkAvailable();
+        XmlRpcClient client = borrowClient();
+        Object result;
+        try {
+            result = client.invoke(method, args);
+        }
+        catch (XmlRpcFault e) {
+            // the search server answered, only the call failed
+            succeeded(client);
+            throw e;
+        }
+        catch (XmlRpcException e) {
+            failed(e);
+            throw e;
+        }
+        succeeded(client);
+        return result;
+    }
+
+    /**
+     * Runs an index search returning the ids of the results only, in the order
+     * of their rank. If enabled in the configuration, the ids are transferred
+     * in compact form with index.searchIds, otherwise they are taken from the
+     * results of index.search.
+     * @param sessionId session id of the user
+     * @param index index to search
+     * @param query search query
+     * @param fineGrained if set the matches are stricter
+     * @return ids of the results
+     * @throws XmlRpcFault the search server returned an error
+     * @throws MalformedURLException bad configuration for search server address
+     * @throws XmlRpcException the search server could not be reached
+     */
+    public List<Long> searchIds(Long sessionId, String index, String query,
+            Boolean fineGrained)
+        throws XmlRpcFault, MalformedURLException, XmlRpcException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(sessionId);
+        args.add(index);
+        args.add(query);
+        args.add(fineGrained);
+        if (ConfigDefaults.get().isSearchServerCompactIds()) {
+            return decodeIds((byte[]) invoke("index.searchIds", args));
+        }
+        List results = (List) invoke("index.search", args);
+        List<Long> ids = new ArrayList<Long>(results.size());
+        for (Object item : results) {
+            ids.add(new Long((String) ((Map) item).get("id")));
+        }
+        return ids;
+    }
+
+    /**
+     * Decodes an id list sent by index.searchIds: every id is written as the
+     * difference to the previous one, zigzag encoded and stored in groups of 7
+     * bits, least significant first, the high bit marking that more follow.
+     * @param data encoded ids
+     * @return ids in the original order
+     */
+    public static List<Long> decodeIds(byte[] data) {
+        List<Long> ids = new ArrayList<Long>();
+        long previous = 0;
+        int pos = 0;
+        while (pos < data.length) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            previous += (value >>> 1) ^ -(value & 1);
+            ids.add(previous);
+        }
+        return ids;
+    }
+
+    /**
+     * @return true if calls are currently refused because the search server
+     * could not be reached
+     */
+    public synchronized boolean isSuspended() {
+        return failures >= FAILURE_THRESHOLD &&
+                System.currentTimeMillis() < retryAfter;
+    }
+
+    private void checkAvailable() throws XmlRpcException {
+        if (isSuspended()) {
+            throw new XmlRpcException("Search server unreachable, retrying in " +
+                    (retryAfter - System.currentTimeMillis()) / 1000 + " s");
+        }
+    }
+
+    private synchronized XmlRpcClient borrowClient() throws MalformedURLException {
+        String current = ConfigDefaults.get().getSearchServerUrl();
+        if (!current.equals(url)) {
+            idle.clear();
+            url = current;
+        }
+        if (!idle.isEmpty()) {
+            return idle.removeFirst();
+        }
+        return new XmlRpcClient(new URL(null, url, new TimeoutHandler()), true);
+    }
+
+    private synchronized void succeeded(XmlRpcClient client) {
+        failures = 0;
+        if (idle.size() < MAX_IDLE_CLIENTS) {
+            idle.addFirst(client);
+        }
+    }
+
+    private synchronized void failed(XmlRpcException e) {
+        // the client that failed is dropped, along with its connection
+        failures++;
+        if (failures >= FAILURE_THRESHOLD) {
+            retryAfter = System.currentTimeMillis() + RETRY_INTERVAL;
+            log.error("Search server unreachable, suspending calls for " +
+                    RETRY_INTERVAL / 1000 + " s: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the connections of the search server URL with the configured
+     * timeouts. The connection itself is the one of the standard handler, so
+     * it takes part in HTTP keep-alive.
+     */
+    private static class TimeoutHandler extends URLStreamHandler {
+
+        protected URLConnection openConnection(URL u) throws IOException {
+            URLConnection conn = new URL(u.toExternalForm()).openConnection();
+            conn.setConnectTimeout(ConfigDefaults.get().getSearchServerConnectTimeout());
+            conn.setReadTimeout(ConfigDefaults.get().getSearchServerReadTimeout());
+            return conn;
+        }
+    }
+}
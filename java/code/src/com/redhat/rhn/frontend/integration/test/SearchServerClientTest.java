@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.integration.test;
+
+import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.frontend.integration.SearchServerClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import redstone.xmlrpc.XmlRpcException;
+
+/**
+ * SearchServerClientTest
+ * @version $Rev$
+ */
+public class SearchServerClientTest extends TestCase {
+
+    private String port;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        port = Config.get().getString("search_server.port");
+    }
+
+    public void tearDown() throws Exception {
+        if (port == null) {
+            Config.get().remove("search_server.port");
+        }
+        else {
+            Config.get().setString("search_server.port", port);
+        }
+        super.tearDown();
+    }
+
+    public void testDecodeIds() {
+        // 300, 5, 1000000 as the deltas 300, -295, 999995
+        byte[] data = {(byte) 0xd8, 0x04, (byte) 0xcd, 0x04,
+                (byte) 0xf6, (byte) 0x88, 0x7a};
+        assertEquals(Arrays.asList(300L, 5L, 1000000L),
+                SearchServerClient.decodeIds(data));
+        assertTrue(SearchServerClient.decodeIds(new byte[0]).isEmpty());
+    }
+
+    public void testSuspendWhenUnreachable() throws Exception {
+        // nothing listens on port 1
+        Config.get().setString("search_server.port", "1");
+        SearchServerClient client = new SearchServerClient() { };
+        List<Object> args = new ArrayList<Object>();
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(client.isSuspended());
+            try {
+                client.invoke("admin.ping", args);
+                fail("search server should be unreachable");
+            }
+            catch (XmlRpcException e) {
+                // expected
+            }
+        }
+        assertTrue(client.isSuspended());
+        try {
+            client.invoke("admin.ping", args);
+            fail("calls should be refused");
+        }
+        catch (XmlRpcException e) {
+            assertTrue(e.getMessage().startsWith("Search server unreachable"));
+        }
+    }
+}
@@ -21,9 +21,10 @@ import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.manager.errata.ErrataManager;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.log4j.Logger;
-import org.jdom.JDOMException;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -32,9 +33,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -42,6 +47,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.xml.stream.XMLStreamException;
 
 /**
  * Servlet interface for downloading OVAL files
@@ -52,6 +58,21 @@ public class OvalServlet extends HttpServlet {
 
     private static Logger logger = Logger.getLogger(OvalServlet.class);
 
+    // number of aggregated documents kept around for repeated downloads
+    private static final int CACHE_SIZE = 32;
+
+    // disk space the cached documents may take in total, larger ones are not
+    // cached
+    private static final long CACHE_MAX_BYTES = 256L * 1024 * 1024;
+
+    // temporary files holding the aggregated documents by cache key, least
+    // recently used first, guarded by itself as is cacheBytes. A file is
+    // opened before the lock is released, so that removing it from the cache
+    // does not affect a request sending it.
+    private static final Map<String, File> CACHE =
+        new LinkedHashMap<String, File>(CACHE_SIZE, 0.75f, true);
+    private static long cacheBytes;
+
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
         throws ServletException, IOException {
 
@@ -118,47 +139,28 @@ public class OvalServlet extends HttpServlet {
 
     private void prepareZipFile(List ovalFiles,
             HttpServletResponse response) throws IOException {
-        File tempFile = File.createTempFile("rhn", "errata", new File("/tmp"));
         List files = ErrataManager.resolveOvalFiles(ovalFiles);
-        if (files.size() == 0) {
+        if (files == null || files.size() == 0) {
             return;
         }
-        try {
-            ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(tempFile));
-            for (Iterator iter = files.iterator(); iter.hasNext();) {
-                File f = (File) iter.next();
-                ZipEntry entry = new ZipEntry(f.getName());
-                zipOut.putNextEntry(entry);
-                writeFileEntry(f, zipOut);
-            }
-            zipOut.flush();
-            zipOut.close();
-            streamZipFile(tempFile, response);
-        }
-        finally {
-            if (!tempFile.delete()) {
-                tempFile.deleteOnExit();
-            }
-        }
-    }
-
-    private void streamZipFile(File zipFile,
-            HttpServletResponse response) throws IOException {
         response.setContentType("application/zip");
         response.addHeader("Content-disposition", "attachment; filename=oval.zip");
-        if (zipFile.length() < Integer.MAX_VALUE) {
-            response.setContentLength((int) zipFile.length());
-        }
-        InputStream fileIn = null;
-        try {
-            fileIn = new FileInputStream(zipFile);
-            sendFileContents(fileIn, response);
+        ZipOutputStream zipOut = new ZipOutputStream(response.getOutputStream());
+        for (Iterator iter = files.iterator(); iter.hasNext();) {
+            File f = (File) iter.next();
+            ZipEntry entry = new ZipEntry(f.getName());
+            zipOut.putNextEntry(entry);
+            writeFileEntry(f, zipOut);
         }
-        finally {
-            if (fileIn != null) {
-                fileIn.close();
-            }
+        zipOut.finish();
+        zipOut.flush();
+    }
+
+    private void sendFile(File f, HttpServletResponse response) throws IOException {
+        if (f.length() < Integer.MAX_VALUE) {
+            response.setContentLength((int) f.length());
         }
+        sendFileContents(new FileInputStream(f), response);
     }
 
     private void sendFileContents(InputStream contents,
@@ -199,67 +201,119 @@ public class OvalServlet extends HttpServlet {
         response.setContentType("text/xml");
         String fileName = null;
         List ovalFiles = ErrataManager.resolveOvalFiles(files);
-        switch(ovalFiles.size()) {
-            case 0:
-                return;
-            case 1:
-                File ftmp = (File) ovalFiles.get(0);
-                if (ftmp == null) {
-                    response.sendError(404, (String) files.get(0));
-                }
-                fileName = ftmp.getName().toLowerCase();
-                if (!fileName.endsWith(".xml")) {
-                    fileName += ".xml";
-                }
-                break;
-            default:
-                fileName = "oval.xml";
-                break;
+        if (ovalFiles == null || ovalFiles.size() == 0) {
+            return;
+        }
+        if (ovalFiles.size() == 1) {
+            fileName = ((File) ovalFiles.get(0)).getName().toLowerCase();
+            if (!fileName.endsWith(".xml")) {
+                fileName += ".xml";
+            }
+        }
+        else {
+            fileName = "oval.xml";
         }
         response.addHeader("Content-disposition", "attachment; filename=" +
                 fileName);
         if (ovalFiles.size() == 1) {
-            File f = (File) ovalFiles.get(0);
-            if (f.length() < Integer.MAX_VALUE) {
-                response.setContentLength((int) f.length());
-            }
-            InputStream fileIn = null;
-            try {
-                fileIn = new FileInputStream(f);
-                sendFileContents(fileIn, response);
-            }
-            finally {
-                if (fileIn != null) {
-                    fileIn.close();
-                }
-            }
+            sendFile((File) ovalFiles.get(0), response);
         }
         else {
+            FileInputStream aggregate = null;
             try {
-                String aggregate = aggregateOvalFiles(ovalFiles);
-                response.getWriter().print(aggregate);
-                response.getWriter().flush();
+                aggregate = openAggregate(ovalFiles);
             }
             catch (Exception e) {
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
                 logger.error(e.getMessage(), e);
             }
+            if (aggregate != null) {
+                response.setContentLength((int) aggregate.getChannel().size());
+                sendFileContents(aggregate, response);
+            }
         }
     }
 
-    private String aggregateOvalFiles(List files)
-            throws JDOMException, IOException {
+    /**
+     * Opens the aggregate of the given files, writing it to a temporary file
+     * if the same list of files has not been aggregated recently.
+     * @return stream of the aggregated document or null if the files contain
+     * no OVAL elements
+     */
+    private FileInputStream openAggregate(List files)
+            throws XMLStreamException, IOException {
+        String key = cacheKey(files);
+        synchronized (CACHE) {
+            File cached = CACHE.get(key);
+            if (cached != null) {
+                return new FileInputStream(cached);
+            }
+        }
+
         OvalFileAggregator aggregator = new OvalFileAggregator();
-        String retval = null;
         for (Iterator iter = files.iterator(); iter.hasNext();) {
-            File f = (File) iter.next();
-            if (f == null) {
-                continue;
+            aggregator.add((File) iter.next());
+        }
+        File aggregate = File.createTempFile("oval-", ".xml");
+        boolean written = false;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(aggregate));
+        try {
+            written = aggregator.write(out);
+        }
+        finally {
+            out.close();
+            if (!written) {
+                aggregate.delete();
+            }
+        }
+        if (!written) {
+            return null;
+        }
+
+        synchronized (CACHE) {
+            FileInputStream in = new FileInputStream(aggregate);
+            long length = aggregate.length();
+            if (length > CACHE_MAX_BYTES) {
+                // nobody else knows the file, it is gone once it is sent
+                aggregate.delete();
+                return in;
+            }
+            File previous = CACHE.put(key, aggregate);
+            if (previous != null) {
+                cacheBytes -= previous.length();
+                previous.delete();
+            }
+            cacheBytes += length;
+            Iterator<File> eldest = CACHE.values().iterator();
+            while (CACHE.size() > CACHE_SIZE || cacheBytes > CACHE_MAX_BYTES) {
+                File f = eldest.next();
+                cacheBytes -= f.length();
+                f.delete();
+                eldest.remove();
             }
-            aggregator.add(f);
+            return in;
         }
-        retval = aggregator.finish(false);
+    }
 
-        return retval;
+    /**
+     * The key identifies the files by path, size and modification time, so
+     * that updated OVAL files are aggregated again. The order of the files is
+     * kept, the first file defining an element wins in the aggregate.
+     */
+    private static String cacheKey(List files) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Iterator iter = files.iterator(); iter.hasNext();) {
+                File f = (File) iter.next();
+                String name = f.getAbsolutePath() + ":" + f.length() + ":" +
+                        f.lastModified();
+                digest.update(name.getBytes("UTF-8"));
+                digest.update((byte) 0);
+            }
+            return new String(Hex.encodeHex(digest.digest()));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
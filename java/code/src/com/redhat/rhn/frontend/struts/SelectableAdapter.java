@@ -19,7 +19,7 @@ package com.redhat.rhn.frontend.struts;
  * SelectableAdapter
  * @version $Rev$
  */
-public abstract class SelectableAdapter implements Selectable {
+public abstract class SelectableAdapter implements Selectable, Cloneable {
     private boolean selected;
     private boolean disabled = false;
     /**
@@ -66,4 +66,17 @@ public abstract class SelectableAdapter implements Selectable {
     public void setDisabled(boolean disabledIn) {
         disabled = disabledIn;
     }
+
+    /**
+     * Returns a shallow copy of this object, with a selection of its own.
+     * @return the copy
+     */
+    public SelectableAdapter copy() {
+        try {
+            return (SelectableAdapter) super.clone();
+        }
+        catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
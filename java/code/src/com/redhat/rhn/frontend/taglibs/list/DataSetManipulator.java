@@ -364,22 +364,28 @@ public class DataSetManipulator {
             sortDir = ascending ? RequestContext.SORT_ASC : RequestContext.SORT_DESC;
         }
         if (AlphaBarHelper.getInstance().isSelected(uniqueName, request)) {
-            Collections.sort(dataset, new DynamicComparator(alphaCol,
-                    RequestContext.SORT_ASC));
+            sort(alphaCol, RequestContext.SORT_ASC);
         }
         else if (!StringUtils.isBlank(sortAttribute)) {
             try {
-                Collections.sort(dataset, new DynamicComparator(sortAttribute, sortDir));
+                sort(sortAttribute, sortDir);
             }
             catch (IllegalArgumentException iae) {
                 log.warn("Unable to sort dataset according to: " + sortAttribute);
-                Collections.sort(dataset, new DynamicComparator(defaultSortAttribute,
-                        sortDir));
+                sort(defaultSortAttribute, sortDir);
             }
         }
         else if (!StringUtils.isBlank(defaultSortAttribute)) {
-            Collections.sort(dataset, new DynamicComparator(defaultSortAttribute,
-                    ascending ? RequestContext.SORT_ASC : RequestContext.SORT_DESC));
+            sort(defaultSortAttribute,
+                    ascending ? RequestContext.SORT_ASC : RequestContext.SORT_DESC);
+        }
+    }
+
+    private void sort(String attribute, String sortDir) {
+        // rows kept from a previous request know their order already
+        ListSnapshot snapshot = ListSnapshot.lookupBound(request, uniqueName);
+        if (snapshot == null || !snapshot.sort(dataset, attribute, sortDir)) {
+            Collections.sort(dataset, new DynamicComparator(attribute, sortDir));
         }
     }
 
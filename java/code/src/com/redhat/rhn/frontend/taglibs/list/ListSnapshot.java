@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.taglibs.list;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.util.DynamicComparator;
+import com.redhat.rhn.frontend.struts.Expandable;
+import com.redhat.rhn.frontend.struts.RequestContext;
+import com.redhat.rhn.frontend.struts.RhnAction;
+import com.redhat.rhn.frontend.struts.SelectableAdapter;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Rows of a list page kept in the session of the user, so that paging, sorting
+ * and filtering the list does not run the query of the page again.
+ *
+ * The rows are kept as the query returned them, before elaboration. Every
+ * request gets copies of them, see {@link #bindTo}, so the selections and
+ * elaborated values of one request are not seen by others showing the list at
+ * the same time. Sort orders are remembered as the rank of every row, so
+ * sorting by the same column again does not compare the rows.
+ *
+ * A snapshot is only used for requests submitted by the list page itself that
+ * are not dispatched to an action, see {@link #isNavigation}. Loading the page
+ * again or submitting an action runs the query again, and so does any request
+ * after the time to live configured by web.list_snapshot_ttl. Only the
+ * snapshot of the list viewed last is kept in the session.
+ *
+ * Snapshots are taken for lists that enable them only, see
+ * {@link com.redhat.rhn.frontend.taglibs.list.helper.ListHelper#setUseSnapshot},
+ * as the rows are not asked from the Listable of the page again. Only rows that
+ * can be copied are kept: maps and dtos that are not expandable.
+ *
+ * @version $Rev$
+ */
+public class ListSnapshot {
+
+    private static final String SESSION_ATTR = "list_snapshot";
+    private static final String REQUEST_ATTR = "_snapshot";
+
+    private final String listName;
+    private final String key;
+    private final long expires;
+    private final DataResult rows;
+    private final Map<Object, Integer> positions = new IdentityHashMap<Object, Integer>();
+    private final Map<String, int[]> ranks;
+
+    /**
+     * Constructor
+     * @param uniqueName unique name of the list
+     * @param keyIn key identifying the page of the list
+     * @param rowsIn rows returned by the query of the list
+     * @param ttl time to live in seconds
+     */
+    ListSnapshot(String uniqueName, String keyIn, DataResult rowsIn, int ttl) {
+        listName = uniqueName;
+        key = keyIn;
+        rows = rowsIn;
+        expires = System.currentTimeMillis() + ttl * 1000L;
+        ranks = new HashMap<String, int[]>();
+    }
+
+    /**
+     * Creates the view of a snapshot used by one request, sharing the sort
+     * orders with the snapshot.
+     * @param snapshot the snapshot kept in the session
+     * @param copies copies of the rows of the snapshot, in the same order
+     */
+    private ListSnapshot(ListSnapshot snapshot, DataResult copies) {
+        listName = snapshot.listName;
+        key = snapshot.key;
+        expires = snapshot.expires;
+        rows = copies;
+        ranks = snapshot.ranks;
+        for (int i = 0; i < rows.size(); i++) {
+            positions.put(rows.get(i), i);
+        }
+    }
+
+    /**
+     * Returns true if the request only pages, sorts or filters a list shown
+     * by the previous request, so that the rows shown then can be used again.
+     * @param context request context
+     * @param uniqueName unique name of the list
+     * @return true if the request navigates within the list
+     */
+    public static boolean isNavigation(RequestContext context, String uniqueName) {
+        HttpServletRequest request = context.getRequest();
+        if (request.getParameter(RequestContext.DISPATCH) != null) {
+            return false;
+        }
+        return context.isSubmitted() ||
+                request.getParameter(AlphaBarHelper.makeAlphaKey(uniqueName)) != null;
+    }
+
+    /**
+     * Identifies the page showing a list by its url and the parameters of the
+     * request, except the ones of the list itself, like the page or the sort
+     * column.
+     */
+    private static String makeKey(HttpServletRequest request, String uniqueName) {
+        List<String> names = new ArrayList<String>();
+        for (Enumeration e = request.getParameterNames(); e.hasMoreElements();) {
+            String name = (String) e.nextElement();
+            if (!name.contains(uniqueName) && !RhnAction.SUBMITTED.equals(name)) {
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+        StringBuilder buf = new StringBuilder(request.getRequestURI());
+        for (String name : names) {
+            buf.append('&').append(name).append('=')
+                .append(StringUtils.join(request.getParameterValues(name), ','));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the snapshot of a list kept in the session, if it was taken for
+     * the same page and did not expire.
+     * @param request current request
+     * @param uniqueName unique name of the list
+     * @return the snapshot or null
+     */
+    public static ListSnapshot lookup(HttpServletRequest request, String uniqueName) {
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        ListSnapshot snapshot = (ListSnapshot) session.getAttribute(SESSION_ATTR);
+        if (snapshot == null || !snapshot.listName.equals(uniqueName) ||
+                !snapshot.key.equals(makeKey(request, uniqueName)) ||
+                System.currentTimeMillis() > snapshot.expires) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Takes a snapshot of the rows of a list and keeps it in the session,
+     * replacing the one of any other list. Only results of datasource queries
+     * are kept, lists of Hibernate objects could not be used in later requests.
+     * @param request current request
+     * @param uniqueName unique name of the list
+     * @param result rows returned by the query of the list
+     * @return the snapshot, null if the result can not be kept or snapshots are
+     * disabled
+     */
+    public static ListSnapshot create(HttpServletRequest request, String uniqueName,
+            List result) {
+        int ttl = ConfigDefaults.get().getListSnapshotTtl();
+        if (ttl <= 0 || !(result instanceof DataResult) ||
+                ((DataResult) result).getMode() == null) {
+            return null;
+        }
+        for (Object row : result) {
+            if (!(row instanceof Map || row instanceof SelectableAdapter) ||
+                    row instanceof Expandable) {
+                return null;
+            }
+        }
+        ListSnapshot snapshot = new ListSnapshot(uniqueName,
+                makeKey(request, uniqueName), (DataResult) result, ttl);
+        request.getSession(true).setAttribute(SESSION_ATTR, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Returns copies of the rows of the list in the order of the query, for the
+     * current request to sort, filter, select and elaborate, and makes them
+     * available to the list tag rendering the list.
+     * @param request current request
+     * @return rows of the list
+     */
+    public DataResult bindTo(ServletRequest request) {
+        DataResult copies = rows.subList(0, rows.size());
+        copies.setElaborationParams(rows.getElaborationParams());
+        for (ListIterator it = copies.listIterator(); it.hasNext();) {
+            it.set(copy(it.next()));
+        }
+        request.setAttribute("list_" + listName + REQUEST_ATTR,
+                new ListSnapshot(this, copies));
+        return copies;
+    }
+
+    private static Object copy(Object row) {
+        if (row instanceof Map) {
+            return new HashMap((Map) row);
+        }
+        return ((SelectableAdapter) row).copy();
+    }
+
+    /**
+     * Returns the snapshot the rows of a list were taken from in the current
+     * request.
+     * @param request current request
+     * @param uniqueName unique name of the list
+     * @return the snapshot or null if the rows come from the query directly
+     */
+    public static ListSnapshot lookupBound(ServletRequest request, String uniqueName) {
+        return (ListSnapshot) request.getAttribute("list_" + uniqueName + REQUEST_ATTR);
+    }
+
+    /**
+     * Sorts rows of the snapshot by the rank they have when sorting all rows
+     * by the given attribute. The ranks are computed on the first sort by an
+     * attribute and direction.
+     * @param data rows to sort, all of them taken from this snapshot
+     * @param attribute name of the attribute to sort by
+     * @param sortDir sort direction, RequestContext.SORT_ASC or SORT_DESC
+     * @return false if data contains rows not in the snapshot and was not
+     * sorted
+     */
+    public boolean sort(List data, String attribute, String sortDir) {
+        String rankKey = attribute + ":" + sortDir;
+        int[] rank;
+        synchronized (ranks) {
+            rank = ranks.get(rankKey);
+            if (rank == null) {
+                List sorted = new ArrayList(rows);
+                Collections.sort(sorted, new DynamicComparator(attribute, sortDir));
+                rank = new int[sorted.size()];
+                for (int i = 0; i < sorted.size(); i++) {
+                    rank[positions.get(sorted.get(i))] = i;
+                }
+                ranks.put(rankKey, rank);
+            }
+        }
+
+        Object[] slots = new Object[rows.size()];
+        for (Object row : data) {
+            Integer pos = positions.get(row);
+            if (pos == null || slots[rank[pos]] != null) {
+                return false;
+            }
+            slots[rank[pos]] = row;
+        }
+        ListIterator it = data.listIterator();
+        for (Object row : slots) {
+            if (row != null) {
+                it.next();
+                it.set(row);
+            }
+        }
+        return true;
+    }
+}
@@ -18,6 +18,7 @@ package com.redhat.rhn.frontend.taglibs.list.helper;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.Elaborator;
 import com.redhat.rhn.frontend.struts.RequestContext;
+import com.redhat.rhn.frontend.taglibs.list.ListSnapshot;
 import com.redhat.rhn.frontend.taglibs.list.ListTagHelper;
 import com.redhat.rhn.frontend.taglibs.list.TagHelper;
 
@@ -73,6 +74,7 @@ public class ListHelper {
     private String parentUrl;
     private RequestContext context;
     private Map paramMap = new HashedMap();
+    private boolean useSnapshot = false;
     /**
      * constructor
      * @param inp takes in a Listable Object.
@@ -104,7 +106,7 @@ public class ListHelper {
      *
      */
     private void setupDataSet() {
-        List dataSet = listable.getResult(context);
+        List dataSet = getResult();
         HttpServletRequest request = context.getRequest();
         request.setAttribute(ListTagHelper.PARENT_URL, getParentUrl());
         request.setAttribute(getDataSetName(), dataSet);
@@ -116,6 +118,30 @@ public class ListHelper {
             }
         }
     }
+    /**
+     * Returns the rows of the list. Requests paging, sorting or filtering the
+     * list shown before reuse its rows, see {@link ListSnapshot}.
+     * @return the rows of the list
+     */
+    private List getResult() {
+        if (!useSnapshot) {
+            return listable.getResult(context);
+        }
+        HttpServletRequest request = context.getRequest();
+        ListSnapshot snapshot = null;
+        if (ListSnapshot.isNavigation(context, getUniqueName())) {
+            snapshot = ListSnapshot.lookup(request, getUniqueName());
+        }
+        if (snapshot == null) {
+            List result = listable.getResult(context);
+            snapshot = ListSnapshot.create(request, getUniqueName(), result);
+            if (snapshot == null) {
+                return result;
+            }
+        }
+        return snapshot.bindTo(request);
+    }
+
     /**
      * Basically returns a bound data set or null
      * @return the dataset associated to this listable tag.
@@ -282,6 +308,23 @@ public class ListHelper {
         this.paramMap = params;
     }
 
+    /**
+     * @return true if rows are reused when paging, sorting or filtering
+     */
+    public boolean isUseSnapshot() {
+        return useSnapshot;
+    }
+
+    /**
+     * Reuse the rows of the list when it is paged, sorted or filtered, instead
+     * of calling {@link Listable#getResult} again. Only for lists of datasource
+     * query results, whose getResult has no side effects on the request.
+     * @param useSnapshotIn true to reuse the rows
+     */
+    public void setUseSnapshot(boolean useSnapshotIn) {
+        this.useSnapshot = useSnapshotIn;
+    }
+
     protected Listable getListable() {
         return listable;
     }
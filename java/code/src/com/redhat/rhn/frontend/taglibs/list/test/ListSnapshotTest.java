@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.taglibs.list.test;
+
+import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.frontend.dto.PackageDto;
+import com.redhat.rhn.frontend.struts.RequestContext;
+import com.redhat.rhn.frontend.taglibs.list.ListSnapshot;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+import com.redhat.rhn.testing.RhnMockHttpServletRequest;
+import com.redhat.rhn.testing.RhnMockHttpSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * ListSnapshotTest
+ * @version $Rev$
+ */
+public class ListSnapshotTest extends RhnBaseTestCase {
+
+    private static final String TTL = "web.list_snapshot_ttl";
+    private static final String LIST = "testlist";
+    private static final String URI = "/rhn/test/List.do";
+
+    private RhnMockHttpSession session;
+    private String oldTtl;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        session = new RhnMockHttpSession();
+        oldTtl = Config.get().getString(TTL);
+        Config.get().setString(TTL, "120");
+    }
+
+    public void tearDown() throws Exception {
+        Config.get().setString(TTL, oldTtl);
+        super.tearDown();
+    }
+
+    public void testReuse() throws Exception {
+        DataResult<Map<String, Object>> result = createResult("b", "c", "a");
+        ListSnapshot snapshot = ListSnapshot.create(newRequest(URI), LIST, result);
+        assertNotNull(snapshot);
+
+        assertSame(snapshot, ListSnapshot.lookup(newRequest(URI), LIST));
+        assertNull(ListSnapshot.lookup(newRequest("/rhn/test/Other.do"), LIST));
+        assertNull(ListSnapshot.lookup(newRequest(URI), "otherlist"));
+    }
+
+    public void testRowsCopiedPerRequest() throws Exception {
+        DataResult<Map<String, Object>> result = createResult("b", "c", "a");
+        ListSnapshot snapshot = ListSnapshot.create(newRequest(URI), LIST, result);
+
+        HttpServletRequest first = newRequest(URI);
+        HttpServletRequest second = newRequest(URI);
+        List<Map<String, Object>> firstRows = snapshot.bindTo(first);
+        List<Map<String, Object>> secondRows = snapshot.bindTo(second);
+        assertEquals(result, firstRows);
+        assertEquals(result, secondRows);
+        assertNotSame(result.get(0), firstRows.get(0));
+
+        // a selection made by one request is not seen by another one
+        firstRows.get(0).put("selected", true);
+        assertFalse(secondRows.get(0).containsKey("selected"));
+        assertFalse(result.get(0).containsKey("selected"));
+
+        assertNotNull(ListSnapshot.lookupBound(first, LIST));
+        assertNotSame(ListSnapshot.lookupBound(first, LIST),
+                ListSnapshot.lookupBound(second, LIST));
+    }
+
+    public void testDtoSelectionCopiedPerRequest() throws Exception {
+        List<PackageDto> rows = new ArrayList<PackageDto>();
+        PackageDto pkg = new PackageDto();
+        pkg.setId(1L);
+        pkg.setName("pkg");
+        rows.add(pkg);
+        ListSnapshot snapshot = ListSnapshot.create(newRequest(URI), LIST,
+                new TestResult<PackageDto>(rows));
+
+        List<PackageDto> first = snapshot.bindTo(newRequest(URI));
+        List<PackageDto> second = snapshot.bindTo(newRequest(URI));
+        first.get(0).setSelected(true);
+        assertFalse(second.get(0).isSelected());
+        assertFalse(pkg.isSelected());
+        assertEquals("pkg", second.get(0).getName());
+    }
+
+    public void testSortByRank() throws Exception {
+        DataResult<Map<String, Object>> result = createResult("b", "c", "a");
+        ListSnapshot snapshot = ListSnapshot.create(newRequest(URI), LIST, result);
+
+        for (int i = 0; i < 2; i++) {
+            HttpServletRequest request = newRequest(URI);
+            List<Map<String, Object>> rows = snapshot.bindTo(request);
+            assertTrue(ListSnapshot.lookupBound(request, LIST).sort(rows, "name",
+                    RequestContext.SORT_ASC));
+            assertEquals("a", rows.get(0).get("name"));
+            assertEquals("b", rows.get(1).get("name"));
+            assertEquals("c", rows.get(2).get("name"));
+        }
+
+        // rows of another request are not sorted by the snapshot
+        List<Map<String, Object>> other = snapshot.bindTo(newRequest(URI));
+        ListSnapshot bound = ListSnapshot.lookupBound(newRequestBoundTo(snapshot), LIST);
+        assertFalse(bound.sort(other, "name", RequestContext.SORT_ASC));
+    }
+
+    public void testExpiry() throws Exception {
+        Config.get().setString(TTL, "1");
+        ListSnapshot.create(newRequest(URI), LIST, createResult("a"));
+        assertNotNull(ListSnapshot.lookup(newRequest(URI), LIST));
+
+        Thread.sleep(1100);
+        assertNull(ListSnapshot.lookup(newRequest(URI), LIST));
+    }
+
+    public void testDisabled() throws Exception {
+        Config.get().setString(TTL, "0");
+        assertNull(ListSnapshot.create(newRequest(URI), LIST, createResult("a")));
+        assertNull(ListSnapshot.lookup(newRequest(URI), LIST));
+    }
+
+    private HttpServletRequest newRequestBoundTo(ListSnapshot snapshot) {
+        HttpServletRequest request = newRequest(URI);
+        snapshot.bindTo(request);
+        return request;
+    }
+
+    private HttpServletRequest newRequest(String uri) {
+        RhnMockHttpServletRequest request = new RhnMockHttpServletRequest();
+        request.setSession(session);
+        request.setupGetRequestURI(uri);
+        request.setupGetParameterNames(new Vector<String>().elements());
+        return request;
+    }
+
+    private static DataResult<Map<String, Object>> createResult(String... names) {
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < names.length; i++) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put("id", new Long(i));
+            row.put("name", names[i]);
+            rows.add(row);
+        }
+        return new TestResult<Map<String, Object>>(rows);
+    }
+
+    /**
+     * Result of a query, without running it
+     * @param <T> type of the rows
+     */
+    private static class TestResult<T> extends DataResult<T> {
+        TestResult(Collection<T> rows) {
+            super(rows, ModeFactory.getMode("test_queries", "get_test_users"));
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.redhat.rhn.common.client.InvalidCertificateException;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.db.datasource.StreamedResult;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.messaging.MessageQueue;
@@ -89,6 +90,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -255,11 +257,12 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *              $PackageDtoSerializer
      *      #array_end()
      */
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
-            Date startDate, Date endDate) throws NoSuchChannelException {
+    public StreamedResult<PackageDto> listAllPackages(User loggedInUser,
+            String channelLabel, Date startDate, Date endDate)
+        throws NoSuchChannelException {
 
         Channel channel = lookupChannelByLabel(loggedInUser, channelLabel);
-        return ChannelManager.listAllPackages(channel, startDate, endDate);
+        return ChannelManager.streamAllPackages(channel, startDate, endDate);
     }
 
     /**
@@ -282,8 +285,8 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *              $PackageDtoSerializer
      *      #array_end()
      */
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
-            Date startDate) throws NoSuchChannelException {
+    public StreamedResult<PackageDto> listAllPackages(User loggedInUser,
+            String channelLabel, Date startDate) throws NoSuchChannelException {
         return listAllPackages(loggedInUser, channelLabel, startDate, null);
     }
 
@@ -302,11 +305,11 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *              $PackageDtoSerializer
      *      #array_end()
      */
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel)
-        throws NoSuchChannelException {
+    public StreamedResult<PackageDto> listAllPackages(User loggedInUser,
+            String channelLabel) throws NoSuchChannelException {
 
         Channel channel = lookupChannelByLabel(loggedInUser, channelLabel);
-        return ChannelManager.listAllPackages(channel);
+        return ChannelManager.streamAllPackages(channel, (String) null, null);
     }
 
     /**
@@ -335,11 +338,12 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *      #array_end()
      */
     @Deprecated
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
-            String startDate, String endDate) throws NoSuchChannelException {
+    public StreamedResult<PackageDto> listAllPackages(User loggedInUser,
+            String channelLabel, String startDate, String endDate)
+        throws NoSuchChannelException {
 
         Channel channel = lookupChannelByLabel(loggedInUser, channelLabel);
-        return ChannelManager.listAllPackages(channel, startDate, endDate);
+        return ChannelManager.streamAllPackages(channel, startDate, endDate);
     }
 
     /**
@@ -365,8 +369,8 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *      #array_end()
      */
     @Deprecated
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
-            String startDate) throws NoSuchChannelException {
+    public StreamedResult<PackageDto> listAllPackages(User loggedInUser,
+            String channelLabel, String startDate) throws NoSuchChannelException {
         return listAllPackages(loggedInUser, channelLabel, startDate, null);
     }
 
@@ -2068,6 +2072,46 @@ public class ChannelSoftwareHandler extends BaseHandler {
         return mergedErrata.toArray();
     }
 
+    /**
+     * Merge a channel's errata into another channel, or only list the errata
+     * that would be merged.
+     * @param loggedInUser The current user
+     * @param mergeFromLabel the label of the channel to pull the errata from
+     * @param mergeToLabel the label of the channel to push errata into
+     * @param dryRun if true, nothing is merged
+     * @return A list of errata that were (or would be) merged.
+     *
+     * @xmlrpc.doc Merges all errata from one channel into another
+     * @xmlrpc.param #session_key()
+     * @xmlrpc.param #param_desc("string", "mergeFromLabel", "the label of the
+     * channel to pull errata from")
+     * @xmlrpc.param #param_desc("string", "mergeToLabel", "the label to push the
+     * errata into")
+     * @xmlrpc.param #param_desc("boolean", "dryRun", "only list the errata that
+     * would be merged, without merging them")
+     * @xmlrpc.returntype
+     *      #array()
+     *          $ErrataSerializer
+     *      #array_end()
+     */
+    public Object[] mergeErrata(User loggedInUser, String mergeFromLabel,
+            String mergeToLabel, Boolean dryRun) {
+        channelAdminPermCheck(loggedInUser);
+
+        Channel mergeFrom = lookupChannelByLabel(loggedInUser, mergeFromLabel);
+        Channel mergeTo = lookupChannelByLabel(loggedInUser, mergeToLabel);
+
+        if (!UserManager.verifyChannelAdmin(loggedInUser, mergeTo)) {
+            throw new PermissionCheckFailureException();
+        }
+
+        Set<Errata> mergedErrata = mergeErrataToChannel(loggedInUser,
+                new HashSet<Errata>(mergeFrom.getErratas()), mergeTo, mergeFrom,
+                dryRun.booleanValue());
+
+        return mergedErrata.toArray();
+    }
+
     /**
      * Merge a channel's errata into another channel based upon a given start/end date.
      * @param loggedInUser The current user
@@ -2168,21 +2212,26 @@ public class ChannelSoftwareHandler extends BaseHandler {
 
     private Set<Errata> mergeErrataToChannel(User user, Set<Errata> errataToMerge,
             Channel toChannel, Channel fromChannel) {
+        return mergeErrataToChannel(user, errataToMerge, toChannel, fromChannel, false);
+    }
+
+    private Set<Errata> mergeErrataToChannel(User user, Set<Errata> errataToMerge,
+            Channel toChannel, Channel fromChannel, boolean dryRun) {
+
+        // drop errata that are already in the target channel or whose
+        // clones/brothers are
+        Set<Long> mergeable = ErrataManager.listMergeableErrataIds(fromChannel,
+                toChannel);
+        for (Iterator<Errata> itr = errataToMerge.iterator(); itr.hasNext();) {
+            if (!mergeable.contains(itr.next().getId())) {
+                itr.remove();
+            }
+        }
 
-        // find errata that we do not need to merge
-        List<Errata> same = ErrataManager.listSamePublishedInChannels(
-                user, fromChannel, toChannel);
-        List<Errata> brothers = ErrataManager.listPublishedBrothersInChannels(
-                user, fromChannel, toChannel);
-        List<Errata> clones = ErrataManager.listPublishedClonesInChannels(
-                user, fromChannel, toChannel);
-        // and remove them
-        errataToMerge.removeAll(same);
-        errataToMerge.removeAll(brothers);
-        errataToMerge.removeAll(clones);
-
-        ErrataManager.publishErrataToChannelAsync(toChannel,
-                getErrataIds(errataToMerge), user);
+        if (!dryRun) {
+            ErrataManager.publishErrataToChannelAsync(toChannel,
+                    getErrataIds(errataToMerge), user);
+        }
 
         // no need to regenerate errata cache, because we didn't touch any packages
 
@@ -2225,25 +2274,41 @@ public class ChannelSoftwareHandler extends BaseHandler {
             throw new PermissionCheckFailureException();
         }
 
-        List<Package> differentPackages = new ArrayList<Package>();
+        List<Long> pids = ChannelManager.mergePackages(mergeFrom, mergeTo, false);
+        return PackageFactory.lookupByIds(pids).toArray();
+    }
 
-        Set<Package> toPacks = mergeTo.getPackages();
-        Set<Package> fromPacks = mergeFrom.getPackages();
-        List<Long> pids = new ArrayList<Long>();
-        for (Package pack : fromPacks) {
-            if (!toPacks.contains(pack)) {
-                pids.add(pack.getId());
-                differentPackages.add(pack);
-            }
+    /**
+     * Merge a channel's packages into another channel, or only list the
+     * packages that would be merged.
+     * @param loggedInUser The current user
+     * @param mergeFromLabel the label of the channel to pull the packages from
+     * @param mergeToLabel the label of the channel to push packages into
+     * @param dryRun if true, nothing is merged
+     * @return ids of the packages that were (or would be) merged.
+     *
+     * @xmlrpc.doc Merges all packages from one channel into another. Only the
+     * package ids are returned, which makes this suitable for large channels.
+     * @xmlrpc.param #session_key()
+     * @xmlrpc.param #param_desc("string", "mergeFromLabel", "the label of the
+     *          channel to pull packages from")
+     * @xmlrpc.param #param_desc("string", "mergeToLabel", "the label to push the
+     *              packages into")
+     * @xmlrpc.param #param_desc("boolean", "dryRun", "only list the packages that
+     *              would be merged, without merging them")
+     * @xmlrpc.returntype #array_single("int", "package id")
+     */
+    public List<Long> mergePackages(User loggedInUser, String mergeFromLabel,
+            String mergeToLabel, Boolean dryRun) {
+
+        Channel mergeFrom = lookupChannelByLabel(loggedInUser, mergeFromLabel);
+        Channel mergeTo = lookupChannelByLabel(loggedInUser, mergeToLabel);
+
+        if (!UserManager.verifyChannelAdmin(loggedInUser, mergeTo)) {
+            throw new PermissionCheckFailureException();
         }
-        mergeTo.getPackages().addAll(differentPackages);
-        ChannelFactory.save(mergeTo);
-        ChannelManager.refreshWithNewestPackages(mergeTo, "java::mergePackages");
 
-        List<Long> cids = new ArrayList<Long>();
-        cids.add(mergeTo.getId());
-        ErrataCacheManager.insertCacheForChannelPackagesAsync(cids, pids);
-        return differentPackages.toArray();
+        return ChannelManager.mergePackages(mergeFrom, mergeTo, dryRun.booleanValue());
     }
 
     /**
@@ -835,6 +835,44 @@ public class ChannelSoftwareHandlerTest extends BaseHandlerTestCase {
         assertEquals(packTwo, list[0]);
     }
 
+    public void testMergePackagesDryRun() throws Exception {
+
+        Channel mergeFrom = ChannelFactoryTest.createTestChannel(admin);
+        Channel mergeTo = ChannelFactoryTest.createTestChannel(admin);
+
+        Package packOne = PackageTest.createTestPackage(admin.getOrg());
+        Package packTwo = PackageTest.createTestPackage(admin.getOrg());
+
+        mergeFrom.setOrg(null);
+        mergeTo.setOrg(admin.getOrg());
+
+        mergeFrom.addPackage(packOne);
+        mergeFrom.addPackage(packTwo);
+        mergeTo.addPackage(packOne);
+
+        mergeFrom = (Channel) TestUtils.saveAndReload(mergeFrom);
+        mergeTo = (Channel) TestUtils.saveAndReload(mergeTo);
+
+        List<Long> ids = handler.mergePackages(admin, mergeFrom.getLabel(),
+                mergeTo.getLabel(), Boolean.TRUE);
+        assertEquals(1, ids.size());
+        assertEquals(packTwo.getId(), ids.get(0));
+
+        mergeTo = (Channel) reload(mergeTo);
+        assertEquals(1, mergeTo.getPackages().size());
+
+        ids = handler.mergePackages(admin, mergeFrom.getLabel(),
+                mergeTo.getLabel(), Boolean.FALSE);
+        assertEquals(1, ids.size());
+
+        mergeTo = (Channel) reload(mergeTo);
+        assertEquals(2, mergeTo.getPackages().size());
+
+        ids = handler.mergePackages(admin, mergeFrom.getLabel(),
+                mergeTo.getLabel(), Boolean.TRUE);
+        assertTrue(ids.isEmpty());
+    }
+
     public void testMergeErrata() throws Exception {
         Channel mergeFrom = ChannelFactoryTest.createTestChannel(admin);
         Channel mergeTo = ChannelFactoryTest.createTestChannel(admin);
@@ -942,25 +980,25 @@ public class ChannelSoftwareHandlerTest extends BaseHandlerTestCase {
         String endDateStr = "3004-08-20 08:00:00";
 
         List<PackageDto> list = handler.listAllPackages(admin, chan.getLabel(),
-                startDateStr);
+                startDateStr).toList();
         assertTrue(list.size() == 1);
 
         list = handler.listAllPackages(admin, chan.getLabel(), startDateStr,
-                endDateStr);
+                endDateStr).toList();
         assertTrue(list.size() == 1);
 
-        list = handler.listAllPackages(admin, chan.getLabel());
+        list = handler.listAllPackages(admin, chan.getLabel()).toList();
         assertTrue(list.size() == 1);
 
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         Date startDate = sdf.parse(startDateStr);
         Date endDate = sdf.parse(endDateStr);
 
-        list = handler.listAllPackages(admin, chan.getLabel(), startDate);
+        list = handler.listAllPackages(admin, chan.getLabel(), startDate).toList();
         assertTrue(list.size() == 1);
 
         list = handler.listAllPackages(admin, chan.getLabel(), startDate,
-                endDate);
+                endDate).toList();
         assertTrue(list.size() == 1);
     }
 }
@@ -18,6 +18,7 @@ import com.redhat.rhn.FaultException;
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.util.FileRange;
 import com.redhat.rhn.domain.rhnpackage.Package;
 import com.redhat.rhn.domain.rhnpackage.PackageArch;
 import com.redhat.rhn.domain.rhnpackage.PackageFactory;
@@ -27,6 +28,7 @@ import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.dto.PackageFileDto;
 import com.redhat.rhn.frontend.xmlrpc.BaseHandler;
 import com.redhat.rhn.frontend.xmlrpc.InvalidPackageArchException;
+import com.redhat.rhn.frontend.xmlrpc.InvalidParameterException;
 import com.redhat.rhn.frontend.xmlrpc.NoSuchPackageException;
 import com.redhat.rhn.frontend.xmlrpc.PackageDownloadException;
 import com.redhat.rhn.frontend.xmlrpc.PermissionCheckFailureException;
@@ -37,10 +39,7 @@ import com.redhat.rhn.manager.rhnpackage.PackageManager;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -57,7 +56,6 @@ import java.util.Map;
 public class PackagesHandler extends BaseHandler {
 
     private static Logger logger = Logger.getLogger(PackagesHandler.class);
-    private static float freeMemCoeff = 0.9f;
 
     /**
      * Get Details - Retrieves the details for a given package
@@ -562,32 +560,63 @@ public class PackagesHandler extends BaseHandler {
      * download a binary package
      * @param loggedInUser The current user
      * @param pid the package id
-     * @return  a byte array of the package
-     * @throws IOException if there is an exception
-
+     * @return the package file, streamed base64 encoded
+     *
      * @xmlrpc.doc Retrieve the package file associated with a package.
+     * The file is verified against the checksum of the package while it is
+     * sent; if it does not match, the response is cut short.
      * (Consider using <a href ="#getPackageUrl">packages.getPackageUrl</a>
+     * or <a href ="#getPackageRange">packages.getPackageRange</a>
      * for larger files.)
      * @xmlrpc.param #session_key()
      * @xmlrpc.param #param("int", "package_id")
      * @xmlrpc.returntype binary object - package file
      */
-    public byte[] getPackage(User loggedInUser, Integer pid) throws IOException {
+    public FileRange getPackage(User loggedInUser, Integer pid) {
         Package pkg = lookupPackage(loggedInUser, pid);
-        String path = Config.get().getString(ConfigDefaults.MOUNT_POINT) + "/" +
-            pkg.getPath();
-        File file = new File(path);
+        FileRange range = new FileRange(lookupPackageFile(pkg));
+        if (pkg.getChecksum() != null) {
+            range.setExpectedChecksum(pkg.getChecksum().getChecksumType().getLabel(),
+                    pkg.getChecksum().getChecksum());
+        }
+        return range;
+    }
 
-        if (file.length() > freeMemCoeff * Runtime.getRuntime().freeMemory()) {
-            throw new PackageDownloadException("api.package.download.toolarge");
+    /**
+     * download part of a binary package
+     * @param loggedInUser The current user
+     * @param pid the package id
+     * @param offset position of the first byte to download
+     * @param length number of bytes to download
+     * @return the bytes of the package file, streamed base64 encoded
+     *
+     * @xmlrpc.doc Retrieve a part of the package file associated with a
+     * package, to download large files in chunks or resume an interrupted
+     * download. Fewer bytes than requested are returned at the end of the
+     * file, none past it. Verify the assembled file against the checksum
+     * returned by <a href ="#getDetails">packages.getDetails</a>.
+     * @xmlrpc.param #session_key()
+     * @xmlrpc.param #param("int", "package_id")
+     * @xmlrpc.param #param_desc("int", "offset", "position of the first byte")
+     * @xmlrpc.param #param_desc("int", "length", "number of bytes")
+     * @xmlrpc.returntype binary object - part of the package file
+     */
+    public FileRange getPackageRange(User loggedInUser, Integer pid, Integer offset,
+            Integer length) {
+        if (offset < 0 || length < 0) {
+            throw new InvalidParameterException("offset and length must not be negative");
         }
+        Package pkg = lookupPackage(loggedInUser, pid);
+        return new FileRange(lookupPackageFile(pkg), offset, length);
+    }
 
-        byte[] toReturn = new byte[(int) file.length()];
-        BufferedInputStream br = new BufferedInputStream(new FileInputStream(file));
-        if (br.read(toReturn) != file.length()) {
+    private File lookupPackageFile(Package pkg) {
+        File file = new File(Config.get().getString(ConfigDefaults.MOUNT_POINT) + "/" +
+            pkg.getPath());
+        if (!file.isFile() || !file.canRead()) {
             throw new PackageDownloadException("api.package.download.ioerror");
         }
-        return toReturn;
+        return file;
     }
 
 }
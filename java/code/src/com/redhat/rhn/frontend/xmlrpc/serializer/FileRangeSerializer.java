@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.serializer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import redstone.xmlrpc.XmlRpcException;
+import redstone.xmlrpc.XmlRpcSerializer;
+
+import com.redhat.rhn.common.util.FileRange;
+
+/**
+ * Writes a FileRange as an XML-RPC base64 value, reading the file in small
+ * chunks while the response is written. Clients see the same binary object a
+ * byte array would be serialized to.
+ *
+ * @version $Rev$
+ */
+public class FileRangeSerializer extends RhnXmlRpcCustomSerializer {
+
+    /**
+     * {@inheritDoc}
+     */
+    public Class getSupportedClass() {
+        return FileRange.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void doSerialize(Object value, Writer output, XmlRpcSerializer serializer)
+        throws XmlRpcException, IOException {
+        output.write("<base64>");
+        ((FileRange) value).writeBase64(output);
+        output.write("</base64>");
+    }
+}
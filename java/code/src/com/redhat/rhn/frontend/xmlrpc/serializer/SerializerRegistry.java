@@ -117,6 +117,8 @@ public class SerializerRegistry {
         SERIALIZER_CLASSES.add(UserExtGroupSerializer.class);
         SERIALIZER_CLASSES.add(OrgUserExtGroupSerializer.class);
         SERIALIZER_CLASSES.add(PackageSourceOverviewSerializer.class);
+        SERIALIZER_CLASSES.add(StreamedResultSerializer.class);
+        SERIALIZER_CLASSES.add(FileRangeSerializer.class);
     }
 
     /**
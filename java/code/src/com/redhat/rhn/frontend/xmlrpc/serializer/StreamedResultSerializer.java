@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.serializer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import redstone.xmlrpc.XmlRpcException;
+import redstone.xmlrpc.XmlRpcSerializer;
+
+import com.redhat.rhn.common.db.datasource.RowHandler;
+import com.redhat.rhn.common.db.datasource.StreamedResult;
+
+/**
+ * Writes a StreamedResult as an XML-RPC array, serializing every row to the
+ * response as soon as it is read from the database. Neither the rows nor the
+ * rendered array are kept in memory.
+ *
+ * The rows are serialized like the elements of a List would be, so the
+ * documented return type of a handler does not change when it switches to a
+ * StreamedResult. If the query fails after the first rows were written the
+ * response is incomplete; the exception is still logged and reported.
+ *
+ * @version $Rev$
+ */
+public class StreamedResultSerializer extends RhnXmlRpcCustomSerializer {
+
+    /**
+     * {@inheritDoc}
+     */
+    public Class getSupportedClass() {
+        return StreamedResult.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void doSerialize(Object value, final Writer output,
+            final XmlRpcSerializer serializer) throws XmlRpcException, IOException {
+        StreamedResult<?> result = (StreamedResult<?>) value;
+
+        output.write("<array><data>");
+        result.stream(new RowHandler() {
+            public void handleRow(Object row) {
+                try {
+                    serializer.serialize(row, output);
+                }
+                catch (IOException e) {
+                    throw new XmlRpcException(e.getMessage(), e);
+                }
+            }
+        });
+        output.write("</data></array>");
+    }
+}
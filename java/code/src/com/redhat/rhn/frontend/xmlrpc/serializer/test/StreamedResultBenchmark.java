@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.serializer.test;
+
+import com.redhat.rhn.common.db.datasource.RowHandler;
+import com.redhat.rhn.common.db.datasource.StreamedResult;
+import com.redhat.rhn.frontend.dto.PackageDto;
+import com.redhat.rhn.frontend.xmlrpc.serializer.SerializerFactory;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import redstone.xmlrpc.XmlRpcCustomSerializer;
+import redstone.xmlrpc.XmlRpcSerializer;
+
+/**
+ * Times the serialization of a large result and samples the heap it takes,
+ * once with the rows read into a list first, once streamed row by row with
+ * StreamedResult. The rows are generated, the database is not used. Not part
+ * of the unit tests, run it by hand with the test classpath:
+ *
+ *   java com.redhat.rhn.frontend.xmlrpc.serializer.test.StreamedResultBenchmark [rows]
+ *
+ * The heap samples include garbage not collected yet, run it with a small heap,
+ * e.g. -Xmx256m, for them to show the rows held rather than the rows created.
+ *
+ * @version $Rev$
+ */
+public class StreamedResultBenchmark {
+
+    private static final int PASSES = 3;
+
+    private StreamedResultBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     * @param args number of rows, 100000 by default
+     * @throws Exception if serializing fails
+     */
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        XmlRpcSerializer serializer = new XmlRpcSerializer();
+        for (Object s : new SerializerFactory().getSerializers()) {
+            serializer.addCustomSerializer((XmlRpcCustomSerializer) s);
+        }
+
+        for (int pass = 0; pass < PASSES; pass++) {
+            long base = usedMemory();
+            long start = System.currentTimeMillis();
+            List<PackageDto> list = new ArrayList<PackageDto>(rows);
+            for (int i = 0; i < rows; i++) {
+                list.add(createPackage(i));
+            }
+            HeapSampler listOut = new HeapSampler();
+            serializer.serialize(list, listOut);
+            long listTime = System.currentTimeMillis() - start;
+            // the rows are not needed for the streamed pass
+            list = null;
+
+            base = Math.min(base, usedMemory());
+            start = System.currentTimeMillis();
+            HeapSampler streamOut = new HeapSampler();
+            serializer.serialize(new GeneratedResult(rows), streamOut);
+            long streamTime = System.currentTimeMillis() - start;
+
+            if (listOut.chars != streamOut.chars) {
+                throw new IllegalStateException("streamed result serializes differently");
+            }
+            System.out.println("Serializing " + rows + " rows: list " + listTime +
+                    " ms, peak " + toMb(listOut.peak - base) + " MB, streamed " +
+                    streamTime + " ms, peak " + toMb(streamOut.peak - base) + " MB");
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long toMb(long bytes) {
+        return Math.max(bytes, 0) / (1024 * 1024);
+    }
+
+    private static PackageDto createPackage(int i) {
+        PackageDto pkg = new PackageDto();
+        pkg.setId(new Long(i));
+        pkg.setName("package-" + i);
+        pkg.setVersion("1.0." + i);
+        pkg.setRelease("1.el7");
+        pkg.setEpoch("1");
+        pkg.setArchLabel("x86_64");
+        pkg.setChecksum("d41d8cd98f00b204e9800998ecf8427" + i);
+        pkg.setChecksumType("md5");
+        pkg.setLastModified("2018-01-01 00:00:00");
+        return pkg;
+    }
+
+    /**
+     * Generates the rows while they are streamed, as a database cursor would
+     * read them
+     */
+    private static class GeneratedResult extends StreamedResult<PackageDto> {
+        private final int rows;
+
+        GeneratedResult(int rowsIn) {
+            super(null, null);
+            rows = rowsIn;
+        }
+
+        public int stream(RowHandler handler) {
+            for (int i = 0; i < rows; i++) {
+                handler.handleRow(createPackage(i));
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Discards the output, counting it and sampling the used heap every
+     * 64k characters
+     */
+    private static class HeapSampler extends Writer {
+        private static final long SAMPLE = 64 * 1024;
+
+        private long chars;
+        private long peak;
+
+        public void write(char[] cbuf, int off, int len) {
+            long before = chars / SAMPLE;
+            chars += len;
+            if (chars / SAMPLE != before) {
+                Runtime runtime = Runtime.getRuntime();
+                peak = Math.max(peak, runtime.totalMemory() - runtime.freeMemory());
+            }
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+    }
+}
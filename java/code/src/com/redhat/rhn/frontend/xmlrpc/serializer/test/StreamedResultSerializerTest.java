@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.serializer.test;
+
+import com.redhat.rhn.common.db.datasource.RowHandler;
+import com.redhat.rhn.common.db.datasource.StreamedResult;
+import com.redhat.rhn.frontend.dto.PackageDto;
+import com.redhat.rhn.frontend.xmlrpc.serializer.SerializerFactory;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import redstone.xmlrpc.XmlRpcCustomSerializer;
+import redstone.xmlrpc.XmlRpcSerializer;
+
+/**
+ * StreamedResultSerializerTest
+ * @version $Rev$
+ */
+public class StreamedResultSerializerTest extends TestCase {
+
+    private XmlRpcSerializer serializer;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        serializer = new XmlRpcSerializer();
+        for (Object s : new SerializerFactory().getSerializers()) {
+            serializer.addCustomSerializer((XmlRpcCustomSerializer) s);
+        }
+    }
+
+    public void testSerializeEmpty() throws Exception {
+        List<PackageDto> rows = Collections.emptyList();
+        assertEquals("<value><array><data></data></array></value>",
+                serialize(new ListResult(rows)));
+    }
+
+    public void testSerializeSingleRow() throws Exception {
+        PackageDto pkg = createPackage(7);
+        String expected = "<value><array><data><value><struct>" +
+                member("name", "<string>package-7</string>") +
+                member("version", "<string>1.0.7</string>") +
+                member("release", "<string>1.el7</string>") +
+                member("epoch", "<string>1</string>") +
+                member("checksum", "<string>d41d8cd98f00b204e9800998ecf84277</string>") +
+                member("checksum_type", "<string>md5</string>") +
+                member("id", "<i4>7</i4>") +
+                member("arch_label", "<string>x86_64</string>") +
+                member("last_modified_date", "<string>2018-01-01 00:00:00</string>") +
+                member("last_modified", "<string>2018-01-01 00:00:00</string>") +
+                "</struct>\n</value></data></array></value>";
+
+        assertEquals(expected, serialize(new ListResult(Arrays.asList(pkg))));
+    }
+
+    public void testSerializeRowsLikeList() throws Exception {
+        List<PackageDto> rows = new ArrayList<PackageDto>();
+        for (int i = 0; i < 3; i++) {
+            rows.add(createPackage(i));
+        }
+
+        // the rows must be rendered exactly as the elements of a list
+        assertEquals(serialize(rows), serialize(new ListResult(rows)));
+    }
+
+    public void testSerializeEscapes() throws Exception {
+        PackageDto pkg = createPackage(1);
+        pkg.setName("a<b&c");
+        String result = serialize(new ListResult(Arrays.asList(pkg)));
+
+        assertTrue(result.contains("<string>a&lt;b&amp;c</string>"));
+        assertFalse(result.contains("a<b&c"));
+        assertEquals(serialize(Arrays.asList(pkg)), result);
+    }
+
+    private String serialize(Object value) throws Exception {
+        Writer output = new StringWriter();
+        serializer.serialize(value, output);
+        return output.toString();
+    }
+
+    private static String member(String name, String value) {
+        return "<member><name>" + name + "</name><value>" + value +
+                "</value></member>\n";
+    }
+
+    private static PackageDto createPackage(int i) {
+        PackageDto pkg = new PackageDto();
+        pkg.setId(new Long(i));
+        pkg.setName("package-" + i);
+        pkg.setVersion("1.0." + i);
+        pkg.setRelease("1.el7");
+        pkg.setEpoch("1");
+        pkg.setArchLabel("x86_64");
+        pkg.setChecksum("d41d8cd98f00b204e9800998ecf8427" + i);
+        pkg.setChecksumType("md5");
+        pkg.setLastModified("2018-01-01 00:00:00");
+        return pkg;
+    }
+
+    /**
+     * Streams the given rows instead of reading them from the database
+     */
+    private static class ListResult extends StreamedResult<PackageDto> {
+        private final List<PackageDto> rows;
+
+        ListResult(List<PackageDto> rowsIn) {
+            super(null, null);
+            rows = rowsIn;
+        }
+
+        public int stream(RowHandler handler) {
+            for (PackageDto row : rows) {
+                handler.handleRow(row);
+            }
+            return rows.size();
+        }
+    }
+}
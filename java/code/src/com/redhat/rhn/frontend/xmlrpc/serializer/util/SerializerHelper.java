@@ -23,11 +23,17 @@ import redstone.xmlrpc.XmlRpcSerializer;
 
 /**
  * SimpleSerializer
+ *
+ * By default the members are buffered until {@link #writeTo(Writer)}. Helpers
+ * created with a target writer write the members straight to it instead, which
+ * avoids copying every struct of a large result through a buffer.
  * @version $Rev$
  */
 public class SerializerHelper {
-    private Writer output = new StringWriter();
+    private Writer output;
     private XmlRpcSerializer serializer;
+    private boolean direct;
+    private boolean started;
 
     /**
      * Constructs a SerializerHelper
@@ -36,6 +42,21 @@ public class SerializerHelper {
      */
     public SerializerHelper(XmlRpcSerializer basicSerializer) {
         serializer = basicSerializer;
+        output = new StringWriter();
+    }
+
+    /**
+     * Constructs a SerializerHelper writing the members directly to the given
+     * writer. The struct must be finished with {@link #writeTo(Writer)} on the
+     * same writer and {@link #clear()} has no effect.
+     * @param basicSerializer serializer to convert basic objects to
+     * XMLRPC format
+     * @param out the writer the struct is written to
+     */
+    public SerializerHelper(XmlRpcSerializer basicSerializer, Writer out) {
+        serializer = basicSerializer;
+        output = out;
+        direct = true;
     }
 
     /**
@@ -54,6 +75,12 @@ public class SerializerHelper {
      * @throws IOException problem writing to given Writer
      */
     public void writeTo(Writer out) throws IOException {
+        if (direct) {
+            start();
+            out.write("</struct>");
+            out.write("\n");
+            return;
+        }
         out.write("<struct>");
         out.write(output.toString());
         out.write("</struct>");
@@ -65,8 +92,18 @@ public class SerializerHelper {
      * start over with a new snippet
      */
     public void clear() {
-        output = new StringWriter();
+        if (!direct) {
+            output = new StringWriter();
+        }
     }
+
+    private void start() throws IOException {
+        if (direct && !started) {
+            output.write("<struct>");
+            started = true;
+        }
+    }
+
     /**
      * Generates an XMLRPC <member>.
      * @param name Member name.
@@ -83,6 +120,7 @@ public class SerializerHelper {
         }
 
         try {
+            start();
             output.write("<member><name>");
             output.write(name);
             output.write("</name>");
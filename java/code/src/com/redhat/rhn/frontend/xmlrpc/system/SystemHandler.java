@@ -18,6 +18,7 @@ import com.redhat.rhn.FaultException;
 import com.redhat.rhn.common.client.ClientCertificate;
 import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.StreamedResult;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.localization.LocalizationService;
@@ -547,10 +548,9 @@ public class SystemHandler extends BaseHandler {
      *          $SystemOverviewSerializer
      *      #array_end()
      */
-    public Object[] listSystems(User loggedInUser) throws FaultException {
-        DataResult<SystemOverview> dr = SystemManager.systemListShort(loggedInUser, null);
-        dr.elaborate();
-        return dr.toArray();
+    public StreamedResult<SystemOverview> listSystems(User loggedInUser)
+        throws FaultException {
+        return SystemManager.streamSystemListShort(loggedInUser);
     }
 
     /**
@@ -1331,12 +1331,12 @@ public class SystemHandler extends BaseHandler {
      *          #struct_end()
      *      #array_end()
      */
-    public List<Map<String, Object>> listPackages(User loggedInUser, Integer sid)
-            throws FaultException {
+    public StreamedResult<Map<String, Object>> listPackages(User loggedInUser,
+            Integer sid) throws FaultException {
         // Get the logged in user and server
         Server server = lookupServer(loggedInUser, sid);
 
-        return SystemManager.installedPackages(server.getId(), false);
+        return SystemManager.streamInstalledPackages(server.getId(), false);
     }
 
     /**
@@ -5002,6 +5002,58 @@ public class SystemHandler extends BaseHandler {
         return action.getId();
     }
 
+    /**
+     * Sync the packages of many systems to a package profile.
+     *
+     * @param loggedInUser The current user
+     * @param serverIds Systems to apply package changes to.
+     * @param profileLabel the label of the package profile
+     * @param removeMissing leave out packages not available to the systems
+     * @param earliest Earliest occurrence of the actions.
+     * @return action ids, exception thrown otherwise
+     * @since 21
+     *
+     * @xmlrpc.doc Sync the packages of many systems to a package profile. The
+     * systems needing the same package changes share one action.
+     * @xmlrpc.param #param("string", "sessionKey")
+     * @xmlrpc.param #array_single("int", "serverId")
+     * @xmlrpc.param #param("string", "profileLabel")
+     * @xmlrpc.param #param_desc("boolean", "removeMissing", "Leave out packages
+     *                  not available in the channels of the systems, otherwise
+     *                  nothing is scheduled if any are missing.")
+     * @xmlrpc.param #param_desc("dateTime.iso8601", "date", "Date to schedule action for")
+     * @xmlrpc.returntype #array_single("int", "actionId")
+     */
+    public List<Long> scheduleSyncPackagesWithProfile(User loggedInUser,
+            List<Integer> serverIds, String profileLabel, Boolean removeMissing,
+            Date earliest) {
+        Profile profile = ProfileFactory.findByNameAndOrgId(profileLabel,
+                loggedInUser.getOrg().getId());
+        if (profile == null) {
+            throw new InvalidProfileLabelException(profileLabel);
+        }
+
+        List<Long> sids = new ArrayList<Long>();
+        for (Integer serverId : serverIds) {
+            Long sid = new Long(serverId.longValue());
+            try {
+                SystemManager.lookupByIdAndUser(sid, loggedInUser);
+            }
+            catch (LookupException e) {
+                throw new NoSuchSystemException();
+            }
+            sids.add(sid);
+        }
+
+        List<Long> actionIds = new ArrayList<Long>();
+        for (Action action : ProfileManager.syncSystemsToProfile(loggedInUser, sids,
+                profile.getId(), removeMissing ? ProfileManager.OPTION_REMOVE : null,
+                earliest)) {
+            actionIds.add(action.getId());
+        }
+        return actionIds;
+    }
+
     /**
      * Returns true if the two systems are compatible for a package sync.
      *
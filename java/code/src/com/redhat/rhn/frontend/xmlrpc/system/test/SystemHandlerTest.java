@@ -15,6 +15,7 @@
 package com.redhat.rhn.frontend.xmlrpc.system.test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -103,6 +104,7 @@ import com.redhat.rhn.frontend.xmlrpc.InvalidChannelLabelException;
 import com.redhat.rhn.frontend.xmlrpc.InvalidEntitlementException;
 import com.redhat.rhn.frontend.xmlrpc.InvalidErrataException;
 import com.redhat.rhn.frontend.xmlrpc.InvalidPackageException;
+import com.redhat.rhn.frontend.xmlrpc.InvalidProfileLabelException;
 import com.redhat.rhn.frontend.xmlrpc.MissingCapabilityException;
 import com.redhat.rhn.frontend.xmlrpc.NoSuchActionException;
 import com.redhat.rhn.frontend.xmlrpc.NoSuchPackageException;
@@ -684,7 +686,7 @@ public class SystemHandlerTest extends BaseHandlerTestCase {
 
         List<Map<String, Object>> result =
                 handler.listPackages(admin,
-                new Integer(server.getId().intValue()));
+                new Integer(server.getId().intValue())).toList();
 
         int numPackages2 = result.size();
 
@@ -1830,6 +1832,69 @@ public class SystemHandlerTest extends BaseHandlerTestCase {
                 new Date());
     }
 
+    public void testScheduleSyncPackagesWithProfile() throws Exception {
+
+        Channel testChannel = ChannelFactoryTest.createTestChannel(admin);
+
+        Package p1 = PackageTest.createTestPackage(admin.getOrg());
+        Package p2 = PackageTest.createTestPackage(admin.getOrg());
+
+        testChannel.addPackage(p1);
+        testChannel.addPackage(p2);
+        ChannelFactory.save(testChannel);
+
+        Server golden = ServerFactoryTest.createTestServer(admin, true,
+                ServerConstants.getServerGroupTypeEnterpriseEntitled());
+        golden.addChannel(testChannel);
+        PackageManagerTest.associateSystemToPackageWithArch(golden, p1);
+        ServerFactory.save(golden);
+
+        List<Integer> serverIds = new ArrayList<Integer>();
+        for (int i = 0; i < 2; i++) {
+            Server s = ServerFactoryTest.createTestServer(admin, true,
+                    ServerConstants.getServerGroupTypeEnterpriseEntitled());
+            s.addChannel(testChannel);
+            PackageManagerTest.associateSystemToPackageWithArch(s, p2);
+            ServerFactory.save(s);
+            serverIds.add(new Integer(s.getId().intValue()));
+        }
+
+        Profile profile = ProfileManager.createProfile(admin, golden,
+                "Profile test name" + TestUtils.randomString(), "desc");
+        ProfileManager.copyFrom(golden, profile);
+        TestUtils.flushAndEvict(profile);
+        String label = profile.getName();
+
+        // see testScheduleSyncPackagesWithSystem
+        commitAndCloseSession();
+        List<Long> actionIds = handler.scheduleSyncPackagesWithProfile(admin,
+                serverIds, label, Boolean.TRUE, new Date());
+
+        // both systems need the same changes, they share one action
+        assertEquals(1, actionIds.size());
+        Action action = ActionFactory.lookupById(actionIds.get(0));
+        assertEquals(2, action.getServerActions().size());
+
+        try {
+            handler.scheduleSyncPackagesWithProfile(admin, serverIds,
+                    "no such profile" + TestUtils.randomString(), Boolean.TRUE,
+                    new Date());
+            fail("invalid profile label accepted");
+        }
+        catch (InvalidProfileLabelException e) {
+            // expected
+        }
+
+        try {
+            handler.scheduleSyncPackagesWithProfile(admin,
+                    Arrays.asList(new Integer(-1)), label, Boolean.TRUE, new Date());
+            fail("unknown system accepted");
+        }
+        catch (NoSuchSystemException e) {
+            // expected
+        }
+    }
+
     public void testScheduleReboot() throws Exception {
         Server testServer = ServerFactoryTest.createTestServer(admin, true);
 
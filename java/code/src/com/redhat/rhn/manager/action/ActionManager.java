@@ -80,6 +80,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -1231,15 +1232,19 @@ public class ActionManager extends BaseManager {
      */
     public static void checkScriptingOnServers(List<Long> sids)
         throws MissingCapabilityException {
-        for (Long sid : sids) {
-            if (!SystemManager.clientCapable(sid, "script.run")) {
-                throw new MissingCapabilityException("script.run", sid);
-            }
+        if (sids.isEmpty()) {
+            return;
+        }
+        List<Long> incapable = SystemManager.listSystemsWithoutCapability(sids,
+                "script.run");
+        if (!incapable.isEmpty()) {
+            throw new MissingCapabilityException("script.run", incapable.get(0));
+        }
 
-            if (!SystemManager.hasEntitlement(sid, EntitlementManager.MANAGEMENT)) {
-                throw new MissingEntitlementException(
-                    EntitlementManager.MANAGEMENT.getHumanReadableLabel());
-            }
+        if (!SystemManager.listSystemsWithoutEntitlement(sids,
+                EntitlementManager.MANAGEMENT).isEmpty()) {
+            throw new MissingEntitlementException(
+                EntitlementManager.MANAGEMENT.getHumanReadableLabel());
         }
     }
 
@@ -1274,10 +1279,7 @@ public class ActionManager extends BaseManager {
      * @param serverIds server IDs
      */
     public static void scheduleForExecution(Action action, Set<Long> serverIds) {
-        Map<String, Object> params = new HashMap<String, Object>();
-        params.put("status_id", ActionFactory.STATUS_QUEUED.getId());
-        params.put("tries", REMAINING_TRIES);
-        params.put("parent_id", action.getId());
+        Map<String, Object> params = serverActionParams(action);
 
         WriteMode m = ModeFactory.getWriteMode("Action_queries", "insert_server_actions");
         List<Long> sidList = new ArrayList<Long>();
@@ -1285,6 +1287,39 @@ public class ActionManager extends BaseManager {
         m.executeUpdate(params, sidList);
     }
 
+    /**
+     * Schedules an action for execution on those of the given servers the user
+     * has access to. The rows are added to rhnServerAction with one
+     * INSERT ... SELECT, no Server objects are loaded.
+     * @param action the action
+     * @param user the user whose permissions apply
+     * @param serverIds server IDs
+     * @return the number of servers the action was scheduled for
+     */
+    public static int scheduleForExecution(Action action, User user,
+            Collection<Long> serverIds) {
+        if (serverIds.isEmpty()) {
+            return 0;
+        }
+        ActionFactory.getSession().flush();
+        Map<String, Object> params = serverActionParams(action);
+        params.put("user_id", user.getId());
+
+        WriteMode m = ModeFactory.getWriteMode("Action_queries",
+                "insert_server_actions_for_user");
+        // the same server must not be inserted twice
+        List<Long> sidList = new ArrayList<Long>(new LinkedHashSet<Long>(serverIds));
+        return m.executeUpdate(params, sidList);
+    }
+
+    private static Map<String, Object> serverActionParams(Action action) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("status_id", ActionFactory.STATUS_QUEUED.getId());
+        params.put("tries", REMAINING_TRIES);
+        params.put("parent_id", action.getId());
+        return params;
+    }
+
     /**
      * Creates, saves and returns a new Action
      * @param user the user who created this action
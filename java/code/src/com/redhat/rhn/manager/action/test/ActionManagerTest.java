@@ -497,6 +497,35 @@ public class ActionManagerTest extends RhnBaseTestCase {
         assertTrue(sa.getServer().equals(s));
     }
 
+    public void testScheduleForExecutionInBulk() throws Exception {
+        User usr = UserTestUtils.findNewUser("testUser",
+                "testOrg" + this.getClass().getSimpleName());
+        usr.addPermanentRole(RoleFactory.ORG_ADMIN);
+        Server s1 = ServerFactoryTest.createTestServer(usr, true);
+        Server s2 = ServerFactoryTest.createTestServer(usr, true);
+        User other = UserTestUtils.findNewUser("otherUser", "otherOrg");
+        Server foreign = ServerFactoryTest.createTestServer(other, true);
+
+        // servers the user can not see are skipped
+        List<Long> sids = new ArrayList<Long>();
+        sids.add(s1.getId());
+        sids.add(foreign.getId());
+        sids.add(s1.getId());
+        Action a = ActionManager.createAction(usr, ActionFactory.TYPE_REBOOT,
+                "bulk reboot", new Date());
+        assertEquals(1, ActionManager.scheduleForExecution(a, usr, sids));
+
+        sids.add(s2.getId());
+        Action b = ActionManager.createAction(usr, ActionFactory.TYPE_REBOOT,
+                "bulk reboot", new Date());
+        assertEquals(2, ActionManager.scheduleForExecution(b, usr, sids));
+        HibernateFactory.getSession().refresh(b);
+        assertEquals(2, b.getServerActions().size());
+        for (ServerAction sa : b.getServerActions()) {
+            assertEquals(ActionFactory.STATUS_QUEUED, sa.getStatus());
+        }
+    }
+
     public void testSchedulePackageRemoval() throws Exception {
         User user = UserTestUtils.findNewUser("testUser",
                 "testOrg" + this.getClass().getSimpleName());
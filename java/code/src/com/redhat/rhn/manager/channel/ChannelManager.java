@@ -20,6 +20,7 @@ import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.db.datasource.StreamedResult;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.LookupException;
@@ -44,6 +45,7 @@ import com.redhat.rhn.domain.rhnpackage.PackageEvr;
 import com.redhat.rhn.domain.role.RoleFactory;
 import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.user.User;
+import com.redhat.rhn.domain.user.UserPermissions;
 import com.redhat.rhn.frontend.action.channel.ssm.ChannelActionDAO;
 import com.redhat.rhn.frontend.dto.ChannelOverview;
 import com.redhat.rhn.frontend.dto.ChannelPerms;
@@ -681,6 +683,7 @@ public class ChannelManager extends BaseManager {
         params.put("cid", channel.getId());
         params.put("role_label", QRY_ROLE_SUBSCRIBE);
         m.executeUpdate(params);
+        UserPermissions.invalidateAll();
     }
 
     /**
@@ -700,6 +703,7 @@ public class ChannelManager extends BaseManager {
         params.put("cid", channel.getId());
         params.put("role_label", QRY_ROLE_SUBSCRIBE);
         m.executeUpdate(params);
+        UserPermissions.invalidateAll();
     }
 
     /**
@@ -719,6 +723,7 @@ public class ChannelManager extends BaseManager {
         params.put("cid", channel.getId());
         params.put("role_label", QRY_ROLE_MANAGE);
         m.executeUpdate(params);
+        UserPermissions.invalidateAll();
     }
 
     /**
@@ -738,6 +743,7 @@ public class ChannelManager extends BaseManager {
         params.put("cid", channel.getId());
         params.put("role_label", QRY_ROLE_MANAGE);
         m.executeUpdate(params);
+        UserPermissions.invalidateAll();
     }
 
     /**
@@ -799,6 +805,28 @@ public class ChannelManager extends BaseManager {
     private static boolean verifyChannelRole(User user, Long cid, String role)
         throws InvalidChannelRoleException {
 
+        String reason = checkChannelRole(user, cid, role);
+        if (reason != null) {
+            throw new InvalidChannelRoleException(reason);
+        }
+        return true;
+    }
+
+    /**
+     * Checks a channel role of a user. The result is remembered in the permission
+     * snapshot of the user, so repeated checks of the same channel (e.g. for every
+     * row of a list) do not hit the database.
+     * @param user The user in question
+     * @param cid The id for the channel in question
+     * @param role channel role label, QRY_ROLE_SUBSCRIBE or QRY_ROLE_MANAGE
+     * @return null if the user has the role, the reason why not otherwise
+     */
+    public static String checkChannelRole(User user, Long cid, String role) {
+        UserPermissions permissions = user.getPermissions();
+        if (permissions.isChannelRoleChecked(cid, role)) {
+            return permissions.getChannelRoleReason(cid, role);
+        }
+
         CallableMode m = ModeFactory.getCallableMode(
                 "Channel_queries", "verify_channel_role");
 
@@ -812,10 +840,8 @@ public class ChannelManager extends BaseManager {
         Map<String, Object> result = m.execute(inParams, outParams);
 
         String reason = (String) result.get("result");
-        if (reason != null) {
-            throw new InvalidChannelRoleException(reason);
-        }
-        return true;
+        permissions.setChannelRoleReason(cid, role, reason);
+        return reason;
     }
 
     /**
@@ -988,6 +1014,19 @@ public class ChannelManager extends BaseManager {
      */
     public static List<PackageDto> listAllPackages(Channel channel, String startDate,
             String endDate) {
+        return streamAllPackages(channel, startDate, endDate).toList();
+    }
+
+    /**
+     * Returns the packages in channel as a result read only when it is
+     * consumed, for channels too large to list in memory
+     * @param channel channel whose packages are sought
+     * @param startDate package start date, may be null
+     * @param endDate package end date, may be null
+     * @return packages in channel
+     */
+    public static StreamedResult<PackageDto> streamAllPackages(Channel channel,
+            String startDate, String endDate) {
         String mode = "all_packages_in_channel";
         Map<String, Object> params = new HashMap<String, Object>();
         params.put("cid", channel.getId());
@@ -1004,7 +1043,7 @@ public class ChannelManager extends BaseManager {
 
         SelectMode m = ModeFactory.getMode("Package_queries", mode);
 
-        return m.execute(params);
+        return new StreamedResult<PackageDto>(m, params);
     }
 
     /**
@@ -1031,6 +1070,19 @@ public class ChannelManager extends BaseManager {
      */
     public static List<PackageDto> listAllPackages(Channel channel, Date startDate,
             Date endDate) {
+        return streamAllPackages(channel, startDate, endDate).toList();
+    }
+
+    /**
+     * Returns the packages in channel as a result read only when it is
+     * consumed, for channels too large to list in memory
+     * @param channel channel whose packages are sought
+     * @param startDate package start date, may be null
+     * @param endDate package end date, may be null
+     * @return packages in channel
+     */
+    public static StreamedResult<PackageDto> streamAllPackages(Channel channel,
+            Date startDate, Date endDate) {
 
         // convert the start and end dates to a string representation
         // that can be used in the db query...
@@ -1046,7 +1098,7 @@ public class ChannelManager extends BaseManager {
             endDateStr = sdf.format(endDate);
         }
 
-        return listAllPackages(channel, startDateStr, endDateStr);
+        return streamAllPackages(channel, startDateStr, endDateStr);
     }
 
     /**
@@ -2578,6 +2630,50 @@ public class ChannelManager extends BaseManager {
         return m.executeUpdate(params);
     }
 
+    /**
+     * Merge all packages of one channel into another one with a single
+     * INSERT ... SELECT, skipping packages the target channel already has.
+     * Unless this is a dry run the newest package cache of the target channel
+     * is refreshed and the errata cache is updated for the merged packages.
+     * Both channels are locked until the transaction ends, so that the
+     * returned ids are the packages the INSERT ... SELECT merges.
+     * @param from channel to take the packages from
+     * @param to channel to merge the packages into
+     * @param dryRun if true nothing is merged, only the ids are returned
+     * @return ids of the packages that were (or would be) merged
+     */
+    public static List<Long> mergePackages(Channel from, Channel to, boolean dryRun) {
+        Map<String, Long> params = new HashMap<String, Long>();
+        params.put("from", from.getId());
+        params.put("to", to.getId());
+
+        if (!dryRun) {
+            ModeFactory.getMode("Channel_queries", "lock_channel_for_merge")
+                .execute(params);
+        }
+
+        SelectMode sm = ModeFactory.getMode("Channel_queries",
+                "channel_packages_to_merge");
+        DataResult<Map<String, Object>> dr = sm.execute(params);
+        List<Long> pids = new ArrayList<Long>(dr.size());
+        for (Map<String, Object> row : dr) {
+            pids.add((Long) row.get("id"));
+        }
+        if (dryRun || pids.isEmpty()) {
+            return pids;
+        }
+
+        WriteMode m = ModeFactory.getWriteMode("Channel_queries",
+                "merge_channel_packages");
+        m.executeUpdate(params);
+
+        refreshWithNewestPackages(to, "java::mergePackages");
+        List<Long> cids = new ArrayList<Long>();
+        cids.add(to.getId());
+        ErrataCacheManager.insertCacheForChannelPackagesAsync(cids, pids);
+        return pids;
+    }
+
     /**
      * Return the channel id of the "most likely" parent if we're cloning this
      * channel. "Most likely" is determined by:
@@ -15,7 +15,7 @@
 
 package com.redhat.rhn.manager.channel;
 
-import com.redhat.rhn.common.util.RpmVersionComparator;
+import com.redhat.rhn.common.util.RpmVersionRanks;
 import com.redhat.rhn.domain.rhnpackage.PackageEvr;
 import com.redhat.rhn.frontend.dto.EssentialChannelDto;
 
@@ -81,8 +81,8 @@ public class EusReleaseComparator implements Comparator<EssentialChannelDto> {
         rhelRelease2 = ChannelManager.normalizeRhelReleaseForMapping(rhelVersion,
                 rhelRelease2);
 
-        RpmVersionComparator cmp = new RpmVersionComparator();
-        return cmp.compare(StringUtils.defaultString(rhelRelease1), StringUtils.defaultString(rhelRelease2));
+        return RpmVersionRanks.getInstance().compare(StringUtils.defaultString(rhelRelease1),
+                StringUtils.defaultString(rhelRelease2));
     }
 
     /**
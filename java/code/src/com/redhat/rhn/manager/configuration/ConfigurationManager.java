@@ -70,6 +70,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * ConfigurationManager
@@ -505,6 +506,66 @@ public class ConfigurationManager extends BaseManager {
         return dr;
     }
 
+    /**
+     * Finds the deployable revisions of all files of the given servers in one
+     * query. For every file name the revision is picked the same way
+     * {@link #listAllFileNamesForSystem(Server)} does: a local override wins,
+     * otherwise the file of the highest ranked config channel is used.
+     * @param sids ids of the servers
+     * @return map of server id to the sorted ids of its deployable revisions;
+     * servers without any files are not included
+     */
+    public Map<Long, Set<Long>> listLatestRevisionsForSystems(List<Long> sids) {
+        SelectMode m = ModeFactory.getMode("config_queries",
+                "latest_revisions_for_systems");
+        DataResult<Map<String, Object>> rows = m.execute(sids);
+
+        Map<Long, Set<Long>> result = new HashMap<Long, Set<Long>>();
+        int i = 0;
+        while (i < rows.size()) {
+            // rows are ordered by server and file name, resolve each group
+            Map<String, Object> first = rows.get(i);
+            Long sid = (Long) first.get("server_id");
+            Long cfnid = (Long) first.get("config_file_name_id");
+            Long override = null;
+            Long best = null;
+            Long bestPosition = null;
+            boolean deployable = false;
+            for (; i < rows.size(); i++) {
+                Map<String, Object> row = rows.get(i);
+                if (!sid.equals(row.get("server_id")) ||
+                        !cfnid.equals(row.get("config_file_name_id"))) {
+                    break;
+                }
+                String type = (String) row.get("config_channel_type");
+                Long position = (Long) row.get("position");
+                Long crid = (Long) row.get("config_revision_id");
+                if (!ConfigChannelType.SANDBOX.equals(type)) {
+                    deployable = true;
+                }
+                if (ConfigChannelType.LOCAL.equals(type)) {
+                    override = crid;
+                }
+                else if (position != null &&
+                        (bestPosition == null || position < bestPosition)) {
+                    best = crid;
+                    bestPosition = position;
+                }
+            }
+            Long crid = (override != null) ? override : best;
+            if (!deployable || crid == null) {
+                continue;
+            }
+            Set<Long> revisions = result.get(sid);
+            if (revisions == null) {
+                revisions = new TreeSet<Long>();
+                result.put(sid, revisions);
+            }
+            revisions.add(crid);
+        }
+        return result;
+    }
+
     /**
      * Lists the file names to which the given server is subscribed
      * Finds the deployable revisions for each file name.
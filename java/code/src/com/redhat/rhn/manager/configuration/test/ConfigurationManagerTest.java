@@ -1295,6 +1295,52 @@ public class ConfigurationManagerTest extends RhnBaseTestCase {
         }
     }
 
+    public void testListLatestRevisionsForSystems() throws Exception {
+        ConfigChannel gcc1 = ConfigTestUtils.createConfigChannel(user.getOrg(),
+                ConfigChannelType.global());
+        ConfigChannel gcc2 = ConfigTestUtils.createConfigChannel(user.getOrg(),
+                ConfigChannelType.global());
+        Server srv1 = ServerFactoryTest.createTestServer(user, true);
+        srv1.subscribe(gcc1);
+        srv1.subscribe(gcc2);
+        Server srv2 = ServerFactoryTest.createTestServer(user, true);
+
+        // same path in both channels, the higher ranked channel wins
+        ConfigFile g1f1 = gcc1.createConfigFile(ConfigFileState.normal(), "/etc/foo1");
+        ConfigRevision rev1 = ConfigTestUtils.createConfigRevision(g1f1);
+        ConfigurationFactory.commit(gcc1);
+        ConfigFile g2f1 = gcc2.createConfigFile(ConfigFileState.normal(), "/etc/foo1");
+        ConfigTestUtils.createConfigRevision(g2f1);
+        ConfigFile g2f2 = gcc2.createConfigFile(ConfigFileState.normal(), "/etc/foo2");
+        ConfigRevision rev2 = ConfigTestUtils.createConfigRevision(g2f2);
+        ConfigurationFactory.commit(gcc2);
+        ServerFactory.save(srv1);
+
+        List<Long> sids = new ArrayList<Long>();
+        sids.add(srv1.getId());
+        sids.add(srv2.getId());
+        Map<Long, Set<Long>> revisions = cm.listLatestRevisionsForSystems(sids);
+        assertEquals(1, revisions.size());
+        Set<Long> expected = new HashSet<Long>();
+        expected.add(rev1.getId());
+        expected.add(rev2.getId());
+        assertEquals(expected, revisions.get(srv1.getId()));
+
+        // a local override wins over any channel
+        ConfigChannel local = ConfigTestUtils.createConfigChannel(user.getOrg(),
+                ConfigChannelType.local());
+        srv1.setLocalOverride(local);
+        ConfigFile lf2 = local.createConfigFile(ConfigFileState.normal(), "/etc/foo2");
+        ConfigRevision rev3 = ConfigTestUtils.createConfigRevision(lf2);
+        ConfigurationFactory.commit(local);
+        ServerFactory.save(srv1);
+
+        revisions = cm.listLatestRevisionsForSystems(sids);
+        expected.remove(rev2.getId());
+        expected.add(rev3.getId());
+        assertEquals(expected, revisions.get(srv1.getId()));
+    }
+
     public void testCopyFile() throws Exception {
         // Create  global config channels
         ConfigChannel gcc1 = ConfigTestUtils.createConfigChannel(user.getOrg(),
@@ -18,7 +18,6 @@
 package com.redhat.rhn.manager.errata;
 
 import com.redhat.rhn.common.conf.Config;
-import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
@@ -43,7 +42,6 @@ import com.redhat.rhn.domain.org.Org;
 import com.redhat.rhn.domain.rhnset.RhnSet;
 import com.redhat.rhn.domain.role.RoleFactory;
 import com.redhat.rhn.domain.server.ManagedServerGroup;
-import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.action.channel.manage.PublishErrataHelper;
 import com.redhat.rhn.frontend.dto.CVE;
@@ -55,7 +53,9 @@ import com.redhat.rhn.frontend.dto.PackageOverview;
 import com.redhat.rhn.frontend.dto.SystemOverview;
 import com.redhat.rhn.frontend.events.CloneErrataEvent;
 import com.redhat.rhn.frontend.events.NewCloneErrataEvent;
+import com.redhat.rhn.frontend.integration.SearchServerClient;
 import com.redhat.rhn.frontend.listview.PageControl;
+import com.redhat.rhn.frontend.xmlrpc.InvalidChannelException;
 import com.redhat.rhn.frontend.xmlrpc.InvalidErrataException;
 import com.redhat.rhn.frontend.xmlrpc.InvalidParameterException;
 import com.redhat.rhn.manager.BaseManager;
@@ -65,6 +65,7 @@ import com.redhat.rhn.manager.errata.cache.ErrataCacheManager;
 import com.redhat.rhn.manager.rhnset.RhnSetDecl;
 import com.redhat.rhn.manager.rhnset.RhnSetManager;
 import com.redhat.rhn.manager.system.SystemManager;
+import com.redhat.rhn.manager.user.UserManager;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -77,12 +78,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcFault;
 
 /**
@@ -96,6 +97,11 @@ public class ErrataManager extends BaseManager {
     private static Logger log = Logger.getLogger(ErrataManager.class);
     public static final String DATE_FORMAT_PARSE_STRING = "yyyy-MM-dd";
     public static final long MAX_ADVISORY_RELEASE = 9999;
+    private static final int BULK_PUBLISH_BATCH = 500;
+    // which errata the bulk publish pipeline replaces by clones of the org
+    private static final int CLONE_NONE = 0;
+    private static final int CLONE_VENDOR = 1;
+    private static final int CLONE_ALL = 2;
 
     private ErrataManager() {
     }
@@ -1114,43 +1120,25 @@ public class ErrataManager extends BaseManager {
     }
 
     /**
-     * Lists errata present in both channels
-     * @param user user
-     * @param channelFrom channel1
-     * @param channelTo channel2
-     * @return list of errata
+     * Lists ids of errata from channelFrom that can be merged into channelTo,
+     * i.e. that are neither published in channelTo already, nor cloned from the
+     * same original as errata in channelTo, nor have clones in channelTo.
+     * @param channelFrom channel to merge errata from
+     * @param channelTo channel to merge errata into
+     * @return set of errata ids
      */
-    public static List listSamePublishedInChannels(User user,
-            Channel channelFrom, Channel channelTo) {
-        return ErrataFactory.listSamePublishedInChannels(user.getOrg(),
-                channelFrom, channelTo);
-    }
-
-    /**
-     * Lists errata from channelFrom, that are cloned from the same original
-     * as errata in channelTo
-     * @param user user
-     * @param channelFrom channel1
-     * @param channelTo channel2
-     * @return list of errata
-     */
-    public static List listPublishedBrothersInChannels(User user,
-            Channel channelFrom, Channel channelTo) {
-        return ErrataFactory.listPublishedBrothersInChannels(user.getOrg(),
-                channelFrom, channelTo);
-    }
-
-    /**
-     * Lists errata from channelFrom, that have clones in channelTo
-     * @param user user
-     * @param channelFrom channel1
-     * @param channelTo channel2
-     * @return list of errata
-     */
-    public static List listPublishedClonesInChannels(User user,
-            Channel channelFrom, Channel channelTo) {
-        return ErrataFactory.listPublishedClonesInChannels(user.getOrg(),
-                channelFrom, channelTo);
+    public static Set<Long> listMergeableErrataIds(Channel channelFrom,
+            Channel channelTo) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("from", channelFrom.getId());
+        params.put("to", channelTo.getId());
+        SelectMode m = ModeFactory.getMode("Errata_queries", "errata_to_merge");
+        DataResult<Map<String, Object>> dr = m.execute(params);
+        Set<Long> ids = new HashSet<Long>();
+        for (Map<String, Object> row : dr) {
+            ids.add((Long) row.get("id"));
+        }
+        return ids;
     }
 
     /**
@@ -1240,6 +1228,92 @@ public class ErrataManager extends BaseManager {
         return m.execute(params);
     }
 
+    /**
+     * Finds the packages contained in many errata that apply to a channel
+     * @param channelId the channel to look in
+     * @param errataIds the errata to look for packs with
+     * @return map of erratum id to its PackageDto objects ordered by id; errata
+     * without packages in the channel are not included
+     */
+    public static Map<Long, List<PackageDto>> lookupPacksFromErrataForChannel(
+            Long channelId, List<Long> errataIds) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("cid", channelId);
+        SelectMode m = ModeFactory.getMode("Errata_queries",
+                "find_packages_for_errata_in_channel");
+        DataResult<PackageDto> packages = m.execute(params, errataIds);
+        Map<Long, List<PackageDto>> result = new HashMap<Long, List<PackageDto>>();
+        for (PackageDto pkg : packages) {
+            List<PackageDto> list = result.get(pkg.getErrataId());
+            if (list == null) {
+                list = new ArrayList<PackageDto>();
+                result.put(pkg.getErrataId(), list);
+            }
+            list.add(pkg);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the bugs associated with many errata
+     * @param errataIds the errata to look for
+     * @return map of erratum id to its Bug (dto) objects; errata without bugs
+     * are not included
+     */
+    public static Map<Long, List<com.redhat.rhn.frontend.dto.Bug>> lookupBugsForErrata(
+            List<Long> errataIds) {
+        SelectMode m = ModeFactory.getMode("Errata_queries", "find_bugs_for_errata");
+        DataResult<com.redhat.rhn.frontend.dto.Bug> bugs = m.execute(errataIds);
+        Map<Long, List<com.redhat.rhn.frontend.dto.Bug>> result =
+                new HashMap<Long, List<com.redhat.rhn.frontend.dto.Bug>>();
+        for (com.redhat.rhn.frontend.dto.Bug bug : bugs) {
+            List<com.redhat.rhn.frontend.dto.Bug> list = result.get(bug.getErrataId());
+            if (list == null) {
+                list = new ArrayList<com.redhat.rhn.frontend.dto.Bug>();
+                result.put(bug.getErrataId(), list);
+            }
+            list.add(bug);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the cve names associated with many errata
+     * @param errataIds the errata to look for
+     * @return map of erratum id to its cve names; errata without cves are not
+     * included
+     */
+    public static Map<Long, List<String>> lookupCvesForErrata(List<Long> errataIds) {
+        SelectMode m = ModeFactory.getMode("Errata_queries", "find_cves_for_errata");
+        return groupByErrata(m.execute(errataIds), "name");
+    }
+
+    /**
+     * Finds the keywords associated with many errata
+     * @param errataIds the errata to look for
+     * @return map of erratum id to its keywords; errata without keywords are
+     * not included
+     */
+    public static Map<Long, List<String>> lookupKeywordsForErrata(List<Long> errataIds) {
+        SelectMode m = ModeFactory.getMode("Errata_queries", "find_keywords_for_errata");
+        return groupByErrata(m.execute(errataIds), "keyword");
+    }
+
+    private static Map<Long, List<String>> groupByErrata(
+            List<Map<String, Object>> rows, String column) {
+        Map<Long, List<String>> result = new HashMap<Long, List<String>>();
+        for (Map<String, Object> row : rows) {
+            Long eid = (Long) row.get("errata_id");
+            List<String> list = result.get(eid);
+            if (list == null) {
+                list = new ArrayList<String>();
+                result.put(eid, list);
+            }
+            list.add((String) row.get(column));
+        }
+        return result;
+    }
+
     /**
      * Finds the bugs associated with an erratum
      * @param erratumId the erratum to look for
@@ -1426,31 +1500,22 @@ public class ErrataManager extends BaseManager {
      */
     public static Object[] cloneErrataApi(Channel chan, Collection<Errata> errata,
             User user, boolean inheritPackages, boolean performPostActions) {
-        List<Errata> errataToPublish = new ArrayList<Errata>();
-        // For each errata look up existing clones, or manually clone it
+        List<Long> eids = new ArrayList<Long>();
         for (Errata toClone : errata) {
-            if (toClone.isCloned()) {
-                errataToPublish.add(toClone);
-            }
-            else {
-                List<Errata> clones = ErrataManager.lookupPublishedByOriginal(
-                        user, toClone);
-                if (clones.isEmpty()) {
-                    errataToPublish.add(PublishErrataHelper.cloneErrataFast(
-                            toClone, user.getOrg()));
-                }
-                else {
-                    errataToPublish.add(clones.get(0));
-                }
-            }
+            eids.add(toClone.getId());
         }
-
-        List<Errata> published = ErrataFactory.publishToChannel(errataToPublish, chan,
-                user, inheritPackages, performPostActions);
-        for (Errata e : published) {
-            ErrataFactory.save(e);
+        // existing clones of the org are reused, everything else is cloned
+        List<Long> published = publishErrataBulk(chan, eids, user, CLONE_ALL, true,
+                inheritPackages, performPostActions);
+
+        List<Errata> result = new ArrayList<Errata>();
+        for (Long eid : published) {
+            Errata e = ErrataFactory.lookupById(eid);
+            // the channels of errata already loaded were changed by the bulk inserts
+            HibernateFactory.getSession().refresh(e);
+            result.add(e);
         }
-        return published.toArray();
+        return result.toArray();
     }
 
     /**
@@ -1532,12 +1597,257 @@ public class ErrataManager extends BaseManager {
             User user, boolean inheritPackages) {
         Logger.getLogger(ErrataManager.class).debug("Cloning");
         ChannelFactory.lock(chan);
-        for (long eid : errata) {
-            NewCloneErrataEvent neve = new NewCloneErrataEvent(chan, eid, user,
-                    inheritPackages);
-            neve.register();
-            MessageQueue.publish(neve);
+        NewCloneErrataEvent neve = new NewCloneErrataEvent(chan, errata, user,
+                inheritPackages);
+        neve.register();
+        MessageQueue.publish(neve);
+    }
+
+    /**
+     * Clones errata as necessary and publishes them to a channel together with
+     * their packages. Works like cloneErrataApi, but on errata ids and with set
+     * based queries, so that thousands of errata can be promoted at once.
+     * @param chan the channel
+     * @param errataIds ids of the errata to clone
+     * @param user the user doing the push
+     * @param inheritPackages push the errata packages of the original channel
+     * instead of the ones matching packages already in the channel
+     * @return ids of the errata published into the channel
+     */
+    public static List<Long> cloneErrataToChannel(Channel chan, List<Long> errataIds,
+            User user, boolean inheritPackages) {
+        if (!UserManager.verifyChannelAdmin(user, chan)) {
+            throw new PermissionException("User: " + user.getLogin() +
+                    " does not have channel admin access to channel: " +
+                    chan.getLabel());
+        }
+        return publishErrataBulk(chan, errataIds, user, CLONE_ALL, true,
+                inheritPackages, true);
+    }
+
+    /**
+     * Publishes errata to a channel as they are, together with their packages,
+     * with the set based queries of the bulk pipeline.
+     * @param chan the channel
+     * @param errataIds ids of published errata
+     * @param user the user doing the push
+     * @param inheritPackages push the errata packages of the original channel
+     * instead of the ones matching packages already in the channel
+     * @param performPostActions false to leave refreshing the newest package
+     * cache and scheduling the repodata regeneration to the caller
+     */
+    public static void publishErrataWithPackages(Channel chan, List<Long> errataIds,
+            User user, boolean inheritPackages, boolean performPostActions) {
+        publishErrataBulk(chan, errataIds, user, CLONE_NONE, true, inheritPackages,
+                performPostActions);
+    }
+
+    /**
+     * Publishes errata to a channel, cloning vendor errata as necessary. Does not
+     * do any package push.
+     * @param chan the channel
+     * @param errataIds ids of the errata to publish
+     * @param user the user doing the push
+     * @return ids of the errata published into the channel
+     */
+    public static List<Long> publishErrataToChannel(Channel chan,
+            Collection<Long> errataIds, User user) {
+        return publishErrataBulk(chan, new ArrayList<Long>(errataIds), user,
+                CLONE_VENDOR, false, false, true);
+    }
+
+    /**
+     * Bulk publish pipeline: errata are handled in batches, each batch is
+     * linked to the channel, its packages and files with a few insert ... select
+     * statements. Newest packages, errata cache and repodata are refreshed once
+     * at the end, the first two only if postActions is set.
+     */
+    private static List<Long> publishErrataBulk(Channel chan, List<Long> errataIds,
+            User user, int cloneMode, boolean pushPackages, boolean inheritPackages,
+            boolean postActions) {
+        // the statements below work on the rows in the database
+        HibernateFactory.getSession().flush();
+        List<Channel> sources = new ArrayList<Channel>();
+        if (pushPackages && inheritPackages) {
+            if (!chan.isCloned()) {
+                throw new InvalidChannelException("Cloned channel expected: " +
+                        chan.getLabel());
+            }
+            // see BZ 805714, if we are a clone of a clone the 1st clone
+            // may not have the errata we want
+            Channel original = chan.getOriginal();
+            sources.add(original);
+            while (original.isCloned()) {
+                original = ChannelFactory.lookupOriginalChannel(original);
+                sources.add(original);
+            }
+        }
+
+        // let's avoid deadlocks please
+        ChannelFactory.lock(chan);
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("cid", chan.getId());
+        Set<Long> published = new LinkedHashSet<Long>();
+        for (int i = 0; i < errataIds.size(); i += BULK_PUBLISH_BATCH) {
+            List<Long> batch = errataIds.subList(i,
+                    Math.min(i + BULK_PUBLISH_BATCH, errataIds.size()));
+            List<Long> eids;
+            if (cloneMode == CLONE_NONE) {
+                eids = new ArrayList<Long>(new LinkedHashSet<Long>(batch));
+            }
+            else {
+                eids = new ArrayList<Long>(resolveErrataToPublish(batch,
+                        user.getOrg(), cloneMode == CLONE_ALL));
+            }
+
+            bulkUpdate("bulk_add_errata_to_channel", params, eids);
+            if (pushPackages) {
+                if (inheritPackages) {
+                    pushInheritedErrataPackages(chan, sources, eids, user);
+                }
+                else {
+                    Map<String, Object> pushParams = new HashMap<String, Object>();
+                    pushParams.put("cid", chan.getId());
+                    pushParams.put("org_id", user.getOrg().getId());
+                    bulkUpdate("bulk_add_errata_packages_to_channel", pushParams, eids);
+                }
+                bulkUpdate("bulk_create_errata_files", params, eids);
+                bulkUpdate("bulk_link_errata_file_packages", params, eids);
+                bulkUpdate("bulk_add_errata_files_to_channel", params, eids);
+            }
+
+            // for things like errata email and auto errata updates
+            bulkUpdate("bulk_clear_errata_channel_notifications", params, eids);
+            Map<String, Object> queueParams = new HashMap<String, Object>();
+            queueParams.put("cid", chan.getId());
+            queueParams.put("datetime", new java.sql.Date(new Date().getTime()));
+            bulkUpdate("bulk_insert_errata_channel_notifications", queueParams, eids);
+
+            published.addAll(eids);
+            log.info("Published " + Math.min(i + BULK_PUBLISH_BATCH, errataIds.size()) +
+                    " of " + errataIds.size() + " errata to channel " + chan.getLabel());
+        }
+
+        if (!published.isEmpty()) {
+            HibernateFactory.getSession().refresh(chan);
+            List<Long> cids = new ArrayList<Long>();
+            cids.add(chan.getId());
+            ErrataCacheManager.updateCacheForChannelsAsync(cids);
+
+            if (postActions) {
+                if (pushPackages) {
+                    ChannelFactory.refreshNewestPackageCache(chan.getId(),
+                            "java::publishErrataBulk");
+                }
+                // Trigger channel repodata re-generation
+                chan.setLastModified(new Date());
+                ChannelFactory.save(chan);
+                ChannelManager.queueChannelChange(chan.getLabel(),
+                        "java::publishErrataBulk", "Errata published");
+            }
+        }
+        return new ArrayList<Long>(published);
+    }
+
+    /**
+     * Maps errata ids to the ids of the errata to publish: clones and (unless
+     * cloneCustom is set) custom errata are published as they are, other errata
+     * are replaced by an existing clone of the org or a new one.
+     */
+    private static Set<Long> resolveErrataToPublish(List<Long> eids, Org org,
+            boolean cloneCustom) {
+        SelectMode m = ModeFactory.getMode("Errata_queries", "errata_clone_info");
+        DataResult<Map<String, Object>> info = m.execute(eids);
+
+        List<Long> toClone = new ArrayList<Long>();
+        Set<Long> asIs = new HashSet<Long>();
+        for (Map<String, Object> row : info) {
+            Long eid = (Long) row.get("id");
+            boolean cloned = ((Number) row.get("cloned")).intValue() == 1;
+            if (cloned || (!cloneCustom && row.get("org_id") != null)) {
+                asIs.add(eid);
+            }
+            else {
+                toClone.add(eid);
+            }
+        }
+
+        Map<Long, Long> clones = new HashMap<Long, Long>();
+        if (!toClone.isEmpty()) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("org_id", org.getId());
+            m = ModeFactory.getMode("Errata_queries", "published_clones_by_original");
+            DataResult<Map<String, Object>> existing = m.execute(params, toClone);
+            for (Map<String, Object> row : existing) {
+                Long original = (Long) row.get("original_id");
+                if (!clones.containsKey(original)) {
+                    clones.put(original, (Long) row.get("id"));
+                }
+            }
+        }
+
+        Set<Long> result = new LinkedHashSet<Long>();
+        for (Long eid : eids) {
+            if (asIs.contains(eid)) {
+                result.add(eid);
+            }
+            else if (clones.containsKey(eid)) {
+                result.add(clones.get(eid));
+            }
+            else if (toClone.contains(eid)) {
+                Long cloneId = PublishErrataHelper.cloneErrataFaster(eid, org);
+                clones.put(eid, cloneId);
+                result.add(cloneId);
+            }
         }
+        return result;
+    }
+
+    /**
+     * Pushes the errata packages present in the original channel. Errata missing
+     * from the original channel take the packages from the first original
+     * further up the clone chain that has them.
+     */
+    private static void pushInheritedErrataPackages(Channel chan, List<Channel> sources,
+            List<Long> eids, User user) {
+        SelectMode m = ModeFactory.getMode("Errata_queries", "channel_errata_ids");
+        List<Long> remaining = new ArrayList<Long>(eids);
+        for (int i = 0; i < sources.size() && !remaining.isEmpty(); i++) {
+            Channel source = sources.get(i);
+            List<Long> fromSource;
+            if (i == sources.size() - 1) {
+                fromSource = remaining;
+            }
+            else {
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put("cid", source.getId());
+                DataResult<Map<String, Object>> rows = m.execute(params, remaining);
+                fromSource = new ArrayList<Long>();
+                for (Map<String, Object> row : rows) {
+                    fromSource.add((Long) row.get("errata_id"));
+                }
+            }
+            if (!fromSource.isEmpty()) {
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put("cid", chan.getId());
+                params.put("from_cid", source.getId());
+                params.put("org_id", user.getOrg().getId());
+                bulkUpdate("bulk_add_inherited_errata_packages_to_channel", params,
+                        fromSource);
+                remaining = new ArrayList<Long>(remaining);
+                remaining.removeAll(fromSource);
+            }
+        }
+    }
+
+    private static int bulkUpdate(String mode, Map<String, Object> params,
+            List<Long> eids) {
+        if (eids.isEmpty()) {
+            return 0;
+        }
+        WriteMode m = ModeFactory.getWriteMode("Errata_queries", mode);
+        return m.executeUpdate(params, eids);
     }
 
     /**
@@ -1634,8 +1944,7 @@ public class ErrataManager extends BaseManager {
         boolean flag = false;
 
         try {
-            XmlRpcClient client = new XmlRpcClient(
-                    ConfigDefaults.get().getSearchServerUrl(), true);
+            SearchServerClient client = SearchServerClient.get();
             List args = new ArrayList();
             args.add("errata");
             Boolean rc = (Boolean)client.invoke("admin.updateIndex", args);
@@ -1733,32 +2042,31 @@ public class ErrataManager extends BaseManager {
         ActionChain actionChain, List<Long> serverIds, boolean onlyRelevant) {
 
         // not all errata applies to all systems, so we will filter them
-        Map<Long, List<Server>> serversForErrata = new HashMap<Long, List<Server>>();
+        Map<Long, List<Long>> serversForErrata = new HashMap<Long, List<Long>>();
 
         // Prepare empty list of systems for each errata
         for (Object errataIdObject : errataIds) {
             // HACK: ugly conversion needed because in some cases errataIds contains
             // Integers, in other cases Longs
             Long errataId = ((Number) errataIdObject).longValue();
-            List<Server> serverList = new ArrayList<Server>();
+            List<Long> serverList = new ArrayList<Long>();
             serversForErrata.put(errataId, serverList);
         }
 
-        // Filter only relevant errata for servers
+        // Filter only relevant errata for servers, looked up for all of them at once
+        SystemManager.ensureAvailableToUser(user, serverIds);
+        Map<Long, Set<Long>> relevantErrataBySystem =
+                SystemManager.unscheduledErrata(user, serverIds);
         for (Long serverId : serverIds) {
-            List<Errata> relevantErrata =
-                    SystemManager.unscheduledErrata(user, serverId, null);
-            Set<Long> relevantErrataIds = new HashSet<Long>();
-            for (Errata e : relevantErrata) {
-                relevantErrataIds.add(e.getId());
+            Set<Long> relevantErrataIds = relevantErrataBySystem.get(serverId);
+            if (relevantErrataIds == null) {
+                relevantErrataIds = Collections.emptySet();
             }
 
-            Server server = SystemManager.lookupByIdAndOrg(serverId, user.getOrg());
-
             for (Long errataId : serversForErrata.keySet()) {
                 if (relevantErrataIds.contains(errataId)) {
-                    List<Server> serverList = serversForErrata.get(errataId);
-                    serverList.add(server);
+                    List<Long> serverList = serversForErrata.get(errataId);
+                    serverList.add(serverId);
                 }
                 else {
                     if (!onlyRelevant) {
@@ -1814,11 +2122,11 @@ public class ErrataManager extends BaseManager {
      * @param erratum the erratum
      * @param earliest the earliest
      * @param actionChain the action chain to add the actions to or null
-     * @param servers the servers
+     * @param serverIds the ids of the servers
      * @return the list
      */
     private static List<ErrataAction> createErrataActions(User user, Errata erratum,
-        Date earliest, ActionChain actionChain, List<Server> servers) {
+        Date earliest, ActionChain actionChain, List<Long> serverIds) {
 
         List<ErrataAction> result = new LinkedList<ErrataAction>();
         if (actionChain == null) {
@@ -1827,21 +2135,20 @@ public class ErrataManager extends BaseManager {
             if (earliest != null) {
                 errataAction.setEarliestAction(earliest);
             }
-            for (Server server : servers) {
-                ActionManager.addServerToAction(server, errataAction);
-            }
+            ActionManager.storeAction(errataAction);
+            ActionManager.scheduleForExecution(errataAction, user, serverIds);
             result.add(errataAction);
         }
         else {
             int sortOrder = ActionChainFactory.getNextSortOrderValue(actionChain);
-            for (Server server : servers) {
+            for (Long serverId : serverIds) {
                 ErrataAction errataAction = (ErrataAction) ActionManager.createErrataAction(
                     user, erratum);
                 if (earliest != null) {
                     errataAction.setEarliestAction(earliest);
                 }
                 ActionChainFactory.queueActionChainEntry(errataAction, actionChain,
-                    server, sortOrder);
+                    serverId, sortOrder);
 
                 result.add(errataAction);
             }
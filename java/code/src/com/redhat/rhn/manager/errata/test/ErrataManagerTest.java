@@ -37,12 +37,14 @@ import com.redhat.rhn.domain.org.OrgFactory;
 import com.redhat.rhn.domain.rhnpackage.Package;
 import com.redhat.rhn.domain.rhnpackage.test.PackageTest;
 import com.redhat.rhn.domain.rhnset.RhnSet;
+import com.redhat.rhn.domain.role.RoleFactory;
 import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.session.WebSession;
 import com.redhat.rhn.domain.session.WebSessionFactory;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.dto.ErrataOverview;
 import com.redhat.rhn.frontend.listview.PageControl;
+import com.redhat.rhn.manager.channel.CloneChannelCommand;
 import com.redhat.rhn.manager.errata.ErrataManager;
 import com.redhat.rhn.manager.errata.cache.ErrataCacheManager;
 import com.redhat.rhn.manager.errata.cache.test.ErrataCacheManagerTest;
@@ -503,6 +505,29 @@ public class ErrataManagerTest extends BaseTestCaseWithUser {
 
     }
 
+    public void testApplyErrataToUnavailableSystem() throws Exception {
+        Errata errata = ErrataFactoryTest.createTestErrata(user.getOrg().getId());
+        TestUtils.saveAndFlush(errata);
+        Server server = createTestServer(user);
+        User other = UserTestUtils.findNewUser("otherUser",
+                "otherOrg" + this.getClass().getSimpleName());
+        Server otherServer = createTestServer(other);
+
+        List<Long> errataIds = new ArrayList<Long>();
+        errataIds.add(errata.getId());
+        List<Long> serverIds = new ArrayList<Long>();
+        serverIds.add(server.getId());
+        serverIds.add(otherServer.getId());
+
+        try {
+            ErrataManager.applyErrata(user, errataIds, new Date(), serverIds);
+            fail("errata applied to a system of another org");
+        }
+        catch (LookupException e) {
+            // expected
+        }
+    }
+
     /**
      * Test that with 2 software management stack erratas, where one system
      * is affected by one of them, and the other by both, they are scheduled
@@ -644,6 +669,41 @@ public class ErrataManagerTest extends BaseTestCaseWithUser {
                 server2ScheduledErrata.contains(yumErrata1.getId()));
     }
 
+    public void testCloneErrataToChannel() throws Exception {
+        user.addPermanentRole(RoleFactory.ORG_ADMIN);
+        Channel original = ChannelFactoryTest.createTestChannel(user);
+        Errata errata = ErrataFactoryTest.createTestPublishedErrata(user.getOrg().getId());
+        Package pkg = errata.getPackages().iterator().next();
+        original.addErrata(errata);
+        original.addPackage(pkg);
+        HibernateFactory.getSession().flush();
+
+        CloneChannelCommand helper = new CloneChannelCommand(true, original);
+        helper.setName("Test Clone of " + original.getName());
+        helper.setArchLabel(original.getChannelArch().getLabel());
+        helper.setLabel("test-clone-of-" + original.getLabel());
+        helper.setUser(user);
+        helper.setSummary(original.getSummary());
+        helper.setChecksumLabel("sha256");
+        Channel cloned = helper.create();
+        assertFalse(cloned.getPackages().contains(pkg));
+
+        List<Long> eids = new ArrayList<Long>();
+        eids.add(errata.getId());
+        List<Long> published = ErrataManager.cloneErrataToChannel(cloned, eids, user,
+                true);
+
+        assertEquals(1, published.size());
+        Errata clone = ErrataFactory.lookupById(published.get(0));
+        assertTrue(clone.isCloned());
+        assertTrue(cloned.getErratas().contains(clone));
+        assertTrue(cloned.getPackages().contains(pkg));
+
+        // the existing clone is reused
+        assertEquals(published, ErrataManager.cloneErrataToChannel(cloned, eids, user,
+                true));
+    }
+
     /**
      * Get an ErrataAction from an Action.
      * @param action the action
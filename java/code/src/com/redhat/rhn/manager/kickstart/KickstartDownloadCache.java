@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.kickstart;
+
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.channel.ChannelFactory;
+import com.redhat.rhn.domain.kickstart.KickstartFactory;
+import com.redhat.rhn.domain.kickstart.KickstartSession;
+import com.redhat.rhn.domain.kickstart.KickstartSessionState;
+import com.redhat.rhn.domain.rhnpackage.Package;
+
+import org.apache.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the database work of serving kickstart files low while many systems
+ * are provisioned at once.
+ *
+ * The packages found for a file name in a channel are remembered for
+ * {@link #PATH_TTL} milliseconds, so installers fetching the same packages do
+ * not look them up again. Kickstart sessions are saved when their state
+ * changes only; the package fetches counted in between are written with the
+ * next state change, or once {@link #FLUSH_COUNT} fetches or
+ * {@link #FLUSH_INTERVAL} milliseconds have accumulated. Fetches counted
+ * since the last state change of a session that never fetches again are not
+ * written; the count is informational only.
+ *
+ * The kickstart tree and the child channel a request names are still looked
+ * up for every request. Only the org comes from the second level cache, trees
+ * and channels are not cached there since they are changed by stored
+ * procedures and other processes; their lookups are single row queries by
+ * label.
+ *
+ * @version $Rev$
+ */
+public class KickstartDownloadCache {
+
+    private static Logger log = Logger.getLogger(KickstartDownloadCache.class);
+
+    // number of (channel, file name) resolutions kept
+    public static final int PATH_CACHE_SIZE = 20000;
+    public static final long PATH_TTL = 5 * 60 * 1000;
+    public static final int FLUSH_COUNT = 50;
+    public static final long FLUSH_INTERVAL = 60 * 1000;
+    private static final int PENDING_MAX = 1000;
+
+    private static final KickstartDownloadCache INSTANCE = new KickstartDownloadCache();
+
+    // resolutions by channel id and file name, least recently used first
+    private final Map<String, PackageFile> paths =
+        new LinkedHashMap<String, PackageFile>(1024, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, PackageFile> eldest) {
+                return size() > PATH_CACHE_SIZE;
+            }
+        };
+
+    // fetches not written yet by kickstart session id
+    private final Map<Long, PendingFetches> pending = new HashMap<Long, PendingFetches>();
+
+    /**
+     * @return the instance used by the download servlet
+     */
+    public static KickstartDownloadCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up the package a kickstart file name refers to in a channel.
+     * @param channel channel of the kickstart tree or a child channel of it
+     * @param fileName name of the package file
+     * @return the package file or null if the channel has no such package
+     */
+    public PackageFile lookupPackage(Channel channel, String fileName) {
+        String key = channel.getId() + "/" + fileName;
+        long now = System.currentTimeMillis();
+        synchronized (paths) {
+            PackageFile cached = paths.get(key);
+            if (cached != null && cached.expires > now) {
+                return cached.path == null ? null : cached;
+            }
+        }
+
+        Package pkg = ChannelFactory.lookupPackageByFilename(channel, fileName);
+        PackageFile found;
+        if (pkg == null) {
+            found = new PackageFile(null, null, null, now + PATH_TTL);
+        }
+        else {
+            found = new PackageFile(pkg.getPath(),
+                    pkg.getChecksum() == null ? null : pkg.getChecksum().getChecksum(),
+                    pkg.getPackageSize(), now + PATH_TTL);
+        }
+        synchronized (paths) {
+            paths.put(key, found);
+        }
+        return found.path == null ? null : found;
+    }
+
+    /**
+     * Records that a file of a kickstart was served. The session is saved if
+     * its state changes, or if enough fetches accumulated.
+     * @param ksession kickstart session the file was served for
+     * @param stateLabel label of the state the session is in after the fetch
+     * @param path path of the file requested
+     */
+    public void recordFetch(KickstartSession ksession, String stateLabel, String path) {
+        boolean counted = KickstartSessionState.IN_PROGRESS.equals(stateLabel);
+        boolean transition = ksession.getState() == null ||
+            !stateLabel.equals(ksession.getState().getLabel());
+        long now = System.currentTimeMillis();
+
+        PendingFetches fetches;
+        synchronized (pending) {
+            fetches = pending.get(ksession.getId());
+            if (fetches == null) {
+                if (pending.size() >= PENDING_MAX) {
+                    purgePending(now);
+                }
+                fetches = new PendingFetches(now);
+                pending.put(ksession.getId(), fetches);
+            }
+            if (counted) {
+                fetches.count++;
+                fetches.lastFile = path;
+            }
+            if (!transition && fetches.count < FLUSH_COUNT &&
+                    now - fetches.since < FLUSH_INTERVAL) {
+                return;
+            }
+            pending.remove(ksession.getId());
+        }
+
+        if (transition) {
+            ksession.setState(KickstartFactory.lookupSessionStateByLabel(stateLabel));
+        }
+        long fetchCount = ksession.getPackageFetchCount() == null ? 0 :
+            ksession.getPackageFetchCount().longValue();
+        ksession.setPackageFetchCount(fetchCount + fetches.count);
+        if (fetches.lastFile != null) {
+            ksession.setLastFileRequest(fetches.lastFile);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Saving kickstart session " + ksession.getId() + " with " +
+                    fetches.count + " new fetches");
+        }
+        KickstartFactory.saveKickstartSession(ksession);
+    }
+
+    /**
+     * Drops the fetches of sessions that did not fetch anything for a long
+     * time, they finished or failed without another state change.
+     */
+    private void purgePending(long now) {
+        for (Iterator<PendingFetches> it = pending.values().iterator(); it.hasNext();) {
+            if (now - it.next().since > 10 * FLUSH_INTERVAL) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets all cached resolutions and fetches not written yet.
+     */
+    public void clear() {
+        synchronized (paths) {
+            paths.clear();
+        }
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Package file found for a kickstart file name
+     */
+    public static final class PackageFile {
+
+        private final String path;
+        private final String checksum;
+        private final Long size;
+        private final long expires;
+
+        private PackageFile(String pathIn, String checksumIn, Long sizeIn, long expiresIn) {
+            path = pathIn;
+            checksum = checksumIn;
+            size = sizeIn;
+            expires = expiresIn;
+        }
+
+        /**
+         * @return path of the package relative to the mount point
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return checksum of the package, may be null
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * @return size of the package in bytes
+         */
+        public Long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Fetches of a kickstart session not written yet
+     */
+    private static final class PendingFetches {
+
+        private final long since;
+        private long count;
+        private String lastFile;
+
+        private PendingFetches(long sinceIn) {
+            since = sinceIn;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.kickstart.test;
+
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.kickstart.KickstartFactory;
+import com.redhat.rhn.domain.kickstart.KickstartSession;
+import com.redhat.rhn.domain.kickstart.KickstartSessionState;
+import com.redhat.rhn.domain.kickstart.test.KickstartSessionTest;
+import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.manager.kickstart.KickstartDownloadCache;
+import com.redhat.rhn.manager.kickstart.KickstartDownloadCache.PackageFile;
+import com.redhat.rhn.manager.rhnpackage.test.PackageManagerTest;
+import com.redhat.rhn.testing.TestUtils;
+
+/**
+ * KickstartDownloadCacheTest
+ * @version $Rev$
+ */
+public class KickstartDownloadCacheTest extends BaseKickstartCommandTestCase {
+
+    private KickstartDownloadCache cache = KickstartDownloadCache.getInstance();
+
+    public void setUp() throws Exception {
+        super.setUp();
+        cache.clear();
+    }
+
+    public void tearDown() throws Exception {
+        cache.clear();
+        super.tearDown();
+    }
+
+    public void testLookupPackage() throws Exception {
+        Channel channel = ksdata.getTree().getChannel();
+        Package p = PackageManagerTest.addPackageToChannel("some-package", channel);
+        String fileName = "some-package-2.13.1-6.fc9.x86_64.rpm";
+        String path = "redhat/1/c7d/some-package/2.13.1-6.fc9/x86_64/" + fileName;
+        p.setPath(path);
+        TestUtils.saveAndFlush(p);
+
+        PackageFile found = cache.lookupPackage(channel, fileName);
+        assertEquals(path, found.getPath());
+        assertNull(cache.lookupPackage(channel, "other-package-1.0-1.noarch.rpm"));
+
+        // served from the cache until it expires
+        p.setPath("redhat/moved/" + fileName);
+        TestUtils.saveAndFlush(p);
+        assertEquals(path, cache.lookupPackage(channel, fileName).getPath());
+        cache.clear();
+        assertEquals("redhat/moved/" + fileName,
+                cache.lookupPackage(channel, fileName).getPath());
+    }
+
+    public void testRecordFetch() throws Exception {
+        KickstartSession ksession =
+            KickstartSessionTest.createKickstartSession(ksdata, user);
+        KickstartFactory.saveKickstartSession(ksession);
+
+        // a state change is saved right away
+        cache.recordFetch(ksession, KickstartSessionState.IN_PROGRESS, "a.rpm");
+        assertEquals(KickstartSessionState.IN_PROGRESS, ksession.getState().getLabel());
+        assertEquals(1, ksession.getPackageFetchCount().longValue());
+        assertEquals("a.rpm", ksession.getLastFileRequest());
+
+        // further fetches are written in batches
+        for (int i = 1; i < KickstartDownloadCache.FLUSH_COUNT; i++) {
+            cache.recordFetch(ksession, KickstartSessionState.IN_PROGRESS, "b.rpm");
+        }
+        assertEquals(1, ksession.getPackageFetchCount().longValue());
+        cache.recordFetch(ksession, KickstartSessionState.IN_PROGRESS, "c.rpm");
+        assertEquals(1 + KickstartDownloadCache.FLUSH_COUNT,
+                ksession.getPackageFetchCount().longValue());
+        assertEquals("c.rpm", ksession.getLastFileRequest());
+
+        cache.recordFetch(ksession, KickstartSessionState.IN_PROGRESS, "d.rpm");
+        cache.recordFetch(ksession, KickstartSessionState.STARTED, "images/boot.iso");
+        assertEquals(KickstartSessionState.STARTED, ksession.getState().getLabel());
+        assertEquals(2 + KickstartDownloadCache.FLUSH_COUNT,
+                ksession.getPackageFetchCount().longValue());
+        assertEquals("d.rpm", ksession.getLastFileRequest());
+    }
+}
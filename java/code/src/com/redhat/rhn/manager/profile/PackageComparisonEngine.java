@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2009--2014 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.profile;
+
+import com.redhat.rhn.common.util.RpmVersion;
+import com.redhat.rhn.frontend.dto.PackageListItem;
+import com.redhat.rhn.frontend.dto.PackageMetadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares package lists of systems and profiles. Both lists are sorted by
+ * (name, arch, evr) and walked with a single linear merge; EVRs are parsed once
+ * per distinct epoch/version/release and cached for the lifetime of the engine,
+ * so an engine can be reused to compare one profile against many systems.
+ *
+ * <p> Within a (name, arch) pair a single package on each side is reported as
+ * KEY_THIS_NEWER or KEY_OTHER_NEWER, otherwise packages present on only one
+ * side are reported as KEY_THIS_ONLY or KEY_OTHER_ONLY.
+ *
+ * <p> An engine is not thread safe.
+ * @version $Rev$
+ */
+public class PackageComparisonEngine {
+
+    private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>() {
+        public int compare(Entry e1, Entry e2) {
+            int rc = compareIds(e1.nameId, e2.nameId);
+            if (rc != 0) {
+                return rc;
+            }
+            rc = compareIds(e1.archId, e2.archId);
+            if (rc != 0) {
+                return rc;
+            }
+            return e1.evr.compareTo(e2.evr);
+        }
+    };
+
+    private final Map<String, Evr> evrCache = new HashMap<String, Evr>();
+
+    /**
+     * Compares the packages of a system with those of a profile or another system.
+     * @param others packages of the profile or other system
+     * @param systems packages of the system
+     * @param param comparison parameter set on each PackageMetadata
+     * @return List of PackageMetadata differences
+     */
+    public List<PackageMetadata> compare(List<PackageListItem> others,
+            List<PackageListItem> systems, String param) {
+        return merge(prepare(others), prepare(systems), param);
+    }
+
+    /**
+     * Compares the packages of many systems with the same profile. The profile
+     * is sorted and parsed only once.
+     * @param others packages of the profile or other system
+     * @param systems map of server id to the packages of that server
+     * @param param comparison parameter set on each PackageMetadata
+     * @return map of server id to its List of PackageMetadata differences, in
+     * the iteration order of the given map
+     */
+    public Map<Long, List<PackageMetadata>> compare(List<PackageListItem> others,
+            Map<Long, List<PackageListItem>> systems, String param) {
+        Entry[] other = prepare(others);
+        Map<Long, List<PackageMetadata>> result =
+                new LinkedHashMap<Long, List<PackageMetadata>>();
+        for (Map.Entry<Long, List<PackageListItem>> e : systems.entrySet()) {
+            result.put(e.getKey(), merge(other, prepare(e.getValue()), param));
+        }
+        return result;
+    }
+
+    private Entry[] prepare(List<PackageListItem> items) {
+        Entry[] entries = new Entry[items.size()];
+        int i = 0;
+        for (PackageListItem item : items) {
+            entries[i++] = new Entry(item, lookupEvr(item));
+        }
+        Arrays.sort(entries, ENTRY_ORDER);
+        return entries;
+    }
+
+    private Evr lookupEvr(PackageListItem item) {
+        String key = item.getEpoch() + ":" + item.getVersion() + "-" + item.getRelease();
+        Evr evr = evrCache.get(key);
+        if (evr == null) {
+            evr = new Evr(item.getEpoch(), item.getVersion(), item.getRelease());
+            evrCache.put(key, evr);
+        }
+        return evr;
+    }
+
+    private List<PackageMetadata> merge(Entry[] other, Entry[] sys, String param) {
+        List<PackageMetadata> result = new ArrayList<PackageMetadata>();
+        int s = 0;
+        int o = 0;
+        while (s < sys.length || o < other.length) {
+            // bounds of the current (name, arch) group on both sides
+            int rc;
+            if (s == sys.length) {
+                rc = 1;
+            }
+            else if (o == other.length) {
+                rc = -1;
+            }
+            else {
+                rc = compareGroup(sys[s], other[o]);
+            }
+            int sEnd = s;
+            if (rc <= 0) {
+                sEnd = groupEnd(sys, s);
+            }
+            int oEnd = o;
+            if (rc >= 0) {
+                oEnd = groupEnd(other, o);
+            }
+
+            if (sEnd - s == 1 && oEnd - o == 1) {
+                int cmp = sys[s].evr.vercmp(other[o].evr);
+                if (cmp != 0) {
+                    result.add(create(sys[s].item, other[o].item,
+                            (cmp < 0) ? PackageMetadata.KEY_OTHER_NEWER :
+                                PackageMetadata.KEY_THIS_NEWER, param));
+                }
+            }
+            else {
+                mergeGroup(sys, s, sEnd, other, o, oEnd, param, result);
+            }
+            s = sEnd;
+            o = oEnd;
+        }
+        return result;
+    }
+
+    private void mergeGroup(Entry[] sys, int s, int sEnd, Entry[] other, int o,
+            int oEnd, String param, List<PackageMetadata> result) {
+        while (s < sEnd || o < oEnd) {
+            int rc;
+            if (s == sEnd) {
+                rc = 1;
+            }
+            else if (o == oEnd) {
+                rc = -1;
+            }
+            else {
+                rc = sys[s].evr.compareTo(other[o].evr);
+            }
+            if (rc < 0) {
+                result.add(create(sys[s++].item, null,
+                        PackageMetadata.KEY_THIS_ONLY, param));
+            }
+            else if (rc > 0) {
+                result.add(create(null, other[o++].item,
+                        PackageMetadata.KEY_OTHER_ONLY, param));
+            }
+            else {
+                s++;
+                o++;
+            }
+        }
+    }
+
+    private static int groupEnd(Entry[] entries, int start) {
+        int end = start + 1;
+        while (end < entries.length && compareGroup(entries[start], entries[end]) == 0) {
+            end++;
+        }
+        return end;
+    }
+
+    private static int compareGroup(Entry e1, Entry e2) {
+        int rc = compareIds(e1.nameId, e2.nameId);
+        if (rc != 0) {
+            return rc;
+        }
+        return compareIds(e1.archId, e2.archId);
+    }
+
+    private static int compareIds(Long id1, Long id2) {
+        if (id1 == null) {
+            return (id2 == null) ? 0 : -1;
+        }
+        if (id2 == null) {
+            return 1;
+        }
+        return id1.compareTo(id2);
+    }
+
+    private static PackageMetadata create(PackageListItem sys, PackageListItem other,
+            int comparison, String param) {
+        PackageMetadata pm = new PackageMetadata(sys, other);
+        pm.setComparison(comparison);
+        pm.setCompareParam(param);
+        return pm;
+    }
+
+    /**
+     * A package of one of the compared lists.
+     */
+    private static class Entry {
+        private final PackageListItem item;
+        private final Long nameId;
+        private final Long archId;
+        private final Evr evr;
+
+        Entry(PackageListItem itemIn, Evr evrIn) {
+            item = itemIn;
+            nameId = itemIn.getNameId();
+            archId = itemIn.getArchId();
+            evr = evrIn;
+        }
+    }
+
+    /**
+     * Parsed epoch, version and release of a package.
+     */
+    static class Evr implements Comparable<Evr> {
+        private final int epoch;
+        private final RpmVersion version;
+        private final RpmVersion release;
+
+        Evr(String epochIn, String versionIn, String releaseIn) {
+            // an epoch of null is the same as an epoch of 0: packages in channels
+            // may have a null epoch while the same package installed on a system
+            // is stored with 0
+            int e = (epochIn == null) ? 0 : Integer.parseInt(epochIn);
+            epoch = (e == -1) ? 0 : e;
+            version = new RpmVersion(versionIn);
+            release = new RpmVersion(releaseIn);
+        }
+
+        /**
+         * Compares like rpm does.
+         * @param other evr to compare with
+         * @return 1, -1, or 0
+         */
+        int vercmp(Evr other) {
+            if (epoch != other.epoch) {
+                return (epoch < other.epoch) ? -1 : 1;
+            }
+            int c = version.rpmvercmp(other.version);
+            if (c != 0) {
+                return c;
+            }
+            return release.rpmvercmp(other.release);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int compareTo(Evr other) {
+            if (epoch != other.epoch) {
+                return (epoch < other.epoch) ? -1 : 1;
+            }
+            int c = version.compareTo(other.version);
+            if (c != 0) {
+                return c;
+            }
+            return release.compareTo(other.release);
+        }
+    }
+}
@@ -14,13 +14,13 @@
  */
 package com.redhat.rhn.manager.profile;
 
+import com.redhat.rhn.common.RhnRuntimeException;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.localization.LocalizationService;
-import com.redhat.rhn.common.util.RpmVersionComparator;
 import com.redhat.rhn.domain.action.rhnpackage.PackageAction;
 import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.domain.channel.ChannelFactory;
@@ -51,15 +51,24 @@ import com.redhat.rhn.manager.system.SystemManager;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * ProfileManager
@@ -70,6 +79,9 @@ public class ProfileManager extends BaseManager {
     private static Logger log = Logger.getLogger(ProfileManager.class);
     public static final String OPTION_REMOVE = "remove";
     public static final String OPTION_SUBSCRIBE = "subscribe";
+    /** systems whose packages are loaded at once when syncing many systems */
+    public static final int SYNC_CHUNK_SIZE = 500;
+    private static final int SYNC_THREADS = 4;
 
     /**
      * Removes the given profile.
@@ -172,6 +184,46 @@ public class ProfileManager extends BaseManager {
         return makeDataResult(params, elabParams, pc, m);
     }
 
+    /**
+     * Loads the packages of many systems with a single query.
+     * @return map of server id to the packages of the server, in the order of
+     * the given ids
+     */
+    private static Map<Long, List<PackageListItem>> canonicalSystemsPackages(
+            List<Long> sids, Long orgid) {
+        SelectMode m = ModeFactory.getMode("Package_queries",
+                "systems_canonical_package_list");
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("org_id", orgid);
+        DataResult<PackageListItem> rows = m.execute(params, sids);
+
+        Map<Long, List<PackageListItem>> result =
+                new LinkedHashMap<Long, List<PackageListItem>>();
+        for (Long sid : sids) {
+            result.put(sid, new ArrayList<PackageListItem>());
+        }
+        for (PackageListItem row : rows) {
+            result.get(row.getServerId()).add(row);
+        }
+        return result;
+    }
+
+    private static Map<Long, Set<Long>> systemsChannelIds(List<Long> sids) {
+        SelectMode m = ModeFactory.getMode("Package_queries", "systems_channel_ids");
+        DataResult<Map<String, Object>> rows = m.execute(sids);
+        Map<Long, Set<Long>> result = new HashMap<Long, Set<Long>>();
+        for (Map<String, Object> row : rows) {
+            Long sid = ((Number) row.get("server_id")).longValue();
+            Set<Long> channelIds = result.get(sid);
+            if (channelIds == null) {
+                channelIds = new TreeSet<Long>();
+                result.put(sid, channelIds);
+            }
+            channelIds.add(((Number) row.get("channel_id")).longValue());
+        }
+        return result;
+    }
+
     private static DataResult canonicalSystemsPackages(Long sid, Long orgid,
             PageControl pc) {
 
@@ -188,8 +240,8 @@ public class ProfileManager extends BaseManager {
      * compares the given lists of Packages.
      *
      * NOTE: For lists that contain entries with the same package with
-     * multiple versions we show the entries as "OTHER_ONLY" when the version
-     * isn't on one of the other lists.
+     * multiple versions we show the entries as "THIS_ONLY" or "OTHER_ONLY" when
+     * the version isn't on the other list.
      *
      * @param profiles Packages to compare
      * @param systems Packages to compare
@@ -198,199 +250,7 @@ public class ProfileManager extends BaseManager {
      */
     public static List comparePackageLists(DataResult profiles,
             DataResult systems, String param) {
-        List result = new LinkedList();
-        Map profilesNameIdMap = buildPackagesMap(profiles);
-        Map systemsNameIdMap = buildPackagesMap(systems);
-
-        if (log.isDebugEnabled()) {
-            log.debug("profilesIdComboMap: " + profilesNameIdMap);
-            log.debug("systemsIdComboMap: " + systemsNameIdMap);
-        }
-
-        // Here is the real work.  Iterate over the list of packages in the
-        // system and see what matches we get against the profile list.
-
-        // skipPkg is used to store the names of packages once they are
-        // identified as either having a matching package in both lists (sys & prof)
-        // or they have been identified as being valid difference.  This purpose
-        // of having this set is to avoid processing the same package multiple times.
-        Set skipPkg = new HashSet();
-        for (Iterator itr = systemsNameIdMap.keySet().iterator(); itr.hasNext();) {
-            Object key = itr.next();
-            List syslist = (List) systemsNameIdMap.get(key);
-            List plist = (List) profilesNameIdMap.get(key);
-            if (plist == null) {
-                // No packages in profile with same name.  We know its only in the System
-                for (int i = 0; i < syslist.size(); i++) {
-                    PackageListItem syspkgitem = (PackageListItem) syslist.get(i);
-                    PackageMetadata pm = createPackageMetadata(syspkgitem,
-                            null, PackageMetadata.KEY_THIS_ONLY, param);
-                    log.debug("plist is null - adding KEY_THIS_ONLY: " +
-                            pm.getSystem().getVersion());
-                    skipPkg.add(syspkgitem.getNevra());
-                    result.add(pm);
-                }
-            }
-            else {
-                // We have packages on the system that are also in the Profile.  If either
-                // the system or the profile list has more than one version of a package
-                // installed we need to run a different algorithm.
-                log.debug("syslist.size: " + syslist.size() +
-                        " plist.size: " + plist.size());
-                if (syslist.size() > 1 || plist.size() > 1) {
-                    Map compareMap = new HashMap();
-                    for (int i = 0; i < syslist.size(); i++) {
-                        PackageListItem syspkgitem = (PackageListItem) syslist.get(i);
-                        for (int j = 0; j < plist.size(); j++) {
-
-                            PackageListItem profpkgitem = (PackageListItem) plist.get(j);
-
-                            if (skipPkg.contains(profpkgitem.getNevra())) {
-                                // this package was evaluated on a previous pass through
-                                // the plist and identified as a match on the syslist;
-                                // therefore, it may be skipped
-                                continue;
-                            }
-                            log.debug("Checking on : " + profpkgitem.getEvr());
-
-                            if (compareArch(syspkgitem.getArch(),
-                                    profpkgitem.getArch()) != 0) {
-                                // if the arch of the packages doesn't match, we don't
-                                // need to compare the EVR; therefore, if at end of the
-                                // list, add both packages to the result
-                                if ((j + 1) == plist.size()) {
-                                    PackageMetadata pm = createPackageMetadata(
-                                            syspkgitem, null,
-                                            PackageMetadata.KEY_THIS_ONLY, param);
-                                    skipPkg.add(syspkgitem.getNevra());
-                                    result.add(pm);
-
-                                    pm = createPackageMetadata(null, profpkgitem,
-                                            PackageMetadata.KEY_OTHER_ONLY, param);
-                                    skipPkg.add(profpkgitem.getNevra());
-                                    result.add(pm);
-                                }
-                            }
-                            else {
-                                PackageMetadata pm = compareAndCreatePackageMetaData(
-                                        syspkgitem, profpkgitem, param);
-                                String evrKey = pm.getSystemEvr() + "|" +
-                                        pm.getOtherEvr();
-                                // If the package exists on one but not the other we
-                                // need to add it to the compare map
-                                if (pm.getComparisonAsInt() !=
-                                        PackageMetadata.KEY_NO_DIFF) {
-
-                                    if ((j + 1) == plist.size()) {
-                                        // this is the last entry in plist; therefore,
-                                        // this must be a difference between pkgs
-                                        log.debug("Adding to cm: " + evrKey +
-                                                " comp: " + pm.getComparison());
-                                        pm.setComparison(
-                                                PackageMetadata.KEY_OTHER_ONLY);
-                                        compareMap.put(evrKey, pm);
-                                        skipPkg.add(syspkgitem.getNevra());
-                                        skipPkg.add(profpkgitem.getNevra());
-                                    }
-                                }
-                                else {
-                                    log.debug("Removing from cm: " + evrKey);
-                                    compareMap.remove(evrKey);
-                                    skipPkg.add(profpkgitem.getNevra());
-                                    // pkg found in both plist & syslist, skip to next
-                                    // syslist entry
-                                    break;
-                                }
-                            }
-                        }
-                        if (!skipPkg.contains(syspkgitem.getNevra())) {
-
-                            // reached end of plist w/o finding match in syslist
-                            // or recording a difference; therefore, add one now
-                            log.debug("Checking on : " + syspkgitem.getEvr());
-
-                            PackageMetadata pm = createPackageMetadata(syspkgitem,
-                                    null, PackageMetadata.KEY_THIS_ONLY, param);
-
-                            log.debug("*** adding a PM(1): " + pm.hashCode());
-                            skipPkg.add(syspkgitem.getNevra());
-                            result.add(pm);
-                        }
-                    }
-                    // Copy into the result map
-                    Iterator i = compareMap.values().iterator();
-                    while (i.hasNext()) {
-                        PackageMetadata pm = (PackageMetadata) i.next();
-                        log.debug("*** adding a PM(2): " + pm.hashCode());
-                        result.add(pm);
-                    }
-                }
-                // Else the system and profile list just have one rev so we
-                // can do a standard compare
-                else {
-                    PackageListItem syspkgitem = (PackageListItem) syslist.get(0);
-                    PackageListItem profpkgitem = (PackageListItem) plist.get(0);
-
-                    if (compareArch(syspkgitem.getArch(), profpkgitem.getArch()) != 0) {
-
-                        // pkg arches do not match; therefore, no need to check evr
-                        PackageMetadata pm = createPackageMetadata(syspkgitem, null,
-                                PackageMetadata.KEY_THIS_ONLY, param);
-                        skipPkg.add(syspkgitem.getNevra());
-                        result.add(pm);
-
-                        pm = createPackageMetadata(null, profpkgitem,
-                                PackageMetadata.KEY_OTHER_ONLY, param);
-                        skipPkg.add(profpkgitem.getNevra());
-                        result.add(pm);
-                    }
-                    else {
-                        PackageMetadata pm = compareAndCreatePackageMetaData(syspkgitem,
-                                profpkgitem, param);
-                        if (pm != null && pm.getComparisonAsInt() !=
-                                PackageMetadata.KEY_NO_DIFF) {
-                            log.debug("*** adding a PM(3): " + pm.hashCode());
-                            result.add(pm);
-                        }
-                    }
-                    skipPkg.add(profpkgitem.getNevra());
-                    skipPkg.add(syspkgitem.getNevra());
-                }
-            }
-        }
-
-        // Reverse of above so we can check for pkgs that are *only* in the profile
-        for (Iterator itr = profilesNameIdMap.keySet().iterator(); itr.hasNext();) {
-            Object key = itr.next();
-            List syslist = (List) systemsNameIdMap.get(key);
-            List plist = (List) profilesNameIdMap.get(key);
-
-            if (syslist == null) {
-                // No packages in system with same name.  We know its only in the Profile
-                for (int i = 0; i < plist.size(); i++) {
-                    PackageMetadata pm = createPackageMetadata(null,
-                            (PackageListItem) plist.get(i), PackageMetadata.KEY_OTHER_ONLY,
-                            param);
-
-                    result.add(pm);
-                }
-            }
-            else {
-                for (int i = 0; i < plist.size(); i++) {
-                    PackageListItem profpkgitem = (PackageListItem) plist.get(i);
-
-                    if (!skipPkg.contains(profpkgitem.getNevra())) {
-
-                        PackageMetadata pm = createPackageMetadata(
-                                null, profpkgitem, PackageMetadata.KEY_OTHER_ONLY, param);
-                        log.debug("*** adding a PM(4): " + pm.hashCode());
-                        result.add(pm);
-                    }
-                }
-            }
-        }
-
-        return result;
+        return new PackageComparisonEngine().compare(profiles, systems, param);
     }
 
     /**
@@ -421,63 +281,6 @@ public class ProfileManager extends BaseManager {
         return packages;
     }
 
-    /*
-     * Compare the arches provided.
-     * @param a1 - arch value
-     * @param a2 - arch value
-     * @return returns 0 if arch are equal; otherwise, return 1
-     */
-    private static int compareArch(String a1, String a2) {
-        if (((a1 == null) && (a2 != null)) ||
-                ((a1 != null) && (a2 == null))) {
-            return 1;
-        }
-
-        if (((a1 == null) && (a2 == null)) || (a1.equals(a2))) {
-            return 0;
-        }
-        return 1;
-    }
-
-    private static PackageMetadata compareAndCreatePackageMetaData(
-            PackageListItem syspkgitem, PackageListItem profpkgitem, String param) {
-
-        log.debug("    Sys: " + syspkgitem.getName() + " get: " +
-                syspkgitem.getVersion());
-        log.debug("    Pro: " + profpkgitem.getName() + " get: " +
-                profpkgitem.getVersion());
-
-        PackageMetadata retval = null;
-        int rc = vercmp(syspkgitem, profpkgitem);
-        log.debug("    rc: " + rc);
-
-        // do nothing if they are equal
-        if (rc < 0) {
-            retval = createPackageMetadata(
-                    syspkgitem,
-                    profpkgitem,
-                    PackageMetadata.KEY_OTHER_NEWER,
-                    param);
-
-        }
-        else if (rc > 0) {
-            retval = createPackageMetadata(
-                    syspkgitem,
-                    profpkgitem,
-                    PackageMetadata.KEY_THIS_NEWER,
-                    param);
-
-        }
-        else if (rc == 0) {
-            retval = createPackageMetadata(
-                    syspkgitem,
-                    profpkgitem,
-                    PackageMetadata.KEY_NO_DIFF,
-                    param);
-        }
-        return retval;
-    }
-
     /**
      * Returns a DataResult with a diff of the server's packages and those
      * in the profile.
@@ -535,6 +338,260 @@ public class ProfileManager extends BaseManager {
         return prepareList(result, pc);
     }
 
+    /**
+     * Compares the packages of each of the given servers to those in the profile.
+     * The profile packages are fetched, sorted and parsed only once.
+     * @param sids Servers whose packages are to be compared.
+     * @param prid Profile whose packages should be used in the comparison.
+     * @param orgid Org owner
+     * @return Map of server id to a List of PackageMetadata with the diff of the
+     * server's packages and those in the profile.
+     */
+    public static Map<Long, List<PackageMetadata>> compareServersToProfile(
+            List<Long> sids, Long prid, Long orgid) {
+        DataResult profiles = canonicalProfilePackages(prid, orgid, null);
+        Map<Long, List<PackageListItem>> systems =
+                new LinkedHashMap<Long, List<PackageListItem>>();
+        for (Long sid : sids) {
+            systems.put(sid, canonicalSystemsPackages(sid, orgid, null));
+        }
+        Map<Long, List<PackageMetadata>> result =
+                new PackageComparisonEngine().compare(profiles, systems, null);
+        for (List<PackageMetadata> diff : result.values()) {
+            Collections.sort(diff);
+        }
+        return result;
+    }
+
+    /**
+     * Plans syncing many systems to a profile. The profile packages are loaded
+     * once, the packages of the systems {@link #SYNC_CHUNK_SIZE} systems at a
+     * time, and the differences are computed in parallel. Systems needing the
+     * same package changes and subscribed to the same channels are grouped, so
+     * that one action can be scheduled for each group. Systems already in sync
+     * with the profile are left out.
+     * @param sids Servers to be synced.
+     * @param prid Profile to sync with.
+     * @param orgid Org owner
+     * @return groups of systems needing the same package changes
+     */
+    public static List<ProfileSyncGroup> planSyncToProfile(List<Long> sids, Long prid,
+            Long orgid) {
+        List<PackageListItem> profiles = canonicalProfilePackages(prid, orgid, null);
+        Map<String, ProfileSyncGroup> groups = new LinkedHashMap<String, ProfileSyncGroup>();
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), SYNC_THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < sids.size(); i += SYNC_CHUNK_SIZE) {
+                List<Long> chunk = sids.subList(i, Math.min(i + SYNC_CHUNK_SIZE,
+                        sids.size()));
+                Map<Long, Set<Long>> channels = systemsChannelIds(chunk);
+                Map<Long, List<PackageMetadata>> diffs = compareInParallel(executor,
+                        threads, profiles, canonicalSystemsPackages(chunk, orgid));
+                for (Map.Entry<Long, List<PackageMetadata>> diff : diffs.entrySet()) {
+                    if (diff.getValue().isEmpty()) {
+                        continue;
+                    }
+                    Set<Long> channelIds = channels.get(diff.getKey());
+                    if (channelIds == null) {
+                        channelIds = new TreeSet<Long>();
+                    }
+                    String key = syncKey(diff.getValue(), channelIds);
+                    ProfileSyncGroup group = groups.get(key);
+                    if (group == null) {
+                        group = new ProfileSyncGroup(diff.getValue(), channelIds);
+                        groups.put(key, group);
+                    }
+                    group.getServerIds().add(diff.getKey());
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        return new ArrayList<ProfileSyncGroup>(groups.values());
+    }
+
+    /**
+     * Syncs many systems to a profile, scheduling one package synchronization
+     * action for each group of systems needing the same changes, see
+     * {@link #planSyncToProfile(List, Long, Long)}. All packages of the
+     * profile are synced.
+     * @param user Current user
+     * @param sids Servers to be synced.
+     * @param prid Profile to sync with.
+     * @param missingoption OPTION_REMOVE to leave out packages that are not
+     * available in the channels of the systems; if null and packages are
+     * missing, nothing is scheduled.
+     * @param earliest The earliest time to perform the actions
+     * @return the actions scheduled
+     */
+    public static List<PackageAction> syncSystemsToProfile(User user, List<Long> sids,
+            Long prid, String missingoption, Date earliest) {
+        List<ProfileSyncGroup> groups = planSyncToProfile(sids, prid,
+                user.getOrg().getId());
+
+        // check all groups before anything is scheduled
+        Map<ProfileSyncGroup, List> missing = new HashMap<ProfileSyncGroup, List>();
+        int missingCount = 0;
+        for (ProfileSyncGroup group : groups) {
+            List missingPackages = findMissingPackages(group.getPackages(),
+                    group.getChannelIds());
+            if (!missingPackages.isEmpty()) {
+                missing.put(group, missingPackages);
+                missingCount += missingPackages.size();
+            }
+        }
+        if (missingCount > 0 && !OPTION_REMOVE.equals(missingoption)) {
+            throw new MissingPackagesException("There are [" + missingCount +
+                    "] missing packages");
+        }
+
+        List<PackageAction> actions = new ArrayList<PackageAction>();
+        for (ProfileSyncGroup group : groups) {
+            List<PackageMetadata> pkgs = new ArrayList<PackageMetadata>(
+                    group.getPackages());
+            if (missing.containsKey(group)) {
+                for (Iterator itr = missing.get(group).iterator(); itr.hasNext();) {
+                    PackageMetadata pm = (PackageMetadata) itr.next();
+                    int compare = pm.getComparisonAsInt();
+                    if (compare == PackageMetadata.KEY_OTHER_ONLY ||
+                            compare == PackageMetadata.KEY_OTHER_NEWER) {
+                        pkgs.remove(pm);
+                    }
+                }
+            }
+            actions.addAll(scheduleGroupSync(user, group.getServerIds(), pkgs, earliest));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Synced " + sids.size() + " systems to profile " + prid + " in " +
+                    groups.size() + " groups, " + actions.size() + " actions");
+        }
+        return actions;
+    }
+
+    /**
+     * Schedules one package synchronization for systems needing the same
+     * changes. The systems that can not run transactions yet share a second
+     * action, with a hardware refresh of all of them as prerequisite.
+     */
+    private static List<PackageAction> scheduleGroupSync(User user, List<Long> sids,
+            List<PackageMetadata> pkgs, Date earliest) {
+        List<Long> capable = new ArrayList<Long>();
+        List<Long> incapable = new ArrayList<Long>();
+        for (Long sid : sids) {
+            if (SystemManager.clientCapable(sid, "packages.runTransaction")) {
+                capable.add(sid);
+            }
+            else {
+                incapable.add(sid);
+            }
+        }
+
+        List<PackageAction> actions = new ArrayList<PackageAction>();
+        for (List<Long> part : Arrays.asList(capable, incapable)) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            PackageAction action = ActionManager.schedulePackageRunTransaction(user,
+                    ServerFactory.lookupById(part.get(0)), pkgs, earliest);
+            if (action == null) {
+                continue;
+            }
+            for (Long sid : part.subList(1, part.size())) {
+                ActionManager.addServerToAction(sid, action);
+                if (action.getPrerequisite() != null) {
+                    ActionManager.addServerToAction(sid, action.getPrerequisite());
+                }
+            }
+            actions.add(action);
+        }
+        return actions;
+    }
+
+    /**
+     * Computes the differences of the systems to the profile, splitting the
+     * systems among the given number of tasks. Each task uses an engine of its
+     * own, engines are not thread safe.
+     */
+    private static Map<Long, List<PackageMetadata>> compareInParallel(
+            ExecutorService executor, int slices, final List<PackageListItem> profiles,
+            Map<Long, List<PackageListItem>> systems) {
+        List<Map<Long, List<PackageListItem>>> parts =
+                new ArrayList<Map<Long, List<PackageListItem>>>();
+        for (int i = 0; i < slices; i++) {
+            parts.add(new LinkedHashMap<Long, List<PackageListItem>>());
+        }
+        int n = 0;
+        for (Map.Entry<Long, List<PackageListItem>> e : systems.entrySet()) {
+            parts.get(n++ % slices).put(e.getKey(), e.getValue());
+        }
+
+        List<Future<Map<Long, List<PackageMetadata>>>> futures =
+                new ArrayList<Future<Map<Long, List<PackageMetadata>>>>();
+        for (final Map<Long, List<PackageListItem>> part : parts) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            futures.add(executor.submit(new Callable<Map<Long, List<PackageMetadata>>>() {
+                public Map<Long, List<PackageMetadata>> call() {
+                    Map<Long, List<PackageMetadata>> result =
+                            new PackageComparisonEngine().compare(profiles, part, null);
+                    for (List<PackageMetadata> diff : result.values()) {
+                        Collections.sort(diff);
+                    }
+                    return result;
+                }
+            }));
+        }
+
+        Map<Long, List<PackageMetadata>> diffs = new HashMap<Long, List<PackageMetadata>>();
+        try {
+            for (Future<Map<Long, List<PackageMetadata>>> future : futures) {
+                diffs.putAll(future.get());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RhnRuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RhnRuntimeException(e.getCause());
+        }
+
+        // in the order of the systems
+        Map<Long, List<PackageMetadata>> result =
+                new LinkedHashMap<Long, List<PackageMetadata>>();
+        for (Long sid : systems.keySet()) {
+            result.put(sid, diffs.get(sid));
+        }
+        return result;
+    }
+
+    /**
+     * Identifies the package changes and channels of a system, systems with the
+     * same key get the same action.
+     */
+    private static String syncKey(List<PackageMetadata> diff, Set<Long> channelIds) {
+        StringBuilder key = new StringBuilder(channelIds.toString());
+        for (PackageMetadata pm : diff) {
+            key.append(';').append(pm.getComparisonAsInt());
+            appendSyncKey(key, pm.getSystem());
+            appendSyncKey(key, pm.getOther());
+        }
+        return key.toString();
+    }
+
+    private static void appendSyncKey(StringBuilder key, PackageListItem item) {
+        if (item == null) {
+            key.append(":-");
+        }
+        else {
+            key.append(':').append(item.getNameId()).append('|')
+                .append(item.getEvrId()).append('|').append(item.getArchId());
+        }
+    }
+
     /**
      * Prepares the list of packages to be synced for comfirmation.
      * @param sid Server involved in sync.
@@ -1082,13 +1139,20 @@ public class ProfileManager extends BaseManager {
     }
 
     private static List findMissingPackages(DataResult pkgs, Set channels) {
+        List<Long> channelIds = new ArrayList<Long>();
+        for (Iterator itr = channels.iterator(); itr.hasNext();) {
+            channelIds.add(((Channel) itr.next()).getId());
+        }
+        return findMissingPackages(pkgs, channelIds);
+    }
+
+    private static List findMissingPackages(List pkgs, Collection<Long> channelIds) {
 
         List missingPkgs = new ArrayList();
 
         DataResult pkgsInChannels = new DataResult(new ArrayList());
-        for (Iterator itr = channels.iterator(); itr.hasNext();) {
-            Channel c = (Channel) itr.next();
-            DataResult dr = getPackagesInChannelByIdCombo(c.getId());
+        for (Long cid : channelIds) {
+            DataResult dr = getPackagesInChannelByIdCombo(cid);
             pkgsInChannels.addAll(dr);
         }
 
@@ -1160,49 +1224,6 @@ public class ProfileManager extends BaseManager {
     }
 
 
-    /**
-     * Creates a packagemetadata
-     * @param pli PackageListItem info
-     * @param systemEvr evr of curent system
-     * @param profileEvr evr of profile or other system
-     * @param comparison comparison
-     * @param param compare string param
-     * @return Packagemetadata with the information from the PackageListItem
-     */
-    private static PackageMetadata createPackageMetadata(PackageListItem sys,
-            PackageListItem other, int comparison, String param) {
-        PackageMetadata pm = new PackageMetadata(sys, other);
-        pm.setComparison(comparison);
-        pm.setCompareParam(param);
-        return pm;
-    }
-
-    /**
-     * compares metadatas from 2 package list items
-     * @param p1 the first PackageListItem
-     * @param p2 the second PackageListItem
-     * @return 1, -1, or 0
-     */
-    private static int vercmp(PackageListItem p1, PackageListItem p2) {
-
-        int epochCmpValue = epochcmp(p1.getEpoch(), p2.getEpoch());
-        if (epochCmpValue != 0) {
-            // Epochs are different; therefore, no need to check version/release
-            return epochCmpValue;
-        }
-
-        log.debug("Epoch is the same.  Checking version: " + p1.getVersion() +
-                " vs: " + p2.getVersion());
-        RpmVersionComparator rpmvercmp = new RpmVersionComparator();
-        int c = rpmvercmp.compare(p1.getVersion(), p2.getVersion());
-        if (c != 0) {
-            return c;
-        }
-        log.debug("Version is the same.  Checking release: " + p1.getRelease() +
-                " vs: " + p2.getRelease());
-        return rpmvercmp.compare(p1.getRelease(), p2.getRelease());
-    }
-
     /**
      * compare 2 epoch values
      * @param e1 the first epoch value
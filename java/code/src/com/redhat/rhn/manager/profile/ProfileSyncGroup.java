@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.profile;
+
+import com.redhat.rhn.frontend.dto.PackageMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Systems that need the same package changes to be synced to a profile, and
+ * are subscribed to the same channels. One package synchronization action is
+ * scheduled for all of them.
+ *
+ * @version $Rev$
+ */
+public class ProfileSyncGroup {
+
+    private final List<Long> serverIds = new ArrayList<Long>();
+    private final List<PackageMetadata> packages;
+    private final Set<Long> channelIds;
+
+    /**
+     * Constructor
+     * @param packagesIn differences between the systems and the profile
+     * @param channelIdsIn channels the systems are subscribed to
+     */
+    ProfileSyncGroup(List<PackageMetadata> packagesIn, Set<Long> channelIdsIn) {
+        packages = packagesIn;
+        channelIds = channelIdsIn;
+    }
+
+    /**
+     * @return ids of the systems of the group
+     */
+    public List<Long> getServerIds() {
+        return serverIds;
+    }
+
+    /**
+     * @return differences between the systems and the profile, the same for
+     * all systems of the group
+     */
+    public List<PackageMetadata> getPackages() {
+        return packages;
+    }
+
+    /**
+     * @return ids of the channels the systems are subscribed to
+     */
+    public Set<Long> getChannelIds() {
+        return channelIds;
+    }
+}
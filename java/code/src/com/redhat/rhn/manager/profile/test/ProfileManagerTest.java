@@ -18,7 +18,9 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
@@ -44,7 +46,9 @@ import com.redhat.rhn.domain.user.UserFactory;
 import com.redhat.rhn.frontend.dto.PackageListItem;
 import com.redhat.rhn.frontend.dto.PackageMetadata;
 import com.redhat.rhn.frontend.dto.ProfileDto;
+import com.redhat.rhn.manager.profile.PackageComparisonEngine;
 import com.redhat.rhn.manager.profile.ProfileManager;
+import com.redhat.rhn.manager.profile.ProfileSyncGroup;
 import com.redhat.rhn.manager.rhnpackage.test.PackageManagerTest;
 import com.redhat.rhn.testing.BaseTestCaseWithUser;
 import com.redhat.rhn.testing.ChannelTestUtils;
@@ -110,6 +114,46 @@ public class ProfileManagerTest extends BaseTestCaseWithUser {
     }
 
 
+    public void testPlanSyncToProfile() throws Exception {
+        Channel testChannel = ChannelFactoryTest.createTestChannel(user);
+        Package p1 = PackageTest.createTestPackage(user.getOrg());
+        Package p2 = PackageTest.createTestPackage(user.getOrg());
+        testChannel.addPackage(p1);
+        testChannel.addPackage(p2);
+        ChannelFactory.save(testChannel);
+
+        List<Server> servers = new ArrayList<Server>();
+        for (int i = 0; i < 4; i++) {
+            Server s = ServerFactoryTest.createTestServer(user, true,
+                    ServerConstants.getServerGroupTypeEnterpriseEntitled());
+            s.addChannel(testChannel);
+            // the first system is the golden one, the last one is in sync
+            PackageManagerTest.associateSystemToPackageWithArch(s,
+                    (i == 0 || i == 3) ? p1 : p2);
+            ServerFactory.save(s);
+            servers.add(s);
+        }
+        Profile profile = ProfileManager.createProfile(user, servers.get(0),
+                "Profile test name" + TestUtils.randomString(),
+                "Profile test description");
+        ProfileManager.copyFrom(servers.get(0), profile);
+        TestUtils.flushAndEvict(profile);
+
+        List<Long> sids = new ArrayList<Long>();
+        for (Server s : servers.subList(1, 4)) {
+            sids.add(s.getId());
+        }
+        List<ProfileSyncGroup> groups = ProfileManager.planSyncToProfile(sids,
+                profile.getId(), user.getOrg().getId());
+        assertEquals(1, groups.size());
+        ProfileSyncGroup group = groups.get(0);
+        assertEquals(sids.subList(0, 2), group.getServerIds());
+        assertEquals(2, group.getPackages().size());
+        assertEquals(ProfileManager.compareServerToProfile(sids.get(0),
+                profile.getId(), user.getOrg().getId(), null).size(),
+                group.getPackages().size());
+    }
+
     public void testCreateProfileFails() throws Exception {
         Server server = ServerFactoryTest.createTestServer(user, true);
 
@@ -419,6 +463,60 @@ public class ProfileManagerTest extends BaseTestCaseWithUser {
         assertEquals(2, diff.size());
     }
 
+    public void testMultipleVersionsMatchedByEvr() {
+        List profileList = new ArrayList();
+        profileList.add(createItem("kernel-2.4.23-EL-mmccune", 500341));
+
+        List systemList = new ArrayList();
+        systemList.add(createItem("kernel-2.4.23-EL-mmccune", 500341));
+        systemList.add(createItem("kernel-2.4.21-EL-mmccune", 500341));
+        systemList.add(createItem("kernel-2.4.22-EL-mmccune", 500341));
+
+        List diff = ProfileManager.comparePackageLists(new DataResult(profileList),
+                new DataResult(systemList), "system");
+        assertEquals(2, diff.size());
+        for (Iterator itr = diff.iterator(); itr.hasNext();) {
+            PackageMetadata pm = (PackageMetadata) itr.next();
+            assertEquals(PackageMetadata.KEY_THIS_ONLY, pm.getComparisonAsInt());
+            assertNull(pm.getOther());
+            assertFalse("2.4.23".equals(pm.getSystem().getVersion()));
+        }
+    }
+
+    public void testCompareProfileToManySystems() {
+        List<PackageListItem> profileList = new ArrayList<PackageListItem>();
+        profileList.add(createItem("kernel-2.4.23-EL-mmccune", 500341));
+        profileList.add(createItem("other-2.4.23-EL-mmccune", 500400));
+
+        Map<Long, List<PackageListItem>> systems =
+                new LinkedHashMap<Long, List<PackageListItem>>();
+        List<PackageListItem> same = new ArrayList<PackageListItem>();
+        same.add(createItem("other-2.4.23-EL-mmccune", 500400));
+        same.add(createItem("kernel-2.4.23-EL-mmccune", 500341));
+        systems.put(new Long(1), same);
+        List<PackageListItem> older = new ArrayList<PackageListItem>();
+        older.add(createItem("kernel-2.4.21-EL-mmccune", 500341));
+        systems.put(new Long(2), older);
+
+        Map<Long, List<PackageMetadata>> diffs =
+                new PackageComparisonEngine().compare(profileList, systems, "profile");
+        assertEquals(2, diffs.size());
+        assertTrue(diffs.get(new Long(1)).isEmpty());
+
+        List<PackageMetadata> diff = diffs.get(new Long(2));
+        assertEquals(2, diff.size());
+        for (PackageMetadata pm : diff) {
+            if (pm.getComparisonAsInt() == PackageMetadata.KEY_OTHER_NEWER) {
+                assertEquals("2.4.21", pm.getSystem().getVersion());
+                assertEquals("2.4.23", pm.getOther().getVersion());
+            }
+            else {
+                assertEquals(PackageMetadata.KEY_OTHER_ONLY, pm.getComparisonAsInt());
+                assertEquals("other", pm.getOther().getName());
+            }
+        }
+    }
+
     public static PackageListItem createPackageListItem(String evrString, int nameId) {
         PackageListItem pli = new PackageListItem();
         String[] evr = StringUtils.split(evrString, "-");
@@ -40,7 +40,7 @@ import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.common.security.PermissionException;
 import com.redhat.rhn.common.util.CompressionUtil;
-import com.redhat.rhn.common.util.RpmVersionComparator;
+import com.redhat.rhn.common.util.RpmVersionRanks;
 import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.domain.channel.ChannelFactory;
 import com.redhat.rhn.domain.channel.DistChannelMap;
@@ -77,6 +77,7 @@ import com.redhat.rhn.manager.system.IncompatibleArchException;
  */
 public class PackageManager extends BaseManager {
     private static final Logger LOG = Logger.getLogger(PackageManager.class);
+    private static final int CREATE_REPO_ENTRYS_ATTEMPTS = 3;
     public static final String RHNCFG = "rhncfg";
     public static final String RHNCFG_CLIENT = "rhncfg-client";
     public static final String RHNCFG_ACTIONS = "rhncfg-actions";
@@ -617,16 +618,16 @@ public class PackageManager extends BaseManager {
         }
 
         // Compare the Versions
-        RpmVersionComparator cmp = new RpmVersionComparator();
-        c = cmp.compare(StringUtils.defaultString(version1),
-                        StringUtils.defaultString(version2));
+        RpmVersionRanks ranks = RpmVersionRanks.getInstance();
+        c = ranks.compare(StringUtils.defaultString(version1),
+                          StringUtils.defaultString(version2));
         if (c != 0) {
             return c;
         }
 
         // Compare the Releases
-        return cmp.compare(StringUtils.defaultString(release1),
-                           StringUtils.defaultString(release2));
+        return ranks.compare(StringUtils.defaultString(release1),
+                             StringUtils.defaultString(release2));
     }
 
     /**
@@ -1392,23 +1393,39 @@ public class PackageManager extends BaseManager {
     }
 
     /**
-     * Create all repoentries for a channel's packages if needed
+     * Create all repoentries for a channel's packages if needed. Channels may
+     * be handled in parallel; if another channel sharing packages inserts the
+     * same entries at the same time, the insert is tried again and skips the
+     * entries that exist by then.
      * @param cid the channel id
      */
-    public static synchronized void createRepoEntrys(Long cid) {
+    public static void createRepoEntrys(Long cid) {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put("cid", cid);
-        try {
-            WriteMode writeMode = ModeFactory.getWriteMode("Package_queries",
-                "create_repo_entrys");
-            writeMode.executeUpdate(params);
-            HibernateFactory.commitTransaction();
-        }
-        catch (Exception e) {
-            HibernateFactory.rollbackTransaction();
-        }
-        finally {
-            HibernateFactory.closeSession();
+        for (int attempt = 1; attempt <= CREATE_REPO_ENTRYS_ATTEMPTS; attempt++) {
+            try {
+                WriteMode writeMode = ModeFactory.getWriteMode("Package_queries",
+                    "create_repo_entrys");
+                writeMode.executeUpdate(params);
+                HibernateFactory.commitTransaction();
+                return;
+            }
+            catch (Exception e) {
+                HibernateFactory.rollbackTransaction();
+                if (attempt < CREATE_REPO_ENTRYS_ATTEMPTS) {
+                    LOG.debug("Creating repo entries for channel " + cid +
+                            " failed, attempt " + attempt, e);
+                }
+                else {
+                    // the repository is still written, the entries missing
+                    // are generated along with it
+                    LOG.error("Creating repo entries for channel " + cid +
+                            " failed after " + attempt + " attempts", e);
+                }
+            }
+            finally {
+                HibernateFactory.closeSession();
+            }
         }
     }
 
@@ -42,6 +42,7 @@ import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.db.datasource.StreamedResult;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.LookupException;
@@ -321,22 +322,36 @@ public class SystemManager extends BaseManager {
      */
     public static DataResult<Map<String, Object>> installedPackages(Long sid,
             boolean expanded) {
+        return streamInstalledPackages(sid, expanded).toList();
+    }
+
+    /**
+     * Gets the installed packages on a system as a result read only when it is
+     * consumed, for systems with too many packages to list in memory
+     * @param sid The system in question
+     * @param expanded If true, also adds EVR, Arch and package name to the result.
+     * @return Returns the packages of a system
+     */
+    public static StreamedResult<Map<String, Object>> streamInstalledPackages(Long sid,
+            boolean expanded) {
         String suffix = expanded ? "_expanded" : "";
         SelectMode m = ModeFactory.getMode("System_queries",
                                            "system_installed_packages" + suffix,
                                            Map.class);
         Map<String, Object> params = new HashMap<String, Object>();
         params.put("sid", sid);
-        DataResult<Map<String, Object>> pkgs = m.execute(params);
-        for (Map<String, Object> pkg : pkgs) {
-            if (pkg.get("arch") == null) {
-                pkg.put("arch", LocalizationService.getInstance().getMessage("Unknown"));
-            }
-            if (pkg.get("installtime") == null) {
-                pkg.remove("installtime");
+        final String unknown = LocalizationService.getInstance().getMessage("Unknown");
+        return new StreamedResult<Map<String, Object>>(m, params) {
+            protected Map<String, Object> prepareRow(Map<String, Object> pkg) {
+                if (pkg.get("arch") == null) {
+                    pkg.put("arch", unknown);
+                }
+                if (pkg.get("installtime") == null) {
+                    pkg.remove("installtime");
+                }
+                return pkg;
             }
-        }
-        return pkgs;
+        };
     }
 
     /**
@@ -514,6 +529,21 @@ public class SystemManager extends BaseManager {
         return makeDataResult(params, elabParams, pc, m, SystemOverview.class);
     }
 
+    /**
+     * Returns all systems visible to user as a result read only when it is
+     * consumed. Like {@link #systemListShort(User, PageControl)} it only gets
+     * the id, name, and last checkin.
+     * @param user Currently logged in user.
+     * @return SystemOverviews of the systems
+     */
+    public static StreamedResult<SystemOverview> streamSystemListShort(User user) {
+        SelectMode m = ModeFactory.getMode("System_queries", "xmlrpc_visible_to_user",
+                SystemOverview.class);
+        Map<String, Long> params = new HashMap<String, Long>();
+        params.put("user_id", user.getId());
+        return new StreamedResult<SystemOverview>(m, params);
+    }
+
     /**
      * Returns list of all systems visible to user that are inactive.
      *    This is meant to be fast and only gets the id, name, and last checkin
@@ -925,6 +955,37 @@ public class SystemManager extends BaseManager {
         return makeDataResult(params, elabParams, pc, m, Errata.class);
     }
 
+    /**
+     * Returns the unscheduled relevant errata of many systems with one query.
+     * @param user The user
+     * @param sids The systems' ids
+     * @return ids of the unscheduled relevant errata per system id, systems
+     * without any or not visible to the user are left out
+     */
+    public static Map<Long, Set<Long>> unscheduledErrata(User user,
+            Collection<Long> sids) {
+        Map<Long, Set<Long>> result = new HashMap<Long, Set<Long>>();
+        if (sids.isEmpty()) {
+            return result;
+        }
+        SelectMode m = ModeFactory.getMode("Errata_queries",
+                "unscheduled_relevant_to_systems");
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("user_id", user.getId());
+        DataResult<Map<String, Object>> rows = m.execute(params,
+                new ArrayList<Long>(new HashSet<Long>(sids)));
+        for (Map<String, Object> row : rows) {
+            Long sid = (Long) row.get("server_id");
+            Set<Long> errataIds = result.get(sid);
+            if (errataIds == null) {
+                errataIds = new HashSet<Long>();
+                result.put(sid, errataIds);
+            }
+            errataIds.add((Long) row.get("errata_id"));
+        }
+        return result;
+    }
+
     /**
      * Returns whether a system has unscheduled relevant errata
      * @param user The user
@@ -1351,6 +1412,44 @@ public class SystemManager extends BaseManager {
         return !dr.isEmpty();
     }
 
+    /**
+     * Returns the ids of the given servers which lack a client capability.
+     * @param sids Server ids
+     * @param capability capability to look for
+     * @return ids of the servers without the capability, in ascending order
+     */
+    public static List<Long> listSystemsWithoutCapability(Collection<Long> sids,
+            String capability) {
+        SelectMode m = ModeFactory.getMode("System_queries",
+                "systems_without_capability");
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("name", capability);
+        return idsOf(m.execute(params, new ArrayList<Long>(sids)));
+    }
+
+    /**
+     * Returns the ids of the given servers which lack an entitlement.
+     * @param sids Server ids
+     * @param ent entitlement to look for
+     * @return ids of the servers without the entitlement, in ascending order
+     */
+    public static List<Long> listSystemsWithoutEntitlement(Collection<Long> sids,
+            Entitlement ent) {
+        SelectMode m = ModeFactory.getMode("System_queries",
+                "systems_without_entitlement");
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("label", ent.getLabel());
+        return idsOf(m.execute(params, new ArrayList<Long>(sids)));
+    }
+
+    private static List<Long> idsOf(DataResult<Map<String, Object>> rows) {
+        List<Long> ids = new ArrayList<Long>(rows.size());
+        for (Map<String, Object> row : rows) {
+            ids.add((Long) row.get("id"));
+        }
+        return ids;
+    }
+
     /**
      * Returns a list of Servers which are compatible with the given server.
      * @param user User owner
@@ -1741,6 +1840,8 @@ public class SystemManager extends BaseManager {
                 "System_queries", "entitle_server");
 
         m.execute(in, new HashMap<String, Integer>());
+        // the procedure updates the entitlement group rows
+        HibernateFactory.evictFromCache(ServerGroup.class);
         log.debug("done.  returning null");
         return result;
     }
@@ -1899,6 +2000,7 @@ public class SystemManager extends BaseManager {
         CallableMode m = ModeFactory.getCallableMode(
                 "System_queries", "unentitle_server");
         m.execute(in, new HashMap<String, Integer>());
+        HibernateFactory.evictFromCache(ServerGroup.class);
     }
 
 
@@ -1923,6 +2025,7 @@ public class SystemManager extends BaseManager {
         CallableMode m = ModeFactory.getCallableMode(
                 "System_queries", "remove_server_entitlement");
         m.execute(in, new HashMap<String, Integer>());
+        HibernateFactory.evictFromCache(ServerGroup.class);
     }
 
 
@@ -2141,16 +2244,45 @@ public class SystemManager extends BaseManager {
      */
     public static void ensureAvailableToUser(User user, Long sid) {
         if (!isAvailableToUser(user, sid)) {
-            LocalizationService ls = LocalizationService.getInstance();
-            LookupException e = new LookupException("Could not find server " + sid +
-                    " for user " + user.getId());
-            e.setLocalizedTitle(ls.getMessage("lookup.jsp.title.system"));
-            e.setLocalizedReason1(ls.getMessage("lookup.jsp.reason1.system"));
-            e.setLocalizedReason2(ls.getMessage("lookup.jsp.reason2.system"));
-            throw e;
+            throw newServerLookupException(user, sid);
         }
     }
 
+    /**
+     * Checks with one query if the user has permissions to see all the Servers
+     * @param user User being checked
+     * @param sids IDs of the Servers being checked
+     */
+    public static void ensureAvailableToUser(User user, Collection<Long> sids) {
+        if (sids.isEmpty()) {
+            return;
+        }
+        SelectMode m = ModeFactory.getMode("System_queries", "available_to_user_in");
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("uid", user.getId());
+        DataResult<Map<String, Object>> rows = m.execute(params,
+                new ArrayList<Long>(new HashSet<Long>(sids)));
+        Set<Long> available = new HashSet<Long>();
+        for (Map<String, Object> row : rows) {
+            available.add((Long) row.get("id"));
+        }
+        for (Long sid : sids) {
+            if (!available.contains(sid)) {
+                throw newServerLookupException(user, sid);
+            }
+        }
+    }
+
+    private static LookupException newServerLookupException(User user, Long sid) {
+        LocalizationService ls = LocalizationService.getInstance();
+        LookupException e = new LookupException("Could not find server " + sid +
+                " for user " + user.getId());
+        e.setLocalizedTitle(ls.getMessage("lookup.jsp.title.system"));
+        e.setLocalizedReason1(ls.getMessage("lookup.jsp.reason1.system"));
+        e.setLocalizedReason2(ls.getMessage("lookup.jsp.reason2.system"));
+        return e;
+    }
+
     /**
      * Return systems in the current set without a base channel.
      * @param user User requesting the query.
@@ -15,6 +15,8 @@
 package com.redhat.rhn.manager.system.test;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -390,6 +392,11 @@ public class SystemManagerTest extends RhnBaseTestCase {
         assertFalse(errata.isEmpty());
         assertTrue(errata.size() == 1);
         assertTrue(SystemManager.hasUnscheduledErrata(user, server.getId()));
+
+        Map<Long, Set<Long>> bySystem = SystemManager.unscheduledErrata(user,
+                Arrays.asList(server.getId(), server.getId()));
+        assertEquals(1, bySystem.size());
+        assertEquals(Collections.singleton(e.getId()), bySystem.get(server.getId()));
     }
 
 
@@ -25,6 +25,7 @@ import com.redhat.rhn.taskomatic.task.TaskConstants;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -66,6 +67,19 @@ public class TaskManager {
         return m.execute(params);
     }
 
+    /**
+     * Get the dependencies of debian packages, labeled by the field of the
+     * Packages file they belong to
+     * @param packageIds ids of the packages
+     * @return a list of maps with package_id, dep, name, version and sense
+     */
+    public static DataResult<Map<String, Object>> getDebPackageCapabilities(
+            List<Long> packageIds) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_DEB_CAPABILITIES);
+        return m.execute(new HashMap<String, Object>(), packageIds);
+    }
+
     /**
      * Get changelog entries for a particular package
      * @param packageId the package's id
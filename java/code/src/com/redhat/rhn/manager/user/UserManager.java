@@ -59,6 +59,7 @@ import com.redhat.rhn.frontend.listview.PageControl;
 import com.redhat.rhn.frontend.taglibs.list.decorators.PageSizeDecorator;
 import com.redhat.rhn.manager.BaseManager;
 import com.redhat.rhn.manager.SatManager;
+import com.redhat.rhn.manager.channel.ChannelManager;
 import com.redhat.rhn.manager.system.ServerGroupManager;
 
 /**
@@ -122,7 +123,8 @@ public class UserManager extends BaseManager {
      * @return Returns true if the user has admin access to this channel, false otherwise.
      */
     public static boolean verifyChannelAdmin(User user, Channel channel) {
-       return verifyChannelRole(user.getId(), channel, "manage");
+       return ChannelManager.checkChannelRole(user, channel.getId(),
+               ChannelManager.QRY_ROLE_MANAGE) == null;
     }
 
     /**
@@ -143,7 +145,8 @@ public class UserManager extends BaseManager {
      *     false otherwise.
      */
     public static boolean verifyChannelSubscribable(User user, Channel channel) {
-        return verifyChannelRole(user.getId(), channel, "subscribe");
+        return ChannelManager.checkChannelRole(user, channel.getId(),
+                ChannelManager.QRY_ROLE_SUBSCRIBE) == null;
     }
 
     private static boolean verifyChannelRole(Long userId, Channel channel, String role) {
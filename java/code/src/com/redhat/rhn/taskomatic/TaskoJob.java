@@ -21,12 +21,14 @@ import com.redhat.rhn.taskomatic.task.RhnQueueJob;
 import com.redhat.rhn.taskomatic.task.TaskHelper;
 
 import org.apache.log4j.Logger;
+import org.hibernate.ReplicationMode;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
 
 
 /**
@@ -37,21 +39,16 @@ import java.util.Map;
 public class TaskoJob implements Job {
 
     private static Logger log = Logger.getLogger(TaskoJob.class);
-    private static Map<String, Integer> tasks = new HashMap<String, Integer>();
-    private static Map<String, Object> locks = new HashMap<String, Object>();
-    private static Map<String, Object> lastStatus = new HashMap<String, Object>();
+    // threads a task may still run in, by task name
+    private static ConcurrentMap<String, Semaphore> permits =
+        new ConcurrentHashMap<String, Semaphore>();
+    private static ConcurrentMap<String, Boolean> singleThreaded =
+        new ConcurrentHashMap<String, Boolean>();
+    private static ConcurrentMap<String, String> lastStatus =
+        new ConcurrentHashMap<String, String>();
 
     private Long scheduleId;
 
-    static {
-        for (TaskoTask task : TaskoFactory.listTasks()) {
-            tasks.put(task.getName(), 0);
-            locks.put(task.getName(), new Object());
-            lastStatus.put(task.getName(), TaskoRun.STATUS_FINISHED);
-        }
-        TaskoFactory.closeSession();
-    }
-
     /**
      * default constructor
      * job is always associated with a schedule
@@ -62,6 +59,15 @@ public class TaskoJob implements Job {
     }
 
     private boolean isTaskSingleThreaded(TaskoTask task) {
+        Boolean single = singleThreaded.get(task.getTaskClass());
+        if (single == null) {
+            single = instanceOfQueueJob(task);
+            singleThreaded.putIfAbsent(task.getTaskClass(), single);
+        }
+        return single;
+    }
+
+    private boolean instanceOfQueueJob(TaskoTask task) {
         try {
             return Class.forName(task.getTaskClass()).newInstance() instanceof RhnQueueJob;
         }
@@ -85,25 +91,25 @@ public class TaskoJob implements Job {
         }
     }
 
-    private boolean isTaskRunning(TaskoTask task) {
-        return tasks.get(task.getName()) > 0;
-    }
-
-    private boolean isTaskThreadAvailable(TaskoTask task) {
-        return tasks.get(task.getName()) < Config.get().getInt("taskomatic." +
-                task.getTaskClass() + ".parallel_threads", 1);
-    }
-
-    private static synchronized void markTaskRunning(TaskoTask task) {
-        int count = tasks.get(task.getName());
-        count++;
-        tasks.put(task.getName(), count);
-    }
-
-    private static synchronized void unmarkTaskRunning(TaskoTask task) {
-        int count = tasks.get(task.getName());
-        count--;
-        tasks.put(task.getName(), count);
+    /**
+     * Returns the permits to run a task: one for queue tasks, they run in a
+     * single thread and their runs are left out while one is running, or
+     * the parallel_threads option of the task class for the other tasks.
+     * @param task the task
+     * @return permits of the task
+     */
+    private Semaphore getPermits(TaskoTask task) {
+        Semaphore taskPermits = permits.get(task.getName());
+        if (taskPermits == null) {
+            int threads = 1;
+            if (!isTaskSingleThreaded(task)) {
+                threads = Math.max(1, Config.get().getInt("taskomatic." +
+                        task.getTaskClass() + ".parallel_threads", 1));
+            }
+            permits.putIfAbsent(task.getName(), new Semaphore(threads, true));
+            taskPermits = permits.get(task.getName());
+        }
+        return taskPermits;
     }
 
     /**
@@ -123,6 +129,8 @@ public class TaskoJob implements Job {
 
         log.info(schedule.getJobLabel() + ":" + " bunch " + schedule.getBunch().getName() +
                 " STARTED");
+        TaskoStats stats = TaskoStats.getInstance();
+        stats.bunchFired();
 
         for (TaskoTemplate template : schedule.getBunch().getTemplates()) {
             if ((previousRun == null) ||    // first run
@@ -130,101 +138,35 @@ public class TaskoJob implements Job {
                     (previousRun.getStatus().equals(template.getStartIf()))) {
                 TaskoTask task = template.getTask();
 
-                Object lock = locks.get(task.getName());
-                synchronized (lock) {
-                    if (isTaskSingleThreaded(task)) {
-                        if (isTaskRunning(task)) {
-                            log.debug(schedule.getJobLabel() + ":" + " task " +
-                                    task.getName() + " already running ... LEAVING");
-                            previousRun = null;
-                            continue;
-                        }
+                Semaphore taskPermits = getPermits(task);
+                long waitStart = System.currentTimeMillis();
+                if (isTaskSingleThreaded(task)) {
+                    if (!taskPermits.tryAcquire()) {
+                        log.debug(schedule.getJobLabel() + ":" + " task " +
+                                task.getName() + " already running ... LEAVING");
+                        stats.runSkipped(task.getName());
+                        previousRun = null;
+                        continue;
                     }
-                    else {
-                        while (!isTaskThreadAvailable(task)) {
-                            try {
-                                log.debug(schedule.getJobLabel() + ":" + " task " +
-                                        task.getName() +
-                                        " all allowed threads running ... WAITING");
-                                lock.wait();
-                                log.debug(schedule.getJobLabel() + ":" + " task " +
-                                        task.getName() + " ... AWAKE");
-                            }
-                            catch (InterruptedException e) {
-                                // ok
-                            }
-                        }
-                    }
-                    markTaskRunning(task);
-                }
-                log.debug(schedule.getJobLabel() + ":" + " task " + task.getName() +
-                        " started");
-                TaskoRun taskRun = new TaskoRun(schedule.getOrgId(), template, scheduleId);
-                TaskoFactory.save(taskRun);
-                HibernateFactory.commitTransaction();
-                HibernateFactory.closeSession();
-
-                Class jobClass = null;
-                RhnJob job = null;
-                try {
-                    jobClass = Class.forName(template.getTask().getTaskClass());
-                    job = (RhnJob) jobClass.newInstance();
                 }
-                catch (Exception e) {
-                    String errorLog = e.getClass().toString() + ": " +
-                            e.getMessage() + '\n' + e.getCause() + '\n';
-                    taskRun.appendToErrorLog(errorLog);
-                    taskRun.saveStatus(TaskoRun.STATUS_FAILED);
-                    HibernateFactory.commitTransaction();
-                    HibernateFactory.closeSession();
-                    // log the exception properly to the rhn_taskomatic_daemon.log log
-                    e.printStackTrace();
-                    return;
+                else if (!taskPermits.tryAcquire()) {
+                    log.debug(schedule.getJobLabel() + ":" + " task " + task.getName() +
+                            " all allowed threads running ... WAITING");
+                    taskPermits.acquireUninterruptibly();
+                    log.debug(schedule.getJobLabel() + ":" + " task " + task.getName() +
+                            " ... AWAKE");
                 }
-
                 try {
-                    job.execute(context, taskRun);
-                }
-                catch (Exception e) {
-                    if (HibernateFactory.getSession().getTransaction().isActive()) {
-                        HibernateFactory.rollbackTransaction();
-                        HibernateFactory.closeSession();
-                    }
-                    job.appendExceptionToLogError(e);
-                    taskRun.failed();
-                    HibernateFactory.commitTransaction();
-                    HibernateFactory.closeSession();
-                }
-
-                // rollback everything, what the application changed and didn't committed
-                if (TaskoFactory.getSession().getTransaction().isActive()) {
-                    TaskoFactory.rollbackTransaction();
-                    HibernateFactory.closeSession();
-                }
-
-                log.debug(task.getName() + " (" + schedule.getJobLabel() + ") ... " +
-                        taskRun.getStatus().toLowerCase());
-                if (((taskRun.getStatus() == TaskoRun.STATUS_FINISHED) ||
-                        (taskRun.getStatus() == TaskoRun.STATUS_FAILED)) &&
-                     (taskRun.getStatus() != lastStatus.get(task.getName()))) {
-                    String email = "Taskomatic bunch " + schedule.getBunch().getName() +
-                    " was scheduled to run within the " + schedule.getJobLabel() +
-                    " schedule.\n\n" + "Subtask " + task.getName();
-                    if (taskRun.getStatus() == TaskoRun.STATUS_FAILED) {
-                        email += " failed.\n\n" + "For more information check ";
-                        email += taskRun.getStdErrorPath() + ".";
-                    }
-                    else {
-                        email += " finished successfuly and is back to normal.";
+                    stats.runStarted(task.getName(),
+                            System.currentTimeMillis() - waitStart);
+                    previousRun = runTask(context, schedule, template);
+                    if (previousRun == null) {
+                        return;
                     }
-                    log.info("Sending e-mail ... " + task.getName());
-                    TaskHelper.sendTaskoEmail(taskRun.getOrgId(), email);
-                    lastStatus.put(task.getName(), taskRun.getStatus());
+                    stats.runEnded(task.getName(), previousRun.getStatus());
                 }
-                previousRun = taskRun;
-                synchronized (lock) {
-                    unmarkTaskRunning(task);
-                    lock.notify();
+                finally {
+                    taskPermits.release();
                 }
             }
             else {
@@ -238,6 +180,85 @@ public class TaskoJob implements Job {
                 " FINISHED");
     }
 
+    /**
+     * Runs a task of a bunch.
+     * @param context job execution context
+     * @param schedule schedule of the bunch
+     * @param template template of the task in the bunch
+     * @return the run or null if the task class could not be instantiated
+     */
+    private TaskoRun runTask(JobExecutionContext context, TaskoSchedule schedule,
+            TaskoTemplate template) {
+        TaskoTask task = template.getTask();
+        log.debug(schedule.getJobLabel() + ":" + " task " + task.getName() +
+                " started");
+        // the run is stored in the same transaction the job starts it in
+        TaskoRun taskRun = new TaskoRun(schedule.getOrgId(), template, scheduleId);
+
+        Class jobClass = null;
+        RhnJob job = null;
+        try {
+            jobClass = Class.forName(template.getTask().getTaskClass());
+            job = (RhnJob) jobClass.newInstance();
+        }
+        catch (Exception e) {
+            String errorLog = e.getClass().toString() + ": " +
+                    e.getMessage() + '\n' + e.getCause() + '\n';
+            taskRun.appendToErrorLog(errorLog);
+            taskRun.saveStatus(TaskoRun.STATUS_FAILED);
+            HibernateFactory.commitTransaction();
+            HibernateFactory.closeSession();
+            // log the exception properly to the rhn_taskomatic_daemon.log log
+            e.printStackTrace();
+            return null;
+        }
+
+        try {
+            job.execute(context, taskRun);
+        }
+        catch (Exception e) {
+            if (HibernateFactory.getSession().getTransaction().isActive()) {
+                HibernateFactory.rollbackTransaction();
+                HibernateFactory.closeSession();
+            }
+            job.appendExceptionToLogError(e);
+            // the run is not stored if the job failed before starting it
+            taskRun.finished();
+            taskRun.setStatus(TaskoRun.STATUS_FAILED);
+            TaskoFactory.getSession().replicate(taskRun, ReplicationMode.OVERWRITE);
+            HibernateFactory.commitTransaction();
+            HibernateFactory.closeSession();
+        }
+
+        // rollback everything, what the application changed and didn't committed
+        if (TaskoFactory.getSession().getTransaction().isActive()) {
+            TaskoFactory.rollbackTransaction();
+            HibernateFactory.closeSession();
+        }
+
+        log.debug(task.getName() + " (" + schedule.getJobLabel() + ") ... " +
+                taskRun.getStatus().toLowerCase());
+        lastStatus.putIfAbsent(task.getName(), TaskoRun.STATUS_FINISHED);
+        if (((taskRun.getStatus() == TaskoRun.STATUS_FINISHED) ||
+                (taskRun.getStatus() == TaskoRun.STATUS_FAILED)) &&
+             (taskRun.getStatus() != lastStatus.get(task.getName()))) {
+            String email = "Taskomatic bunch " + schedule.getBunch().getName() +
+            " was scheduled to run within the " + schedule.getJobLabel() +
+            " schedule.\n\n" + "Subtask " + task.getName();
+            if (taskRun.getStatus() == TaskoRun.STATUS_FAILED) {
+                email += " failed.\n\n" + "For more information check ";
+                email += taskRun.getStdErrorPath() + ".";
+            }
+            else {
+                email += " finished successfuly and is back to normal.";
+            }
+            log.info("Sending e-mail ... " + task.getName());
+            TaskHelper.sendTaskoEmail(taskRun.getOrgId(), email);
+            lastStatus.put(task.getName(), taskRun.getStatus());
+        }
+        return taskRun;
+    }
+
     /**
      * setter for scheduleId
      * @param scheduleIdIn The scheduleId to set.
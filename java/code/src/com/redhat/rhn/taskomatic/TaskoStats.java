@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput counters of the taskomatic scheduler: bunches fired, triggers
+ * misfired, and per task the runs started, finished, failed and left out
+ * because the task was busy, with the time runs waited for a free thread of
+ * their task. Updating them only changes a few counters, so it is done for
+ * every run. They are read by the getSchedulerStats call.
+ *
+ * @version $Rev$
+ */
+public class TaskoStats {
+
+    private static final TaskoStats INSTANCE = new TaskoStats();
+
+    private final long since = System.currentTimeMillis();
+    private final AtomicLong bunches = new AtomicLong();
+    private final AtomicLong misfires = new AtomicLong();
+    private final ConcurrentMap<String, TaskCounters> tasks =
+        new ConcurrentHashMap<String, TaskCounters>();
+
+    /**
+     * @return the stats of the scheduler
+     */
+    public static TaskoStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records that the schedule of a bunch fired.
+     */
+    public void bunchFired() {
+        bunches.incrementAndGet();
+    }
+
+    /**
+     * Records that a trigger misfired, i.e. was not fired in time because no
+     * scheduler thread was free.
+     */
+    public void triggerMisfired() {
+        misfires.incrementAndGet();
+    }
+
+    /**
+     * Records that a run of a task started.
+     * @param taskName name of the task
+     * @param waitMillis time the run waited for a free thread of the task
+     */
+    public void runStarted(String taskName, long waitMillis) {
+        TaskCounters counters = get(taskName);
+        counters.started.incrementAndGet();
+        counters.totalWait.addAndGet(waitMillis);
+        long max = counters.maxWait.get();
+        while (waitMillis > max && !counters.maxWait.compareAndSet(max, waitMillis)) {
+            max = counters.maxWait.get();
+        }
+    }
+
+    /**
+     * Records that a run of a task ended.
+     * @param taskName name of the task
+     * @param status status the run ended with
+     */
+    public void runEnded(String taskName, String status) {
+        TaskCounters counters = get(taskName);
+        if (TaskoRun.STATUS_FAILED.equals(status)) {
+            counters.failed.incrementAndGet();
+        }
+        else {
+            counters.finished.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records that a task was left out because it was running already.
+     * @param taskName name of the task
+     */
+    public void runSkipped(String taskName) {
+        get(taskName).skipped.incrementAndGet();
+    }
+
+    /**
+     * Returns the stats as a struct: the number of bunches fired and of
+     * triggers misfired since taskomatic started, the minutes since then, and
+     * per task under "tasks" the runs started, finished, failed and skipped,
+     * and the total and maximum time runs waited for a free thread in ms.
+     * @return the stats
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("uptime_minutes",
+                toInt((System.currentTimeMillis() - since) / 60000));
+        result.put("bunches_fired", toInt(bunches.get()));
+        result.put("misfires", toInt(misfires.get()));
+        Map<String, Object> taskStats = new TreeMap<String, Object>();
+        for (Map.Entry<String, TaskCounters> entry : tasks.entrySet()) {
+            taskStats.put(entry.getKey(), entry.getValue().toMap());
+        }
+        result.put("tasks", taskStats);
+        return result;
+    }
+
+    private TaskCounters get(String taskName) {
+        TaskCounters counters = tasks.get(taskName);
+        if (counters == null) {
+            tasks.putIfAbsent(taskName, new TaskCounters());
+            counters = tasks.get(taskName);
+        }
+        return counters;
+    }
+
+    // counters are sent as i4, the largest value stands for any larger one
+    private static Integer toInt(long value) {
+        return new Integer((int) Math.min(value, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Counters of the runs of one task
+     */
+    private static final class TaskCounters {
+
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong finished = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong totalWait = new AtomicLong();
+        private final AtomicLong maxWait = new AtomicLong();
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<String, Object>();
+            map.put("started", toInt(started.get()));
+            map.put("finished", toInt(finished.get()));
+            map.put("failed", toInt(failed.get()));
+            map.put("skipped", toInt(skipped.get()));
+            map.put("total_wait_ms", toInt(totalWait.get()));
+            map.put("max_wait_ms", toInt(maxWait.get()));
+            return map;
+        }
+    }
+}
@@ -41,6 +41,15 @@ public class TaskoXmlRpcHandler {
         return 1;
     }
 
+    /**
+     * returns throughput counters of the scheduler since taskomatic started,
+     * see {@link TaskoStats#getStats()}
+     * @return scheduler stats
+     */
+    public Map<String, Object> getSchedulerStats() {
+        return TaskoStats.getInstance().getStats();
+    }
+
     /**
      * lists all available organizational bunches
      * @param orgId organization id
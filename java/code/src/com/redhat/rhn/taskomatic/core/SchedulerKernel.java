@@ -109,6 +109,8 @@ public class SchedulerKernel {
 
             try {
                 SchedulerKernel.scheduler.addTriggerListener(this.chainedTriggerListener);
+                SchedulerKernel.scheduler.addGlobalTriggerListener(
+                        new TaskoStatsListener());
             }
             catch (SchedulerException e) {
                 throw new ConfigException(e.getLocalizedMessage(), e);
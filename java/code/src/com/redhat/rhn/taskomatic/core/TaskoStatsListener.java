@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.core;
+
+import com.redhat.rhn.taskomatic.TaskoStats;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.TriggerListener;
+
+/**
+ * Counts the triggers that misfired, for the scheduler stats
+ * @version $Rev$
+ */
+public class TaskoStatsListener implements TriggerListener {
+
+    public static final String LISTENER_NAME = "TaskoStatsListener";
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName() {
+        return TaskoStatsListener.LISTENER_NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void triggerFired(Trigger trigger, JobExecutionContext ctx) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean vetoJobExecution(Trigger trigger, JobExecutionContext ctx) {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void triggerMisfired(Trigger trigger) {
+        TaskoStats.getInstance().triggerMisfired();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void triggerComplete(Trigger trigger, JobExecutionContext ctx, int reasonCode) {
+    }
+}
@@ -14,21 +14,26 @@
  */
 package com.redhat.rhn.taskomatic.task;
 
+import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.db.datasource.WriteMode;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.action.Action;
 import com.redhat.rhn.domain.action.ActionFactory;
-import com.redhat.rhn.domain.action.config.ConfigAction;
-import com.redhat.rhn.domain.action.config.ConfigRevisionAction;
-import com.redhat.rhn.domain.config.ConfigFile;
-import com.redhat.rhn.domain.config.ConfigRevision;
-import com.redhat.rhn.domain.config.ConfigurationFactory;
-import com.redhat.rhn.domain.server.Server;
-import com.redhat.rhn.domain.server.ServerFactory;
-import com.redhat.rhn.frontend.dto.ConfigFileNameDto;
+import com.redhat.rhn.domain.org.OrgFactory;
 import com.redhat.rhn.manager.configuration.ConfigurationManager;
 
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -39,6 +44,10 @@ import java.util.Set;
  */
 public class CompareConfigFilesTask extends RhnJavaJob {
 
+    // number of systems whose revisions are resolved in one go
+    private static final int BATCH_SIZE = 1000;
+    private static final Long REMAINING_TRIES = 5L;
+
     /**
      * Default constructor
      */
@@ -54,40 +63,82 @@ public class CompareConfigFilesTask extends RhnJavaJob {
         log.info("running config compare");
 
         ConfigurationManager cm = ConfigurationManager.getInstance();
+        boolean group = ConfigDefaults.get().isTaskoConfigDiffGroupActions();
+
+        // active systems only
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("checkin_threshold", Config.get().getInt(
+                ConfigDefaults.SYSTEM_CHECKIN_THRESHOLD, 1));
+        SelectMode m = ModeFactory.getMode("config_queries",
+                "config_diff_enabled_systems");
+        DataResult<Map<String, Object>> systems = m.execute(params);
 
-        for (Server server : ServerFactory.listConfigDiffEnabledSystems()) {
-            if (server.isInactive()) {
-                continue;
+        // org id followed by the revision ids -> systems with these revisions
+        Map<List<Long>, List<Long>> groups = new LinkedHashMap<List<Long>, List<Long>>();
+        for (int i = 0; i < systems.size(); i += BATCH_SIZE) {
+            List<Map<String, Object>> batch =
+                    systems.subList(i, Math.min(i + BATCH_SIZE, systems.size()));
+            List<Long> sids = new ArrayList<Long>();
+            for (Map<String, Object> row : batch) {
+                sids.add((Long) row.get("id"));
             }
+            Map<Long, Set<Long>> revisions = cm.listLatestRevisionsForSystems(sids);
 
-            Action act = ActionFactory.createAction(ActionFactory.TYPE_CONFIGFILES_DIFF);
-            ConfigAction cfact = (ConfigAction) act;
-            // set up needed fields for the action
-            act.setName(act.getActionType().getName());
-            act.setOrg(server.getOrg());
+            for (Map<String, Object> row : batch) {
+                Long sid = (Long) row.get("id");
+                Set<Long> crids = revisions.get(sid);
+                if (crids == null) {
+                    continue;
+                }
+                List<Long> key = new ArrayList<Long>(crids.size() + 1);
+                key.add((Long) row.get("org_id"));
+                key.addAll(crids);
+                if (!group) {
+                    List<Long> single = new ArrayList<Long>(1);
+                    single.add(sid);
+                    scheduleComparison(key, single);
+                    continue;
+                }
+                List<Long> members = groups.get(key);
+                if (members == null) {
+                    members = new ArrayList<Long>();
+                    groups.put(key, members);
+                }
+                members.add(sid);
+            }
+        }
 
-            // add the server to the action
-            ActionFactory.addServerToAction(server, act);
+        for (Map.Entry<List<Long>, List<Long>> e : groups.entrySet()) {
+            scheduleComparison(e.getKey(), e.getValue());
+        }
+    }
 
-            // add file revisions to the action
-            for (ConfigFileNameDto cfn : cm.listAllFileNamesForSystem(server)) {
-                Long cfid = cfn.getConfigFileId();
-                ConfigFile cf = ConfigurationFactory.lookupConfigFileById(cfid);
-                ConfigRevision crev = cf.getLatestConfigRevision();
+    /**
+     * Schedules a single config diff action for the given systems
+     * @param key org id followed by the ids of the revisions to compare
+     * @param sids ids of the systems
+     */
+    private void scheduleComparison(List<Long> key, List<Long> sids) {
+        Action act = ActionFactory.createAction(ActionFactory.TYPE_CONFIGFILES_DIFF);
+        act.setName(act.getActionType().getName());
+        act.setOrg(OrgFactory.lookupById(key.get(0)));
+        ActionFactory.save(act);
+        HibernateFactory.getSession().flush();
 
-                ActionFactory.addConfigRevisionToAction(crev, server, cfact);
-            }
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("parent_id", act.getId());
+        params.put("status_id", ActionFactory.STATUS_QUEUED.getId());
+        params.put("tries", REMAINING_TRIES);
+        WriteMode m = ModeFactory.getWriteMode("Action_queries", "insert_server_actions");
+        m.executeUpdate(params, sids);
 
-            if (act.getServerActions() == null || act.getServerActions().size() < 1) {
-                continue;
-            }
-            Set<ConfigRevisionAction> cra = cfact.getConfigRevisionActions();
-            if (cra == null || cra.size() < 1) {
-                continue;
-            }
+        params = new HashMap<String, Object>();
+        params.put("aid", act.getId());
+        m = ModeFactory.getWriteMode("Action_queries", "add_config_revs_to_server_actions");
+        m.executeUpdate(params, key.subList(1, key.size()));
 
-            log.info("  saving comparison for " + server.getId());
-            ActionFactory.save(act);
-        }
+        log.info("  saving comparison for " + sids);
+        // nothing else is done with the action, keep the session small
+        HibernateFactory.getSession().evict(act);
     }
 }
@@ -89,6 +89,9 @@ public abstract class RhnQueueJob implements RhnJob {
             }
             catch (Exception e) {
                 getLogger().error(e);
+                jobRun.failed();
+                HibernateFactory.commitTransaction();
+                HibernateFactory.closeSession();
                 return;
             }
         }
@@ -160,9 +160,18 @@ public class TaskConstants {
     public static final String TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_PREDEPENDS =
         "repomdgenerator_capability_predepends";
 
+    public static final String TASK_QUERY_REPOMD_GENERATOR_DEB_CAPABILITIES =
+        "repomdgenerator_deb_capabilities";
+
     public static final String TASK_QUERY_REPOMD_GENERATOR_PACKAGE_CHANGELOG =
         "repomdgenerator_package_changelog";
 
+    public static final String TASK_QUERY_REPOMD_GENERATOR_PACKAGE_FINGERPRINT =
+        "repomdgenerator_package_fingerprint";
+
+    public static final String TASK_QUERY_REPOMD_GENERATOR_ERRATA_FINGERPRINT =
+        "repomdgenerator_errata_fingerprint";
+
     public static final String MODE_NAME = "Task_queries";
 
     public static final String TASK_QUERY_LOOKUP_REBOOT_ACTION_CLEANUP =
@@ -35,6 +35,15 @@ public class ErrataCacheDriver implements QueueDriver {
 
     private Logger logger = null;
 
+    /**
+     * Work items are run in the order they are listed.
+     * @param workItem work item
+     * @return 0
+     */
+    public long getCost(Object workItem) {
+        return 0;
+    }
+
     /**
      * {@inheritDoc}
      */
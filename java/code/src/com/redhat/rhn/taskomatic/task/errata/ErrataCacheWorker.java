@@ -82,6 +82,7 @@ public class ErrataCacheWorker implements QueueWorker {
         }
         catch (Exception e) {
             logger.error(e);
+            parentQueue.workerFailed();
             HibernateFactory.rollbackTransaction();
         }
         finally {
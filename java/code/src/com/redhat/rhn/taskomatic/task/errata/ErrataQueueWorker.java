@@ -76,6 +76,7 @@ class ErrataQueueWorker implements QueueWorker {
         }
         catch (Exception e) {
             logger.error(e);
+            parentQueue.workerFailed();
             HibernateFactory.rollbackTransaction();
         }
         finally {
@@ -109,6 +109,17 @@ public class ChannelRepodataDriver implements QueueDriver {
         return ConfigDefaults.get().getTaskoChannelRepodataWorkers();
     }
 
+    /**
+     * Channels with fewer packages are generated first, so that small channels
+     * do not wait for large ones.
+     * @param workItem work item
+     * @return number of packages in the channel
+     */
+    public long getCost(Object workItem) {
+        Number packages = (Number) ((Map) workItem).get("package_count");
+        return packages == null ? 0 : packages.longValue();
+    }
+
     /**
      * @param workItem work item
      * @return Returns channel repodata worker object
@@ -97,11 +97,11 @@ public class ChannelRepodataWorker implements QueueWorker {
                 if (channelToProcess != null) {
                     // see if the channel is stale, or one of the entries has
                     // force='Y'
-                    if (queueContainsBypass("force") ||
-                            repoWriter.isChannelRepodataStale(channelToProcess)) {
+                    boolean force = queueContainsBypass("force");
+                    if (force || repoWriter.isChannelRepodataStale(channelToProcess)) {
                         if (queueContainsBypass("bypass_filters") ||
                                 channelToProcess.isChannelRepodataRequired()) {
-                            repoWriter.writeRepomdFiles(channelToProcess);
+                            repoWriter.writeRepomdFiles(channelToProcess, force);
                         }
                     }
                     else {
@@ -125,6 +125,7 @@ public class ChannelRepodataWorker implements QueueWorker {
         }
         catch (Exception e) {
             logger.error(e);
+            parentQueue.workerFailed();
             e.printStackTrace();
             parentQueue.getQueueRun().failed();
             // unmark channel to be worked on
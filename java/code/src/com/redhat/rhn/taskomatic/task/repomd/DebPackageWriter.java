@@ -14,24 +14,45 @@
  */
 package com.redhat.rhn.taskomatic.task.repomd;
 
+import com.redhat.rhn.common.util.StringUtil;
 import com.redhat.rhn.domain.channel.Channel;
-import com.redhat.rhn.frontend.dto.PackageCapabilityDto;
 import com.redhat.rhn.frontend.dto.PackageDto;
 import com.redhat.rhn.manager.task.TaskManager;
-import com.redhat.rhn.taskomatic.task.TaskConstants;
 
 import org.apache.log4j.Logger;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.util.Collection;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.zip.GZIPOutputStream;
 
 /**
+ * Writes the Packages, Packages.gz and Release files of a debian repository.
+ *
+ * Packages and Packages.gz are written in a single pass, the sizes and hashes
+ * for Release are computed while writing. All files are written with a .new
+ * suffix and only moved into place by {@link #finish(Date)}, so that clients
+ * never see a partially written repository.
  *
  * @version $Rev $
  *
@@ -39,235 +60,248 @@ import java.util.zip.GZIPOutputStream;
 public class DebPackageWriter {
 
     private static Logger log = Logger.getLogger(DebPackageWriter.class);
-    private String filenamePackages = "";
-    private String channelLabel = "";
+
+    private static final String PACKAGES = "Packages";
+    private static final String PACKAGES_GZ = "Packages.gz";
+    private static final String RELEASE = "Release";
+    private static final String NEW = ".new";
+    /** the dependency fields of a package in the order they are written */
+    private static final String[] DEPS = {"Provides", "Depends", "Conflicts",
+        "Replaces", "Suggests", "Recommends", "Pre-Depends", "Breaks"};
+
+    private String prefix;
+    private String channelLabel;
+    private HashingOutputStream packagesFile;
+    private HashingOutputStream packagesGzFile;
+    private GZIPOutputStream gzipStream;
+    private BufferedWriter out;
+    private SortedSet<String> architectures = new TreeSet<String>();
 
     /**
      *
      * @param channel debian channel
-     * @param prefix path to repository
+     * @param prefixIn path to repository
      */
-    public DebPackageWriter(Channel channel, String prefix) {
+    public DebPackageWriter(Channel channel, String prefixIn) {
         log.debug("DebPackageWriter created");
+        channelLabel = channel.getLabel();
+        prefix = prefixIn;
         try {
-            channelLabel = channel.getLabel();
-            filenamePackages = prefix + "Packages";
-            File f = new File(filenamePackages);
-            if (f.exists()) {
-                f.delete();
-            }
-            f.createNewFile();
+            packagesFile = new HashingOutputStream(
+                    new FileOutputStream(prefix + PACKAGES + NEW));
+            packagesGzFile = new HashingOutputStream(
+                    new FileOutputStream(prefix + PACKAGES_GZ + NEW));
+            gzipStream = new GZIPOutputStream(packagesGzFile, 65536);
+            out = new BufferedWriter(new OutputStreamWriter(
+                    new TeeOutputStream(packagesFile, gzipStream), "UTF-8"), 65536);
         }
-        catch (Exception e) {
-            log.error("Create file Packages failed " + e.toString());
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
         }
     }
 
     /**
-     * add package info to Packages file in repository
-     *
-     * @param pkgDto package object
+     * Adds a batch of elaborated packages to the Packages file. The
+     * dependencies of all packages of the batch are looked up at once.
+     * @param packages packages to add
      */
-    public void addPackage(PackageDto pkgDto) {
-        String packageName = null;
-        try {
-            BufferedWriter out = new BufferedWriter(new FileWriter(
-                    filenamePackages, true));
-
-            packageName = pkgDto.getName();
-            out.write("Package: ");
-            out.write(packageName);
-            out.newLine();
-
-            out.write("Version: ");
-            String epoch = pkgDto.getEpoch();
-            if (epoch != null && !epoch.equalsIgnoreCase("")) {
-                out.write(epoch + ":");
-            }
-            out.write(pkgDto.getVersion());
-            String release = pkgDto.getRelease();
-            if (release != null && !release.equalsIgnoreCase("X")) {
-                out.write("-" + release);
+    public void addPackages(List<PackageDto> packages) {
+        if (packages.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<Long>(packages.size());
+        for (PackageDto pkgDto : packages) {
+            ids.add(pkgDto.getId());
+        }
+        Map<Long, Map<String, String[]>> deps = new HashMap<Long, Map<String, String[]>>();
+        List<Map<String, Object>> rows = TaskManager.getDebPackageCapabilities(ids);
+        for (Map<String, Object> row : rows) {
+            Long pkgId = ((Number) row.get("package_id")).longValue();
+            Map<String, String[]> pkgDeps = deps.get(pkgId);
+            if (pkgDeps == null) {
+                pkgDeps = new HashMap<String, String[]>();
+                deps.put(pkgId, pkgDeps);
             }
-            out.newLine();
-
-            out.write("Architecture: ");
-            out.write(pkgDto.getArchLabel().replace("-deb", ""));
-            out.newLine();
+            addDependency(pkgDeps, row);
+        }
 
-            out.write("Maintainer: ");
-            out.write(pkgDto.getVendor());
-            out.newLine();
+        try {
+            for (PackageDto pkgDto : packages) {
+                Map<String, String[]> pkgDeps = deps.get(pkgDto.getId());
+                if (pkgDeps == null) {
+                    pkgDeps = new HashMap<String, String[]>();
+                }
+                addPackage(pkgDto, pkgDeps);
+            }
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
 
-            Long packagePayloadSize = pkgDto.getPayloadSize();
-            if (packagePayloadSize > 0) {
-                out.write("Installed-Size: ");
-                out.write(pkgDto.getPayloadSize().toString());
-                out.newLine();
+    /**
+     * Stores a dependency at its position. Debian capability names carry the
+     * position of the dependency in the field as a "_n" suffix.
+     */
+    private static void addDependency(Map<String, String[]> pkgDeps,
+            Map<String, Object> row) {
+        String dep = (String) row.get("dep");
+        String capName = (String) row.get("name");
+        int idx = capName.lastIndexOf('_');
+        int position = Integer.parseInt(capName.substring(idx + 1));
+        StringBuilder entry = new StringBuilder(capName.substring(0, idx));
+        String version = (String) row.get("version");
+        if (version != null && !version.isEmpty()) {
+            entry.append(" (");
+            Number senseIn = (Number) row.get("sense");
+            String sense = senseIn == null ? null : getSenseAsString(senseIn.longValue());
+            if (sense != null) {
+                entry.append(sense).append(" ");
             }
+            entry.append(version).append(")");
+        }
 
-            // dependencies
-            addPackageDepData(
-                    out,
-                    TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_PROVIDES,
-                    pkgDto.getId(), "Provides");
-            addPackageDepData(
-                    out,
-                    TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_REQUIRES,
-                    pkgDto.getId(), "Depends");
-            addPackageDepData(
-                    out,
-                    TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_CONFLICTS,
-                    pkgDto.getId(), "Conflicts");
-            addPackageDepData(
-                    out,
-                    TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_OBSOLETES,
-                    pkgDto.getId(), "Replaces");
-            addPackageDepData(
-                    out,
-                    TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_SUGGESTS,
-                    pkgDto.getId(), "Suggests");
-            addPackageDepData(
-                    out,
-                    TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_RECOMMENDS,
-                    pkgDto.getId(), "Recommends");
-            addPackageDepData(
-                    out,
-                    TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_PREDEPENDS,
-                    pkgDto.getId(), "Pre-Depends");
-            addPackageDepData(
-                    out,
-                    TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_BREAKS,
-                    pkgDto.getId(), "Breaks");
-
-            out.write("Filename: XMLRPC/GET-REQ/" + channelLabel + "/getPackage/");
-            out.write(pkgDto.getName() + "_");
-            if (epoch != null && !epoch.equalsIgnoreCase("")) {
-                out.write(epoch + ":");
+        String[] entries = pkgDeps.get(dep);
+        if (entries == null || entries.length <= position) {
+            String[] grown = new String[Math.max(position + 1,
+                    entries == null ? 4 : entries.length * 2)];
+            if (entries != null) {
+                System.arraycopy(entries, 0, grown, 0, entries.length);
             }
-            out.write(pkgDto.getVersion() + "-" + pkgDto.getRelease());
-            out.write("." + pkgDto.getArchLabel() + ".deb");
-            out.newLine();
+            entries = grown;
+            pkgDeps.put(dep, entries);
+        }
+        entries[position] = entry.toString();
+    }
 
-            // size of package, is checked by apt
-            out.write("Size: ");
-            out.write(pkgDto.getPackageSize().toString());
+    /**
+     * add package info to Packages file in repository
+     *
+     * @param pkgDto package object
+     * @param pkgDeps dependency entries of the package by field
+     */
+    private void addPackage(PackageDto pkgDto, Map<String, String[]> pkgDeps)
+        throws IOException {
+        out.write("Package: ");
+        out.write(pkgDto.getName());
+        out.newLine();
+
+        out.write("Version: ");
+        String epoch = pkgDto.getEpoch();
+        if (epoch != null && !epoch.equalsIgnoreCase("")) {
+            out.write(epoch + ":");
+        }
+        out.write(pkgDto.getVersion());
+        String release = pkgDto.getRelease();
+        if (release != null && !release.equalsIgnoreCase("X")) {
+            out.write("-" + release);
+        }
+        out.newLine();
+
+        String arch = pkgDto.getArchLabel().replace("-deb", "");
+        architectures.add(arch);
+        out.write("Architecture: ");
+        out.write(arch);
+        out.newLine();
+
+        out.write("Maintainer: ");
+        out.write(pkgDto.getVendor());
+        out.newLine();
+
+        Long packagePayloadSize = pkgDto.getPayloadSize();
+        if (packagePayloadSize > 0) {
+            out.write("Installed-Size: ");
+            out.write(pkgDto.getPayloadSize().toString());
             out.newLine();
+        }
 
-            // at least one checksum is required by apt
-            if (pkgDto.getChecksumType().equalsIgnoreCase("md5")) {
-                out.write("MD5sum: ");
-                out.write(pkgDto.getChecksum());
-                out.newLine();
-            }
+        // dependencies
+        for (String dep : DEPS) {
+            addPackageDepData(pkgDeps.get(dep), dep);
+        }
 
-            if (pkgDto.getChecksumType().equalsIgnoreCase("sha1")) {
-                out.write("SHA1: ");
-                out.write(pkgDto.getChecksum());
-                out.newLine();
-            }
+        out.write("Filename: XMLRPC/GET-REQ/" + channelLabel + "/getPackage/");
+        out.write(pkgDto.getName() + "_");
+        if (epoch != null && !epoch.equalsIgnoreCase("")) {
+            out.write(epoch + ":");
+        }
+        out.write(pkgDto.getVersion() + "-" + pkgDto.getRelease());
+        out.write("." + pkgDto.getArchLabel() + ".deb");
+        out.newLine();
+
+        // size of package, is checked by apt
+        out.write("Size: ");
+        out.write(pkgDto.getPackageSize().toString());
+        out.newLine();
+
+        // at least one checksum is required by apt
+        if (pkgDto.getChecksumType().equalsIgnoreCase("md5")) {
+            out.write("MD5sum: ");
+            out.write(pkgDto.getChecksum());
+            out.newLine();
+        }
 
-            if (pkgDto.getChecksumType().equalsIgnoreCase("sha256")) {
-                out.write("SHA256: ");
-                out.write(pkgDto.getChecksum());
-                out.newLine();
-            }
+        if (pkgDto.getChecksumType().equalsIgnoreCase("sha1")) {
+            out.write("SHA1: ");
+            out.write(pkgDto.getChecksum());
+            out.newLine();
+        }
 
-            out.write("Section: ");
-            out.write(pkgDto.getPackageGroupName());
+        if (pkgDto.getChecksumType().equalsIgnoreCase("sha256")) {
+            out.write("SHA256: ");
+            out.write(pkgDto.getChecksum());
             out.newLine();
+        }
 
-            // Priority is not stored in DB
-            // out.write("Priority: ");
-            // out.write(pkgDto.get);
-            // out.newLine();
+        out.write("Section: ");
+        out.write(pkgDto.getPackageGroupName());
+        out.newLine();
 
-            // out.write("Homepage: ");
-            // out.write(pkgDto.get);
-            // out.newLine();
+        // Priority is not stored in DB
+        // out.write("Priority: ");
+        // out.write(pkgDto.get);
+        // out.newLine();
 
-            out.write("Description: ");
-            out.write(pkgDto.getDescription());
-            out.newLine();
+        // out.write("Homepage: ");
+        // out.write(pkgDto.get);
+        // out.newLine();
 
-            // new line after package metadata
-            out.newLine();
-            out.flush();
-            out.close();
-        }
-        catch (Exception e) {
-            log.error("Failed to add deb package " + packageName, e);
-        }
+        out.write("Description: ");
+        out.write(pkgDto.getDescription());
+        out.newLine();
+
+        // new line after package metadata
+        out.newLine();
     }
 
     /**
-     * @param out
-     *
-     * @param pkgCapIter
-     *            pkg capability info
-     * @param pkgId
-     *            package Id to set
-     * @param dep
-     *            dependency info
+     * @param entries dependency entries by position, may be null
+     * @param dep dependency field
      */
-    private void addPackageDepData(BufferedWriter out, String query,
-            Long pkgId, String dep) {
-        int count = 0;
-        Collection<PackageCapabilityDto> capabilities = TaskManager
-                .getPackageCapabilityDtos(pkgId, query);
-        int icapcount = capabilities.size();
-        String[] names = new String[icapcount];
-        String[] versions = new String[icapcount];
-        String[] senses = new String[icapcount];
-        try {
-            for (PackageCapabilityDto capability : capabilities) {
-                if (count == 0) {
-                    out.write(dep + ": ");
-                }
-
-                count++;
-                int iordernumber = Integer.parseInt(capability.getName().substring(
-                                                capability.getName().indexOf("_") + 1));
-                names[iordernumber] = capability.getName().substring(
-                                                0, capability.getName().indexOf("_"));
-                versions[iordernumber] = capability.getVersion();
-                senses[iordernumber] = getSenseAsString(capability.getSense());
-            }
-
-            for (int iIndex = 0; iIndex < names.length; iIndex++) {
-                if (iIndex != 0) {
-                    out.write(", ");
-                }
-                out.write(names[iIndex]);
-                if (versions[iIndex] != null && !versions[iIndex].isEmpty()) {
-                    out.write(" (");
-                    if (senses[iIndex] != null) {
-                        out.write(senses[iIndex] + " ");
-                    }
-                    out.write(versions[iIndex]);
-                    out.write(")");
-                }
-            }
+    private void addPackageDepData(String[] entries, String dep) throws IOException {
+        if (entries == null) {
+            return;
         }
-        catch (Exception e) {
-            log.error("failed to write DEB dependency " + dep + " " + e.toString());
-        }
-        try {
-            if (count > 0) {
-                out.newLine();
+        out.write(dep + ": ");
+        boolean first = true;
+        for (String entry : entries) {
+            if (entry == null) {
+                continue;
             }
+            if (!first) {
+                out.write(", ");
+            }
+            out.write(entry);
+            first = false;
         }
-        catch (Exception e) {
-            log.error("failed to write new line " + e.toString());
-        }
-
+        out.newLine();
     }
 
     /**
      * @param senseIn package sense
      * @return a human readable representation of the sense
      */
-    private String getSenseAsString(long senseIn) {
+    private static String getSenseAsString(long senseIn) {
         long sense = senseIn & 0xf;
         if (sense == 2) {
             return "<<";
@@ -290,33 +324,170 @@ public class DebPackageWriter {
     }
 
     /**
-     * Create Packages.gz from Packages
+     * Completes Packages and Packages.gz, writes the Release file and moves
+     * all of them into place.
+     * @param lastModified modification time to set on the files
      */
-    public void generatePackagesGz() {
+    public void finish(Date lastModified) {
         try {
-            // Create the GZIP output stream
-            String outFilename = filenamePackages + ".gz";
-            GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(
-                    outFilename, false));
-
-            // Open the input file
-            FileInputStream in = new FileInputStream(filenamePackages);
-
-            // Transfer bytes from the input file to the GZIP output stream
-            byte[] buf = new byte[1024];
-            int len;
-            while ((len = in.read(buf)) > 0) {
-                out.write(buf, 0, len);
-            }
-            in.close();
+            out.close();
+            writeRelease(lastModified);
 
-            // Complete the GZIP file
-            out.finish();
+            moveIntoPlace(PACKAGES, lastModified);
+            // Packages.gz last, its modification time marks the repository as current
+            moveIntoPlace(RELEASE, lastModified);
+            moveIntoPlace(PACKAGES_GZ, lastModified);
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes and removes the files written so far, leaving the existing
+     * repository untouched.
+     */
+    public void abort() {
+        try {
             out.close();
         }
         catch (IOException e) {
-            log.error("Failed to create Packages.gz " + e.toString());
+            log.warn("Failed to close " + prefix + PACKAGES + NEW, e);
         }
+        new File(prefix + PACKAGES + NEW).delete();
+        new File(prefix + PACKAGES_GZ + NEW).delete();
+        new File(prefix + RELEASE + NEW).delete();
     }
 
+    private void writeRelease(Date date) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat(
+                "EEE, dd MMM yyyy HH:mm:ss 'UTC'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Map<String, HashingOutputStream> files =
+                new TreeMap<String, HashingOutputStream>();
+        files.put(PACKAGES, packagesFile);
+        files.put(PACKAGES_GZ, packagesGzFile);
+
+        Writer release = new OutputStreamWriter(
+                new FileOutputStream(prefix + RELEASE + NEW), "UTF-8");
+        try {
+            release.write("Origin: " + channelLabel + "\n");
+            release.write("Label: " + channelLabel + "\n");
+            release.write("Architectures: " +
+                    StringUtil.join(" ", architectures.iterator()) + "\n");
+            release.write("Date: " + format.format(date) + "\n");
+            for (int i = 0; i < HashingOutputStream.FIELDS.length; i++) {
+                release.write(HashingOutputStream.FIELDS[i] + ":\n");
+                for (Map.Entry<String, HashingOutputStream> file : files.entrySet()) {
+                    release.write(" " + file.getValue().getChecksum(i) + " " +
+                            file.getValue().getSize() + " " + file.getKey() + "\n");
+                }
+            }
+        }
+        finally {
+            release.close();
+        }
+    }
+
+    private void moveIntoPlace(String name, Date lastModified) throws IOException {
+        File file = new File(prefix + name + NEW);
+        file.setLastModified(lastModified.getTime());
+        Files.move(file.toPath(), new File(prefix + name).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Counts and hashes everything written to the underlying stream.
+     */
+    private static class HashingOutputStream extends FilterOutputStream {
+
+        /** Release fields, in the order of the digests */
+        static final String[] FIELDS = {"MD5Sum", "SHA1", "SHA256"};
+        private static final String[] ALGORITHMS = {"MD5", "SHA-1", "SHA-256"};
+
+        private final MessageDigest[] digests = new MessageDigest[ALGORITHMS.length];
+        private String[] checksums;
+        private long size;
+
+        HashingOutputStream(OutputStream outIn) {
+            super(outIn);
+            try {
+                for (int i = 0; i < ALGORITHMS.length; i++) {
+                    digests[i] = MessageDigest.getInstance(ALGORITHMS[i]);
+                }
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new RepomdRuntimeException(e);
+            }
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            for (MessageDigest digest : digests) {
+                digest.update((byte) b);
+            }
+            size++;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            for (MessageDigest digest : digests) {
+                digest.update(b, off, len);
+            }
+            size += len;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        String getChecksum(int i) {
+            if (checksums == null) {
+                checksums = new String[digests.length];
+                for (int j = 0; j < digests.length; j++) {
+                    checksums[j] = StringUtil.getHexString(digests[j].digest());
+                }
+            }
+            return checksums[i];
+        }
+    }
+
+    /**
+     * Writes everything to two streams.
+     */
+    private static class TeeOutputStream extends OutputStream {
+
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream firstIn, OutputStream secondIn) {
+            first = firstIn;
+            second = secondIn;
+        }
+
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+
+        public void close() throws IOException {
+            try {
+                first.close();
+            }
+            finally {
+                second.close();
+            }
+        }
+    }
 }
@@ -90,14 +90,31 @@ public class DebRepositoryWriter extends RepositoryWriter {
         log.info("Generating new DEB repository for channel " + channel.getLabel());
         Date start = new Date();
         DebPackageWriter writer = new DebPackageWriter(channel, prefix);
-        // TODO: is it possible to make this batched to reduce memory requirements
-        // like in RpmReporsitoryWriter?
+        // batch the elaboration so we don't have to hold many thousands of
+        // packages in memory at once
+        final int batchSize = 1000;
         DataResult<PackageDto> packages = TaskManager.getChannelPackageDtos(channel);
-        packages.elaborate();
-        for (PackageDto pkgDto : packages) {
-            writer.addPackage(pkgDto);
+        try {
+            for (int i = 0; i < packages.size(); i += batchSize) {
+                DataResult<PackageDto> packageBatch = packages.subList(i, i + batchSize);
+                packageBatch.elaborate();
+                for (PackageDto pkgDto : packageBatch) {
+                    // package may have been deleted before packageBatch.elaborate()
+                    if (pkgDto.getChecksum() == null) {
+                        throw new RepomdRuntimeException("Package with id " +
+                                pkgDto.getId() + " removed from server, " +
+                                "interrupting repo generation for " +
+                                channel.getLabel());
+                    }
+                }
+                writer.addPackages(packageBatch);
+            }
+            writer.finish(channel.getLastModified());
+        }
+        catch (RuntimeException e) {
+            writer.abort();
+            throw e;
         }
-        writer.generatePackagesGz();
 
         log.info("Repository metadata generation for '" +
                  channel.getLabel() + "' finished in " +
@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.RowHandler;
+import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.util.StringUtil;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.taskomatic.task.TaskConstants;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Fingerprint of the content a repository was generated from, stored next to
+ * the repository metadata. Comparing it with the fingerprint of the current
+ * channel content tells whether the repository is stale, and which of its
+ * files need to be generated again.
+ *
+ * The packages are fingerprinted by id and checksum, the errata by id and
+ * modification times. The manifest also keeps the index data of the package
+ * metadata files, so that repomd.xml can be written again without them when
+ * only the errata changed.
+ *
+ * @version $Rev $
+ */
+public class RepodataManifest {
+
+    public static final String FILE_NAME = "repodata.manifest";
+
+    private static final String CHECKSUM_TYPE = "checksum_type";
+    private static final String PACKAGES = "packages";
+    private static final String ERRATA = "errata";
+    private static final String SOURCE = "source.";
+    private static final String INDEX = "index.";
+
+    private final Properties properties = new Properties();
+
+    /**
+     * Computes the fingerprint of the current content of a channel.
+     * @param channel the channel
+     * @return the manifest of the channel content
+     */
+    public static RepodataManifest compute(Channel channel) {
+        RepodataManifest manifest = new RepodataManifest();
+        manifest.set(CHECKSUM_TYPE, channel.getChecksumTypeLabel());
+        manifest.set(PACKAGES, fingerprint(channel,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_PACKAGE_FINGERPRINT,
+                "id", "checksum"));
+        manifest.set(ERRATA, fingerprint(channel,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_ERRATA_FINGERPRINT,
+                "id", "last_modified", "modified"));
+        return manifest;
+    }
+
+    private static String fingerprint(Channel channel, String modeName,
+            final String... columns) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME, modeName);
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("channel_id", channel.getId());
+
+        final MessageDigest digest = newDigest();
+        int rows = m.stream(params, new RowHandler() {
+            public void handleRow(Object row) {
+                StringBuilder buf = new StringBuilder();
+                for (String column : columns) {
+                    Object value = ((Map) row).get(column);
+                    if (value instanceof Date) {
+                        value = ((Date) value).getTime();
+                    }
+                    buf.append(value).append(' ');
+                }
+                buf.append('\n');
+                update(digest, buf.toString());
+            }
+        });
+        return rows + ":" + StringUtil.getHexString(digest.digest());
+    }
+
+    /**
+     * Records what a metadata file that is not generated, like comps.xml, was
+     * read from.
+     * @param type metadata type, e.g. groups
+     * @param file the file, may be null
+     */
+    public void setSource(String type, File file) {
+        if (file != null && file.exists()) {
+            set(SOURCE + type, file.getPath() + " " + file.length() + " " +
+                    file.lastModified());
+        }
+    }
+
+    /**
+     * Records the index data of a generated metadata file.
+     * @param type metadata type, e.g. primary
+     * @param data index data written to repomd.xml
+     */
+    public void setIndexData(String type, RepomdIndexData data) {
+        set(INDEX + type, data.getChecksum() + " " + data.getOpenChecksum() + " " +
+                data.getTimestamp().getTime());
+    }
+
+    /**
+     * Returns the index data of a generated metadata file.
+     * @param type metadata type, e.g. primary
+     * @return the index data or null if it was not recorded
+     */
+    public RepomdIndexData getIndexData(String type) {
+        String[] values = StringUtils.split(properties.getProperty(INDEX + type), ' ');
+        if (values == null || values.length != 3) {
+            return null;
+        }
+        return new RepomdIndexData(values[0], values[1],
+                new Date(Long.parseLong(values[2])));
+    }
+
+    /**
+     * Returns true if the packages of the channel are the same, so that the
+     * package metadata files need not be generated again.
+     * @param other manifest to compare with
+     * @return true if the package metadata of both are the same
+     */
+    public boolean isSamePackages(RepodataManifest other) {
+        return other != null && sameValue(other, CHECKSUM_TYPE) &&
+                sameValue(other, PACKAGES);
+    }
+
+    /**
+     * Returns true if all content the repository is generated from is the same.
+     * @param other manifest to compare with
+     * @return true if a repository generated from either would be the same
+     */
+    public boolean isSameContent(RepodataManifest other) {
+        if (!isSamePackages(other) || !sameValue(other, ERRATA)) {
+            return false;
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(SOURCE) && !sameValue(other, name)) {
+                return false;
+            }
+        }
+        for (String name : other.properties.stringPropertyNames()) {
+            if (name.startsWith(SOURCE) && !sameValue(other, name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the manifest of a repository.
+     * @param directory directory of the repository
+     * @return the manifest or null if there is none
+     */
+    public static RepodataManifest load(String directory) {
+        File file = new File(directory, FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        RepodataManifest manifest = new RepodataManifest();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                manifest.properties.load(in);
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            return null;
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest of a repository.
+     * @param directory directory of the repository
+     */
+    public void store(String directory) {
+        File tmp = new File(directory, FILE_NAME + ".new");
+        try {
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                properties.store(out, "Content the repository metadata was generated from");
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+        tmp.renameTo(new File(directory, FILE_NAME));
+    }
+
+    /**
+     * Removes the manifest of a repository, to be called before the
+     * repository is changed.
+     * @param directory directory of the repository
+     */
+    public static void delete(String directory) {
+        new File(directory, FILE_NAME).delete();
+    }
+
+    private void set(String name, String value) {
+        if (value != null) {
+            properties.setProperty(name, value);
+        }
+    }
+
+    private boolean sameValue(RepodataManifest other, String name) {
+        return StringUtils.equals(properties.getProperty(name),
+                other.properties.getProperty(name));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        try {
+            digest.update(value.getBytes("UTF-8"));
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+}
@@ -54,6 +54,16 @@ public abstract class RepositoryWriter {
     */
    public abstract void writeRepomdFiles(Channel channel);
 
+   /**
+    * Writes the repository of a channel. A forced run writes all files again,
+    * even the ones that are up to date.
+    * @param channel channelinfo for repomd file creation
+    * @param force true to write all files again
+    */
+   public void writeRepomdFiles(Channel channel, boolean force) {
+       writeRepomdFiles(channel);
+   }
+
    /**
     * Deletes repository cache files
     * @param channelLabelToProcess channel label
@@ -60,6 +60,7 @@ public class RpmRepositoryWriter extends RepositoryWriter {
 
     private static final String GROUP = "groups";
     private static final String MODULES = "modules";
+    private static final String[] PACKAGE_FILE_TYPES = {"primary", "filelists", "other"};
 
     private String checksumtype;
 
@@ -79,9 +80,21 @@ public class RpmRepositoryWriter extends RepositoryWriter {
      */
     @Override
     public boolean isChannelRepodataStale(Channel channel) {
-        File theFile = new File(mountPoint + File.separator + pathPrefix +
-                File.separator + channel.getLabel() + File.separator +
-                "repomd.xml");
+        String prefix = mountPoint + File.separator + pathPrefix +
+                File.separator + channel.getLabel() + File.separator;
+        File theFile = new File(prefix + "repomd.xml");
+
+        // repositories generated with a manifest are stale only if the content
+        // of the channel changed
+        RepodataManifest previous = RepodataManifest.load(prefix);
+        if (theFile.exists() && previous != null) {
+            boolean stale = !computeManifest(channel).isSameContent(previous);
+            log.info("Content of channel '" + channel.getLabel() + "' " +
+                    (stale ? "changed" : "did not change") +
+                    " since the repository metadata were generated");
+            return stale;
+        }
+
         Date mdlastModified = new Date(theFile.lastModified());
         Date dblastModified = channel.getLastModified();
         log.info("File Modified Date:" + LocalizationService.getInstance().
@@ -103,11 +116,25 @@ public class RpmRepositoryWriter extends RepositoryWriter {
      */
     @Override
     public void writeRepomdFiles(Channel channel) {
-        PackageManager.createRepoEntrys(channel.getId());
+        writeRepomdFiles(channel, false);
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRepomdFiles(Channel channel, boolean force) {
         String prefix = mountPoint + File.separator + pathPrefix +
                 File.separator + channel.getLabel() + File.separator;
 
+        // the package metadata files are kept if only the errata or the
+        // groups of the channel changed, unless the run is forced
+        RepodataManifest manifest = computeManifest(channel);
+        boolean keepPackageFiles = !force && canKeepPackageFiles(prefix, manifest);
+        if (!keepPackageFiles) {
+            PackageManager.createRepoEntrys(channel.getId());
+        }
+
         // we closed the session, so we need to reload the object
         channel = (Channel) HibernateFactory.getSession().get(channel.getClass(),
                 channel.getId());
@@ -122,6 +149,7 @@ public class RpmRepositoryWriter extends RepositoryWriter {
             return;
         }
         new File(prefix + NOREPO_FILE).delete();
+        RepodataManifest.delete(prefix);
         if (log.isDebugEnabled()) {
             log.debug("Checksum Type Value: " + this.checksumtype);
         }
@@ -142,8 +170,81 @@ public class RpmRepositoryWriter extends RepositoryWriter {
         log.info("Generating new repository metadata for channel '" +
                 channel.getLabel() + "'(" + this.checksumtype + ") " +
                 channel.getPackageCount() + " packages, " +
-                channel.getErrataCount() + " errata");
+                channel.getErrataCount() + " errata" +
+                (keepPackageFiles ? ", package metadata unchanged" : ""));
+        Date start = new Date();
+
+        if (!keepPackageFiles) {
+            writePackageFiles(channel, prefix, checksumAlgo, manifest);
+        }
+        RepomdIndexData primaryData = manifest.getIndexData("primary");
+        RepomdIndexData filelistsData = manifest.getIndexData("filelists");
+        RepomdIndexData otherData = manifest.getIndexData("other");
+
+        if (log.isDebugEnabled()) {
+            log.debug("Starting updateinfo generation for '" + channel.getLabel() + '"');
+        }
+        RepomdIndexData updateinfoData = generateUpdateinfo(channel,
+                prefix, checksumAlgo);
 
+        RepomdIndexData groupsData = loadRepoMetadataFile(channel, checksumAlgo, GROUP);
+        RepomdIndexData modulesData = loadRepoMetadataFile(channel, checksumAlgo, MODULES);
+
+        // Set the type so yum can read and perform checksum
+        primaryData.setType(checksumLabel);
+        filelistsData.setType(checksumLabel);
+        otherData.setType(checksumLabel);
+        if (updateinfoData != null) {
+            updateinfoData.setType(checksumLabel);
+        }
+
+        if (groupsData != null) {
+            groupsData.setType(checksumLabel);
+        }
+        if (modulesData != null) {
+            modulesData.setType(checksumLabel);
+        }
+
+        FileWriter indexFile;
+
+        try {
+            indexFile = new FileWriter(prefix + REPOMD_FILE);
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+
+        RepomdIndexWriter index = new RepomdIndexWriter(indexFile, primaryData,
+                filelistsData, otherData, updateinfoData, groupsData, modulesData);
+
+        index.writeRepomdIndex();
+
+        try {
+            indexFile.close();
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+
+        renameFiles(prefix, channel.getLastModified().getTime(),
+                updateinfoData != null, !keepPackageFiles);
+        manifest.store(prefix);
+
+        log.info("Repository metadata generation for '" +
+                channel.getLabel() + "' finished in " +
+                (int) (new Date().getTime() - start.getTime()) / 1000 + " seconds");
+    }
+
+    /**
+     * Writes primary.xml, filelists.xml and other.xml and records their index
+     * data in the manifest
+     * @param channel channel info
+     * @param prefix repodata file prefix
+     * @param checksumAlgo checksum algorithm
+     * @param manifest manifest of the repository being generated
+     */
+    private void writePackageFiles(Channel channel, String prefix, String checksumAlgo,
+            RepodataManifest manifest) {
         CompressingDigestOutputWriter primaryFile;
         CompressingDigestOutputWriter filelistsFile;
         CompressingDigestOutputWriter otherFile;
@@ -176,7 +277,6 @@ public class RpmRepositoryWriter extends RepositoryWriter {
         FilelistsXmlWriter filelists = new FilelistsXmlWriter(
                 filelistsBufferedWriter);
         OtherXmlWriter other = new OtherXmlWriter(otherBufferedWriter);
-        Date start = new Date();
 
         primary.begin(channel);
         filelists.begin(channel);
@@ -223,67 +323,59 @@ public class RpmRepositoryWriter extends RepositoryWriter {
             throw new RepomdRuntimeException(e);
         }
 
-        RepomdIndexData primaryData = new RepomdIndexData(primaryFile
+        manifest.setIndexData("primary", new RepomdIndexData(primaryFile
                 .getCompressedChecksum(), primaryFile
-                .getUncompressedChecksum(), channel.getLastModified());
-        RepomdIndexData filelistsData = new RepomdIndexData(filelistsFile
+                .getUncompressedChecksum(), channel.getLastModified()));
+        manifest.setIndexData("filelists", new RepomdIndexData(filelistsFile
                 .getCompressedChecksum(), filelistsFile
-                .getUncompressedChecksum(), channel.getLastModified());
-        RepomdIndexData otherData = new RepomdIndexData(otherFile
+                .getUncompressedChecksum(), channel.getLastModified()));
+        manifest.setIndexData("other", new RepomdIndexData(otherFile
                 .getCompressedChecksum(), otherFile
-                .getUncompressedChecksum(), channel.getLastModified());
-
-        if (log.isDebugEnabled()) {
-            log.debug("Starting updateinfo generation for '" + channel.getLabel() + '"');
-        }
-        RepomdIndexData updateinfoData = generateUpdateinfo(channel,
-                prefix, checksumAlgo);
-
-        RepomdIndexData groupsData = loadRepoMetadataFile(channel, checksumAlgo, GROUP);
-        RepomdIndexData modulesData = loadRepoMetadataFile(channel, checksumAlgo, MODULES);
-
-        // Set the type so yum can read and perform checksum
-        primaryData.setType(checksumLabel);
-        filelistsData.setType(checksumLabel);
-        otherData.setType(checksumLabel);
-        if (updateinfoData != null) {
-            updateinfoData.setType(checksumLabel);
-        }
-
-        if (groupsData != null) {
-            groupsData.setType(checksumLabel);
-        }
-        if (modulesData != null) {
-            modulesData.setType(checksumLabel);
-        }
-
-        FileWriter indexFile;
+                .getUncompressedChecksum(), channel.getLastModified()));
+    }
 
-        try {
-            indexFile = new FileWriter(prefix + REPOMD_FILE);
-        }
-        catch (IOException e) {
-            throw new RepomdRuntimeException(e);
+    /**
+     * Computes the manifest of the current content of a channel, including the
+     * files the groups and modules metadata are read from.
+     * @param channel channel info
+     * @return manifest of the channel content
+     */
+    private RepodataManifest computeManifest(Channel channel) {
+        RepodataManifest manifest = RepodataManifest.compute(channel);
+        String mount = Config.get().getString(ConfigDefaults.MOUNT_POINT);
+        for (String metadataType : new String[] {GROUP, MODULES}) {
+            String relativeFilename = getRepoMetadataRelativeFilename(channel, metadataType);
+            if (relativeFilename != null) {
+                manifest.setSource(metadataType,
+                        new File(mount + File.separator + relativeFilename));
+            }
         }
+        return manifest;
+    }
 
-        RepomdIndexWriter index = new RepomdIndexWriter(indexFile, primaryData,
-                filelistsData, otherData, updateinfoData, groupsData, modulesData);
-
-        index.writeRepomdIndex();
-
-        try {
-            indexFile.close();
+    /**
+     * Returns true if the package metadata files of the repository were
+     * generated from the same packages, and copies their index data to the new
+     * manifest.
+     * @param prefix repodata file prefix
+     * @param manifest manifest of the repository being generated
+     * @return true if the package metadata files need not be generated again
+     */
+    private boolean canKeepPackageFiles(String prefix, RepodataManifest manifest) {
+        RepodataManifest previous = RepodataManifest.load(prefix);
+        if (!manifest.isSamePackages(previous)) {
+            return false;
+        }
+        for (String type : PACKAGE_FILE_TYPES) {
+            if (previous.getIndexData(type) == null ||
+                    !new File(prefix + type + ".xml.gz").exists()) {
+                return false;
+            }
         }
-        catch (IOException e) {
-            throw new RepomdRuntimeException(e);
+        for (String type : PACKAGE_FILE_TYPES) {
+            manifest.setIndexData(type, previous.getIndexData(type));
         }
-
-        renameFiles(prefix, channel.getLastModified().getTime(),
-                updateinfoData != null);
-
-        log.info("Repository metadata generation for '" +
-                channel.getLabel() + "' finished in " +
-                (int) (new Date().getTime() - start.getTime()) / 1000 + " seconds");
+        return true;
     }
 
     /**
@@ -442,12 +534,10 @@ public class RpmRepositoryWriter extends RepositoryWriter {
      * @param prefix path prefix
      * @param lastModified file last_modified
      * @param doUpdateinfo
+     * @param doPackageFiles false if the package metadata files were kept
      */
     private void renameFiles(String prefix, Long lastModified,
-            Boolean doUpdateinfo) {
-        File primary = new File(prefix + PRIMARY_FILE);
-        File filelists = new File(prefix + FILELISTS_FILE);
-        File other = new File(prefix + OTHER_FILE);
+            Boolean doUpdateinfo, boolean doPackageFiles) {
         File repomd = new File(prefix + REPOMD_FILE);
 
         File updateinfo = null;
@@ -456,9 +546,6 @@ public class RpmRepositoryWriter extends RepositoryWriter {
             updateinfo.setLastModified(lastModified);
         }
 
-        primary.setLastModified(lastModified);
-        filelists.setLastModified(lastModified);
-        other.setLastModified(lastModified);
         repomd.setLastModified(lastModified);
 
         File renamedupdateinfo = new File(prefix + "updateinfo.xml.gz");
@@ -474,9 +561,17 @@ public class RpmRepositoryWriter extends RepositoryWriter {
             }
         }
 
-        primary.renameTo(new File(prefix + "primary.xml.gz"));
-        filelists.renameTo(new File(prefix + "filelists.xml.gz"));
-        other.renameTo(new File(prefix + "other.xml.gz"));
+        if (doPackageFiles) {
+            File primary = new File(prefix + PRIMARY_FILE);
+            File filelists = new File(prefix + FILELISTS_FILE);
+            File other = new File(prefix + OTHER_FILE);
+            primary.setLastModified(lastModified);
+            filelists.setLastModified(lastModified);
+            other.setLastModified(lastModified);
+            primary.renameTo(new File(prefix + "primary.xml.gz"));
+            filelists.renameTo(new File(prefix + "filelists.xml.gz"));
+            other.renameTo(new File(prefix + "other.xml.gz"));
+        }
         repomd.renameTo(new File(prefix + "repomd.xml"));
     }
 }
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pre-rendered updateinfo.xml fragments shared by all channels, so that an
+ * erratum cloned into many channels is rendered once per regeneration run
+ * rather than once per channel.
+ *
+ * Keys contain the last modification time of the erratum, package list keys
+ * also the packages and keywords they were rendered from. Bugs and CVEs can
+ * change without touching the erratum, so entries also expire after a while.
+ *
+ * @version $Rev $
+ */
+public class UpdateInfoFragmentCache {
+
+    private static final int MAX_ENTRIES = 20000;
+    private static final long TTL = 15 * 60 * 1000L;
+
+    private static final UpdateInfoFragmentCache INSTANCE = new UpdateInfoFragmentCache();
+
+    private final Map<String, Entry> entries =
+        new LinkedHashMap<String, Entry>(1024, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    /**
+     * @return the cache shared by all updateinfo writers
+     */
+    public static UpdateInfoFragmentCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a fragment if it is cached and not expired
+     * @param key fragment key
+     * @return the fragment or null
+     */
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.created > TTL) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.fragment;
+    }
+
+    /**
+     * Stores a fragment
+     * @param key fragment key
+     * @param fragment the rendered fragment
+     */
+    public synchronized void put(String key, String fragment) {
+        entries.put(key, new Entry(fragment));
+    }
+
+    /**
+     * Removes all fragments
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * A fragment and the time it was rendered.
+     */
+    private static class Entry {
+        private final String fragment;
+        private final long created;
+
+        Entry(String fragmentIn) {
+            fragment = fragmentIn;
+            created = System.currentTimeMillis();
+        }
+    }
+}
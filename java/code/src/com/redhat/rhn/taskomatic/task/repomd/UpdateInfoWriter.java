@@ -20,33 +20,53 @@ package com.redhat.rhn.taskomatic.task.repomd;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.frontend.dto.Bug;
-import com.redhat.rhn.frontend.dto.CVE;
 import com.redhat.rhn.frontend.dto.ErrataOverview;
 import com.redhat.rhn.frontend.dto.PackageDto;
 import com.redhat.rhn.manager.channel.ChannelManager;
 import com.redhat.rhn.manager.errata.ErrataManager;
 
+import org.apache.commons.codec.binary.Hex;
 import org.xml.sax.SAXException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * UpdateInfo.xml writer class
  *
+ * Every update is written from pre-rendered fragments kept in the
+ * {@link UpdateInfoFragmentCache}: the erratum part is shared by all channels
+ * and the package list by all channels with the same packages of the erratum.
+ * Only the collection element is specific to a channel.
+ *
  * @version $Rev $
  *
  */
 public class UpdateInfoWriter extends RepomdWriter {
 
+    private static final int BATCH_SIZE = 500;
+
+    private final UpdateInfoFragmentCache cache = UpdateInfoFragmentCache.getInstance();
+
     /**
      * Constructor takes in writer.
      * @param writer xml writer object
      */
     public UpdateInfoWriter(Writer writer) {
-        super(writer, true);
+        // fragments are escaped when they are rendered
+        super(writer, false);
     }
 
     /**
@@ -59,19 +79,17 @@ public class UpdateInfoWriter extends RepomdWriter {
 
         DataResult<ErrataOverview> errata = ChannelManager
                 .listErrataSimple(channel.getId());
-        final int batchSize = 500;
-        for (int i = 0; i < errata.size(); i += batchSize) {
-            DataResult<ErrataOverview> errataBatch = errata.subList(i, i + batchSize);
-            errataBatch.elaborate();
-            for (ErrataOverview erratum : errataBatch) {
-                try {
-                    addErratum(erratum, channel);
-                }
-                catch (SAXException e) {
-                    throw new RepomdRuntimeException(e);
-                }
+        try {
+            String collection = renderCollection(channel);
+            for (int i = 0; i < errata.size(); i += BATCH_SIZE) {
+                DataResult<ErrataOverview> errataBatch = errata.subList(i, i + BATCH_SIZE);
+                errataBatch.elaborate();
+                addErrata(errataBatch, channel, collection);
             }
         }
+        catch (SAXException e) {
+            throw new RepomdRuntimeException(e);
+        }
 
         end();
 
@@ -106,66 +124,159 @@ public class UpdateInfoWriter extends RepomdWriter {
     }
 
     /**
-     * Add erratum to repodata for given channel
-     * @param erratum erratum to be added
+     * Adds a batch of errata to the repodata for given channel. Packages and
+     * keywords are looked up for the whole batch, bugs and cves for the errata
+     * not rendered yet. Keywords change without touching the erratum, so the
+     * reboot element they give is part of the package list key.
+     * @param errata errata to be added
      * @param channel channel info
+     * @param collection the rendered start of the channel's collection element
      * @throws SAXException
      */
-    private void addErratum(ErrataOverview erratum, Channel channel)
-            throws SAXException {
+    private void addErrata(List<ErrataOverview> errata, Channel channel,
+            String collection) throws SAXException {
+        // every fragment is read from the cache once and used from here on,
+        // the cache may drop it meanwhile
+        List<Long> ids = new ArrayList<Long>();
+        Set<Long> missing = new HashSet<Long>();
+        Map<Long, String> updates = new HashMap<Long, String>();
+        for (ErrataOverview erratum : errata) {
+            ids.add(erratum.getId());
+            String update = cache.get(erratumKey(erratum));
+            if (update == null) {
+                missing.add(erratum.getId());
+            }
+            else {
+                updates.put(erratum.getId(), update);
+            }
+        }
+        Map<Long, List<PackageDto>> packages =
+                ErrataManager.lookupPacksFromErrataForChannel(channel.getId(), ids);
+        Map<Long, List<String>> keywords = ErrataManager.lookupKeywordsForErrata(ids);
+
+        if (!missing.isEmpty()) {
+            List<Long> missingIds = new ArrayList<Long>(missing);
+            Map<Long, List<Bug>> bugs = ErrataManager.lookupBugsForErrata(missingIds);
+            Map<Long, List<String>> cves = ErrataManager.lookupCvesForErrata(missingIds);
+            for (ErrataOverview erratum : errata) {
+                if (!missing.contains(erratum.getId())) {
+                    continue;
+                }
+                String update = renderErratum(erratum,
+                        listOrEmpty(bugs.get(erratum.getId())),
+                        listOrEmpty(cves.get(erratum.getId())));
+                cache.put(erratumKey(erratum), update);
+                updates.put(erratum.getId(), update);
+            }
+        }
+
+        for (ErrataOverview erratum : errata) {
+            List<PackageDto> pkgs = listOrEmpty(packages.get(erratum.getId()));
+            String reboot = rebootElement(listOrEmpty(keywords.get(erratum.getId())));
+            String pkgKey = packagesKey(erratum, reboot, pkgs);
+            String pkgList = cache.get(pkgKey);
+            if (pkgList == null) {
+                pkgList = renderPackages(pkgs, reboot);
+                cache.put(pkgKey, pkgList);
+            }
+            handler.addCharacters(updates.get(erratum.getId()));
+            handler.addCharacters("<pkglist>");
+            handler.addCharacters(collection);
+            handler.addCharacters(pkgList);
+            handler.addCharacters("</collection></pkglist></update>");
+        }
+    }
+
+    /**
+     * Renders the start tag of the update element and all its children up to
+     * the package list
+     * @param erratum erratum to be rendered
+     * @param bugs bugs of the erratum
+     * @param cves cve names of the erratum
+     * @return the unclosed update element
+     * @throws SAXException
+     */
+    private String renderErratum(ErrataOverview erratum, List<Bug> bugs,
+            List<String> cves) throws SAXException {
+        ByteArrayOutputStream st = new ByteArrayOutputStream();
+        SimpleContentHandler tmpHandler = getTemporaryHandler(st);
+        tmpHandler.startDocument();
+
         SimpleAttributesImpl attr = new SimpleAttributesImpl();
         attr.addAttribute("from", erratum.getErrataFrom());
         attr.addAttribute("status", "final");
         attr.addAttribute("type", mapAdvisoryType(erratum.getAdvisoryType()));
         attr.addAttribute("version", Long.toString(erratum.getAdvisoryRel()));
-        handler.startElement("update", attr);
+        tmpHandler.startElement("update", attr);
 
-        handler.addElementWithCharacters("id",
+        tmpHandler.addElementWithCharacters("id",
                 sanitize(0L, erratum
                 .getAdvisoryName()));
-        handler.addElementWithCharacters("title", sanitize(0L, erratum
+        tmpHandler.addElementWithCharacters("title", sanitize(0L, erratum
                 .getAdvisorySynopsis()));
 
         DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
         attr.clear();
         attr.addAttribute("date", df.format(erratum.getIssueDateObj()));
-        handler.startElement("issued", attr);
-        handler.endElement("issued");
+        tmpHandler.startElement("issued", attr);
+        tmpHandler.endElement("issued");
 
         attr.clear();
         attr.addAttribute("date", df.format(erratum.getUpdateDateObj()));
-        handler.startElement("updated", attr);
-        handler.endElement("updated");
+        tmpHandler.startElement("updated", attr);
+        tmpHandler.endElement("updated");
 
-        handler.addElementWithCharacters("description",
+        tmpHandler.addElementWithCharacters("description",
                 sanitize(0L, erratum
                 .getDescription()));
 
-        addErratumReferences(erratum);
-        addErratumPkgList(erratum, channel);
+        addErratumReferences(tmpHandler, bugs, cves);
 
-        handler.endElement("update");
+        tmpHandler.endElement("update");
+        tmpHandler.endDocument();
+        return stripEnd(st, "update");
     }
 
     /**
-     * Adds packages associated to the errata
-     * @param erratum erratum to be added
+     * Renders the start of the collection element of a channel
      * @param channel channel info
+     * @return the unclosed collection element
      * @throws SAXException
      */
-    private void addErratumPkgList(ErrataOverview erratum, Channel channel)
-            throws SAXException {
-        handler.startElement("pkglist");
+    private String renderCollection(Channel channel) throws SAXException {
+        ByteArrayOutputStream st = new ByteArrayOutputStream();
+        SimpleContentHandler tmpHandler = getTemporaryHandler(st);
+        tmpHandler.startDocument();
 
         SimpleAttributesImpl attr = new SimpleAttributesImpl();
         attr.addAttribute("short", channel.getLabel());
-        handler.startElement("collection", attr);
+        tmpHandler.startElement("collection", attr);
+        tmpHandler.addElementWithCharacters("name", channel.getName());
+        tmpHandler.endElement("collection");
+        tmpHandler.endDocument();
+        return stripEnd(st, "collection");
+    }
 
-        handler.addElementWithCharacters("name", channel.getName());
+    /**
+     * Renders the package elements of an erratum
+     * @param pkgs packages of the erratum
+     * @param reboot the rendered reboot element of the erratum
+     * @return the package elements
+     * @throws SAXException
+     */
+    private String renderPackages(List<PackageDto> pkgs, String reboot)
+            throws SAXException {
+        if (pkgs.isEmpty()) {
+            return "";
+        }
+        ByteArrayOutputStream st = new ByteArrayOutputStream();
+        SimpleContentHandler tmpHandler = getTemporaryHandler(st);
+        tmpHandler.startDocument();
+        tmpHandler.startElement("collection");
 
-        for (PackageDto pkg : ErrataManager.lookupPacksFromErrataForChannel(
-                channel.getId(), erratum.getId())) {
+        SimpleAttributesImpl attr = new SimpleAttributesImpl();
+        for (PackageDto pkg : pkgs) {
             long pkgId = pkg.getId();
             String epoch = pkg.getEpoch();
             if (epoch == null || epoch.length() == 0) {
@@ -178,41 +289,41 @@ public class UpdateInfoWriter extends RepomdWriter {
             attr.addAttribute("epoch", sanitize(pkgId, epoch));
             attr.addAttribute("arch", sanitize(pkgId, pkg.getArchLabel()));
             attr.addAttribute("src", sanitize(pkgId, pkg.getSourceRpm()));
-            handler.startElement("package", attr);
-            handler.addElementWithCharacters("filename", sanitize(pkgId, pkg.getFile()));
+            tmpHandler.startElement("package", attr);
+            tmpHandler.addElementWithCharacters("filename",
+                    sanitize(pkgId, pkg.getFile()));
 
-            List<String> keywords = ErrataManager.lookupKeywordsForErratum(erratum.getId());
-            if (keywords.contains("reboot_suggested")) {
-                handler.addElementWithCharacters("reboot_suggested", "1");
-            }
-            else if (keywords.contains("restart_suggested")) {
-                handler.addElementWithCharacters("restart_suggested", "1");
+            if (reboot.length() > 0) {
+                tmpHandler.addElementWithCharacters(reboot, "1");
             }
 
             attr.clear();
             attr.addAttribute("type", sanitize(pkgId, pkg.getChecksumType()));
-            handler.startElement("sum", attr);
-            handler.addCharacters(sanitize(pkgId, pkg.getChecksum()));
-            handler.endElement("sum");
+            tmpHandler.startElement("sum", attr);
+            tmpHandler.addCharacters(sanitize(pkgId, pkg.getChecksum()));
+            tmpHandler.endElement("sum");
 
-            handler.endElement("package");
+            tmpHandler.endElement("package");
         }
 
-        handler.endElement("collection");
-
-        handler.endElement("pkglist");
-
+        tmpHandler.endElement("collection");
+        tmpHandler.endDocument();
+        String rendered = stripEnd(st, "collection");
+        return rendered.substring(rendered.indexOf('>') + 1);
     }
 
     /**
      * Adds references info from the errata
-     * @param erratum erratum to be added
+     * @param tmpHandler handler to render with
+     * @param bugs bugs of the erratum
+     * @param cves cve names of the erratum
      * @throws SAXException
      */
-    private void addErratumReferences(ErrataOverview erratum) throws SAXException {
-        handler.startElement("references");
+    private void addErratumReferences(SimpleContentHandler tmpHandler, List<Bug> bugs,
+            List<String> cves) throws SAXException {
+        tmpHandler.startElement("references");
 
-        for (Bug bug : ErrataManager.lookupBugsForErratum(erratum.getId())) {
+        for (Bug bug : bugs) {
             SimpleAttributesImpl attr = new SimpleAttributesImpl();
             if (bug.getHref() != null && !bug.getHref().equals("")) {
                 attr.addAttribute("href", bug.getHref());
@@ -224,26 +335,96 @@ public class UpdateInfoWriter extends RepomdWriter {
             }
             attr.addAttribute("id", Long.toString(bug.getBugId()));
             attr.addAttribute("type", "bugzilla");
-            handler.startElement("reference", attr);
+            tmpHandler.startElement("reference", attr);
             if (bug.getSummary() != null) {
-                handler.addCharacters(bug.getSummary());
+                tmpHandler.addCharacters(bug.getSummary());
             }
-            handler.endElement("reference");
+            tmpHandler.endElement("reference");
         }
 
-        for (CVE cve : ErrataManager.lookupCvesForErratum(erratum.getId())) {
-            String cveid = sanitize(0L, cve.getName());
+        for (String cve : cves) {
+            String cveid = sanitize(0L, cve);
 
             SimpleAttributesImpl attr = new SimpleAttributesImpl();
             attr.addAttribute("href",
                     "http://cve.mitre.org/cgi-bin/cvename.cgi?name=" + cveid);
             attr.addAttribute("id", cveid);
             attr.addAttribute("type", "cve");
-            handler.startElement("reference", attr);
-            handler.endElement("reference");
+            tmpHandler.startElement("reference", attr);
+            tmpHandler.endElement("reference");
+        }
+
+        tmpHandler.endElement("references");
+    }
+
+    /**
+     * @param keywords keywords of an erratum
+     * @return name of the element to add to its packages, or an empty string
+     */
+    private static String rebootElement(List<String> keywords) {
+        if (keywords.contains("reboot_suggested")) {
+            return "reboot_suggested";
+        }
+        else if (keywords.contains("restart_suggested")) {
+            return "restart_suggested";
+        }
+        return "";
+    }
+
+    /**
+     * Returns the rendered element without its end tag
+     */
+    private static String stripEnd(ByteArrayOutputStream st, String element) {
+        String rendered;
+        try {
+            rendered = st.toString("UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new RepomdRuntimeException(e);
         }
+        return rendered.substring(0, rendered.lastIndexOf("</" + element + ">"));
+    }
 
-        handler.endElement("references");
+    private static String erratumKey(ErrataOverview erratum) {
+        return "e:" + erratum.getId() + ":" + lastModified(erratum);
+    }
+
+    /**
+     * Package lists are shared by channels containing the same packages of the
+     * erratum, the key contains a digest of the package ids and the reboot
+     * element rendered into every package.
+     */
+    private static String packagesKey(ErrataOverview erratum, String reboot,
+            List<PackageDto> pkgs) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (PackageDto pkg : pkgs) {
+                digest.update(pkg.getId().toString().getBytes("UTF-8"));
+                digest.update((byte) ',');
+            }
+            return "p:" + erratum.getId() + ":" + lastModified(erratum) + ":" +
+                    reboot + ":" + new String(Hex.encodeHex(digest.digest()));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RepomdRuntimeException(e);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
+    private static long lastModified(ErrataOverview erratum) {
+        if (erratum.getLastModifiedObject() == null) {
+            return 0;
+        }
+        return erratum.getLastModifiedObject().getTime();
+    }
+
+    private static <T> List<T> listOrEmpty(List<T> list) {
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return list;
     }
 
     /**
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd.test;
+
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.channel.ChannelFactory;
+import com.redhat.rhn.domain.channel.test.ChannelFactoryTest;
+import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.domain.rhnpackage.test.PackageTest;
+import com.redhat.rhn.taskomatic.task.repomd.RepodataManifest;
+import com.redhat.rhn.taskomatic.task.repomd.RepomdIndexData;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Date;
+
+/**
+ * RepodataManifestTest
+ * @version $Rev$
+ */
+public class RepodataManifestTest extends BaseTestCaseWithUser {
+
+    private Channel channel;
+    private File dir;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        channel = ChannelFactoryTest.createTestChannel(user);
+        dir = File.createTempFile("manifest", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    public void tearDown() throws Exception {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+        super.tearDown();
+    }
+
+    public void testSameContent() throws Exception {
+        RepodataManifest manifest = RepodataManifest.compute(channel);
+        RepodataManifest again = RepodataManifest.compute(channel);
+        assertTrue(manifest.isSamePackages(again));
+        assertTrue(manifest.isSameContent(again));
+        assertFalse(manifest.isSamePackages(null));
+    }
+
+    public void testPackagesChanged() throws Exception {
+        RepodataManifest before = RepodataManifest.compute(channel);
+
+        Package pkg = PackageTest.createTestPackage(user.getOrg());
+        ChannelFactory.addChannelPackage(channel.getId(), pkg.getId());
+        RepodataManifest after = RepodataManifest.compute(channel);
+
+        assertFalse(after.isSamePackages(before));
+        assertFalse(after.isSameContent(before));
+    }
+
+    public void testSourcesChanged() throws Exception {
+        File comps = new File(dir, "comps.xml");
+        write(comps, "<comps/>");
+        RepodataManifest before = RepodataManifest.compute(channel);
+        before.setSource("group", comps);
+        RepodataManifest same = RepodataManifest.compute(channel);
+        same.setSource("group", comps);
+        assertTrue(same.isSameContent(before));
+
+        // only the groups changed, the package metadata stays the same
+        RepodataManifest without = RepodataManifest.compute(channel);
+        assertTrue(without.isSamePackages(before));
+        assertFalse(without.isSameContent(before));
+        assertFalse(before.isSameContent(without));
+
+        write(comps, "<comps><group/></comps>");
+        RepodataManifest changed = RepodataManifest.compute(channel);
+        changed.setSource("group", comps);
+        assertTrue(changed.isSamePackages(before));
+        assertFalse(changed.isSameContent(before));
+    }
+
+    public void testStoreAndLoad() throws Exception {
+        String prefix = dir.getPath() + File.separator;
+        assertNull(RepodataManifest.load(prefix));
+
+        RepodataManifest manifest = RepodataManifest.compute(channel);
+        manifest.setIndexData("primary", new RepomdIndexData("abc", "def",
+                new Date(1234567890000L)));
+        manifest.store(prefix);
+
+        RepodataManifest loaded = RepodataManifest.load(prefix);
+        assertNotNull(loaded);
+        assertTrue(loaded.isSameContent(manifest));
+        RepomdIndexData primary = loaded.getIndexData("primary");
+        assertEquals("abc", primary.getChecksum());
+        assertEquals("def", primary.getOpenChecksum());
+        assertEquals(1234567890000L, primary.getTimestamp().getTime());
+        assertNull(loaded.getIndexData("filelists"));
+
+        RepodataManifest.delete(prefix);
+        assertNull(RepodataManifest.load(prefix));
+    }
+
+    private static void write(File file, String content) throws Exception {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        }
+        finally {
+            writer.close();
+        }
+        // the manifest records size and mtime, make sure one of them moves
+        file.setLastModified(file.lastModified() + 1000);
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd.test;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.channel.ChannelFactory;
+import com.redhat.rhn.domain.channel.test.ChannelFactoryTest;
+import com.redhat.rhn.domain.errata.Errata;
+import com.redhat.rhn.domain.errata.ErrataFactory;
+import com.redhat.rhn.domain.errata.test.ErrataFactoryTest;
+import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.domain.rhnpackage.test.PackageTest;
+import com.redhat.rhn.taskomatic.task.repomd.UpdateInfoFragmentCache;
+import com.redhat.rhn.taskomatic.task.repomd.UpdateInfoWriter;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+
+import java.io.StringWriter;
+import java.util.Date;
+
+/**
+ * UpdateInfoWriterTest
+ * @version $Rev$
+ */
+public class UpdateInfoWriterTest extends BaseTestCaseWithUser {
+
+    private Errata erratum;
+    private Package shared;
+    private Package extra;
+    private Channel full;
+    private Channel partial;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        UpdateInfoFragmentCache.getInstance().clear();
+
+        erratum = ErrataFactoryTest.createTestPublishedErrata(user.getOrg().getId());
+        shared = erratum.getPackages().iterator().next();
+        extra = PackageTest.createTestPackage(user.getOrg());
+        erratum.addPackage(extra);
+
+        // the erratum is in both channels, the second one lacks a package
+        full = ChannelFactoryTest.createTestChannel(user);
+        partial = ChannelFactoryTest.createTestChannel(user);
+        erratum.addChannel(full);
+        erratum.addChannel(partial);
+        ErrataFactory.save(erratum);
+        ChannelFactory.addChannelPackage(full.getId(), shared.getId());
+        ChannelFactory.addChannelPackage(full.getId(), extra.getId());
+        ChannelFactory.addChannelPackage(partial.getId(), shared.getId());
+        HibernateFactory.getSession().flush();
+    }
+
+    public void tearDown() throws Exception {
+        UpdateInfoFragmentCache.getInstance().clear();
+        super.tearDown();
+    }
+
+    public void testPackagesPerChannel() throws Exception {
+        String fullInfo = updateInfo(full);
+        String partialInfo = updateInfo(partial);
+
+        assertTrue(fullInfo.contains(filename(shared)));
+        assertTrue(fullInfo.contains(filename(extra)));
+        assertTrue(partialInfo.contains(filename(shared)));
+        assertFalse(partialInfo.contains(filename(extra)));
+        assertTrue(partialInfo.contains("short=\"" + partial.getLabel() + "\""));
+        assertFalse(partialInfo.contains("short=\"" + full.getLabel() + "\""));
+
+        // the channels still differ once their fragments come from the cache
+        assertEquals(fullInfo, updateInfo(full));
+        assertEquals(partialInfo, updateInfo(partial));
+    }
+
+    public void testErratumChanged() throws Exception {
+        assertTrue(updateInfo(full).contains(erratum.getSynopsis()));
+
+        erratum.setSynopsis("Changed synopsis");
+        erratum.setLastModified(new Date(System.currentTimeMillis() + 60000));
+        ErrataFactory.save(erratum);
+        HibernateFactory.getSession().flush();
+
+        assertTrue(updateInfo(full).contains("<title>Changed synopsis</title>"));
+    }
+
+    public void testKeywordChanged() throws Exception {
+        assertFalse(updateInfo(full).contains("reboot_suggested"));
+
+        // only the keyword table changes, the erratum keeps its modification time
+        erratum.addKeyword("reboot_suggested");
+        ErrataFactory.save(erratum);
+        HibernateFactory.getSession().flush();
+
+        assertTrue(updateInfo(full).contains("<reboot_suggested>1</reboot_suggested>"));
+        assertTrue(updateInfo(partial).contains("<reboot_suggested>1</reboot_suggested>"));
+    }
+
+    private static String updateInfo(Channel channel) {
+        StringWriter writer = new StringWriter();
+        new UpdateInfoWriter(writer).getUpdateInfo(channel);
+        return writer.toString();
+    }
+
+    private static String filename(Package pkg) {
+        return "<filename>" + pkg.getFile() + "</filename>";
+    }
+}
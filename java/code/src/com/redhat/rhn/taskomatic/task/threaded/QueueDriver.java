@@ -55,6 +55,14 @@ public interface QueueDriver {
      */
     QueueWorker makeWorker(Object workItem);
 
+    /**
+     * Estimated cost of processing a work item. The queue runs cheaper work
+     * items first, work items of the same cost in the order they are listed.
+     * @param workItem object contained in the list returned from getCandidates()
+     * @return relative cost of the work item, 0 if unknown
+     */
+    long getCost(Object workItem);
+
     /**
      * Logic to tell the queue when to stop running
      * Queues will always stop when there is no more work to do.
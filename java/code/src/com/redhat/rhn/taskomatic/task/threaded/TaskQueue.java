@@ -14,30 +14,44 @@
  */
 package com.redhat.rhn.taskomatic.task.threaded;
 
+import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.taskomatic.TaskoRun;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-
-import EDU.oswego.cs.dl.util.concurrent.Channel;
-import EDU.oswego.cs.dl.util.concurrent.LinkedQueue;
-import EDU.oswego.cs.dl.util.concurrent.PooledExecutor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Generic threaded queue suitable for use wherever Taskomatic
  * tasks need to process a number of work items in parallel.
+ *
+ * Work items are run cheapest first, by the cost the driver estimates for
+ * them, and in the order they were queued when the costs are equal. The time
+ * items wait and run is recorded in the metrics of the current run, which are
+ * written to its output log when the run finishes.
  * @version $Rev$
  */
 public class TaskQueue {
 
+    private static final long KEEP_ALIVE_MS = 5000;
+    private static final int DEFAULT_DRAIN_SECONDS = 30;
+
     private QueueDriver queueDriver;
-    private Channel workers = new LinkedQueue();
-    private PooledExecutor executor = null;
-    private int executingWorkers = 0;
-    private int queueSize = 0;
+    private ThreadPoolExecutor executor = null;
+    private final AtomicInteger executingWorkers = new AtomicInteger();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
     private byte[] emptyQueueWait = new byte[0];
     private boolean taskQueueDone = true;
     private TaskoRun queueRun = null;
+    private volatile TaskQueueMetrics metrics = new TaskQueueMetrics();
 
     /**
      * Store the QueueDriver instance used when run() is called
@@ -59,31 +73,32 @@ public class TaskQueue {
      * Callback all workers should call when starting
      * to process work
      */
-    public synchronized void workerStarting() {
-        executingWorkers++;
+    public void workerStarting() {
+        executingWorkers.incrementAndGet();
     }
 
     /**
      * Callback all workers should call when
      * finished with their work item
      */
-    public synchronized void workerDone() {
-        executingWorkers--;
-        queueSize--;
-        if (executingWorkers < 0) {
-            executingWorkers = 0;
-        }
-        if (queueSize < 0) {
-            queueSize = 0;
-        }
-        if (executingWorkers == 0) {
+    public void workerDone() {
+        decrement(queueSize);
+        if (decrement(executingWorkers) == 0 && queueSize.get() == 0) {
             synchronized (emptyQueueWait) {
                 emptyQueueWait.notifyAll();
             }
-            taskQueueDone = true;
+            setTaskQueueDone();
         }
     }
 
+    /**
+     * Callback workers should call when processing their work item failed,
+     * before calling workerDone()
+     */
+    public void workerFailed() {
+        metrics.itemFailed();
+    }
+
     /**
      * Returns the number of currently executing workers
      * This should never be more than the thread pool's
@@ -91,7 +106,7 @@ public class TaskQueue {
      * @return number of currently executing workers
      */
     public int getExecutingWorkerCount() {
-        return executingWorkers;
+        return executingWorkers.get();
     }
 
     /**
@@ -99,7 +114,16 @@ public class TaskQueue {
      * @return number of workers pending
      */
     public int getQueueSize() {
-        return queueSize;
+        return queueSize.get();
+    }
+
+    /**
+     * Returns the counters of the current run, they are updated while the
+     * workers run
+     * @return metrics of the current run
+     */
+    public TaskQueueMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -109,31 +133,45 @@ public class TaskQueue {
     public void run() {
         setupQueue();
         List candidates = queueDriver.getCandidates();
-        queueSize += candidates.size();
-        if (queueSize > 0) {
-            queueDriver.getLogger().info("In the queue: " + queueSize);
+        if (candidates.size() > 0) {
+            queueDriver.getLogger().info("In the queue: " +
+                    (queueSize.get() + candidates.size()));
         }
-        while (candidates.size() > 0 && queueDriver.canContinue()) {
-            Object candidate = candidates.remove(0);
+        TaskQueueMetrics runMetrics = metrics;
+        List<QueuedWorker> batch = new ArrayList<QueuedWorker>();
+        for (Object candidate : candidates) {
+            if (!queueDriver.canContinue()) {
+                break;
+            }
             QueueWorker worker = queueDriver.makeWorker(candidate);
             worker.setParentQueue(this);
+            batch.add(new QueuedWorker(worker, queueDriver.getCost(candidate),
+                    sequence.incrementAndGet(), runMetrics));
+        }
+        // idle workers take an item as soon as it is queued, so queue the
+        // cheapest ones first
+        Collections.sort(batch);
+        for (QueuedWorker queued : batch) {
+            queueSize.incrementAndGet();
+            unsetTaskQueueDone();
             try {
-                queueDriver.getLogger().debug("Putting worker");
-                workers.put(worker);
-                queueDriver.getLogger().debug("Put worker");
-                unsetTaskQueueDone();
+                executor.execute(queued);
+                runMetrics.itemQueued();
             }
-            catch (InterruptedException e) {
-                queueDriver.getLogger().error(e);
-                HibernateFactory.commitTransaction();
-                HibernateFactory.closeSession();
-                HibernateFactory.getSession();
-                return;
+            catch (RejectedExecutionException e) {
+                // the queue is shutting down
+                queueDriver.getLogger().warn("Queue is shut down, not putting workers");
+                workerDone();
+                break;
             }
         }
+        if (queueDriver.getLogger().isDebugEnabled()) {
+            queueDriver.getLogger().debug("Queue metrics: " + runMetrics);
+        }
         if (isTaskQueueDone()) {
             // everything done
             queueDriver.getLogger().debug("Finishing run " + queueRun.getId());
+            queueRun.appendToOutputLog("Queue metrics: " + runMetrics + "\n");
             queueRun.finished();
             queueRun.saveStatus(TaskoRun.STATUS_FINISHED);
             HibernateFactory.commitTransaction();
@@ -152,32 +190,70 @@ public class TaskQueue {
         }
     }
 
-    void shutdown() {
-        executor.shutdownNow();
-        while (!executor.isTerminatedAfterShutdown()) {
-            try {
-                Thread.sleep(100);
-            }
-            catch (InterruptedException e) {
-                queueDriver.getLogger().error(e);
-                return;
+    /**
+     * Stops taking new work items, the ones already queued still run.
+     */
+    synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Waits for the queued work items to finish after shutdown(), until the
+     * deadline. Work items still queued then are dropped and the running ones
+     * are interrupted.
+     * @param deadline value of System.currentTimeMillis() to wait until
+     */
+    void awaitShutdown(long deadline) {
+        ThreadPoolExecutor toDrain;
+        synchronized (this) {
+            toDrain = executor;
+        }
+        if (toDrain == null) {
+            return;
+        }
+        try {
+            long wait = Math.max(0, deadline - System.currentTimeMillis());
+            if (!toDrain.awaitTermination(wait, TimeUnit.MILLISECONDS)) {
+                List<Runnable> dropped = toDrain.shutdownNow();
+                queueDriver.getLogger().warn("Queue not drained in time, dropped " +
+                        dropped.size() + " work items");
             }
         }
+        catch (InterruptedException e) {
+            queueDriver.getLogger().error(e);
+            toDrain.shutdownNow();
+        }
     }
 
-    private void setupQueue() {
-        if (executor != null) {
-            executor.shutdownAfterProcessingCurrentlyQueuedTasks();
-            executor = null;
+    /**
+     * @return seconds taskomatic waits for queued work items on shutdown
+     */
+    static int getDrainSeconds() {
+        return Config.get().getInt("taskomatic.queue_drain_seconds",
+                DEFAULT_DRAIN_SECONDS);
+    }
+
+    private synchronized void setupQueue() {
+        int maxPoolSize = Math.max(1, queueDriver.getMaxWorkers());
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(maxPoolSize, maxPoolSize,
+                    KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new TaskThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+        }
+        else if (maxPoolSize > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(maxPoolSize);
+            executor.setCorePoolSize(maxPoolSize);
+        }
+        else if (maxPoolSize < executor.getMaximumPoolSize()) {
+            executor.setCorePoolSize(maxPoolSize);
+            executor.setMaximumPoolSize(maxPoolSize);
         }
-        int maxPoolSize = queueDriver.getMaxWorkers();
-        executor = new PooledExecutor(workers);
-        executor.waitWhenBlocked();
-        executor.setThreadFactory(new TaskThreadFactory());
-        executor.setKeepAliveTime(5000);
-        executor.setMinimumPoolSize(1);
-        executor.setMaximumPoolSize(maxPoolSize);
-        executor.createThreads(maxPoolSize);
+        // a missing core thread would be started with the item being queued
+        // as its first task, passing by the cheaper ones in the queue
+        executor.prestartAllCoreThreads();
     }
 
     /**
@@ -197,6 +273,7 @@ public class TaskQueue {
             }
             else if (queueRun == null) {
                 queueRun = runIn;
+                metrics = new TaskQueueMetrics();
                 return true;
             }
             return false;
@@ -215,7 +292,64 @@ public class TaskQueue {
         return taskQueueDone;
     }
 
+    private synchronized void setTaskQueueDone() {
+        taskQueueDone = true;
+    }
+
     private synchronized void unsetTaskQueueDone() {
         taskQueueDone = false;
     }
+
+    // counters never go below zero, even if a worker calls workerDone() twice
+    private static int decrement(AtomicInteger counter) {
+        int current = counter.get();
+        while (current > 0 && !counter.compareAndSet(current, current - 1)) {
+            current = counter.get();
+        }
+        return Math.max(0, current - 1);
+    }
+
+    /**
+     * Worker waiting in the queue, ordered by cost and then by the order
+     * the workers were queued
+     */
+    private static final class QueuedWorker implements Runnable,
+            Comparable<QueuedWorker> {
+
+        private final QueueWorker worker;
+        private final long cost;
+        private final long seq;
+        private final TaskQueueMetrics runMetrics;
+        private final long queuedAt = System.nanoTime();
+
+        private QueuedWorker(QueueWorker workerIn, long costIn, long seqIn,
+                TaskQueueMetrics metricsIn) {
+            worker = workerIn;
+            cost = costIn;
+            seq = seqIn;
+            runMetrics = metricsIn;
+        }
+
+        public void run() {
+            long start = System.nanoTime();
+            runMetrics.itemStarted(start - queuedAt);
+            try {
+                worker.run();
+            }
+            catch (RuntimeException e) {
+                runMetrics.itemFailed();
+                throw e;
+            }
+            finally {
+                runMetrics.itemDone(System.nanoTime() - start);
+            }
+        }
+
+        public int compareTo(QueuedWorker other) {
+            if (cost != other.cost) {
+                return cost < other.cost ? -1 : 1;
+            }
+            return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+        }
+    }
 }
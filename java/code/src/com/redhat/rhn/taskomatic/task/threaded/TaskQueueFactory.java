@@ -95,14 +95,26 @@ public class TaskQueueFactory {
         return retval;
     }
 
-    void closeAllQueues() {
+    /**
+     * Stops all queues from taking new work items and waits for the queued
+     * ones to finish, for up to taskomatic.queue_drain_seconds. The queues are
+     * removed afterwards.
+     */
+    public void closeAllQueues() {
         synchronized (queues) {
+            // stop all queues first so that they drain at the same time
             for (Iterator iter = queues.values().iterator(); iter.hasNext();) {
                 TaskQueue queue = (TaskQueue) iter.next();
                 queue.shutdown();
             }
+            long deadline = System.currentTimeMillis() +
+                    TaskQueue.getDrainSeconds() * 1000L;
+            for (Iterator iter = queues.values().iterator(); iter.hasNext();) {
+                TaskQueue queue = (TaskQueue) iter.next();
+                queue.awaitShutdown(deadline);
+            }
+            queues.clear();
         }
-        queues.clear();
     }
 
     /**
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.threaded;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the work items a task queue handled during one run: how long
+ * they waited in the queue, how long they ran and how many failed. Workers
+ * update them concurrently; reading them gives a live view of the run.
+ *
+ * @version $Rev$
+ */
+public class TaskQueueMetrics {
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    void itemQueued() {
+        queued.incrementAndGet();
+    }
+
+    void itemStarted(long waitNanos) {
+        started.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        setMax(maxWaitNanos, waitNanos);
+    }
+
+    void itemDone(long runNanos) {
+        completed.incrementAndGet();
+        totalRunNanos.addAndGet(runNanos);
+        setMax(maxRunNanos, runNanos);
+    }
+
+    void itemFailed() {
+        failed.incrementAndGet();
+    }
+
+    /**
+     * @return number of work items put in the queue
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return number of work items that finished, including failed ones
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return number of work items that failed
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return average time the started work items waited in the queue, in ms
+     */
+    public long getAverageWaitMillis() {
+        long count = started.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / count / 1000000;
+    }
+
+    /**
+     * @return longest time a work item waited in the queue, in ms
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000;
+    }
+
+    /**
+     * @return time all finished work items ran, in ms
+     */
+    public long getTotalRunMillis() {
+        return totalRunNanos.get() / 1000000;
+    }
+
+    /**
+     * @return longest time a work item ran, in ms
+     */
+    public long getMaxRunMillis() {
+        return maxRunNanos.get() / 1000000;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return "queued: " + getQueued() + ", completed: " + getCompleted() +
+                ", failed: " + getFailed() + ", queue wait avg/max: " +
+                getAverageWaitMillis() + "/" + getMaxWaitMillis() + " ms" +
+                ", run time total/max: " + getTotalRunMillis() + "/" +
+                getMaxRunMillis() + " ms";
+    }
+
+    private static void setMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.threaded.test;
+
+import com.redhat.rhn.taskomatic.task.threaded.QueueDriver;
+import com.redhat.rhn.taskomatic.task.threaded.QueueWorker;
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueue;
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueueFactory;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * TaskQueueTest
+ * @version $Rev$
+ */
+public class TaskQueueTest extends TestCase {
+
+    // work items are named by a letter followed by their cost
+    private static final List<String> ITEMS =
+            Arrays.asList("a5", "b3", "c4", "d1", "e3", "f2");
+
+    public void testCheapestFirst() throws Exception {
+        TestDriver driver = new TestDriver();
+        driver.setItems(ITEMS);
+        TaskQueue queue = new TaskQueue();
+        queue.setQueueDriver(driver);
+
+        // the first worker holds the only thread until all items are queued
+        queue.run();
+        assertEquals(ITEMS.size(), queue.getQueueSize());
+        driver.start();
+
+        assertTrue(driver.awaitDone());
+        assertEquals(Arrays.asList("d1", "f2", "b3", "e3", "c4", "a5"),
+                driver.getDone());
+        assertEquals(ITEMS.size(), queue.getMetrics().getQueued());
+        assertEquals(0, queue.getQueueSize());
+    }
+
+    public void testCloseDrainsQueue() throws Exception {
+        String name = "test_queue_" + System.currentTimeMillis();
+        TaskQueue queue = TaskQueueFactory.get().createQueue(name, TestDriver.class,
+                Logger.getLogger(TaskQueueTest.class));
+        TestDriver driver = (TestDriver) queue.getQueueDriver();
+        driver.setItems(ITEMS);
+
+        queue.run();
+        assertTrue(driver.getDone().isEmpty());
+        driver.start();
+        TaskQueueFactory.get().closeAllQueues();
+
+        // closing waited for all the queued items
+        assertEquals(ITEMS.size(), driver.getDone().size());
+        assertEquals(0, queue.getQueueSize());
+        assertNull(TaskQueueFactory.get().getQueue(name));
+    }
+
+    /**
+     * Driver of one thread, its workers wait until it is started
+     */
+    public static class TestDriver implements QueueDriver {
+
+        private Logger logger = Logger.getLogger(TaskQueueTest.class);
+        private List<String> items = new ArrayList<String>();
+        private final List<String> done =
+                Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch started = new CountDownLatch(1);
+        private CountDownLatch finished;
+
+        /**
+         * @param itemsIn work items to process
+         */
+        public void setItems(List<String> itemsIn) {
+            items = itemsIn;
+            finished = new CountDownLatch(itemsIn.size());
+        }
+
+        /**
+         * Lets the workers run
+         */
+        public void start() {
+            started.countDown();
+        }
+
+        /**
+         * @return whether all work items finished in time
+         * @throws InterruptedException the wait was interrupted
+         */
+        public boolean awaitDone() throws InterruptedException {
+            return finished.await(10, TimeUnit.SECONDS);
+        }
+
+        /**
+         * @return the work items done, in the order they finished
+         */
+        public List<String> getDone() {
+            return new ArrayList<String>(done);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void setLogger(Logger loggerIn) {
+            logger = loggerIn;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Logger getLogger() {
+            return logger;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public List getCandidates() {
+            return items;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int getMaxWorkers() {
+            return 1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public QueueWorker makeWorker(Object workItem) {
+            return new TestWorker(this, (String) workItem);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public long getCost(Object workItem) {
+            return Long.parseLong(((String) workItem).substring(1));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean canContinue() {
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void initialize() {
+            // nothing to set up
+        }
+    }
+
+    /**
+     * Worker recording the item it processed
+     */
+    private static class TestWorker implements QueueWorker {
+
+        private final TestDriver driver;
+        private final String item;
+        private TaskQueue parentQueue;
+
+        TestWorker(TestDriver driverIn, String itemIn) {
+            driver = driverIn;
+            item = itemIn;
+        }
+
+        public void setParentQueue(TaskQueue queue) {
+            parentQueue = queue;
+        }
+
+        public void run() {
+            parentQueue.workerStarting();
+            try {
+                driver.started.await();
+                Thread.sleep(10);
+                driver.done.add(item);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                parentQueue.workerDone();
+                driver.finished.countDown();
+            }
+        }
+    }
+}
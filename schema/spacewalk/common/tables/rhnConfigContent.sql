@@ -39,5 +39,9 @@ TABLESPACE [[blob]]
 ENABLE ROW MOVEMENT
 ;
 
+CREATE INDEX rhn_confcontent_chsum_idx
+    ON rhnConfigContent (checksum_id)
+    TABLESPACE [[2m_tbs]];
+
 CREATE SEQUENCE rhn_confcontent_id_seq;
 
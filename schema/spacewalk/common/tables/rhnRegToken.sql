@@ -37,7 +37,9 @@ CREATE TABLE rhnRegToken
     deploy_configs  CHAR(1)
                         DEFAULT ('Y') NOT NULL
                         CONSTRAINT rhn_reg_token_deployconfs_ck
-                            CHECK (deploy_configs in ('Y','N'))
+                            CHECK (deploy_configs in ('Y','N')),
+    content_version NUMBER
+                        DEFAULT (0) NOT NULL
 )
 ENABLE ROW MOVEMENT
 ;
@@ -0,0 +1,160 @@
+--
+-- Copyright (c) 2018 Red Hat, Inc.
+--
+-- This software is licensed to you under the GNU General Public License,
+-- version 2 (GPLv2). There is NO WARRANTY for this software, express or
+-- implied, including the implied warranties of MERCHANTABILITY or FITNESS
+-- FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+-- along with this software; if not, see
+-- http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+--
+-- Red Hat trademarks are not licensed under GPLv2. No permission is
+-- granted to use or replicate Red Hat trademarks that are incorporated
+-- in this software or its documentation.
+--
+
+-- Every change of an object indexed by the search server is logged in
+-- rhnIndexerChangeLog, the index tasks consume the log instead of scanning
+-- the tables. rhnServerInfo is left out: it only changes on check-in, and
+-- the check-in time is refreshed whenever the system is reindexed.
+
+create or replace trigger
+rhn_package_idxlog_trig
+after insert or update or delete on rhnPackage
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'package', nvl(:new.id, :old.id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_errata_idxlog_trig
+after insert or update or delete on rhnErrata
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'errata', nvl(:new.id, :old.id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_server_idxlog_trig
+after insert or update or delete on rhnServer
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'server', nvl(:new.id, :old.id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_snet_idxlog_trig
+after insert or update or delete on rhnServerNetwork
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'server', nvl(:new.server_id, :old.server_id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_sloc_idxlog_trig
+after insert or update or delete on rhnServerLocation
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'server', nvl(:new.server_id, :old.server_id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_sdmi_idxlog_trig
+after insert or update or delete on rhnServerDmi
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'server', nvl(:new.server_id, :old.server_id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_cpu_idxlog_trig
+after insert or update or delete on rhnCPU
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'server', nvl(:new.server_id, :old.server_id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_ram_idxlog_trig
+after insert or update or delete on rhnRam
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'server', nvl(:new.server_id, :old.server_id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_device_idxlog_trig
+after insert or update or delete on rhnDevice
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'hwdevice', nvl(:new.id, :old.id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_scdv_idxlog_trig
+after insert or update or delete on rhnServerCustomDataValue
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    values (rhn_indexer_changelog_id_seq.nextval, 'serverCustomInfo', nvl(:new.server_id, :old.server_id));
+end;
+/
+show errors
+
+create or replace trigger
+rhn_vi_idxlog_trig
+after insert or update of uuid, virtual_system_id or delete on rhnVirtualInstance
+for each row
+begin
+    if :old.virtual_system_id is not null then
+        insert into rhnIndexerChangeLog (id, object_type, object_id)
+        values (rhn_indexer_changelog_id_seq.nextval, 'server', :old.virtual_system_id);
+    end if;
+    if :new.virtual_system_id is not null and
+       :new.virtual_system_id <> nvl(:old.virtual_system_id, -1) then
+        insert into rhnIndexerChangeLog (id, object_type, object_id)
+        values (rhn_indexer_changelog_id_seq.nextval, 'server', :new.virtual_system_id);
+    end if;
+end;
+/
+show errors
+
+create or replace trigger
+rhn_cdatakey_idxlog_trig
+after update of label on rhnCustomDataKey
+for each row
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    select rhn_indexer_changelog_id_seq.nextval, 'serverCustomInfo', scdv.server_id
+      from rhnServerCustomDataValue scdv
+     where scdv.key_id = :new.id;
+end;
+/
+show errors
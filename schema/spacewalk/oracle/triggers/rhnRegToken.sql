@@ -0,0 +1,92 @@
+--
+-- Copyright (c) 2018 Red Hat, Inc.
+--
+-- This software is licensed to you under the GNU General Public License,
+-- version 2 (GPLv2). There is NO WARRANTY for this software, express or
+-- implied, including the implied warranties of MERCHANTABILITY or FITNESS
+-- FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+-- along with this software; if not, see
+-- http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+--
+-- Red Hat trademarks are not licensed under GPLv2. No permission is
+-- granted to use or replicate Red Hat trademarks that are incorporated
+-- in this software or its documentation.
+--
+
+-- Any change of the channels, groups, packages or config channels of an
+-- activation key increases rhnRegToken.content_version of that key.
+--
+-- When the rows go away because the key itself is deleted, rhnRegToken is
+-- mutating; there is nothing left to invalidate then.
+
+create or replace trigger
+rhn_regtok_chan_ver_trig
+after insert or update or delete on rhnRegTokenChannels
+for each row
+declare
+    mutating_table exception;
+    pragma exception_init(mutating_table, -4091);
+begin
+    update rhnRegToken
+       set content_version = content_version + 1
+     where id in (:new.token_id, :old.token_id);
+exception
+    when mutating_table then
+        null;
+end;
+/
+show errors
+
+create or replace trigger
+rhn_regtok_grp_ver_trig
+after insert or update or delete on rhnRegTokenGroups
+for each row
+declare
+    mutating_table exception;
+    pragma exception_init(mutating_table, -4091);
+begin
+    update rhnRegToken
+       set content_version = content_version + 1
+     where id in (:new.token_id, :old.token_id);
+exception
+    when mutating_table then
+        null;
+end;
+/
+show errors
+
+create or replace trigger
+rhn_regtok_pkg_ver_trig
+after insert or update or delete on rhnRegTokenPackages
+for each row
+declare
+    mutating_table exception;
+    pragma exception_init(mutating_table, -4091);
+begin
+    update rhnRegToken
+       set content_version = content_version + 1
+     where id in (:new.token_id, :old.token_id);
+exception
+    when mutating_table then
+        null;
+end;
+/
+show errors
+
+create or replace trigger
+rhn_regtok_cfgchan_ver_trig
+after insert or update or delete on rhnRegTokenConfigChannels
+for each row
+declare
+    mutating_table exception;
+    pragma exception_init(mutating_table, -4091);
+begin
+    update rhnRegToken
+       set content_version = content_version + 1
+     where id in (:new.token_id, :old.token_id);
+exception
+    when mutating_table then
+        null;
+end;
+/
+show errors
@@ -0,0 +1,156 @@
+-- oracle equivalent source sha1 71aad3b58698c1f656b3291068d16dbba464c100
+--
+-- Copyright (c) 2018 Red Hat, Inc.
+--
+-- This software is licensed to you under the GNU General Public License,
+-- version 2 (GPLv2). There is NO WARRANTY for this software, express or
+-- implied, including the implied warranties of MERCHANTABILITY or FITNESS
+-- FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+-- along with this software; if not, see
+-- http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+--
+-- Red Hat trademarks are not licensed under GPLv2. No permission is
+-- granted to use or replicate Red Hat trademarks that are incorporated
+-- in this software or its documentation.
+--
+
+-- Every change of an object indexed by the search server is logged in
+-- rhnIndexerChangeLog, the index tasks consume the log instead of scanning
+-- the tables. rhnServerInfo is left out: it only changes on check-in, and
+-- the check-in time is refreshed whenever the system is reindexed.
+
+create or replace function rhn_indexer_log_id_trig_fun() returns trigger as
+$$
+begin
+    if tg_op = 'DELETE' then
+        insert into rhnIndexerChangeLog (id, object_type, object_id)
+        values (nextval('rhn_indexer_changelog_id_seq'), tg_argv[0], old.id);
+    else
+        insert into rhnIndexerChangeLog (id, object_type, object_id)
+        values (nextval('rhn_indexer_changelog_id_seq'), tg_argv[0], new.id);
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create or replace function rhn_indexer_log_sid_trig_fun() returns trigger as
+$$
+begin
+    if tg_op = 'DELETE' then
+        insert into rhnIndexerChangeLog (id, object_type, object_id)
+        values (nextval('rhn_indexer_changelog_id_seq'), tg_argv[0], old.server_id);
+    else
+        insert into rhnIndexerChangeLog (id, object_type, object_id)
+        values (nextval('rhn_indexer_changelog_id_seq'), tg_argv[0], new.server_id);
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create or replace function rhn_indexer_log_vi_trig_fun() returns trigger as
+$$
+begin
+    if tg_op <> 'INSERT' then
+        if old.virtual_system_id is not null then
+            insert into rhnIndexerChangeLog (id, object_type, object_id)
+            values (nextval('rhn_indexer_changelog_id_seq'), 'server', old.virtual_system_id);
+        end if;
+    end if;
+    if tg_op = 'INSERT' then
+        if new.virtual_system_id is not null then
+            insert into rhnIndexerChangeLog (id, object_type, object_id)
+            values (nextval('rhn_indexer_changelog_id_seq'), 'server', new.virtual_system_id);
+        end if;
+    elsif tg_op = 'UPDATE' then
+        if new.virtual_system_id is distinct from old.virtual_system_id and
+           new.virtual_system_id is not null then
+            insert into rhnIndexerChangeLog (id, object_type, object_id)
+            values (nextval('rhn_indexer_changelog_id_seq'), 'server', new.virtual_system_id);
+        end if;
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create or replace function rhn_indexer_log_cdatakey_trig_fun() returns trigger as
+$$
+begin
+    insert into rhnIndexerChangeLog (id, object_type, object_id)
+    select nextval('rhn_indexer_changelog_id_seq'), 'serverCustomInfo', scdv.server_id
+      from rhnServerCustomDataValue scdv
+     where scdv.key_id = new.id;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger
+rhn_package_idxlog_trig
+after insert or update or delete on rhnPackage
+for each row
+execute procedure rhn_indexer_log_id_trig_fun('package');
+
+create trigger
+rhn_errata_idxlog_trig
+after insert or update or delete on rhnErrata
+for each row
+execute procedure rhn_indexer_log_id_trig_fun('errata');
+
+create trigger
+rhn_server_idxlog_trig
+after insert or update or delete on rhnServer
+for each row
+execute procedure rhn_indexer_log_id_trig_fun('server');
+
+create trigger
+rhn_snet_idxlog_trig
+after insert or update or delete on rhnServerNetwork
+for each row
+execute procedure rhn_indexer_log_sid_trig_fun('server');
+
+create trigger
+rhn_sloc_idxlog_trig
+after insert or update or delete on rhnServerLocation
+for each row
+execute procedure rhn_indexer_log_sid_trig_fun('server');
+
+create trigger
+rhn_sdmi_idxlog_trig
+after insert or update or delete on rhnServerDmi
+for each row
+execute procedure rhn_indexer_log_sid_trig_fun('server');
+
+create trigger
+rhn_cpu_idxlog_trig
+after insert or update or delete on rhnCPU
+for each row
+execute procedure rhn_indexer_log_sid_trig_fun('server');
+
+create trigger
+rhn_ram_idxlog_trig
+after insert or update or delete on rhnRam
+for each row
+execute procedure rhn_indexer_log_sid_trig_fun('server');
+
+create trigger
+rhn_device_idxlog_trig
+after insert or update or delete on rhnDevice
+for each row
+execute procedure rhn_indexer_log_id_trig_fun('hwdevice');
+
+create trigger
+rhn_scdv_idxlog_trig
+after insert or update or delete on rhnServerCustomDataValue
+for each row
+execute procedure rhn_indexer_log_sid_trig_fun('serverCustomInfo');
+
+create trigger
+rhn_vi_idxlog_trig
+after insert or update of uuid, virtual_system_id or delete on rhnVirtualInstance
+for each row
+execute procedure rhn_indexer_log_vi_trig_fun();
+
+create trigger
+rhn_cdatakey_idxlog_trig
+after update of label on rhnCustomDataKey
+for each row
+execute procedure rhn_indexer_log_cdatakey_trig_fun();
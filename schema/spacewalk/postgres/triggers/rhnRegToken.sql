@@ -0,0 +1,62 @@
+-- oracle equivalent source sha1 566ce7625913a73f34b214009a8001ab0b4008ba
+--
+-- Copyright (c) 2018 Red Hat, Inc.
+--
+-- This software is licensed to you under the GNU General Public License,
+-- version 2 (GPLv2). There is NO WARRANTY for this software, express or
+-- implied, including the implied warranties of MERCHANTABILITY or FITNESS
+-- FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+-- along with this software; if not, see
+-- http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+--
+-- Red Hat trademarks are not licensed under GPLv2. No permission is
+-- granted to use or replicate Red Hat trademarks that are incorporated
+-- in this software or its documentation.
+--
+
+-- Any change of the channels, groups, packages or config channels of an
+-- activation key increases rhnRegToken.content_version of that key.
+
+create or replace function rhn_regtok_content_trig_fun() returns trigger as
+$$
+begin
+    if tg_op = 'INSERT' then
+        update rhnRegToken
+           set content_version = content_version + 1
+         where id = new.token_id;
+    elsif tg_op = 'DELETE' then
+        update rhnRegToken
+           set content_version = content_version + 1
+         where id = old.token_id;
+    else
+        update rhnRegToken
+           set content_version = content_version + 1
+         where id in (new.token_id, old.token_id);
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger
+rhn_regtok_chan_ver_trig
+after insert or update or delete on rhnRegTokenChannels
+for each row
+execute procedure rhn_regtok_content_trig_fun();
+
+create trigger
+rhn_regtok_grp_ver_trig
+after insert or update or delete on rhnRegTokenGroups
+for each row
+execute procedure rhn_regtok_content_trig_fun();
+
+create trigger
+rhn_regtok_pkg_ver_trig
+after insert or update or delete on rhnRegTokenPackages
+for each row
+execute procedure rhn_regtok_content_trig_fun();
+
+create trigger
+rhn_regtok_cfgchan_ver_trig
+after insert or update or delete on rhnRegTokenConfigChannels
+for each row
+execute procedure rhn_regtok_content_trig_fun();
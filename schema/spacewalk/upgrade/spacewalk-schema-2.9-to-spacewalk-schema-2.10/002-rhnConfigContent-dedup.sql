@@ -0,0 +1,30 @@
+CREATE INDEX rhn_confcontent_chsum_idx
+    ON rhnConfigContent (checksum_id)
+    TABLESPACE [[2m_tbs]];
+
+-- point every revision at the oldest identical content
+UPDATE rhnConfigRevision CR
+   SET config_content_id = (
+       SELECT MIN(C2.id)
+         FROM rhnConfigContent C1, rhnConfigContent C2
+        WHERE C1.id = CR.config_content_id
+          AND C2.checksum_id = C1.checksum_id
+          AND C2.file_size = C1.file_size
+          AND C2.is_binary = C1.is_binary
+          AND C2.delim_start = C1.delim_start
+          AND C2.delim_end = C1.delim_end)
+ WHERE EXISTS (
+       SELECT 1
+         FROM rhnConfigContent C1, rhnConfigContent C2
+        WHERE C1.id = CR.config_content_id
+          AND C2.checksum_id = C1.checksum_id
+          AND C2.file_size = C1.file_size
+          AND C2.is_binary = C1.is_binary
+          AND C2.delim_start = C1.delim_start
+          AND C2.delim_end = C1.delim_end
+          AND C2.id < C1.id);
+
+DELETE FROM rhnConfigContent CCon
+ WHERE NOT EXISTS (SELECT 1
+                     FROM rhnConfigRevision CR
+                    WHERE CR.config_content_id = CCon.id);
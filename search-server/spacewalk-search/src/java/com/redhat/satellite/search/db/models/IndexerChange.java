@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.db.models;
+
+/**
+ * An entry of the indexer change log: an object of some index was
+ * created, modified or deleted.
+ * @version $Rev$
+ */
+public class IndexerChange extends GenericRecord {
+    private long objectId;
+
+    /**
+     * @return the id of the changed object
+     */
+    public long getObjectId() {
+        return objectId;
+    }
+
+    /**
+     * @param objectIdIn the id of the changed object
+     */
+    public void setObjectId(long objectIdIn) {
+        this.objectId = objectIdIn;
+    }
+}
@@ -44,6 +44,8 @@ import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.Hits;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.LockObtainFailedException;
@@ -83,6 +85,7 @@ public class IndexManager {
     private Map<String, String> docLocaleLookUp = new TreeMap<String, String>
                                                                                                 (String.CASE_INSENSITIVE_ORDER);
     private Map<String, FetchedSegments> docSegments;
+    private SearchStats stats = SearchStats.getInstance();
     /**
      * Constructor
      *
@@ -158,15 +161,21 @@ public class IndexManager {
         IndexReader reader = null;
         List<Result> retval = null;
         try {
+            long started = System.nanoTime();
             reader = getIndexReader(indexName, lang);
             searcher = getIndexSearcher(indexName, lang);
+            stats.record(indexName, SearchStats.OPEN, started, 0);
+            started = System.nanoTime();
             QueryParser qp = getQueryParser(indexName, lang, isFineGrained);
             Query q = qp.parse(query);
+            stats.record(indexName, SearchStats.PARSE, started, 0);
             if (log.isDebugEnabled()) {
                 log.debug("Original query was: " + query);
                 log.debug("Parsed Query is: " + q.toString());
             }
+            started = System.nanoTime();
             Hits hits = searcher.search(q);
+            stats.record(indexName, SearchStats.SEARCH, started, hits.length());
             if (log.isDebugEnabled()) {
                 log.debug(hits.length() + " results were found.");
             }
@@ -180,7 +189,9 @@ public class IndexManager {
                 e.printStackTrace();
                 throw new QueryParseException(e);
             }
+            started = System.nanoTime();
             retval = processHits(indexName, hits, queryTerms, query, lang);
+            stats.record(indexName, SearchStats.HITS, started, retval.size());
             if (explainResults) {
                 debugExplainResults(indexName, hits, searcher, q, queryTerms);
             }
@@ -190,12 +201,14 @@ public class IndexManager {
             // and the user performs a search
             // if this is the case, just return 0 results, otherwise rethrow the exception
             if (!e.getMessage().contains("no segments* file found in org.apache.lucene.store.FSDirectory@/var/lib/rhn/search/indexes")) {
+                stats.recordError(indexName);
                 throw new IndexingException(e);
             }
             log.error(e.getMessage());
             retval = new ArrayList<Result>();
         }
         catch (ParseException e) {
+            stats.recordError(indexName);
             throw new QueryParseException("Could not parse query: '" + query + "'");
         }
         finally {
@@ -215,6 +228,102 @@ public class IndexManager {
     }
 
 
+    /**
+     * Query a index for a window of the best hits. Only the top
+     * start + count hits are collected and only the documents of the window
+     * are loaded, so the cost does not depend on the total number of matches.
+     *
+     * @param indexName name of the index
+     * @param query search query
+     * @param lang language
+     * @param isFineGrained see {@link #search(String, String, String, boolean)}
+     * @param start rank of the first hit to return
+     * @param count maximum number of hits to return
+     * @return list of hits, shorter than count if there are no more acceptable
+     * hits
+     * @throws IndexingException if there is a problem indexing the content.
+     * @throws QueryParseException
+     */
+    public List<Result> search(String indexName, String query, String lang,
+            boolean isFineGrained, int start, int count)
+            throws IndexingException, QueryParseException {
+        IndexSearcher searcher = null;
+        IndexReader reader = null;
+        List<Result> retval = new ArrayList<Result>();
+        int end = start + count;
+        if (maxHits > 0) {
+            end = Math.min(end, maxHits + 1);
+        }
+        if (end <= start) {
+            return retval;
+        }
+        try {
+            long started = System.nanoTime();
+            reader = getIndexReader(indexName, lang);
+            searcher = getIndexSearcher(indexName, lang);
+            stats.record(indexName, SearchStats.OPEN, started, 0);
+            started = System.nanoTime();
+            QueryParser qp = getQueryParser(indexName, lang, isFineGrained);
+            Query q = qp.parse(query);
+            stats.record(indexName, SearchStats.PARSE, started, 0);
+            if (log.isDebugEnabled()) {
+                log.debug("Original query was: " + query);
+                log.debug("Parsed Query is: " + q.toString() + ", hits " + start +
+                        " to " + end);
+            }
+            started = System.nanoTime();
+            TopDocs top = searcher.search(q, null, end);
+            stats.record(indexName, SearchStats.SEARCH, started, top.totalHits);
+            if (log.isDebugEnabled()) {
+                log.debug(top.totalHits + " results were found.");
+            }
+            Set<Term> queryTerms = new HashSet<Term>();
+            try {
+                q.rewrite(reader).extractTerms(queryTerms);
+            }
+            catch (Exception e) {
+                throw new QueryParseException(e);
+            }
+            started = System.nanoTime();
+            ScoreDoc[] docs = top.scoreDocs;
+            for (int x = start; x < docs.length; x++) {
+                if (!isScoreAcceptable(indexName, docs[x].score, x, top.totalHits,
+                        query)) {
+                    break;
+                }
+                retval.add(buildResult(indexName, x, docs[x].score,
+                        searcher.doc(docs[x].doc), queryTerms, query, lang));
+            }
+            stats.record(indexName, SearchStats.HITS, started, retval.size());
+        }
+        catch (IOException e) {
+            // see search(String, String, String, boolean)
+            if (!e.getMessage().contains("no segments* file found in org.apache.lucene.store.FSDirectory@/var/lib/rhn/search/indexes")) {
+                stats.recordError(indexName);
+                throw new IndexingException(e);
+            }
+            log.error(e.getMessage());
+        }
+        catch (ParseException e) {
+            stats.recordError(indexName);
+            throw new QueryParseException("Could not parse query: '" + query + "'");
+        }
+        finally {
+            try {
+                if (searcher != null) {
+                    searcher.close();
+                }
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+            catch (IOException ex) {
+                throw new IndexingException(ex);
+            }
+        }
+        return retval;
+    }
+
     /**
      * Create an empty index if it exists
      *
@@ -323,10 +432,12 @@ public class IndexManager {
                 }
             }
         }
-        if (numFound > 0) {
-            log.info("Found " + numFound + " <" + indexName + " docs for " +
+        if (numFound > 0 && log.isDebugEnabled()) {
+            log.debug("Found " + numFound + " <" + indexName + " docs for " +
                     uniqueField + ":" + doc.get(uniqueField) +
                     " will remove them now.");
+        }
+        if (numFound > 0) {
             removeFromIndex(indexName, uniqueField, doc.get(uniqueField));
         }
         addToIndex(indexName, doc, lang);
@@ -342,8 +453,10 @@ public class IndexManager {
      */
     public void removeFromIndex(String indexName, String uniqueField, String objectId)
             throws IndexingException {
-        log.info("Removing <" + indexName + "> " + uniqueField + ":" +
-                objectId);
+        if (log.isDebugEnabled()) {
+            log.debug("Removing <" + indexName + "> " + uniqueField + ":" +
+                    objectId);
+        }
         Term t = new Term(uniqueField, objectId);
         IndexReader reader;
         try {
@@ -403,8 +516,10 @@ public class IndexManager {
         else {
             path = indexWorkDir + indexName;
         }
-        log.info("IndexManager::getIndexReader(" + indexName + ", " + locale +
-                ") path = " + path);
+        if (log.isDebugEnabled()) {
+            log.debug("IndexManager::getIndexReader(" + indexName + ", " + locale +
+                    ") path = " + path);
+        }
         File f = new File(path);
         IndexReader retval = IndexReader.open(FSDirectory.getDirectory(f));
         return retval;
@@ -420,8 +535,10 @@ public class IndexManager {
         else {
             path = indexWorkDir + indexName;
         }
-        log.info("IndexManager::getIndexSearcher(" + indexName + ", " + locale +
-                ") path = " + path);
+        if (log.isDebugEnabled()) {
+            log.debug("IndexManager::getIndexSearcher(" + indexName + ", " + locale +
+                    ") path = " + path);
+        }
         IndexSearcher retval = new IndexSearcher(path);
         return retval;
     }
@@ -478,79 +595,84 @@ public class IndexManager {
         throws IOException {
         List<Result> retval = new ArrayList<Result>();
         for (int x = 0; x < hits.length(); x++) {
-            Document doc = hits.doc(x);
-            Result pr = null;
-            if (!isScoreAcceptable(indexName, hits, x, query)) {
+            if (!isScoreAcceptable(indexName, hits.score(x), x, hits.length(), query)) {
                 break;
             }
-            if (indexName.compareTo(BuilderFactory.DOCS_TYPE) == 0) {
-                pr = new DocResult(x, hits.score(x), doc);
-                String summary = lookupDocSummary(doc, query, lang);
-                if (summary != null) {
-                    ((DocResult)pr).setSummary(summary);
-                }
-            }
-            else if (indexName.compareTo(BuilderFactory.HARDWARE_DEVICE_TYPE) == 0) {
-                pr = new HardwareDeviceResult(x, hits.score(x), doc);
-            }
-            else if (indexName.compareTo(BuilderFactory.SNAPSHOT_TAG_TYPE)  == 0) {
-                pr = new SnapshotTagResult(x, hits.score(x), doc);
-            }
-            else if (indexName.compareTo(BuilderFactory.SERVER_CUSTOM_INFO_TYPE) == 0) {
-                pr = new ServerCustomInfoResult(x, hits.score(x), doc);
-            }
-            else if (indexName.compareTo(BuilderFactory.XCCDF_IDENT_TYPE) == 0) {
-                pr = new Result(x,
-                        doc.getField("id").stringValue(),
-                        doc.getField("identifier").stringValue(),
-                        hits.score(x));
+            retval.add(buildResult(indexName, x, hits.score(x), hits.doc(x), queryTerms,
+                    query, lang));
+            if (maxHits > 0 && x == maxHits) {
+                break;
             }
-            else {
-                pr = new Result(x,
-                        doc.getField("id").stringValue(),
-                        doc.getField("name").stringValue(),
-                        hits.score(x));
+        }
+        return retval;
+    }
+
+    private Result buildResult(String indexName, int x, float score, Document doc,
+            Set<Term> queryTerms, String query, String lang) {
+        Result pr = null;
+        if (indexName.compareTo(BuilderFactory.DOCS_TYPE) == 0) {
+            pr = new DocResult(x, score, doc);
+            String summary = lookupDocSummary(doc, query, lang);
+            if (summary != null) {
+                ((DocResult)pr).setSummary(summary);
             }
+        }
+        else if (indexName.compareTo(BuilderFactory.HARDWARE_DEVICE_TYPE) == 0) {
+            pr = new HardwareDeviceResult(x, score, doc);
+        }
+        else if (indexName.compareTo(BuilderFactory.SNAPSHOT_TAG_TYPE)  == 0) {
+            pr = new SnapshotTagResult(x, score, doc);
+        }
+        else if (indexName.compareTo(BuilderFactory.SERVER_CUSTOM_INFO_TYPE) == 0) {
+            pr = new ServerCustomInfoResult(x, score, doc);
+        }
+        else if (indexName.compareTo(BuilderFactory.XCCDF_IDENT_TYPE) == 0) {
+            pr = new Result(x,
+                    doc.getField("id").stringValue(),
+                    doc.getField("identifier").stringValue(),
+                    score);
+        }
+        else {
+            pr = new Result(x,
+                    doc.getField("id").stringValue(),
+                    doc.getField("name").stringValue(),
+                    score);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Hit[" + x + "] Score = " + score + ", Result = " + pr);
+        }
+        /**
+         * matchingField will help the webUI to understand what field was responsible
+         * for this match.  Later implementation should use "Explanation" to determine
+         * field, for now we will simply grab one term and return it's field.
+         */
+        try {
+            MatchingField match = new MatchingField(query, doc, queryTerms);
+            pr.setMatchingField(match.getFieldName());
+            pr.setMatchingFieldValue(match.getFieldValue());
             if (log.isDebugEnabled()) {
-                log.debug("Hit[" + x + "] Score = " + hits.score(x) + ", Result = " + pr);
-            }
-            /**
-             * matchingField will help the webUI to understand what field was responsible
-             * for this match.  Later implementation should use "Explanation" to determine
-             * field, for now we will simply grab one term and return it's field.
-             */
-            try {
-                MatchingField match = new MatchingField(query, doc, queryTerms);
-                pr.setMatchingField(match.getFieldName());
-                pr.setMatchingFieldValue(match.getFieldValue());
-                log.info("hit[" + x + "] matchingField is being set to: <" +
+                log.debug("hit[" + x + "] matchingField is being set to: <" +
                     pr.getMatchingField() + "> based on passed in query field.  " +
                     "matchingFieldValue = " + pr.getMatchingFieldValue());
             }
-            catch (Exception e) {
-                log.error("Caught exception: ", e);
-            }
-            if (pr != null) {
-                retval.add(pr);
-            }
-            if (maxHits > 0 && x == maxHits) {
-                break;
-            }
         }
-        return retval;
+        catch (Exception e) {
+            log.error("Caught exception: ", e);
+        }
+        return pr;
     }
     /**
      *
      * @param indexName
-     * @param hits
-     * @param x
+     * @param score score of the hit
+     * @param x rank of the hit
+     * @param total number of hits
      * @param query
      * @return  true - score is acceptable
      *          false - score is NOT acceptable
-     * @throws IOException
      */
-    private boolean isScoreAcceptable(String indexName, Hits hits, int x, String queryIn)
-        throws IOException {
+    private boolean isScoreAcceptable(String indexName, float score, int x, int total,
+            String queryIn) {
         String guessMainQueryTerm = MatchingField.getFirstFieldName(queryIn);
 
         if ((indexName.compareTo(BuilderFactory.DOCS_TYPE) == 0) &&
@@ -567,11 +689,11 @@ public class IndexManager {
                 (indexName.compareTo(BuilderFactory.SERVER_CUSTOM_INFO_TYPE) == 0) ||
                 (indexName.compareTo(BuilderFactory.SNAPSHOT_TAG_TYPE)  == 0) ||
                 (indexName.compareTo(BuilderFactory.HARDWARE_DEVICE_TYPE) == 0)) {
-            if (hits.score(x) < system_score_threshold) {
+            if (score < system_score_threshold) {
                 if (log.isDebugEnabled()) {
-                    log.debug("hits.score(" + x + ") is " + hits.score(x));
+                    log.debug("hits.score(" + x + ") is " + score);
                     log.debug("Filtering out search results from " + x + " to " +
-                            hits.length() + ", due to their score being below " +
+                            total + ", due to their score being below " +
                             "system_score_threshold = " + system_score_threshold);
                 }
                 return false;
@@ -579,11 +701,11 @@ public class IndexManager {
         }
         else if (indexName.compareTo(BuilderFactory.ERRATA_TYPE) == 0) {
             if (guessMainQueryTerm.compareTo("name") == 0) {
-                if (hits.score(x) < errata_advisory_score_threshold) {
+                if (score < errata_advisory_score_threshold) {
                     if (log.isDebugEnabled()) {
-                        log.debug("hits.score(" + x + ") is " + hits.score(x));
+                        log.debug("hits.score(" + x + ") is " + score);
                         log.debug("Filtering out search results from " + x + " to " +
-                            hits.length() + ", due to their score being below " +
+                            total + ", due to their score being below " +
                             "errata_advisory_score_threshold = " +
                             errata_advisory_score_threshold);
                     }
@@ -591,11 +713,11 @@ public class IndexManager {
                 }
             }
             else {
-                if (hits.score(x) < errata_score_threshold) {
+                if (score < errata_score_threshold) {
                     if (log.isDebugEnabled()) {
-                        log.debug("hits.score(" + x + ") is " + hits.score(x));
+                        log.debug("hits.score(" + x + ") is " + score);
                         log.debug("Filtering out search results from " + x + " to " +
-                            hits.length() + ", due to their score being below " +
+                            total + ", due to their score being below " +
                             "errata_score_threshold = " +
                             errata_score_threshold);
                     }
@@ -603,8 +725,8 @@ public class IndexManager {
                 }
             }
         }
-        else if (((hits.score(x) < score_threshold) && (x > 10)) ||
-                (hits.score(x) < 0.001)) {
+        else if (((score < score_threshold) && (x > 10)) ||
+                (score < 0.001)) {
             /**
              * Dropping matches which are a poor fit.
              * First term is configurable, it allows matches like spelling errors or
@@ -612,9 +734,9 @@ public class IndexManager {
              * Second term is intended to get rid of pure and utter crap hits
              */
             if (log.isDebugEnabled()) {
-                log.debug("hits.score(" + x + ") is " + hits.score(x));
+                log.debug("hits.score(" + x + ") is " + score);
                 log.debug("Filtering out search results from " + x + " to " +
-                        hits.length() + ", due to their score being below " +
+                        total + ", due to their score being below " +
                         "score_threshold = " + score_threshold);
             }
             return false;
@@ -726,13 +848,18 @@ public class IndexManager {
             analyzer = nutchAnalyzerFactory.get(lang);
         }
         catch (Exception e) {
-            log.info("Caught exception, nutch is most likely not installed");
-            log.info("Defaulting to generic analyzer for Documentation Search");
-            log.info("Install nutch package to get summary info and better matches.");
+            if (log.isDebugEnabled()) {
+                log.debug("Caught exception, nutch is most likely not installed");
+                log.debug("Defaulting to generic analyzer for Documentation Search");
+                log.debug("Install nutch package to get summary info and better " +
+                        "matches.");
+            }
             analyzer = new StandardAnalyzer();
         }
-        log.info("Language choice is " + lang + ", analyzer chosen is " +
-                analyzer);
+        if (log.isDebugEnabled()) {
+            log.debug("Language choice is " + lang + ", analyzer chosen is " +
+                    analyzer);
+        }
         return analyzer;
     }
 
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time spent by the phases of the queries, per index. Recording a time only
+ * updates a few counters, nothing is logged, so it can be done for every
+ * query. The counters are read by the admin.getSearchStats call.
+ *
+ * @version $Rev$
+ */
+public class SearchStats {
+
+    /** opening the reader and searcher of the index */
+    public static final String OPEN = "open";
+    /** parsing the query */
+    public static final String PARSE = "parse";
+    /** running the query against the index */
+    public static final String SEARCH = "search";
+    /** loading the documents of the hits and building the results */
+    public static final String HITS = "hits";
+    /** checking the visibility of the results in the database */
+    public static final String SCREEN = "screen";
+
+    /** upper bounds of the histogram buckets in milliseconds */
+    private static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500,
+        1000, 2000, 5000, 10000};
+
+    private static final SearchStats INSTANCE = new SearchStats();
+
+    private final ConcurrentMap<String, Timer> timers =
+        new ConcurrentHashMap<String, Timer>();
+    private final ConcurrentMap<String, AtomicLong> errors =
+        new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * @return the stats of the search server
+     */
+    public static SearchStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the time a phase of a query took.
+     * @param indexName index queried
+     * @param phase phase of the query, e.g. {@link #SEARCH}
+     * @param startNanos value of System.nanoTime() when the phase started
+     * @param items number of hits or results the phase handled
+     */
+    public void record(String indexName, String phase, long startNanos, int items) {
+        String key = indexName + "." + phase;
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timers.putIfAbsent(key, new Timer());
+            timer = timers.get(key);
+        }
+        timer.add(System.nanoTime() - startNanos, items);
+    }
+
+    /**
+     * Records a query that failed.
+     * @param indexName index queried
+     */
+    public void recordError(String indexName) {
+        AtomicLong count = errors.get(indexName);
+        if (count == null) {
+            errors.putIfAbsent(indexName, new AtomicLong());
+            count = errors.get(indexName);
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Returns the stats as a struct. Every phase of every index, like
+     * "package.search", has the number of times it was recorded, the total
+     * and maximum time in milliseconds, the number of items handled and a
+     * histogram of the times: the number of times below each of the bounds in
+     * "buckets_ms", the last one counting the times above all bounds. The
+     * number of failed queries per index is under "errors".
+     * @return the stats
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new TreeMap<String, Object>();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toMap());
+        }
+        Map<String, Object> errorCounts = new TreeMap<String, Object>();
+        for (Map.Entry<String, AtomicLong> entry : errors.entrySet()) {
+            errorCounts.put(entry.getKey(), toInt(entry.getValue().get()));
+        }
+        result.put("errors", errorCounts);
+        List<Integer> bounds = new ArrayList<Integer>();
+        for (long bound : BUCKETS) {
+            bounds.add(toInt(bound));
+        }
+        result.put("buckets_ms", bounds);
+        return result;
+    }
+
+    /**
+     * Drops all recorded times.
+     */
+    public void reset() {
+        timers.clear();
+        errors.clear();
+    }
+
+    // counters are sent as i4, the largest value stands for any larger one
+    private static Integer toInt(long value) {
+        return new Integer((int) Math.min(value, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Counters of one phase of the queries of one index
+     */
+    private static final class Timer {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+        private void add(long nanos, int itemsIn) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            items.addAndGet(itemsIn);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+            long millis = nanos / 1000000;
+            int bucket = 0;
+            while (bucket < BUCKETS.length && millis >= BUCKETS[bucket]) {
+                bucket++;
+            }
+            histogram.incrementAndGet(bucket);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<String, Object>();
+            map.put("count", toInt(count.get()));
+            map.put("total_ms", new Double(totalNanos.get() / 1000000.0));
+            map.put("max_ms", new Double(maxNanos.get() / 1000000.0));
+            map.put("items", toInt(items.get()));
+            List<Integer> buckets = new ArrayList<Integer>();
+            for (int i = 0; i < histogram.length(); i++) {
+                buckets.add(toInt(histogram.get(i)));
+            }
+            map.put("histogram", buckets);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.index.tests;
+
+import com.redhat.satellite.search.index.SearchStats;
+
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * SearchStatsTest
+ * @version $Rev$
+ */
+public class SearchStatsTest extends TestCase {
+
+    private static final long MILLI = 1000000L;
+
+    private SearchStats stats;
+
+    @Override
+    protected void setUp() throws Exception {
+        stats = new SearchStats();
+    }
+
+    public void testEmpty() {
+        Map<String, Object> result = stats.getStats();
+        assertEquals(2, result.size());
+        assertTrue(((Map) result.get("errors")).isEmpty());
+        List bounds = (List) result.get("buckets_ms");
+        assertEquals(new Integer(1), bounds.get(0));
+        assertEquals(new Integer(10000), bounds.get(bounds.size() - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testRecord() {
+        stats.record("package", SearchStats.SEARCH, System.nanoTime(), 3);
+        stats.record("package", SearchStats.SEARCH, System.nanoTime() - 30 * MILLI, 4);
+        stats.record("errata", SearchStats.PARSE, System.nanoTime(), 0);
+
+        Map<String, Object> result = stats.getStats();
+        assertTrue(result.containsKey("errata.parse"));
+        assertFalse(result.containsKey("package.parse"));
+
+        Map<String, Object> search = (Map<String, Object>) result.get("package.search");
+        assertEquals(new Integer(2), search.get("count"));
+        assertEquals(new Integer(7), search.get("items"));
+        double max = ((Double) search.get("max_ms")).doubleValue();
+        double total = ((Double) search.get("total_ms")).doubleValue();
+        assertTrue(max >= 30);
+        assertTrue(total >= max);
+
+        // both times are counted, the second one at or above the 20 ms bound
+        List<Integer> histogram = (List<Integer>) search.get("histogram");
+        List bounds = (List) result.get("buckets_ms");
+        assertEquals(bounds.size() + 1, histogram.size());
+        int sum = 0;
+        int slow = 0;
+        for (int i = 0; i < histogram.size(); i++) {
+            sum += histogram.get(i).intValue();
+            if (i > bounds.indexOf(new Integer(20))) {
+                slow += histogram.get(i).intValue();
+            }
+        }
+        assertEquals(2, sum);
+        assertTrue(slow >= 1);
+    }
+
+    public void testRecordError() {
+        stats.recordError("package");
+        stats.recordError("package");
+        stats.recordError("server");
+
+        Map errors = (Map) stats.getStats().get("errors");
+        assertEquals(new Integer(2), errors.get("package"));
+        assertEquals(new Integer(1), errors.get("server"));
+    }
+
+    public void testReset() {
+        stats.record("package", SearchStats.HITS, System.nanoTime(), 1);
+        stats.recordError("package");
+        stats.reset();
+
+        Map<String, Object> result = stats.getStats();
+        assertFalse(result.containsKey("package.hits"));
+        assertTrue(((Map) result.get("errors")).isEmpty());
+
+        stats.record("package", SearchStats.HITS, System.nanoTime(), 1);
+        assertTrue(stats.getStats().containsKey("package.hits"));
+    }
+}
@@ -17,11 +17,12 @@ package com.redhat.satellite.search.rpc;
 
 import org.apache.log4j.Logger;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
-import java.io.StringWriter;
+import java.io.Writer;
 
 import redstone.xmlrpc.XmlRpcServer;
 import simple.http.ProtocolHandler;
@@ -69,14 +70,13 @@ public class XmlRpcInvoker implements ProtocolHandler {
             }
             else {
                 InputStream in = request.getInputStream();
-                StringWriter writer = new StringWriter();
-                server.execute(in, writer);
-                OutputStream out = response.getOutputStream();
                 response.set("Content-Type", "text/xml");
+                // stream the response instead of building it in memory first
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        response.getOutputStream()));
+                server.execute(in, writer);
                 writer.flush();
-                out.write(writer.getBuffer().toString().getBytes());
-                out.flush();
-                out.close();
+                writer.close();
             }
         }
         catch (IOException e) {
@@ -17,10 +17,13 @@ package com.redhat.satellite.search.rpc.handlers;
 
 import com.redhat.satellite.search.db.DatabaseManager;
 import com.redhat.satellite.search.index.IndexManager;
+import com.redhat.satellite.search.index.SearchStats;
 import com.redhat.satellite.search.scheduler.ScheduleManager;
 
 import org.apache.log4j.Logger;
 
+import java.util.Map;
+
 /**
  * XML-RPC handler which handles calls for administration
  * Updating indexes maybe more tasks later
@@ -55,4 +58,24 @@ public class AdminHandler {
         }
         return scheduleManager.triggerIndexTask(indexName);
     }
+
+    /**
+     * Returns the time spent by the phases of the queries since the server
+     * started or the stats were reset, see {@link SearchStats#getStats()}.
+     *
+     * @return struct of the stats per index and phase
+     */
+    public Map<String, Object> getSearchStats() {
+        return SearchStats.getInstance().getStats();
+    }
+
+    /**
+     * Drops the stats of the queries.
+     *
+     * @return true
+     */
+    public boolean resetSearchStats() {
+        SearchStats.getInstance().reset();
+        return true;
+    }
 }
@@ -21,11 +21,13 @@ import com.redhat.satellite.search.index.IndexManager;
 import com.redhat.satellite.search.index.IndexingException;
 import com.redhat.satellite.search.index.Result;
 import com.redhat.satellite.search.index.QueryParseException;
+import com.redhat.satellite.search.index.SearchStats;
 import com.redhat.satellite.search.scheduler.ScheduleManager;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.search.BooleanQuery;
 
+import java.io.ByteArrayOutputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -52,6 +54,8 @@ public class IndexHandler {
     public static final int INDEX_ERROR = 200;
     public static final int DB_ERROR = 300;
     public static final String DEFAULT_LANG = new Locale("EN", "US").toString();
+    /** smallest number of hits screened at once by the paged search */
+    private static final int MIN_WINDOW = 100;
 
     /**
      * Constructor
@@ -142,18 +146,71 @@ public class IndexHandler {
     public List<Result> search(long sessionId, String indexName, String query,
             String lang, boolean isFineGrained)
             throws XmlRpcFault {
+        return search(sessionId, indexName, query, lang, isFineGrained, 0, -1);
+    }
+
+    /**
+     * Search index for a page of results -
+     * assumes English language as default language
+     *
+     * @param sessionId
+     *            user's application session id
+     * @param indexName
+     *            index to use
+     * @param query
+     *            search query
+     * @param offset
+     *            number of visible results to skip
+     * @param limit
+     *            maximum number of results to return
+     * @return list of document ids as results
+     * @throws XmlRpcFault something bad happened
+     */
+    public List<Result> search(long sessionId, String indexName, String query,
+            int offset, int limit) throws XmlRpcFault {
+        return search(sessionId, indexName, query, DEFAULT_LANG, false, offset, limit);
+    }
+
+    /**
+     * Search index for a page of results. Only the best hits are collected
+     * and screened for visibility, until the page is filled.
+     *
+     * @param sessionId
+     *            user's application session id
+     * @param indexName
+     *            index to use
+     * @param query
+     *            search query
+     *  @param lang
+     *            language
+     *  @param isFineGrained
+     *            if set will restrict matches to be stricter and less forgiving
+     * @param offset
+     *            number of visible results to skip
+     * @param limit
+     *            maximum number of results to return, all results if negative
+     * @return list of document ids as results
+     * @throws XmlRpcFault something bad happened
+     */
+    public List<Result> search(long sessionId, String indexName, String query,
+            String lang, boolean isFineGrained, int offset, int limit)
+            throws XmlRpcFault {
         if (log.isDebugEnabled()) {
             log.debug("IndexHandler:: searching for: " + query + ", indexName = " +
-                    indexName + ", lang = " + lang);
+                    indexName + ", lang = " + lang + ", offset = " + offset +
+                    ", limit = " + limit);
         }
         boolean retry = true;
         while (retry) {
             try {
                 retry = false;
+                if (limit >= 0) {
+                    return searchPage(sessionId, indexName, query, lang,
+                            isFineGrained, offset, limit);
+                }
                 List<Result> hits = indexManager.search(indexName, query, lang,
                         isFineGrained);
-                if (indexName.equals("package") || indexName.equals("errata")
-                        || indexName.equals("server")) {
+                if (isScreened(indexName)) {
                     return screenHits(sessionId, indexName, hits);
                 }
                 return hits;
@@ -192,6 +249,91 @@ public class IndexHandler {
         return null;
     }
 
+    /**
+     * Search index returning only the ids of the results, in rank order. The
+     * ids are sent as a single base64 value instead of a struct per result:
+     * every id is written as the difference to the previous one, zigzag
+     * encoded and stored in groups of 7 bits, least significant first, the
+     * high bit marking that more follow.
+     *
+     * @param sessionId
+     *            user's application session id
+     * @param indexName
+     *            index to use, must have numeric ids
+     * @param query
+     *            search query
+     *  @param isFineGrained
+     *            if set will restrict matches to be stricter and less forgiving
+     * @return encoded ids of the results
+     * @throws XmlRpcFault something bad happened
+     */
+    public byte[] searchIds(long sessionId, String indexName, String query,
+            boolean isFineGrained) throws XmlRpcFault {
+        List<Result> hits = search(sessionId, indexName, query, DEFAULT_LANG,
+                isFineGrained);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(hits.size() * 3);
+        long previous = 0;
+        for (Result hit : hits) {
+            long id;
+            try {
+                id = Long.parseLong(hit.getId());
+            }
+            catch (NumberFormatException e) {
+                throw new XmlRpcFault(INDEX_ERROR, "Index " + indexName +
+                        " does not have numeric ids");
+            }
+            long delta = id - previous;
+            long value = (delta << 1) ^ (delta >> 63);
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+            previous = id;
+        }
+        return out.toByteArray();
+    }
+
+    private boolean isScreened(String indexName) {
+        return indexName.equals("package") || indexName.equals("errata") ||
+                indexName.equals("server");
+    }
+
+    /**
+     * Collects windows of hits of growing size and screens them until
+     * enough visible results are found or the hits are exhausted.
+     */
+    private List<Result> searchPage(long sessionId, String indexName, String query,
+            String lang, boolean isFineGrained, int offset, int limit)
+        throws IndexingException, QueryParseException, SQLException {
+        if (!isScreened(indexName)) {
+            return indexManager.search(indexName, query, lang, isFineGrained,
+                    offset, limit);
+        }
+        List<Result> page = new ArrayList<Result>();
+        int skip = offset;
+        int start = 0;
+        int window = Math.max(offset + limit, MIN_WINDOW);
+        while (page.size() < limit) {
+            List<Result> hits = indexManager.search(indexName, query, lang,
+                    isFineGrained, start, window);
+            for (Result pr : screenHits(sessionId, indexName, hits)) {
+                if (skip > 0) {
+                    skip--;
+                }
+                else if (page.size() < limit) {
+                    page.add(pr);
+                }
+            }
+            if (hits.size() < window) {
+                break;
+            }
+            start += window;
+            window *= 2;
+        }
+        return page;
+    }
+
     private List<Result> screenHits(long sessionId, String indexName,
             List<Result> hits) throws SQLException {
 
@@ -225,6 +367,7 @@ public class IndexHandler {
             return hits;
         }
 
+        long started = System.nanoTime();
         try {
            Set<String> visible = new HashSet<String>();
 
@@ -252,6 +395,8 @@ public class IndexHandler {
                    realResults.add(pr);
                }
            }
+           SearchStats.getInstance().record(indexName, SearchStats.SCREEN, started,
+                   realResults.size());
            return realResults;
         }
         finally {
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.rpc.handlers.tests;
+
+import com.redhat.satellite.search.index.SearchStats;
+import com.redhat.satellite.search.rpc.handlers.AdminHandler;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * AdminHandlerTest
+ * @version $Rev$
+ */
+public class AdminHandlerTest extends TestCase {
+
+    private AdminHandler handler;
+
+    @Override
+    protected void setUp() throws Exception {
+        // the stats calls need no index, database or scheduler
+        handler = new AdminHandler(null, null, null);
+        SearchStats.getInstance().reset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SearchStats.getInstance().reset();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testGetSearchStats() {
+        SearchStats.getInstance().record("server", SearchStats.OPEN,
+                System.nanoTime(), 0);
+        SearchStats.getInstance().recordError("server");
+
+        Map<String, Object> result = handler.getSearchStats();
+        Map<String, Object> open = (Map<String, Object>) result.get("server.open");
+        assertEquals(new Integer(1), open.get("count"));
+        assertEquals(new Integer(1), ((Map) result.get("errors")).get("server"));
+        assertNotNull(result.get("buckets_ms"));
+    }
+
+    public void testResetSearchStats() {
+        SearchStats.getInstance().record("server", SearchStats.SCREEN,
+                System.nanoTime(), 2);
+        assertTrue(handler.getSearchStats().containsKey("server.screen"));
+
+        assertTrue(handler.resetSearchStats());
+        Map<String, Object> result = handler.getSearchStats();
+        assertFalse(result.containsKey("server.screen"));
+        assertTrue(((Map) result.get("errors")).isEmpty());
+    }
+}
@@ -17,6 +17,7 @@ package com.redhat.satellite.search.rpc.handlers.tests;
 
 import com.redhat.satellite.search.db.DatabaseManager;
 import com.redhat.satellite.search.index.IndexManager;
+import com.redhat.satellite.search.index.Result;
 import com.redhat.satellite.search.rpc.handlers.IndexHandler;
 import com.redhat.satellite.search.scheduler.ScheduleManager;
 import com.redhat.satellite.search.tests.BaseTestCase;
@@ -59,4 +60,27 @@ public class IndexHandlerTest extends BaseTestCase {
         log.info("kernel results 2: " + results);
     }
 
+    public void testPagedQuery() throws XmlRpcFault, InterruptedException {
+        // Let the indexing task do some stuff
+        Thread.sleep(15000);
+        DatabaseManager db = (DatabaseManager)
+            container.getComponentInstance(DatabaseManager.class);
+        IndexManager idx = (IndexManager)
+            container.getComponentInstance(IndexManager.class);
+        ScheduleManager schedMgr = (ScheduleManager)
+            container.getComponentInstance(ScheduleManager.class);
+        IndexHandler handler = new IndexHandler(idx, db, schedMgr);
+        List<Result> all = handler.search(252437, "package", "kernel*", "en");
+        List<Result> first = handler.search(252437, "package", "kernel*", 0, 5);
+        List<Result> second = handler.search(252437, "package", "kernel*", 5, 5);
+        assertEquals(Math.min(5, all.size()), first.size());
+        assertEquals(Math.max(0, Math.min(5, all.size() - 5)), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(all.get(i).getId(), first.get(i).getId());
+        }
+        for (int i = 0; i < second.size(); i++) {
+            assertEquals(all.get(i + 5).getId(), second.get(i).getId());
+        }
+    }
+
 }
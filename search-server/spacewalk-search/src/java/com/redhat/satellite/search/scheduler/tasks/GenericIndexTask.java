@@ -63,6 +63,13 @@ public abstract class GenericIndexTask implements StatefulJob {
             //try to create the index first incase we never actually
             //   have any records (BZ 537502)
             indexManager.createIndex(getIndexName(), lang);
+            if (getQueryRecordsByIds() != null &&
+                    IndexerChangeLog.isIndexed(databaseManager, getQueryLastRecord())) {
+                int numChanged = processChanges(databaseManager, indexManager);
+                log.info("Reindexed " + numChanged + " changed records of index <" +
+                        getIndexName() + ">");
+                return;
+            }
             List<GenericRecord> data = getRecords(databaseManager);
             int count = 0;
             log.info(super.getClass().toString() + "found [" +
@@ -94,6 +101,21 @@ public abstract class GenericIndexTask implements StatefulJob {
             throw new JobExecutionException(e);
         }
     }
+    /**
+     * Reindexes the records listed in the indexer change log.
+     * @return number of changed records
+     */
+    private int processChanges(DatabaseManager databaseManager,
+            final IndexManager indexManager) throws SQLException, IndexingException {
+        return IndexerChangeLog.reindexChanges(databaseManager, indexManager,
+                getIndexName(), getQueryRecordsByIds(), getChangeLogFieldId(),
+                new IndexerChangeLog.RecordIndexer<GenericRecord>() {
+            public void index(GenericRecord record) throws IndexingException {
+                indexRecord(indexManager, record);
+            }
+        });
+    }
+
     /**
      * @param databaseManager
      * @param sid
@@ -137,8 +159,10 @@ public abstract class GenericIndexTask implements StatefulJob {
         throws IndexingException {
 
         Map<String, String> attrs = getFieldMap(data);
-        log.info(super.getClass().toString() + " Indexing object: " +
-                data.getId() + ": " + attrs.toString());
+        if (log.isDebugEnabled()) {
+            log.debug(super.getClass().toString() + " Indexing object: " +
+                    data.getId() + ": " + attrs.toString());
+        }
         DocumentBuilder pdb = BuilderFactory.getBuilder(getIndexName());
         Document doc = pdb.buildDocument(new Long(data.getId()), attrs);
         indexManager.addUniqueToIndex(getIndexName(), doc, getUniqueFieldId(),
@@ -274,4 +298,23 @@ public abstract class GenericIndexTask implements StatefulJob {
      * @return name of the query which will return all current ids.
      */
     protected abstract String getQueryAllIds();
+
+    /**
+     * Tasks returning a query here are driven by the indexer change log
+     * once all records have been indexed, instead of scanning for new,
+     * modified and deleted records.
+     * @return name of the query which will give back the records for a list
+     * of object ids (id_list), or null if the change log is not used
+     */
+    protected String getQueryRecordsByIds() {
+        return null;
+    }
+
+    /**
+     * @return the Document field name which holds the object id of the change
+     * log entries, the unique field by default
+     */
+    protected String getChangeLogFieldId() {
+        return getUniqueFieldId();
+    }
 }
@@ -59,6 +59,11 @@ public class IndexErrataTask implements Job {
 
         try {
 
+            if (IndexerChangeLog.isIndexed(databaseManager, "getLastErrataId")) {
+                int numChanged = processChanges(databaseManager, indexManager);
+                log.info("Reindexed " + numChanged + " changed errata");
+                return;
+            }
             List<Errata> errata = getErrata(databaseManager);
             int count = 0;
             log.info("found [" + errata.size() + "] errata to index");
@@ -175,4 +180,14 @@ public class IndexErrataTask implements Job {
         return retval;
     }
 
+    private int processChanges(DatabaseManager databaseManager,
+            final IndexManager indexManager) throws SQLException, IndexingException {
+        return IndexerChangeLog.reindexChanges(databaseManager, indexManager,
+                "errata", "listErrataByIds", "id",
+                new IndexerChangeLog.RecordIndexer<Errata>() {
+            public void index(Errata record) throws IndexingException {
+                indexErrata(indexManager, record);
+            }
+        });
+    }
 }
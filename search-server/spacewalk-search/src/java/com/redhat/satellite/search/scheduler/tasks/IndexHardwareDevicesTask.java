@@ -110,4 +110,12 @@ public class IndexHardwareDevicesTask extends GenericIndexTask {
     public String getQueryAllIds() {
         return "queryAllHwDeviceIds";
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getQueryRecordsByIds() {
+        return "getHardwareDevicesByIds";
+    }
 }
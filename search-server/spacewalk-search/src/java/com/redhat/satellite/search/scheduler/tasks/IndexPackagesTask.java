@@ -61,6 +61,11 @@ public class IndexPackagesTask implements Job {
             if (System.getProperties().get("isTesting") != null) {
                 cleanLastPackage(databaseManager);
             }
+            if (IndexerChangeLog.isIndexed(databaseManager, "getLastPackageId")) {
+                int numChanged = processChanges(databaseManager, indexManager);
+                log.info("Reindexed " + numChanged + " changed packages");
+                return;
+            }
             List<RhnPackage> packages = getPackages(databaseManager);
             int count = 0;
             log.info("found [" + packages.size() + "] packages to index");
@@ -160,4 +165,15 @@ public class IndexPackagesTask implements Job {
         }
         return retval;
     }
+
+    private int processChanges(DatabaseManager databaseManager,
+            final IndexManager indexManager) throws SQLException, IndexingException {
+        return IndexerChangeLog.reindexChanges(databaseManager, indexManager,
+                "package", "listPackagesByIds", "id",
+                new IndexerChangeLog.RecordIndexer<RhnPackage>() {
+            public void index(RhnPackage record) throws IndexingException {
+                indexPackage(indexManager, record);
+            }
+        });
+    }
 }
@@ -107,4 +107,21 @@ public class IndexServerCustomInfoTask extends GenericIndexTask {
     public String getQueryAllIds() {
         return "queryAllServerCustomInfoIds";
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getQueryRecordsByIds() {
+        return "getServerCustomInfoByServerIds";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getChangeLogFieldId() {
+        // the change log holds the server, all its custom values are reindexed
+        return "serverId";
+    }
 }
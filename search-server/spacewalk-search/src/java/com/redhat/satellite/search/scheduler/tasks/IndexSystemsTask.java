@@ -154,4 +154,12 @@ public class IndexSystemsTask extends GenericIndexTask {
     public String getQueryAllIds() {
         return "queryAllServerIds";
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getQueryRecordsByIds() {
+        return "getServerByIds";
+    }
 }
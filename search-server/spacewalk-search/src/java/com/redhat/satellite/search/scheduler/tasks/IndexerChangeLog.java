@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.scheduler.tasks;
+
+import com.redhat.satellite.search.db.DatabaseManager;
+import com.redhat.satellite.search.db.Query;
+import com.redhat.satellite.search.db.WriteQuery;
+import com.redhat.satellite.search.db.models.IndexerChange;
+import com.redhat.satellite.search.index.IndexManager;
+import com.redhat.satellite.search.index.IndexingException;
+
+import org.apache.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Consumes rhnIndexerChangeLog, which is filled by triggers whenever an
+ * indexed object changes.
+ *
+ * Entries are deleted only after their objects were indexed, so every change
+ * is processed at least once, also if the search server dies in between.
+ * Entries are read in windows of ids and deleted by id, entries of
+ * transactions still running are left for the next run.
+ *
+ * @version $Rev$
+ */
+public class IndexerChangeLog {
+
+    private static Logger log = Logger.getLogger(IndexerChangeLog.class);
+    private static final long WINDOW = 1000;
+    // oracle doesn't allow more than 1000 expressions in a list
+    private static final int DELETE_BATCH = 1000;
+
+    /**
+     * Processes the objects changed since the last run.
+     */
+    public interface Handler {
+        /**
+         * Indexes the current state of the objects, removes them from the
+         * index if they don't exist any more.
+         * @param objectIds ids of the changed objects
+         * @throws SQLException something bad happened
+         * @throws IndexingException something bad happened
+         */
+        void process(List<Long> objectIds) throws SQLException, IndexingException;
+    }
+
+    /**
+     * Indexes a record of an index.
+     * @param <T> type of the records
+     */
+    public interface RecordIndexer<T> {
+        /**
+         * Adds the record to the index.
+         * @param record the record
+         * @throws IndexingException something bad happened
+         */
+        void index(T record) throws IndexingException;
+    }
+
+    private IndexerChangeLog() {
+    }
+
+    /**
+     * Tells whether all records of an index have been indexed once, after
+     * which the index is kept up to date by the change log.
+     * @param databaseManager database manager
+     * @param lastRecordQuery name of the query giving back the last indexed
+     * record, which is recorded when all records have been indexed
+     * @return true if the initial indexing of all records has been done
+     * @throws SQLException something bad happened
+     */
+    public static boolean isIndexed(DatabaseManager databaseManager,
+            String lastRecordQuery) throws SQLException {
+        Query<Object> query = databaseManager.getQuery(lastRecordQuery);
+        try {
+            return query.load() != null;
+        }
+        finally {
+            query.close();
+        }
+    }
+
+    /**
+     * Reindexes the objects changed since the last run: their documents are
+     * removed from the index, which drops the deleted ones, and the records
+     * still found are indexed again.
+     * @param <T> type of the records
+     * @param databaseManager database manager
+     * @param indexManager index manager
+     * @param indexName name of the index, the object type of the log entries
+     * @param recordsQuery name of the query giving back the records for a list
+     * of object ids (id_list)
+     * @param fieldId the document field holding the object id
+     * @param indexer indexes a record
+     * @return number of changed objects
+     * @throws SQLException something bad happened
+     * @throws IndexingException something bad happened
+     */
+    public static <T> int reindexChanges(final DatabaseManager databaseManager,
+            final IndexManager indexManager, final String indexName,
+            final String recordsQuery, final String fieldId,
+            final RecordIndexer<T> indexer) throws SQLException, IndexingException {
+        return consume(databaseManager, indexName, new Handler() {
+            public void process(List<Long> objectIds)
+                throws SQLException, IndexingException {
+                Query<T> query = databaseManager.getQuery(recordsQuery);
+                List<T> records;
+                try {
+                    Map<String, Object> params = new HashMap<String, Object>();
+                    params.put("id_list", objectIds);
+                    records = query.loadList(params);
+                }
+                finally {
+                    query.close();
+                }
+                for (Long objectId : objectIds) {
+                    indexManager.removeFromIndex(indexName, fieldId,
+                            objectId.toString());
+                }
+                for (T record : records) {
+                    indexer.index(record);
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands the objects changed since the last run to the handler, in batches,
+     * and removes the processed entries from the log.
+     * @param databaseManager database manager
+     * @param type object type, the name of the index
+     * @param handler processes the changed objects
+     * @return number of objects processed
+     * @throws SQLException something bad happened
+     * @throws IndexingException something bad happened
+     */
+    public static int consume(DatabaseManager databaseManager, String type,
+            Handler handler) throws SQLException, IndexingException {
+        Long first = loadId(databaseManager, "getFirstIndexerChangeId", type);
+        Long last = loadId(databaseManager, "getLastIndexerChangeId", type);
+        if (first == null || last == null) {
+            return 0;
+        }
+        int count = 0;
+        for (long from = first - 1; from < last; from += WINDOW) {
+            List<IndexerChange> changes = listChanges(databaseManager, type, from,
+                    Math.min(from + WINDOW, last));
+            if (changes.isEmpty()) {
+                continue;
+            }
+            Set<Long> objectIds = new LinkedHashSet<Long>();
+            List<Long> changeIds = new ArrayList<Long>(changes.size());
+            for (IndexerChange change : changes) {
+                objectIds.add(change.getObjectId());
+                changeIds.add(change.getId());
+            }
+            handler.process(new ArrayList<Long>(objectIds));
+            deleteChanges(databaseManager, type, changeIds);
+            count += objectIds.size();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Processed " + count + " changed objects of <" + type + ">");
+        }
+        return count;
+    }
+
+    private static Long loadId(DatabaseManager databaseManager, String queryName,
+            String type) throws SQLException {
+        Query<Long> query = databaseManager.getQuery(queryName);
+        try {
+            return query.load(type);
+        }
+        finally {
+            query.close();
+        }
+    }
+
+    private static List<IndexerChange> listChanges(DatabaseManager databaseManager,
+            String type, long from, long to) throws SQLException {
+        Query<IndexerChange> query = databaseManager.getQuery("listIndexerChanges");
+        try {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("type", type);
+            params.put("from", from);
+            params.put("to", to);
+            return query.loadList(params);
+        }
+        finally {
+            query.close();
+        }
+    }
+
+    private static void deleteChanges(DatabaseManager databaseManager, String type,
+            List<Long> changeIds) throws SQLException {
+        WriteQuery query = databaseManager.getWriterQuery("deleteIndexerChanges");
+        try {
+            for (int i = 0; i < changeIds.size(); i += DELETE_BATCH) {
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put("type", type);
+                params.put("id_list", changeIds.subList(i,
+                        Math.min(i + DELETE_BATCH, changeIds.size())));
+                query.delete(params);
+            }
+        }
+        finally {
+            query.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.scheduler.tasks.tests;
+
+import com.redhat.satellite.search.config.Configuration;
+import com.redhat.satellite.search.db.DatabaseManager;
+import com.redhat.satellite.search.db.WriteQuery;
+import com.redhat.satellite.search.db.models.RhnPackage;
+import com.redhat.satellite.search.index.IndexManager;
+import com.redhat.satellite.search.index.IndexingException;
+import com.redhat.satellite.search.scheduler.tasks.IndexerChangeLog;
+import com.redhat.satellite.search.tests.BaseTestCase;
+import com.redhat.satellite.search.tests.TestUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IndexerChangeLogTest
+ * @version $Rev$
+ */
+public class IndexerChangeLogTest extends BaseTestCase {
+
+    // ids no package has, so that the changes stand for deleted packages
+    private static final long MISSING_ID = -4711L;
+    private static final long OTHER_MISSING_ID = -4712L;
+
+    public void testReindexChanges() throws Exception {
+        DatabaseManager databaseManager = (DatabaseManager)
+            container.getComponentInstanceOfType(DatabaseManager.class);
+        RecordingIndexManager indexManager = (RecordingIndexManager)
+            container.getComponentInstanceOfType(RecordingIndexManager.class);
+
+        logChange(databaseManager, MISSING_ID);
+        logChange(databaseManager, OTHER_MISSING_ID);
+        logChange(databaseManager, MISSING_ID);
+
+        final List<RhnPackage> indexed = new ArrayList<RhnPackage>();
+        IndexerChangeLog.RecordIndexer<RhnPackage> indexer =
+            new IndexerChangeLog.RecordIndexer<RhnPackage>() {
+                public void index(RhnPackage record) {
+                    indexed.add(record);
+                }
+            };
+
+        // every changed object is handled once, missing ones are only removed
+        int changed = IndexerChangeLog.reindexChanges(databaseManager, indexManager,
+                "package", "listPackagesByIds", "id", indexer);
+        assertTrue(changed >= 2);
+        assertTrue(indexManager.removed.contains("package:id:" + MISSING_ID));
+        assertTrue(indexManager.removed.contains("package:id:" + OTHER_MISSING_ID));
+        assertEquals(changed, indexManager.removed.size());
+        for (RhnPackage pkg : indexed) {
+            assertTrue(pkg.getId() > 0);
+        }
+
+        // processed entries are gone from the log
+        indexManager.removed.clear();
+        assertEquals(0, IndexerChangeLog.reindexChanges(databaseManager, indexManager,
+                "package", "listPackagesByIds", "id", indexer));
+        assertTrue(indexManager.removed.isEmpty());
+    }
+
+    private void logChange(DatabaseManager databaseManager, long objectId)
+        throws Exception {
+        WriteQuery query = databaseManager.getWriterQuery("insertIndexerChange");
+        try {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("type", "package");
+            params.put("object_id", objectId);
+            query.insert(params);
+        }
+        finally {
+            query.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Class[] getComponentClasses() {
+        Class[] comps = {DatabaseManager.class, RecordingIndexManager.class};
+        return TestUtil.buildComponentsList(comps);
+    }
+
+    /**
+     * Records the documents removed from the index
+     */
+    public static class RecordingIndexManager extends IndexManager {
+
+        private final List<String> removed = new ArrayList<String>();
+
+        /**
+         * @param config configuration
+         */
+        public RecordingIndexManager(Configuration config) {
+            super(config);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void removeFromIndex(String indexName, String uniqueField,
+                String objectId) throws IndexingException {
+            removed.add(indexName + ":" + uniqueField + ":" + objectId);
+        }
+    }
+}